@@ -31,9 +31,17 @@ import org.echocat.marquardt.common.exceptions.LoginFailedException;
 import org.echocat.marquardt.common.exceptions.NoSessionFoundException;
 import org.echocat.marquardt.common.exceptions.SignatureValidationFailedException;
 import org.echocat.marquardt.common.exceptions.UserAlreadyExistsException;
+import org.echocat.marquardt.common.keyprovisioning.KeyId;
+import org.echocat.marquardt.common.metrics.CounterMetric;
+import org.echocat.marquardt.common.metrics.MetricsRecorder;
+import org.echocat.marquardt.common.metrics.TimerMetric;
+import org.echocat.marquardt.common.revocation.RevocationDelta;
+import org.echocat.marquardt.common.revocation.RevocationLog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.UUID;
 import java.util.function.Consumer;
 
@@ -64,6 +72,8 @@ public class Authority<USER extends User<? extends Role>,
     private final SessionStore<SESSION> _sessionStore;
     private final ClientAccessPolicy _clientAccessPolicy;
     private Consumer<USER> _checkRequirementsForUser = user -> {  /* No-op by default */ };
+    private MetricsRecorder _metricsRecorder = MetricsRecorder.NO_OP;
+    private RevocationLog _revocationLog;
 
     /**
      * Sets up a new Authority singleton.
@@ -94,6 +104,28 @@ public class Authority<USER extends User<? extends Role>,
         _checkRequirementsForUser = checkRequirementsForUser;
     }
 
+    /**
+     * Sign outs and {@link #revoke(Session) revocations} append the client key of the session to this log. Services
+     * read it (directly or via {@link #readRevocationsSince(long)}) to reject the session's certificates before they
+     * expire.
+     *
+     * @param revocationLog Log to append to or null (the default) to not revoke certificates.
+     */
+    public void setRevocationLog(final RevocationLog revocationLog) {
+        _revocationLog = revocationLog;
+    }
+
+    /**
+     * Records the duration and failures of initializeSignUp, finalizeSignUp, signIn, refresh and signOut. Wrap your
+     * stores with {@link org.echocat.marquardt.authority.persistence.MeteredSessionStore} and
+     * {@link org.echocat.marquardt.authority.persistence.MeteredUserCatalog} to record their calls as well.
+     *
+     * @param metricsRecorder Recorder to use. {@link MetricsRecorder#NO_OP} by default.
+     */
+    public void setMetricsRecorder(final MetricsRecorder metricsRecorder) {
+        _metricsRecorder = metricsRecorder;
+    }
+
     /**
      * Start of the 2 step sign-up process. In the first step an empty user consisting only of {@link User#getUserId()} and {@link User#getStatus()}
      * will be created and stored.
@@ -106,9 +138,18 @@ public class Authority<USER extends User<? extends Role>,
      * @throws ClientNotAuthorizedException when client id is unknown or null.
      */
     public byte[] initializeSignUp(final ClientInformation clientInformation) {
-        throwExceptionWhenClientIdIsProhibited(clientInformation.getClientId());
-        final USER user = _userCreator.createEmptyUser();
-        return _sessionCreator.createCertificateAndSession(clientInformation, user);
+        final MetricsRecorder metricsRecorder = _metricsRecorder;
+        final long start = System.nanoTime();
+        try {
+            throwExceptionWhenClientIdIsProhibited(clientInformation.getClientId());
+            final USER user = _userCreator.createEmptyUser();
+            return _sessionCreator.createCertificateAndSession(clientInformation, user);
+        } catch (final RuntimeException e) {
+            metricsRecorder.increment(CounterMetric.AUTHORITY_INITIALIZE_SIGN_UP_FAILED);
+            throw e;
+        } finally {
+            metricsRecorder.recordTime(TimerMetric.AUTHORITY_INITIALIZE_SIGN_UP, System.nanoTime() - start);
+        }
     }
 
     /**
@@ -123,23 +164,33 @@ public class Authority<USER extends User<? extends Role>,
      * @throws CertificateCreationException If there were problems creating the certificate.
      */
     public byte[] finalizeSignUp(final byte[] certificate, final byte[] signedBytes, final Signature signature, final SIGNUP_ACCOUNT_DATA accountData) {
-        throwExceptionWhenClientIdIsProhibited(accountData.getCredentials().getClientId());
-        final byte[] decodedCertificate = decodeBase64(certificate);
-        final SESSION session = _sessionStore.findByCertificate(decodedCertificate).orElseThrow(NoSessionFoundException::new);
-        verifySignature(signedBytes, signature, session);
-        final UUID userId = session.getUserId();
-        final USER user = _userCatalog.findByUuid(userId).orElseThrow(() -> new IllegalArgumentException("No such user '" + userId + "'."));
-        if (user.getStatus() != WITHOUT_CREDENTIALS) {
-            throw new IllegalStateException(user + " with status '" + user.getStatus() + "' does not match expected status '" + WITHOUT_CREDENTIALS + "' and will be rejected to proceed with enrichment");
-        }
-        _checkRequirementsForUser.accept(user);
-        final Credentials credentials = accountData.getCredentials();
-        if (_userCatalog.findByCredentials(credentials).isPresent()) {
-            throw new UserAlreadyExistsException("User with identifier " + credentials.getIdentifier() + " already exists.");
-        }
+        final MetricsRecorder metricsRecorder = _metricsRecorder;
+        final long start = System.nanoTime();
+        try {
+            throwExceptionWhenClientIdIsProhibited(accountData.getCredentials().getClientId());
+            final byte[] decodedCertificate = decodeBase64(certificate);
+            final SESSION session = _sessionStore.findBySessionIdOrCertificate(decodedCertificate).orElseThrow(NoSessionFoundException::new);
+            verifySignature(signedBytes, signature, session);
+            final UUID userId = session.getUserId();
+            final USER user = _userCatalog.findByUuid(userId).orElseThrow(() -> new IllegalArgumentException("No such user '" + userId + "'."));
+            if (user.getStatus() != WITHOUT_CREDENTIALS) {
+                throw new IllegalStateException(user + " with status '" + user.getStatus() + "' does not match expected status '" + WITHOUT_CREDENTIALS + "' and will be rejected to proceed with enrichment");
+            }
+            _checkRequirementsForUser.accept(user);
+            final Credentials credentials = accountData.getCredentials();
+            if (_userCatalog.findByCredentials(credentials).isPresent()) {
+                throw new UserAlreadyExistsException("User with identifier " + credentials.getIdentifier() + " already exists.");
+            }
 
-        _userCreator.enrichAndUpdateFrom(user, accountData);
-        return refresh(certificate, signedBytes, signature); // ... use refresh to ensure that user with it's latest roles is used to compose certificate
+            _userCreator.enrichAndUpdateFrom(user, accountData);
+            _sessionRenewal.invalidateCertificateTemplatesOf(user.getUserId());
+            return renewSession(certificate, signedBytes, signature); // ... use refresh to ensure that user with it's latest roles is used to compose certificate
+        } catch (final RuntimeException e) {
+            metricsRecorder.increment(CounterMetric.AUTHORITY_FINALIZE_SIGN_UP_FAILED);
+            throw e;
+        } finally {
+            metricsRecorder.recordTime(TimerMetric.AUTHORITY_FINALIZE_SIGN_UP, System.nanoTime() - start);
+        }
     }
 
     /**
@@ -152,13 +203,22 @@ public class Authority<USER extends User<? extends Role>,
      * @throws CertificateCreationException If there were problems creating the certificate.
      */
     public byte[] signIn(final CREDENTIALS credentials) {
-        throwExceptionWhenClientIdIsProhibited(credentials.getClientId());
-        final USER user = _userCatalog.findByCredentials(credentials).orElseThrow(() -> new LoginFailedException("Login failed"));
-        if (!user.passwordMatches(credentials.getPassword())) {
-            throw new LoginFailedException("Login failed");
+        final MetricsRecorder metricsRecorder = _metricsRecorder;
+        final long start = System.nanoTime();
+        try {
+            throwExceptionWhenClientIdIsProhibited(credentials.getClientId());
+            final USER user = _userCatalog.findByCredentials(credentials).orElseThrow(() -> new LoginFailedException("Login failed"));
+            if (!user.passwordMatches(credentials.getPassword())) {
+                throw new LoginFailedException("Login failed");
+            }
+            _checkRequirementsForUser.accept(user);
+            return _sessionCreator.createCertificateAndSession(credentials, user);
+        } catch (final RuntimeException e) {
+            metricsRecorder.increment(CounterMetric.AUTHORITY_SIGN_IN_FAILED);
+            throw e;
+        } finally {
+            metricsRecorder.recordTime(TimerMetric.AUTHORITY_SIGN_IN, System.nanoTime() - start);
         }
-        _checkRequirementsForUser.accept(user);
-        return _sessionCreator.createCertificateAndSession(credentials, user);
     }
 
     /**
@@ -174,6 +234,19 @@ public class Authority<USER extends User<? extends Role>,
      * @throws CertificateCreationException If there were problems creating the certificate.
      */
     public byte[] refresh(final byte[] certificate, final byte[] signedBytes, final Signature signature) {
+        final MetricsRecorder metricsRecorder = _metricsRecorder;
+        final long start = System.nanoTime();
+        try {
+            return renewSession(certificate, signedBytes, signature);
+        } catch (final RuntimeException e) {
+            metricsRecorder.increment(CounterMetric.AUTHORITY_REFRESH_FAILED);
+            throw e;
+        } finally {
+            metricsRecorder.recordTime(TimerMetric.AUTHORITY_REFRESH, System.nanoTime() - start);
+        }
+    }
+
+    private byte[] renewSession(final byte[] certificate, final byte[] signedBytes, final Signature signature) {
         return _sessionRenewal.renewSessionBasedOnCertificate(
                 decodeBase64(certificate),
                 session -> {
@@ -189,13 +262,71 @@ public class Authority<USER extends User<? extends Role>,
      * @param signature signature of the byte sequence.
      */
     public void signOut(final byte[] certificate, final byte[] signedBytes, final Signature signature) {
+        final MetricsRecorder metricsRecorder = _metricsRecorder;
+        final long start = System.nanoTime();
         try {
             final SESSION session = getSessionBasedOnCertificate(decodeBase64(certificate));
             verifySignature(signedBytes, signature, session);
-            _sessionStore.delete(session);
+            revoke(session);
         } catch (final NoSessionFoundException ignored) {
             LOGGER.info("Received sign out, but session was not found for provided certificate.");
+        } catch (final RuntimeException e) {
+            metricsRecorder.increment(CounterMetric.AUTHORITY_SIGN_OUT_FAILED);
+            throw e;
+        } finally {
+            metricsRecorder.recordTime(TimerMetric.AUTHORITY_SIGN_OUT, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Ends a session and revokes the certificates issued for it, e.g. when its user was deactivated. Services that
+     * check the revocation feed reject the certificates from their next update on; others accept them until they
+     * expire.
+     *
+     * @param session Session to end.
+     * @throws UncheckedIOException If the revocation cannot be appended to the revocation log. The session is kept.
+     * @see #setRevocationLog(RevocationLog)
+     */
+    public void revoke(final SESSION session) {
+        final RevocationLog revocationLog = _revocationLog;
+        if (revocationLog != null) {
+            try {
+                revocationLog.append(KeyId.of(session.getPublicKey()).toLong(), System.currentTimeMillis());
+            } catch (final IOException e) {
+                throw new UncheckedIOException("Could not revoke certificates of session.", e);
+            }
         }
+        _sessionStore.delete(session);
+    }
+
+    /**
+     * Ends all sessions of a user and revokes the certificates issued for them, e.g. when the user was deactivated.
+     * The sessions are found by {@link SessionStore#findByUserId(UUID)}.
+     *
+     * @param userId Id of the user.
+     * @return Number of ended sessions.
+     * @throws UncheckedIOException If a revocation cannot be appended to the revocation log. The sessions revoked
+     *                              before are ended, the others are kept.
+     * @see #revoke(Session)
+     */
+    public int revokeAllOf(final UUID userId) {
+        int revoked = 0;
+        for (final SESSION session : _sessionStore.findByUserId(userId)) {
+            revoke(session);
+            revoked++;
+        }
+        return revoked;
+    }
+
+    /**
+     * @param sequence Sequence number of the first revocation to return.
+     * @return Revocations since sequence or an empty delta if no revocation log is set.
+     * @throws IOException If the revocation log cannot be read.
+     * @see org.echocat.marquardt.common.revocation.RevocationRegistry
+     */
+    public RevocationDelta readRevocationsSince(final long sequence) throws IOException {
+        final RevocationLog revocationLog = _revocationLog;
+        return revocationLog != null ? revocationLog.readSince(sequence) : RevocationDelta.empty(0L);
     }
 
     private void throwExceptionWhenClientIdIsProhibited(final String clientId) {
@@ -212,6 +343,6 @@ public class Authority<USER extends User<? extends Role>,
     }
 
     private SESSION getSessionBasedOnCertificate(final byte[] certificateBytes) {
-        return _sessionStore.findByCertificate(certificateBytes).orElseThrow(NoSessionFoundException::new);
+        return _sessionStore.findBySessionIdOrCertificate(certificateBytes).orElseThrow(NoSessionFoundException::new);
     }
 }
\ No newline at end of file
@@ -110,4 +110,28 @@ public interface Session {
     String getClientId();
 
     void setClientId(String clientId);
+
+    /**
+     * Id of this session. It is embedded in the session's certificates, so the session of a certificate can be found
+     * with {@link org.echocat.marquardt.authority.persistence.SessionStore#findBySessionId(UUID)}.
+     *
+     * Certificates that carry a session id are rejected by clients and services of SDK versions before the id was
+     * added, so update them before providing ids here.
+     *
+     * @return Id of this session or null if sessions are not identified by an id (the default). Certificates are then
+     * issued without id and sessions are found by their certificate.
+     */
+    default UUID getSessionId() {
+        return null;
+    }
+
+    /**
+     * Sets the id of a new session. Implement this together with {@link #getSessionId()} and store the id in an
+     * (unique) indexed column.
+     *
+     * @param sessionId Id of this session.
+     */
+    default void setSessionId(final UUID sessionId) {
+        // Sessions are not identified by an id by default.
+    }
 }
@@ -0,0 +1,19 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.exceptions;
+
+/**
+ * Thrown when a certificate is not signed because the CertificateSigningService is at capacity. Clients should retry
+ * later.
+ */
+public class SigningRejectedException extends RuntimeException {
+    public SigningRejectedException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.persistence;
+
+import com.google.common.hash.Hashing;
+
+import java.util.Arrays;
+
+/**
+ * Certificate bytes with their 128 bit murmur3 digest as hash code, so lookups compare the full bytes only for the
+ * (usually single) certificate with a matching digest.
+ */
+final class CertificateKey {
+
+    private final byte[] _certificate;
+    private final int _hash;
+
+    private CertificateKey(final byte[] certificate) {
+        _certificate = certificate;
+        _hash = Hashing.murmur3_128().hashBytes(certificate).asInt();
+    }
+
+    static CertificateKey of(final byte[] certificate) {
+        return new CertificateKey(certificate);
+    }
+
+    static CertificateKey copyOf(final byte[] certificate) {
+        return new CertificateKey(Arrays.copyOf(certificate, certificate.length));
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return o instanceof CertificateKey && ((CertificateKey) o)._hash == _hash && Arrays.equals(((CertificateKey) o)._certificate, _certificate);
+    }
+
+    @Override
+    public int hashCode() {
+        return _hash;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.persistence;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.echocat.marquardt.common.metrics.CounterMetric;
+import org.echocat.marquardt.common.metrics.MetricsRecorder;
+import org.echocat.marquardt.common.metrics.TimerMetric;
+import org.echocat.marquardt.common.util.DateProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes expired sessions from an {@link ExpiringSessionStore} in the background. Every run deletes the sessions that
+ * expired before its start in batches of {@link #setBatchSize(int) batch size} until a batch comes back short, but at
+ * most {@link #setMaxBatchesPerRun(int) max batches per run}. Batches are rate limited, so a large backlog of expired
+ * sessions is worked off over several runs instead of keeping the database busy.
+ * <p>
+ * Either {@link #start(long, TimeUnit) start} the reaper on a thread of its own and {@link #close() close} it on
+ * shutdown, or schedule it (it is Runnable) with an executor of your own.
+ */
+public class ExpiredSessionReaper implements Runnable, Closeable {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_MAX_BATCHES_PER_RUN = 100;
+    public static final double DEFAULT_BATCHES_PER_SECOND = 5;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExpiredSessionReaper.class);
+
+    private final ExpiringSessionStore<?> _sessionStore;
+    private final RateLimiter _rateLimiter = RateLimiter.create(DEFAULT_BATCHES_PER_SECOND);
+    private volatile int _batchSize = DEFAULT_BATCH_SIZE;
+    private volatile int _maxBatchesPerRun = DEFAULT_MAX_BATCHES_PER_RUN;
+    private DateProvider _dateProvider = new DateProvider();
+    private MetricsRecorder _metricsRecorder = MetricsRecorder.NO_OP;
+    private ScheduledExecutorService _executor;
+
+    public ExpiredSessionReaper(@Nonnull final ExpiringSessionStore<?> sessionStore) {
+        _sessionStore = sessionStore;
+    }
+
+    /**
+     * @param batchSize Maximum number of sessions deleted by one call of {@link ExpiringSessionStore#deleteExpired}.
+     */
+    public void setBatchSize(final int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive but was " + batchSize + ".");
+        }
+        _batchSize = batchSize;
+    }
+
+    /**
+     * @param maxBatchesPerRun Maximum number of batches deleted by one run. Bounds the duration of a run.
+     */
+    public void setMaxBatchesPerRun(final int maxBatchesPerRun) {
+        if (maxBatchesPerRun <= 0) {
+            throw new IllegalArgumentException("Max batches per run must be positive but was " + maxBatchesPerRun + ".");
+        }
+        _maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    /**
+     * @param batchesPerSecond Maximum rate of batches, across runs.
+     */
+    public void setBatchesPerSecond(final double batchesPerSecond) {
+        _rateLimiter.setRate(batchesPerSecond);
+    }
+
+    public void setDateProvider(@Nonnull final DateProvider dateProvider) {
+        _dateProvider = dateProvider;
+    }
+
+    public void setMetricsRecorder(@Nonnull final MetricsRecorder metricsRecorder) {
+        _metricsRecorder = metricsRecorder;
+    }
+
+    /**
+     * Runs the reaper on a daemon thread of its own.
+     *
+     * @param delay Delay between the end of one run and the start of the next.
+     * @param unit Unit of delay.
+     * @throws IllegalStateException If the reaper is already started.
+     */
+    public synchronized void start(final long delay, @Nonnull final TimeUnit unit) {
+        if (_executor != null) {
+            throw new IllegalStateException("Reaper is already started.");
+        }
+        _executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("expired-session-reaper-%d").setDaemon(true).build());
+        _executor.scheduleWithFixedDelay(this, delay, delay, unit);
+    }
+
+    /**
+     * Stops a started reaper. A running batch is completed; no further batches are started.
+     */
+    @Override
+    public synchronized void close() {
+        if (_executor != null) {
+            _executor.shutdownNow();
+            _executor = null;
+        }
+    }
+
+    /**
+     * Reaps once, see {@link #reap()}. Failures are logged and counted instead of thrown, because a scheduled executor
+     * would cancel all following runs.
+     */
+    @Override
+    public void run() {
+        try {
+            reap();
+        } catch (final RuntimeException e) {
+            _metricsRecorder.increment(CounterMetric.SESSION_REAPER_FAILED);
+            LOGGER.warn("Failed to delete expired sessions.", e);
+        }
+    }
+
+    /**
+     * Deletes the sessions that expired until now, batch by batch.
+     *
+     * @return Number of deleted sessions.
+     */
+    public int reap() {
+        final Date expiredBefore = _dateProvider.now();
+        final int batchSize = _batchSize;
+        final int maxBatchesPerRun = _maxBatchesPerRun;
+        int deleted = 0;
+        for (int batch = 0; batch < maxBatchesPerRun && !Thread.currentThread().isInterrupted(); batch++) {
+            _rateLimiter.acquire();
+            final long start = System.nanoTime();
+            final int deletedInBatch = _sessionStore.deleteExpired(expiredBefore, batchSize);
+            _metricsRecorder.recordTime(TimerMetric.SESSION_REAPER_BATCH, System.nanoTime() - start);
+            if (deletedInBatch > 0) {
+                _metricsRecorder.increment(CounterMetric.SESSION_REAPER_DELETED, deletedInBatch);
+            }
+            deleted += deletedInBatch;
+            if (deletedInBatch < batchSize) {
+                break;
+            }
+        }
+        return deleted;
+    }
+}
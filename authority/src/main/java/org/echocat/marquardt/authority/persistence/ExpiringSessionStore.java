@@ -0,0 +1,33 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.persistence;
+
+import org.echocat.marquardt.authority.domain.Session;
+
+import java.util.Date;
+
+/**
+ * SessionStore that can delete expired sessions in bulk. Implement it if your store does not remove expired sessions
+ * by itself and run an {@link ExpiredSessionReaper} with it.
+ *
+ * @param <T> Your Session implementation.
+ */
+public interface ExpiringSessionStore<T extends Session> extends SessionStore<T> {
+
+    /**
+     * Implement this to delete sessions whose expiry date is before expiredBefore, at most limit of them. Backed by
+     * a database, this should be a range delete on an index of the expiry date, so a call touches no more than limit
+     * rows and does not lock the table.
+     *
+     * @param expiredBefore Sessions that expired before this date are deleted.
+     * @param limit Maximum number of sessions to delete.
+     * @return Number of deleted sessions. Less than limit when no more expired sessions exist.
+     */
+    int deleteExpired(Date expiredBefore, int limit);
+}
@@ -0,0 +1,37 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.persistence;
+
+import org.echocat.marquardt.authority.domain.Session;
+
+/**
+ * Key of a session by its identity, for sessions without an id.
+ */
+final class IdentityKey {
+
+    private final Session _session;
+
+    IdentityKey(final Session session) {
+        _session = session;
+    }
+
+    Session getSession() {
+        return _session;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return o instanceof IdentityKey && ((IdentityKey) o)._session == _session;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(_session);
+    }
+}
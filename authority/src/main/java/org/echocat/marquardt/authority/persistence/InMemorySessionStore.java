@@ -0,0 +1,437 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.persistence;
+
+import org.echocat.marquardt.authority.domain.Session;
+import org.echocat.marquardt.common.util.DateProvider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * SessionStore that keeps sessions in memory, e.g. for authorities that do not share sessions with other nodes.
+ *
+ * Sessions are indexed by a digest of their certificate, by their session id, by user id and by user id and client
+ * public key, so {@link #findByCertificate(byte[])}, {@link #findBySessionId(UUID)}, {@link #findByUserId(UUID)} and
+ * {@link #existsActiveSession(UUID, byte[], Date)} are single hash lookups. Every index is split into stripes that are locked independently; an operation holds at most
+ * one stripe lock at a time, so threads working on different sessions rarely contend.
+ *
+ * Expired sessions are removed by a hierarchical timing wheel with a resolution of one second instead of scanning all
+ * sessions: Saving a session advances the wheel when a tick passed, and {@link #removeExpiredSessions()} does so on
+ * demand. A session that was refreshed before its old expiry date is rescheduled when the wheel reaches that date.
+ *
+ * The store returns the saved session instances, it does not copy them. Changes to a session are indexed when it is
+ * saved.
+ *
+ * @param <T> Your Session implementation.
+ */
+public class InMemorySessionStore<T extends Session> implements SessionStore<T> {
+
+    public static final int DEFAULT_NUMBER_OF_STRIPES = 64;
+
+    private static final long TICK_IN_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    /**
+     * 4 levels of 64 one second slots cover 194 days.
+     */
+    private static final int WHEEL_LEVELS = 4;
+
+    private final Supplier<T> _sessionFactory;
+    private final StripedIndex<IdentityKey, Entry<T>> _byInstance;
+    private final StripedIndex<CertificateKey, Entry<T>> _byCertificate;
+    private final StripedIndex<UUID, Entry<T>> _bySessionId;
+    private final StripedIndex<UUID, Entry<T>[]> _byUser;
+    private final StripedIndex<ClientKey, Entry<T>[]> _byClient;
+    private final ReentrantLock _wheelLock = new ReentrantLock();
+    private final TimingWheel<Entry<T>> _wheel;
+    private volatile long _nextTickInMillis;
+    private volatile DateProvider _dateProvider = new DateProvider();
+
+    /**
+     * @param sessionFactory Creates transient sessions.
+     */
+    public InMemorySessionStore(final Supplier<T> sessionFactory) {
+        this(sessionFactory, DEFAULT_NUMBER_OF_STRIPES);
+    }
+
+    /**
+     * @param sessionFactory Creates transient sessions.
+     * @param numberOfStripes Number of independently locked stripes of each index. A few times the number of threads
+     *                        that use the store is a good choice.
+     */
+    public InMemorySessionStore(final Supplier<T> sessionFactory, final int numberOfStripes) {
+        _sessionFactory = sessionFactory;
+        _byInstance = new StripedIndex<>(numberOfStripes);
+        _byCertificate = new StripedIndex<>(numberOfStripes);
+        _bySessionId = new StripedIndex<>(numberOfStripes);
+        _byUser = new StripedIndex<>(numberOfStripes);
+        _byClient = new StripedIndex<>(numberOfStripes);
+        _wheel = new TimingWheel<>(TICK_IN_MILLIS, WHEEL_LEVELS, now());
+        _nextTickInMillis = _wheel.getNextTickInMillis();
+    }
+
+    /**
+     * @param dateProvider Clock to expire sessions by. Must be set before sessions are saved.
+     */
+    public void setDateProvider(final DateProvider dateProvider) {
+        _wheelLock.lock();
+        try {
+            _dateProvider = dateProvider;
+            _wheel.resetTo(now());
+            _nextTickInMillis = _wheel.getNextTickInMillis();
+        } finally {
+            _wheelLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<T> findByCertificate(final byte[] certificate) {
+        return sessionOf(_byCertificate.get(CertificateKey.of(certificate)));
+    }
+
+    @Override
+    public Optional<T> findBySessionId(final UUID sessionId) {
+        return sessionOf(_bySessionId.get(sessionId));
+    }
+
+    @Override
+    public Collection<T> findByUserId(final UUID userId) {
+        final Entry<T>[] entries = _byUser.get(userId);
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+        final List<T> sessions = new ArrayList<>(entries.length);
+        for (final Entry<T> entry : entries) {
+            sessions.add(entry._session);
+        }
+        return sessions;
+    }
+
+    @Override
+    public boolean existsActiveSession(final UUID userId, final byte[] clientPublicKey, @SuppressWarnings("UseOfObsoleteDateTimeApi") final Date dateToCheck) {
+        final Entry<T>[] entries = _byClient.get(new ClientKey(userId, clientPublicKey));
+        if (entries != null) {
+            for (final Entry<T> entry : entries) {
+                if (entry._expiresAt > dateToCheck.getTime()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public T save(final T session) {
+        final IdentityKey instanceKey = new IdentityKey(session);
+        boolean saved = false;
+        while (!saved) {
+            final Entry<T> entry = entryOf(instanceKey);
+            synchronized (entry) {
+                if (!entry._removed) {
+                    index(entry);
+                    schedule(entry);
+                    saved = true;
+                }
+            }
+        }
+        removeExpiredSessionsIfTickPassed();
+        return session;
+    }
+
+    @Override
+    public T createTransient() {
+        return _sessionFactory.get();
+    }
+
+    @Override
+    public void delete(final T session) {
+        Entry<T> entry = _byInstance.get(new IdentityKey(session));
+        if (entry == null && session.getSessionId() != null) {
+            entry = _bySessionId.get(session.getSessionId());
+        }
+        if (entry != null) {
+            remove(entry);
+        }
+    }
+
+    /**
+     * Removes the sessions whose expiry date passed. Saving sessions does this as well, so you only need to call it if
+     * sessions may expire while none are saved for a long time.
+     */
+    public void removeExpiredSessions() {
+        _wheelLock.lock();
+        final long now;
+        final List<Entry<T>> expired;
+        try {
+            now = now();
+            expired = advanceWheelTo(now);
+        } finally {
+            _wheelLock.unlock();
+        }
+        removeExpired(expired, now);
+    }
+
+    /**
+     * @return Number of stored sessions.
+     */
+    public int size() {
+        return _byInstance.size();
+    }
+
+    private void removeExpiredSessionsIfTickPassed() {
+        if (now() >= _nextTickInMillis && _wheelLock.tryLock()) {
+            final long now;
+            final List<Entry<T>> expired;
+            try {
+                now = now();
+                expired = advanceWheelTo(now);
+            } finally {
+                _wheelLock.unlock();
+            }
+            removeExpired(expired, now);
+        }
+    }
+
+    /**
+     * Collects the expired entries. Requires the wheel lock; they are removed by {@link #removeExpired(List, long)}
+     * after releasing it, because removing locks the entries, which must not happen while holding the wheel lock.
+     */
+    private List<Entry<T>> advanceWheelTo(final long now) {
+        final List<Entry<T>> expired = _wheel.advanceTo(now);
+        _nextTickInMillis = _wheel.getNextTickInMillis();
+        return expired;
+    }
+
+    private void removeExpired(final List<Entry<T>> expired, final long now) {
+        for (final Entry<T> entry : expired) {
+            synchronized (entry) {
+                if (entry._removed) {
+                    continue;
+                }
+                if (entry._expiresAt > now) {
+                    schedule(entry);
+                } else {
+                    removeLocked(entry);
+                }
+            }
+        }
+    }
+
+    private Entry<T> entryOf(final IdentityKey instanceKey) {
+        final Entry<T> entry = _byInstance.get(instanceKey);
+        if (entry != null) {
+            return entry;
+        }
+        //noinspection unchecked
+        final Entry<T> created = new Entry<>((T) instanceKey.getSession());
+        final Entry<T> existing = _byInstance.putIfAbsent(instanceKey, created);
+        return existing != null ? existing : created;
+    }
+
+    /**
+     * Moves the index entries of entry to the current certificate, session id, user and client of its session. Requires the
+     * lock of entry.
+     */
+    private void index(final Entry<T> entry) {
+        final T session = entry._session;
+        final CertificateKey certificateKey = session.getCertificate() != null ? CertificateKey.copyOf(session.getCertificate()) : null;
+        if (!Objects.equals(certificateKey, entry._certificateKey)) {
+            if (entry._certificateKey != null) {
+                _byCertificate.remove(entry._certificateKey, entry);
+            }
+            if (certificateKey != null) {
+                _byCertificate.put(certificateKey, entry);
+            }
+            entry._certificateKey = certificateKey;
+        }
+        final UUID sessionId = session.getSessionId();
+        if (!Objects.equals(sessionId, entry._sessionId)) {
+            if (entry._sessionId != null) {
+                _bySessionId.remove(entry._sessionId, entry);
+            }
+            if (sessionId != null) {
+                _bySessionId.put(sessionId, entry);
+            }
+            entry._sessionId = sessionId;
+        }
+        final UUID userId = session.getUserId();
+        if (!Objects.equals(userId, entry._userId)) {
+            if (entry._userId != null) {
+                removeFromUser(entry._userId, entry);
+            }
+            if (userId != null) {
+                _byUser.compute(userId, (key, entries) -> with(entries, entry));
+            }
+            entry._userId = userId;
+        }
+        final ClientKey clientKey = ClientKey.copyOf(userId, session.getPublicKey());
+        if (!clientKey.equals(entry._clientKey)) {
+            if (entry._clientKey != null) {
+                removeFromClient(entry._clientKey, entry);
+            }
+            _byClient.compute(clientKey, (key, entries) -> with(entries, entry));
+            entry._clientKey = clientKey;
+        }
+        entry._expiresAt = session.getExpiresAt() != null ? session.getExpiresAt().getTime() : Long.MAX_VALUE;
+    }
+
+    private void remove(final Entry<T> entry) {
+        synchronized (entry) {
+            if (!entry._removed) {
+                removeLocked(entry);
+            }
+        }
+    }
+
+    /**
+     * Removes entry from all indexes and the wheel. Requires the lock of entry.
+     */
+    private void removeLocked(final Entry<T> entry) {
+        entry._removed = true;
+        _byInstance.remove(new IdentityKey(entry._session), entry);
+        if (entry._certificateKey != null) {
+            _byCertificate.remove(entry._certificateKey, entry);
+        }
+        if (entry._sessionId != null) {
+            _bySessionId.remove(entry._sessionId, entry);
+        }
+        if (entry._userId != null) {
+            removeFromUser(entry._userId, entry);
+        }
+        if (entry._clientKey != null) {
+            removeFromClient(entry._clientKey, entry);
+        }
+        _wheelLock.lock();
+        try {
+            _wheel.cancel(entry);
+        } finally {
+            _wheelLock.unlock();
+        }
+    }
+
+    /**
+     * Schedules entry at its expiry date unless it is scheduled for an earlier date already. Requires the lock of
+     * entry.
+     */
+    private void schedule(final Entry<T> entry) {
+        if (entry._expiresAt == Long.MAX_VALUE || (entry.isScheduled() && entry._scheduledAt <= entry._expiresAt)) {
+            return;
+        }
+        _wheelLock.lock();
+        try {
+            _wheel.schedule(entry, entry._expiresAt);
+            entry._scheduledAt = entry._expiresAt;
+        } finally {
+            _wheelLock.unlock();
+        }
+    }
+
+    private void removeFromUser(final UUID userId, final Entry<T> entry) {
+        _byUser.compute(userId, (key, entries) -> without(entries, entry));
+    }
+
+    private void removeFromClient(final ClientKey clientKey, final Entry<T> entry) {
+        _byClient.compute(clientKey, (key, entries) -> without(entries, entry));
+    }
+
+    private Optional<T> sessionOf(final Entry<T> entry) {
+        return entry != null ? Optional.of(entry._session) : Optional.empty();
+    }
+
+    private long now() {
+        return _dateProvider.now().getTime();
+    }
+
+    private static <T extends Session> Entry<T>[] with(final Entry<T>[] entries, final Entry<T> entry) {
+        if (entries == null) {
+            //noinspection unchecked
+            return new Entry[]{entry};
+        }
+        final Entry<T>[] result = Arrays.copyOf(entries, entries.length + 1);
+        result[entries.length] = entry;
+        return result;
+    }
+
+    private static <T extends Session> Entry<T>[] without(final Entry<T>[] entries, final Entry<T> entry) {
+        if (entries == null) {
+            return null;
+        }
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] == entry) {
+                if (entries.length == 1) {
+                    return null;
+                }
+                final Entry<T>[] result = Arrays.copyOf(entries, entries.length - 1);
+                System.arraycopy(entries, i + 1, result, i, entries.length - i - 1);
+                return result;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * State of a stored session: The keys it is indexed with and its node in the timing wheel. Index keys are
+     * snapshots taken on save, so changes to the session before it is saved again do not corrupt the indexes.
+     */
+    private static final class Entry<T extends Session> extends TimingWheel.Node {
+
+        private final T _session;
+        private CertificateKey _certificateKey;
+        private UUID _sessionId;
+        private UUID _userId;
+        private ClientKey _clientKey;
+        private volatile long _expiresAt;
+        private long _scheduledAt;
+        private boolean _removed;
+
+        private Entry(final T session) {
+            _session = session;
+        }
+    }
+
+    private static final class ClientKey {
+
+        private final UUID _userId;
+        private final byte[] _publicKey;
+        private final int _hash;
+
+        private ClientKey(final UUID userId, final byte[] publicKey) {
+            _userId = userId;
+            _publicKey = publicKey;
+            _hash = 31 * Objects.hashCode(userId) + Arrays.hashCode(publicKey);
+        }
+
+        private static ClientKey copyOf(final UUID userId, final byte[] publicKey) {
+            return new ClientKey(userId, publicKey != null ? Arrays.copyOf(publicKey, publicKey.length) : null);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof ClientKey)) {
+                return false;
+            }
+            final ClientKey other = (ClientKey) o;
+            return other._hash == _hash && Objects.equals(other._userId, _userId) && Arrays.equals(other._publicKey, _publicKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hash;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.echocat.marquardt.authority.persistence;
+
+import org.echocat.marquardt.authority.domain.Session;
+import org.echocat.marquardt.common.metrics.CounterMetric;
+import org.echocat.marquardt.common.metrics.MetricsRecorder;
+import org.echocat.marquardt.common.metrics.TimerMetric;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Records the duration of every call to a SessionStore and counts the calls that failed.
+ *
+ * @param <T> Your Session implementation.
+ * @see MetricsRecorder
+ */
+public class MeteredSessionStore<T extends Session> implements SessionStore<T> {
+
+    private final SessionStore<T> _delegate;
+    private final MetricsRecorder _metricsRecorder;
+
+    public MeteredSessionStore(final SessionStore<T> delegate, final MetricsRecorder metricsRecorder) {
+        _delegate = delegate;
+        _metricsRecorder = metricsRecorder;
+    }
+
+    @Override
+    public Optional<T> findByCertificate(final byte[] certificate) {
+        final long start = System.nanoTime();
+        try {
+            return _delegate.findByCertificate(certificate);
+        } catch (final RuntimeException e) {
+            _metricsRecorder.increment(CounterMetric.SESSION_STORE_FAILED);
+            throw e;
+        } finally {
+            _metricsRecorder.recordTime(TimerMetric.SESSION_STORE_FIND_BY_CERTIFICATE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Optional<T> findBySessionId(final UUID sessionId) {
+        final long start = System.nanoTime();
+        try {
+            return _delegate.findBySessionId(sessionId);
+        } catch (final RuntimeException e) {
+            _metricsRecorder.increment(CounterMetric.SESSION_STORE_FAILED);
+            throw e;
+        } finally {
+            _metricsRecorder.recordTime(TimerMetric.SESSION_STORE_FIND_BY_SESSION_ID, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Collection<T> findByUserId(final UUID userId) {
+        final long start = System.nanoTime();
+        try {
+            return _delegate.findByUserId(userId);
+        } catch (final RuntimeException e) {
+            _metricsRecorder.increment(CounterMetric.SESSION_STORE_FAILED);
+            throw e;
+        } finally {
+            _metricsRecorder.recordTime(TimerMetric.SESSION_STORE_FIND_BY_USER_ID, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean existsActiveSession(final UUID userId, final byte[] clientPublicKey, final Date dateToCheck) {
+        final long start = System.nanoTime();
+        try {
+            return _delegate.existsActiveSession(userId, clientPublicKey, dateToCheck);
+        } catch (final RuntimeException e) {
+            _metricsRecorder.increment(CounterMetric.SESSION_STORE_FAILED);
+            throw e;
+        } finally {
+            _metricsRecorder.recordTime(TimerMetric.SESSION_STORE_EXISTS_ACTIVE_SESSION, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public T save(final T session) {
+        final long start = System.nanoTime();
+        try {
+            return _delegate.save(session);
+        } catch (final RuntimeException e) {
+            _metricsRecorder.increment(CounterMetric.SESSION_STORE_FAILED);
+            throw e;
+        } finally {
+            _metricsRecorder.recordTime(TimerMetric.SESSION_STORE_SAVE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public T createTransient() {
+        final long start = System.nanoTime();
+        try {
+            return _delegate.createTransient();
+        } catch (final RuntimeException e) {
+            _metricsRecorder.increment(CounterMetric.SESSION_STORE_FAILED);
+            throw e;
+        } finally {
+            _metricsRecorder.recordTime(TimerMetric.SESSION_STORE_CREATE_TRANSIENT, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void delete(final T session) {
+        final long start = System.nanoTime();
+        try {
+            _delegate.delete(session);
+        } catch (final RuntimeException e) {
+            _metricsRecorder.increment(CounterMetric.SESSION_STORE_FAILED);
+            throw e;
+        } finally {
+            _metricsRecorder.recordTime(TimerMetric.SESSION_STORE_DELETE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void saveAll(final Collection<T> sessions) {
+        final long start = System.nanoTime();
+        try {
+            _delegate.saveAll(sessions);
+        } catch (final RuntimeException e) {
+            _metricsRecorder.increment(CounterMetric.SESSION_STORE_FAILED);
+            throw e;
+        } finally {
+            _metricsRecorder.recordTime(TimerMetric.SESSION_STORE_SAVE_ALL, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void deleteAll(final Collection<T> sessions) {
+        final long start = System.nanoTime();
+        try {
+            _delegate.deleteAll(sessions);
+        } catch (final RuntimeException e) {
+            _metricsRecorder.increment(CounterMetric.SESSION_STORE_FAILED);
+            throw e;
+        } finally {
+            _metricsRecorder.recordTime(TimerMetric.SESSION_STORE_DELETE_ALL, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.echocat.marquardt.authority.persistence;
+
+import org.echocat.marquardt.authority.domain.User;
+import org.echocat.marquardt.common.domain.Credentials;
+import org.echocat.marquardt.common.domain.Signable;
+import org.echocat.marquardt.common.domain.certificate.Role;
+import org.echocat.marquardt.common.metrics.CounterMetric;
+import org.echocat.marquardt.common.metrics.MetricsRecorder;
+import org.echocat.marquardt.common.metrics.TimerMetric;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Records the duration of every call to a UserCatalog and counts the calls that failed.
+ *
+ * @param <USER> Your User implementation.
+ * @see MetricsRecorder
+ */
+public class MeteredUserCatalog<USER extends User<? extends Role>> implements UserCatalog<USER> {
+
+    private final UserCatalog<USER> _delegate;
+    private final MetricsRecorder _metricsRecorder;
+
+    public MeteredUserCatalog(final UserCatalog<USER> delegate, final MetricsRecorder metricsRecorder) {
+        _delegate = delegate;
+        _metricsRecorder = metricsRecorder;
+    }
+
+    @Override
+    public Optional<USER> findByCredentials(final Credentials credentials) {
+        final long start = System.nanoTime();
+        try {
+            return _delegate.findByCredentials(credentials);
+        } catch (final RuntimeException e) {
+            _metricsRecorder.increment(CounterMetric.USER_CATALOG_FAILED);
+            throw e;
+        } finally {
+            _metricsRecorder.recordTime(TimerMetric.USER_CATALOG_FIND_BY_CREDENTIALS, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Optional<USER> findByUuid(final UUID userId) {
+        final long start = System.nanoTime();
+        try {
+            return _delegate.findByUuid(userId);
+        } catch (final RuntimeException e) {
+            _metricsRecorder.increment(CounterMetric.USER_CATALOG_FAILED);
+            throw e;
+        } finally {
+            _metricsRecorder.recordTime(TimerMetric.USER_CATALOG_FIND_BY_UUID, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Signable toSignable(final USER user) {
+        final long start = System.nanoTime();
+        try {
+            return _delegate.toSignable(user);
+        } catch (final RuntimeException e) {
+            _metricsRecorder.increment(CounterMetric.USER_CATALOG_FAILED);
+            throw e;
+        } finally {
+            _metricsRecorder.recordTime(TimerMetric.USER_CATALOG_TO_SIGNABLE, System.nanoTime() - start);
+        }
+    }
+}
@@ -9,7 +9,10 @@
 package org.echocat.marquardt.authority.persistence;
 
 import org.echocat.marquardt.authority.domain.Session;
+import org.echocat.marquardt.common.domain.certificate.Certificate;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Optional;
 import java.util.UUID;
@@ -28,6 +31,48 @@ public interface SessionStore<T extends Session> {
      */
     Optional<T> findByCertificate(byte[] certificate);
 
+    /**
+     * Implement a finder based on the id of a session. Recommended if your sessions provide an id: The default finds
+     * nothing, so {@link #findBySessionIdOrCertificate(byte[])} falls back to {@link #findByCertificate(byte[])},
+     * which compares the whole certificate.
+     *
+     * @param sessionId Id of the session.
+     * @return Optional with the session (when exists) or Optional.empty when no session exists with the given id.
+     * @see Session#getSessionId()
+     */
+    default Optional<T> findBySessionId(final UUID sessionId) {
+        return Optional.empty();
+    }
+
+    /**
+     * Implement a finder for all sessions of a user. Used by
+     * {@link org.echocat.marquardt.authority.Authority#revokeAllOf(UUID)}, e.g. to revoke the certificates of a
+     * deactivated user.
+     *
+     * @param userId User id of the user.
+     * @return Sessions of the user, including expired ones that are not yet deleted. Empty if the user has none.
+     */
+    Collection<T> findByUserId(UUID userId);
+
+    /**
+     * Finds the session a certificate was issued for: By the session id embedded in the certificate if it carries one,
+     * otherwise (or if no session is found by the id) by the whole certificate. A session found by its id is only
+     * returned if its current certificate is the given one, so certificates replaced by a refresh are not accepted.
+     *
+     * @param certificate Certificate of the session.
+     * @return Optional with the session (when exists) or Optional.empty when no session exists with the given certificate.
+     */
+    default Optional<T> findBySessionIdOrCertificate(final byte[] certificate) {
+        final UUID sessionId = Certificate.readSessionIdFrom(certificate);
+        if (sessionId != null) {
+            final Optional<T> session = findBySessionId(sessionId);
+            if (session.isPresent()) {
+                return session.filter(candidate -> Arrays.equals(candidate.getCertificate(), certificate));
+            }
+        }
+        return findByCertificate(certificate);
+    }
+
     /**
      * Implement a query that checks if there is an active session for a user on a client with a public key.
      *
@@ -58,4 +103,24 @@ public interface SessionStore<T extends Session> {
      * @param session Session to delete.
      */
     void delete(T session);
+
+    /**
+     * Persists several new or updated sessions, e.g. the batches of a {@link WriteBehindSessionStore}. Implement this
+     * to write them in one transaction or statement batch instead of one by one.
+     *
+     * @param sessions Sessions to persist.
+     */
+    default void saveAll(final Collection<T> sessions) {
+        sessions.forEach(this::save);
+    }
+
+    /**
+     * Deletes several sessions, e.g. the batches of a {@link WriteBehindSessionStore}. Implement this to delete them in
+     * one transaction or statement instead of one by one.
+     *
+     * @param sessions Sessions to delete.
+     */
+    default void deleteAll(final Collection<T> sessions) {
+        sessions.forEach(this::delete);
+    }
 }
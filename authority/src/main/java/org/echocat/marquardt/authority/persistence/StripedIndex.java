@@ -0,0 +1,92 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.persistence;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Hash map split into stripes that are locked independently, so threads working on keys of different stripes do not
+ * contend. Each operation locks exactly one stripe for the duration of a HashMap operation.
+ *
+ * @param <K> Type of keys.
+ * @param <V> Type of values.
+ */
+final class StripedIndex<K, V> {
+
+    private final Map<K, V>[] _stripes;
+    private final int _mask;
+
+    /**
+     * @param numberOfStripes Number of stripes, rounded up to a power of two.
+     */
+    StripedIndex(final int numberOfStripes) {
+        final int size = Integer.highestOneBit(Math.max(numberOfStripes - 1, 1)) << 1;
+        //noinspection unchecked
+        _stripes = new Map[size];
+        for (int i = 0; i < size; i++) {
+            _stripes[i] = new HashMap<>();
+        }
+        _mask = size - 1;
+    }
+
+    V get(final K key) {
+        final Map<K, V> stripe = stripeOf(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    V putIfAbsent(final K key, final V value) {
+        final Map<K, V> stripe = stripeOf(key);
+        synchronized (stripe) {
+            return stripe.putIfAbsent(key, value);
+        }
+    }
+
+    void put(final K key, final V value) {
+        final Map<K, V> stripe = stripeOf(key);
+        synchronized (stripe) {
+            stripe.put(key, value);
+        }
+    }
+
+    boolean remove(final K key, final V value) {
+        final Map<K, V> stripe = stripeOf(key);
+        synchronized (stripe) {
+            return stripe.remove(key, value);
+        }
+    }
+
+    /**
+     * Atomically replaces the value of key as {@link Map#compute(Object, BiFunction)} does.
+     */
+    V compute(final K key, final BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        final Map<K, V> stripe = stripeOf(key);
+        synchronized (stripe) {
+            return stripe.compute(key, remappingFunction);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (final Map<K, V> stripe : _stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private Map<K, V> stripeOf(final K key) {
+        final int hash = key.hashCode();
+        return _stripes[(hash ^ (hash >>> 16)) & _mask];
+    }
+}
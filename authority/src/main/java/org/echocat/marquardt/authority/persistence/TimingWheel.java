@@ -0,0 +1,190 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel (Varghese and Lauck) of nodes with a deadline. Every level has {@link #SLOTS} slots; a slot
+ * of level n spans SLOTS^n ticks. Nodes are kept in the lowest level whose range covers their deadline and move one
+ * level down when the level below wraps around, so scheduling and cancelling are O(1) and every node is moved at most
+ * once per level, independent of how many nodes are scheduled. Deadlines beyond the range of the highest level are
+ * parked in its last slot and rescheduled from there.
+ *
+ * Not thread safe: Callers synchronize all access.
+ *
+ * @param <N> Type of scheduled nodes.
+ */
+final class TimingWheel<N extends TimingWheel.Node> {
+
+    static final int SLOT_BITS = 6;
+    static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private final long _tickInMillis;
+    private final int _levels;
+    private final Node[][] _slots;
+    private long _currentTick;
+    private int _size;
+
+    /**
+     * @param tickInMillis Resolution of the wheel. Nodes expire up to one tick after their deadline.
+     * @param levels Number of levels. The wheel covers SLOTS^levels ticks without rescheduling.
+     * @param nowInMillis Current time.
+     */
+    TimingWheel(final long tickInMillis, final int levels, final long nowInMillis) {
+        if (tickInMillis <= 0 || levels <= 0 || levels * SLOT_BITS >= Long.SIZE - 1) {
+            throw new IllegalArgumentException("Illegal tick " + tickInMillis + " or number of levels " + levels + ".");
+        }
+        _tickInMillis = tickInMillis;
+        _levels = levels;
+        _slots = new Node[levels][SLOTS];
+        for (final Node[] level : _slots) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new Node();
+            }
+        }
+        _currentTick = nowInMillis / tickInMillis;
+    }
+
+    /**
+     * Schedules node, or moves it if it is already scheduled.
+     *
+     * @param node Node to schedule.
+     * @param deadlineInMillis Time the node expires at. Deadlines in the past expire on the next tick.
+     */
+    void schedule(final N node, final long deadlineInMillis) {
+        if (node.isScheduled()) {
+            unlink(node);
+        }
+        node._deadlineTick = Math.max((deadlineInMillis + _tickInMillis - 1) / _tickInMillis, _currentTick + 1);
+        insert(node);
+        _size++;
+    }
+
+    /**
+     * @param node Node to remove from the wheel. Nothing happens if it is not scheduled.
+     */
+    void cancel(final N node) {
+        if (node.isScheduled()) {
+            unlink(node);
+            _size--;
+        }
+    }
+
+    /**
+     * Advances the wheel to nowInMillis and removes the nodes whose deadline passed.
+     *
+     * @param nowInMillis Current time.
+     * @return The expired nodes, no longer scheduled.
+     */
+    List<N> advanceTo(final long nowInMillis) {
+        final long targetTick = nowInMillis / _tickInMillis;
+        if (_size == 0) {
+            _currentTick = Math.max(_currentTick, targetTick);
+            return Collections.emptyList();
+        }
+        List<N> expired = null;
+        while (_currentTick < targetTick && _size > 0) {
+            _currentTick++;
+            cascade();
+            final Node head = _slots[0][(int) (_currentTick & SLOT_MASK)];
+            while (head._next != head) {
+                final Node node = head._next;
+                unlink(node);
+                _size--;
+                if (expired == null) {
+                    expired = new ArrayList<>();
+                }
+                //noinspection unchecked
+                expired.add((N) node);
+            }
+        }
+        _currentTick = Math.max(_currentTick, targetTick);
+        return expired != null ? expired : Collections.<N>emptyList();
+    }
+
+    /**
+     * Moves the empty wheel to another point in time, e.g. when the clock of its owner is replaced.
+     *
+     * @param nowInMillis Current time.
+     * @throws IllegalStateException If nodes are scheduled.
+     */
+    void resetTo(final long nowInMillis) {
+        if (_size != 0) {
+            throw new IllegalStateException("Cannot reset a wheel with " + _size + " scheduled nodes.");
+        }
+        _currentTick = nowInMillis / _tickInMillis;
+    }
+
+    /**
+     * @return Time of the next tick, after which {@link #advanceTo(long)} may expire nodes.
+     */
+    long getNextTickInMillis() {
+        return (_currentTick + 1) * _tickInMillis;
+    }
+
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Moves the nodes of the higher level slots that begin at the current tick one or more levels down.
+     */
+    private void cascade() {
+        for (int level = 1; level < _levels && (_currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0; level++) {
+            final Node head = _slots[level][(int) ((_currentTick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+            while (head._next != head) {
+                final Node node = head._next;
+                unlink(node);
+                insert(node);
+            }
+        }
+    }
+
+    private void insert(final Node node) {
+        final long ticksUntilDeadline = Math.max(node._deadlineTick - _currentTick, 0);
+        int level = 0;
+        while (level < _levels - 1 && ticksUntilDeadline >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        final long range = 1L << (SLOT_BITS * _levels);
+        final long slotTick = ticksUntilDeadline < range ? node._deadlineTick : _currentTick + range - 1;
+        final Node head = _slots[level][(int) ((slotTick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+        node._previous = head._previous;
+        node._next = head;
+        head._previous._next = node;
+        head._previous = node;
+    }
+
+    private static void unlink(final Node node) {
+        node._previous._next = node._next;
+        node._next._previous = node._previous;
+        node._previous = null;
+        node._next = null;
+    }
+
+    /**
+     * Element of the wheel. Each slot is a circular list with a node of its own as head.
+     */
+    static class Node {
+
+        Node _previous = this;
+        Node _next = this;
+        long _deadlineTick;
+
+        Node() {}
+
+        boolean isScheduled() {
+            return _next != null && _next != this;
+        }
+    }
+}
@@ -0,0 +1,481 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.persistence;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.echocat.marquardt.authority.domain.Session;
+import org.echocat.marquardt.common.metrics.CounterMetric;
+import org.echocat.marquardt.common.metrics.MetricsRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Decorates a SessionStore to write saves and deletes behind: They are kept in memory and written in batches with
+ * {@link SessionStore#saveAll} and {@link SessionStore#deleteAll} once {@link #setMaxBatchSize(int) max batch size}
+ * sessions are pending or {@link #setMaxDelayInMillis(long) max delay} passed. Several saves of a session before it is
+ * written are coalesced into one.
+ * <p>
+ * Finders see pending writes: A session is found by its new certificate right after a refresh, not by its replaced one,
+ * and not at all after it was deleted. Sessions without a {@link Session#getSessionId() session id} are only matched
+ * by instance, so a finder may return their replaced state until it is written.
+ * <p>
+ * Pending writes are lost if the authority stops without being {@link #close() closed}. With
+ * {@link Durability#SYNCHRONOUS_SIGN_IN_AND_OUT} this only affects refreshes, whose clients then have to sign in again.
+ * Batches the delegate fails to write are written one by one; sessions that still fail are dropped, logged and counted
+ * as {@link CounterMetric#SESSION_STORE_WRITE_BEHIND_DROPPED}.
+ *
+ * @param <T> Your Session implementation.
+ */
+public class WriteBehindSessionStore<T extends Session> implements SessionStore<T>, Closeable {
+
+    public enum Durability {
+        /**
+         * All saves and deletes are written behind.
+         */
+        DEFERRED,
+        /**
+         * Saves of new sessions (sign in and sign up) and deletes (sign out) are written before they return; only saves
+         * of sessions that were saved before (refreshes) are written behind. New sessions are the ones created by
+         * {@link #createTransient()}.
+         */
+        SYNCHRONOUS_SIGN_IN_AND_OUT
+    }
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+    public static final long DEFAULT_MAX_DELAY_IN_MILLIS = 1000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindSessionStore.class);
+    /**
+     * Number of writes whose keys are remembered for finders that ran concurrently.
+     */
+    private static final int WRITE_HISTORY = 16;
+
+    private final SessionStore<T> _delegate;
+    private final Durability _durability;
+    private final Set<T> _unsaved = Collections.newSetFromMap(new MapMaker().weakKeys().<T, Boolean>makeMap());
+    private final Object _lock = new Object();
+    private final Map<Object, Pending<T>> _pendingByKey = new LinkedHashMap<>();
+    private final Map<CertificateKey, Pending<T>> _pendingByCertificate = new HashMap<>();
+    private final ReentrantLock _writeLock = new ReentrantLock();
+    private final AtomicBoolean _flushRequested = new AtomicBoolean();
+    @SuppressWarnings("unchecked")
+    private final Set<Object>[] _recentlyWrittenKeys = new Set[WRITE_HISTORY];
+    private long _writes;
+    private volatile int _maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private volatile int _maxPendingSessions = 10 * DEFAULT_MAX_BATCH_SIZE;
+    private volatile long _maxDelayInMillis = DEFAULT_MAX_DELAY_IN_MILLIS;
+    private MetricsRecorder _metricsRecorder = MetricsRecorder.NO_OP;
+    private volatile ScheduledExecutorService _executor;
+
+    public WriteBehindSessionStore(@Nonnull final SessionStore<T> delegate, @Nonnull final Durability durability) {
+        _delegate = delegate;
+        _durability = durability;
+    }
+
+    /**
+     * @param maxBatchSize Number of pending sessions that triggers a flush, and maximum size of the batches written.
+     */
+    public void setMaxBatchSize(final int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Max batch size must be positive but was " + maxBatchSize + ".");
+        }
+        _maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @param maxPendingSessions Number of pending sessions at which saves and deletes flush in the calling thread, so
+     *                           callers are slowed down instead of memory filling up if the delegate cannot keep up.
+     */
+    public void setMaxPendingSessions(final int maxPendingSessions) {
+        if (maxPendingSessions <= 0) {
+            throw new IllegalArgumentException("Max pending sessions must be positive but was " + maxPendingSessions + ".");
+        }
+        _maxPendingSessions = maxPendingSessions;
+    }
+
+    /**
+     * @param maxDelayInMillis Time between flushes of a {@link #start() started} store.
+     */
+    public void setMaxDelayInMillis(final long maxDelayInMillis) {
+        if (maxDelayInMillis <= 0) {
+            throw new IllegalArgumentException("Max delay must be positive but was " + maxDelayInMillis + ".");
+        }
+        _maxDelayInMillis = maxDelayInMillis;
+    }
+
+    public void setMetricsRecorder(@Nonnull final MetricsRecorder metricsRecorder) {
+        _metricsRecorder = metricsRecorder;
+    }
+
+    /**
+     * Starts flushing on a daemon thread of its own, every max delay and whenever max batch size sessions are pending.
+     * Without it, pending writes are only written by {@link #flush()} and once max pending sessions are reached.
+     *
+     * @throws IllegalStateException If the store is already started.
+     */
+    public synchronized void start() {
+        if (_executor != null) {
+            throw new IllegalStateException("Store is already started.");
+        }
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("session-write-behind-%d").setDaemon(true).build());
+        executor.scheduleWithFixedDelay(this::flushQuietly, _maxDelayInMillis, _maxDelayInMillis, TimeUnit.MILLISECONDS);
+        _executor = executor;
+    }
+
+    /**
+     * Stops flushing in the background and writes all pending sessions.
+     */
+    @Override
+    public synchronized void close() {
+        if (_executor != null) {
+            _executor.shutdown();
+            _executor = null;
+        }
+        flush();
+    }
+
+    @Override
+    public Optional<T> findByCertificate(final byte[] certificate) {
+        final CertificateKey certificateKey = CertificateKey.of(certificate);
+        while (true) {
+            final long writes;
+            synchronized (_lock) {
+                final Pending<T> pending = _pendingByCertificate.get(certificateKey);
+                if (pending != null) {
+                    return Optional.of(pending._session);
+                }
+                writes = _writes;
+            }
+            final Optional<T> stored = _delegate.findByCertificate(certificate);
+            synchronized (_lock) {
+                if (!stored.isPresent() || !isWrittenSince(writes, keyOf(stored.get()))) {
+                    return overlay(stored, pending -> certificateKey.equals(pending._certificateKey));
+                }
+            }
+        }
+    }
+
+    @Override
+    public Optional<T> findBySessionId(final UUID sessionId) {
+        while (true) {
+            final long writes;
+            synchronized (_lock) {
+                final Pending<T> pending = _pendingByKey.get(sessionId);
+                if (pending != null) {
+                    return pending._deleted ? Optional.empty() : Optional.of(pending._session);
+                }
+                writes = _writes;
+            }
+            final Optional<T> stored = _delegate.findBySessionId(sessionId);
+            synchronized (_lock) {
+                if (!isWrittenSince(writes, sessionId)) {
+                    return overlay(stored, pending -> true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes all pending sessions first, because the delegate would return their stored state.
+     */
+    @Override
+    public Collection<T> findByUserId(final UUID userId) {
+        flush();
+        return _delegate.findByUserId(userId);
+    }
+
+    /**
+     * Answers from pending saves if possible. If sessions of the client are pending otherwise, they are written first,
+     * because the delegate would count their stored state.
+     */
+    @Override
+    public boolean existsActiveSession(final UUID userId, final byte[] clientPublicKey, final Date dateToCheck) {
+        boolean pendingForClient = false;
+        synchronized (_lock) {
+            for (final Pending<T> pending : _pendingByKey.values()) {
+                if (Objects.equals(pending._userId, userId) && Arrays.equals(pending._publicKey, clientPublicKey)) {
+                    if (!pending._deleted && pending._expiresAt > dateToCheck.getTime()) {
+                        return true;
+                    }
+                    pendingForClient = true;
+                }
+            }
+        }
+        if (pendingForClient) {
+            flush();
+        }
+        return _delegate.existsActiveSession(userId, clientPublicKey, dateToCheck);
+    }
+
+    /**
+     * @return The given session. It is written later, unless it is new and durability is
+     * {@link Durability#SYNCHRONOUS_SIGN_IN_AND_OUT}.
+     */
+    @Override
+    public T save(final T session) {
+        if (_unsaved.remove(session)) {
+            return writeThrough(session, () -> _delegate.save(session));
+        }
+        enqueue(new Pending<>(session, false));
+        return session;
+    }
+
+    @Override
+    public T createTransient() {
+        final T session = _delegate.createTransient();
+        if (_durability == Durability.SYNCHRONOUS_SIGN_IN_AND_OUT) {
+            _unsaved.add(session);
+        }
+        return session;
+    }
+
+    @Override
+    public void delete(final T session) {
+        _unsaved.remove(session);
+        if (_durability == Durability.SYNCHRONOUS_SIGN_IN_AND_OUT) {
+            writeThrough(session, () -> {
+                _delegate.delete(session);
+                return session;
+            });
+        } else {
+            enqueue(new Pending<>(session, true));
+        }
+    }
+
+    /**
+     * Writes all pending sessions in batches of at most max batch size.
+     */
+    public void flush() {
+        _writeLock.lock();
+        try {
+            _flushRequested.set(false);
+            final List<Pending<T>> pending;
+            synchronized (_lock) {
+                pending = new ArrayList<>(_pendingByKey.values());
+            }
+            final int maxBatchSize = _maxBatchSize;
+            for (int from = 0; from < pending.size(); from += maxBatchSize) {
+                write(pending.subList(from, Math.min(from + maxBatchSize, pending.size())));
+            }
+        } finally {
+            _writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of sessions whose save or delete is not yet written.
+     */
+    public int getPendingSessions() {
+        synchronized (_lock) {
+            return _pendingByKey.size();
+        }
+    }
+
+    private void enqueue(final Pending<T> pending) {
+        final int size;
+        synchronized (_lock) {
+            final Pending<T> replaced = _pendingByKey.put(pending._key, pending);
+            if (replaced != null && replaced._certificateKey != null) {
+                _pendingByCertificate.remove(replaced._certificateKey, replaced);
+            }
+            if (pending._certificateKey != null) {
+                _pendingByCertificate.put(pending._certificateKey, pending);
+            }
+            size = _pendingByKey.size();
+        }
+        if (size >= _maxPendingSessions) {
+            flush();
+        } else if (size >= _maxBatchSize) {
+            requestFlush();
+        }
+    }
+
+    private void requestFlush() {
+        final ScheduledExecutorService executor = _executor;
+        if (executor != null && _flushRequested.compareAndSet(false, true)) {
+            executor.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Runs from the executor, which would not run again after an exception.
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (final RuntimeException e) {
+            LOGGER.warn("Failed to write pending sessions.", e);
+        }
+    }
+
+    /**
+     * Writes a session while no batch is written, after dropping its pending write.
+     */
+    private T writeThrough(final T session, final Supplier<T> operation) {
+        _writeLock.lock();
+        try {
+            synchronized (_lock) {
+                final Pending<T> pending = _pendingByKey.remove(keyOf(session));
+                if (pending != null && pending._certificateKey != null) {
+                    _pendingByCertificate.remove(pending._certificateKey, pending);
+                }
+            }
+            try {
+                return operation.get();
+            } finally {
+                synchronized (_lock) {
+                    recordWrite(Collections.singleton(keyOf(session)));
+                }
+            }
+        } finally {
+            _writeLock.unlock();
+        }
+    }
+
+    private void write(final List<Pending<T>> batch) {
+        final List<T> saved = new ArrayList<>();
+        final List<T> deleted = new ArrayList<>();
+        final Set<Object> keys = new HashSet<>();
+        for (final Pending<T> pending : batch) {
+            (pending._deleted ? deleted : saved).add(pending._session);
+            keys.add(pending._key);
+        }
+        try {
+            if (!saved.isEmpty()) {
+                _delegate.saveAll(saved);
+            }
+            if (!deleted.isEmpty()) {
+                _delegate.deleteAll(deleted);
+            }
+        } catch (final RuntimeException e) {
+            LOGGER.warn("Failed to write batch of {} sessions. Writing them one by one.", batch.size(), e);
+            batch.forEach(this::writeOne);
+        }
+        synchronized (_lock) {
+            for (final Pending<T> pending : batch) {
+                if (_pendingByKey.remove(pending._key, pending) && pending._certificateKey != null) {
+                    _pendingByCertificate.remove(pending._certificateKey, pending);
+                }
+            }
+            recordWrite(keys);
+        }
+    }
+
+    /**
+     * Counts a write and remembers the keys it wrote for {@link #isWrittenSince(long, Object)}. Requires the lock.
+     */
+    private void recordWrite(final Set<Object> keys) {
+        _writes++;
+        _recentlyWrittenKeys[(int) (_writes % WRITE_HISTORY)] = keys;
+    }
+
+    /**
+     * A finder that read the delegate while a write removed the pending state of its session would return the state
+     * before that write, so it reads again if the write touched the session. Writes older than the history count as
+     * touching every session. Requires the lock.
+     *
+     * @param writes Number of writes before the finder read the delegate.
+     * @param key Key of the found session.
+     */
+    private boolean isWrittenSince(final long writes, final Object key) {
+        if (_writes - writes > WRITE_HISTORY) {
+            return true;
+        }
+        for (long write = writes + 1; write <= _writes; write++) {
+            if (_recentlyWrittenKeys[(int) (write % WRITE_HISTORY)].contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeOne(final Pending<T> pending) {
+        try {
+            if (pending._deleted) {
+                _delegate.delete(pending._session);
+            } else {
+                _delegate.save(pending._session);
+            }
+        } catch (final RuntimeException e) {
+            _metricsRecorder.increment(CounterMetric.SESSION_STORE_WRITE_BEHIND_DROPPED);
+            LOGGER.warn("Dropped {} of session {}.", pending._deleted ? "delete" : "save", pending._key, e);
+        }
+    }
+
+    /**
+     * Replaces the stored state of a session by its pending one.
+     */
+    private Optional<T> overlay(final Optional<T> stored, final Predicate<Pending<T>> matches) {
+        if (stored.isPresent()) {
+            final Pending<T> pending = _pendingByKey.get(keyOf(stored.get()));
+            if (pending != null) {
+                return !pending._deleted && matches.test(pending) ? Optional.of(pending._session) : Optional.empty();
+            }
+        }
+        return stored;
+    }
+
+    private static Object keyOf(final Session session) {
+        final UUID sessionId = session.getSessionId();
+        return sessionId != null ? sessionId : new IdentityKey(session);
+    }
+
+    /**
+     * Pending save or delete of a session. Keys are snapshots taken when it was enqueued.
+     */
+    private static final class Pending<T extends Session> {
+
+        private final T _session;
+        private final boolean _deleted;
+        private final Object _key;
+        @Nullable
+        private final CertificateKey _certificateKey;
+        private final UUID _userId;
+        private final byte[] _publicKey;
+        private final long _expiresAt;
+
+        private Pending(final T session, final boolean deleted) {
+            _session = session;
+            _deleted = deleted;
+            _key = keyOf(session);
+            final byte[] certificate = session.getCertificate();
+            _certificateKey = !deleted && certificate != null ? CertificateKey.copyOf(certificate) : null;
+            _userId = session.getUserId();
+            final byte[] publicKey = session.getPublicKey();
+            _publicKey = publicKey != null ? Arrays.copyOf(publicKey, publicKey.length) : null;
+            _expiresAt = session.getExpiresAt() != null ? session.getExpiresAt().getTime() : Long.MIN_VALUE;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.session;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.echocat.marquardt.authority.exceptions.CertificateCreationException;
+import org.echocat.marquardt.authority.exceptions.SigningRejectedException;
+import org.echocat.marquardt.common.Signer;
+import org.echocat.marquardt.common.domain.Signable;
+import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
+import org.echocat.marquardt.common.metrics.CounterMetric;
+import org.echocat.marquardt.common.metrics.MetricsRecorder;
+import org.echocat.marquardt.common.metrics.TimerMetric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.security.PublicKey;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signs certificates with the issuer key on a fixed pool of threads, one per core by default. Signing is the most
+ * expensive part of issuing a certificate; the pool keeps it from occupying more cores than configured however many
+ * requests arrive, and its bounded queue rejects requests once it is full instead of letting them pile up.
+ * <p>
+ * Each thread keeps signature engines initialized with the issuer's private key (see {@link Signer}). Threads are
+ * started and their engines initialized on construction, so the first certificates are not slowed down by the key
+ * setup.
+ * <p>
+ * The time certificates wait in the queue and the time signing takes are recorded as
+ * {@link TimerMetric#CERTIFICATE_SIGNING_QUEUE_WAIT} and {@link TimerMetric#CERTIFICATE_SIGNING}, rejections are
+ * counted as {@link CounterMetric#CERTIFICATE_SIGNING_REJECTED} and certificates signed on the calling thread as
+ * {@link CounterMetric#CERTIFICATE_SIGNING_CALLER_RUNS}. Poll {@link #getQueueDepth()} for the current backlog.
+ *
+ * @see SessionAction#setCertificateSigningService(CertificateSigningService)
+ */
+public class CertificateSigningService implements Closeable {
+
+    public enum RejectionPolicy {
+        /**
+         * Throws a {@link SigningRejectedException}, which the SpringAuthorityController answers with 503.
+         */
+        ABORT,
+        /**
+         * Signs on the calling thread. Callers are slowed down instead of rejected, but signing may then use more
+         * threads than the pool has.
+         */
+        CALLER_RUNS
+    }
+
+    public static final int DEFAULT_QUEUE_CAPACITY_PER_THREAD = 64;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CertificateSigningService.class);
+    private static final byte[] WARM_UP_CONTENT = new byte[32];
+
+    private final KeyPairProvider _issuerKeyProvider;
+    private final Signer _signer;
+    private final RejectionPolicy _rejectionPolicy;
+    private final int _queueCapacity;
+    private final ThreadPoolExecutor _executor;
+    private MetricsRecorder _metricsRecorder = MetricsRecorder.NO_OP;
+
+    /**
+     * Creates a service with one thread per core, {@link #DEFAULT_QUEUE_CAPACITY_PER_THREAD} queued certificates per
+     * thread and {@link RejectionPolicy#ABORT}.
+     *
+     * @param issuerKeyProvider Key pair of the authority.
+     */
+    public CertificateSigningService(@Nonnull final KeyPairProvider issuerKeyProvider) {
+        this(issuerKeyProvider, new Signer(), Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY_PER_THREAD * Runtime.getRuntime().availableProcessors(), RejectionPolicy.ABORT);
+    }
+
+    /**
+     * @param issuerKeyProvider Key pair of the authority.
+     * @param signer Signer to sign with. Determines the signature mechanism.
+     * @param threads Number of signing threads.
+     * @param queueCapacity Number of certificates that may wait for a signing thread.
+     * @param rejectionPolicy What happens to certificates that do not fit into the queue.
+     */
+    public CertificateSigningService(@Nonnull final KeyPairProvider issuerKeyProvider,
+                                     @Nonnull final Signer signer,
+                                     final int threads,
+                                     final int queueCapacity,
+                                     @Nonnull final RejectionPolicy rejectionPolicy) {
+        if (threads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Illegal number of threads " + threads + " or queue capacity " + queueCapacity + ".");
+        }
+        _issuerKeyProvider = issuerKeyProvider;
+        _signer = signer;
+        _rejectionPolicy = rejectionPolicy;
+        _queueCapacity = queueCapacity;
+        final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+        _executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+            new ThreadFactoryBuilder()
+                .setNameFormat("certificate-signing-%d")
+                .setDaemon(true)
+                .setThreadFactory(runnable -> threadFactory.newThread(() -> {
+                    warmUp();
+                    runnable.run();
+                }))
+                .build());
+        _executor.prestartAllCoreThreads();
+    }
+
+    public void setMetricsRecorder(@Nonnull final MetricsRecorder metricsRecorder) {
+        _metricsRecorder = metricsRecorder;
+    }
+
+    /**
+     * Signs signable with the issuer's private key and waits for the result.
+     *
+     * @param signable Signable to sign, usually a certificate.
+     * @return Signed bytes, see {@link Signer#sign}.
+     * @throws IOException When problems occur while serializing the Signable.
+     * @throws SigningRejectedException If the queue is full and the rejection policy is {@link RejectionPolicy#ABORT}.
+     */
+    public byte[] sign(@Nonnull final Signable signable) throws IOException {
+        final long submittedAt = System.nanoTime();
+        final Future<byte[]> result;
+        try {
+            result = _executor.submit(() -> {
+                _metricsRecorder.recordTime(TimerMetric.CERTIFICATE_SIGNING_QUEUE_WAIT, System.nanoTime() - submittedAt);
+                return signTimed(signable);
+            });
+        } catch (final RejectedExecutionException e) {
+            if (_rejectionPolicy == RejectionPolicy.CALLER_RUNS && !_executor.isShutdown()) {
+                _metricsRecorder.increment(CounterMetric.CERTIFICATE_SIGNING_CALLER_RUNS);
+                return signTimed(signable);
+            }
+            _metricsRecorder.increment(CounterMetric.CERTIFICATE_SIGNING_REJECTED);
+            throw new SigningRejectedException("Signing queue of " + _queueCapacity + " certificates is full.", e);
+        }
+        try {
+            return result.get();
+        } catch (final InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CertificateCreationException("Interrupted while waiting for the certificate to be signed.", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new CertificateCreationException("Failed to sign certificate.", cause);
+        }
+    }
+
+    /**
+     * @return Public key of the key pair certificates are signed with.
+     */
+    @Nonnull
+    public PublicKey getIssuerPublicKey() {
+        return _issuerKeyProvider.getPublicKey();
+    }
+
+    /**
+     * @return Number of certificates waiting for a signing thread.
+     */
+    public int getQueueDepth() {
+        return _executor.getQueue().size();
+    }
+
+    /**
+     * Stops the signing threads once the queued certificates are signed. Further certificates are rejected.
+     */
+    @Override
+    public void close() {
+        _executor.shutdown();
+    }
+
+    private byte[] signTimed(final Signable signable) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            return _signer.sign(signable, _issuerKeyProvider.getPrivateKey());
+        } finally {
+            _metricsRecorder.recordTime(TimerMetric.CERTIFICATE_SIGNING, System.nanoTime() - start);
+        }
+    }
+
+    private void warmUp() {
+        try {
+            _signer.signatureOf(WARM_UP_CONTENT, _issuerKeyProvider.getPrivateKey());
+        } catch (final RuntimeException e) {
+            LOGGER.warn("Could not initialize signature engine of signing thread.", e);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.session;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.echocat.marquardt.authority.domain.User;
+import org.echocat.marquardt.authority.exceptions.CertificateCreationException;
+import org.echocat.marquardt.common.domain.Signable;
+import org.echocat.marquardt.common.domain.certificate.Certificate;
+import org.echocat.marquardt.common.domain.certificate.CertificateTemplate;
+import org.echocat.marquardt.common.domain.certificate.Role;
+import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
+import org.echocat.marquardt.common.serialization.RolesSerializer;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the serialized segments of issued certificates, so a refresh only writes the new expiry date and signs. The
+ * issuer key is serialized once, the head of a certificate (session id, issuer and client key) is cached per session
+ * and the tail (roles and payload) per user.
+ *
+ * A cached tail is replaced when the roles of the user differ from the cached ones. Any other change of the user's
+ * payload must be announced by {@link #invalidate(UUID)}, the authority does so when a sign-up is finalized. Callers
+ * read the {@link #generationOf(UUID) generation} of a user before they load the user; a tail serialized from a user
+ * invalidated since is not kept, so a stale tail cannot outlive the invalidation. Tails expire after
+ * {@link #TAIL_EXPIRY_IN_MILLIS} in any case. Entries are evicted by size; heads of sessions that are gone are evicted
+ * eventually, as they are not used anymore.
+ *
+ * @see SessionAction#setCertificateTemplateCache(CertificateTemplateCache)
+ */
+public class CertificateTemplateCache {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+    /**
+     * Time after which a cached tail is serialized again, even if the user was not invalidated.
+     */
+    public static final long TAIL_EXPIRY_IN_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private static final int GENERATION_STRIPES = 64;
+
+    private final byte _version;
+    private final byte[] _serializedIssuer;
+    private final Cache<UUID, byte[]> _heads;
+    private final Cache<UUID, Tail> _tails;
+    /**
+     * Number of invalidations per stripe of user ids. Unlike the tails they are never evicted.
+     */
+    private final AtomicLongArray _generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    /**
+     * Creates a cache of certificates in {@link Certificate#VERSION} with {@link #DEFAULT_MAXIMUM_SIZE} sessions and users.
+     *
+     * @param issuerKeyProvider Key provider of the authority.
+     */
+    public CertificateTemplateCache(@Nonnull final KeyPairProvider issuerKeyProvider) {
+        this(issuerKeyProvider, Certificate.VERSION, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param issuerKeyProvider Key provider of the authority.
+     * @param version Format of issued certificates. Replaces the one set on session actions that use this cache.
+     * @param maximumSize Maximum number of sessions and of users to keep segments of, each.
+     * @throws CertificateCreationException If the issuer key cannot be serialized.
+     */
+    public CertificateTemplateCache(@Nonnull final KeyPairProvider issuerKeyProvider, final byte version, final long maximumSize) {
+        try {
+            _serializedIssuer = CertificateTemplate.serializeIssuer(version, issuerKeyProvider.getPublicKey());
+        } catch (final IOException e) {
+            throw new CertificateCreationException("Could not serialize issuer key.", e);
+        }
+        _version = version;
+        _heads = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .build();
+        _tails = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(TAIL_EXPIRY_IN_MILLIS, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    /**
+     * @param sessionId Id of the session to issue a certificate for.
+     * @param clientPublicKey Public key of the session's client.
+     * @param user Owner of the session.
+     * @param generation {@link #generationOf(UUID) Generation} of the user, read before user was loaded.
+     * @param payload Creates the payload of the user if its tail is not cached.
+     * @param expiresAt Expiry date of the certificate in millis.
+     * @return Template of the certificate to sign.
+     * @throws IOException If a segment cannot be serialized.
+     */
+    @Nonnull
+    public CertificateTemplate templateFor(@Nonnull final UUID sessionId,
+                                           @Nonnull final PublicKey clientPublicKey,
+                                           @Nonnull final User<? extends Role> user,
+                                           final long generation,
+                                           @Nonnull final Supplier<? extends Signable> payload,
+                                           final long expiresAt) throws IOException {
+        byte[] head = _heads.getIfPresent(sessionId);
+        if (head == null) {
+            head = CertificateTemplate.serializeHead(_version, sessionId, _serializedIssuer, clientPublicKey);
+            _heads.put(sessionId, head);
+        }
+        final long rolesCode = RolesSerializer.from(user.getRoles());
+        final UUID userId = user.getUserId();
+        Tail tail = _tails.getIfPresent(userId);
+        if (tail == null || tail._rolesCode != rolesCode) {
+            final int stripe = stripeOf(userId);
+            tail = new Tail(rolesCode, CertificateTemplate.serializeTail(_version, user.getRoles(), payload.get()));
+            if (_generations.get(stripe) == generation) {
+                _tails.put(userId, tail);
+                if (_generations.get(stripe) != generation) {
+                    _tails.asMap().remove(userId, tail);
+                }
+            }
+        }
+        return new CertificateTemplate(_version, head, tail._bytes, expiresAt);
+    }
+
+    /**
+     * @param userId Id of a user.
+     * @return Generation of the user's cached roles and payload. Changes whenever the user is invalidated.
+     */
+    public long generationOf(@Nonnull final UUID userId) {
+        return _generations.get(stripeOf(userId));
+    }
+
+    /**
+     * Discards the cached roles and payload of a user. Call after the user changed.
+     *
+     * @param userId Id of the changed user.
+     */
+    public void invalidate(@Nonnull final UUID userId) {
+        _generations.incrementAndGet(stripeOf(userId));
+        _tails.invalidate(userId);
+    }
+
+    /**
+     * @param issuerPublicKey Public key of an authority.
+     * @return true if the cached certificates are issued by the owner of issuerPublicKey.
+     * @throws CertificateCreationException If issuerPublicKey cannot be serialized.
+     */
+    public boolean isIssuedBy(@Nonnull final PublicKey issuerPublicKey) {
+        try {
+            return Arrays.equals(_serializedIssuer, CertificateTemplate.serializeIssuer(_version, issuerPublicKey));
+        } catch (final IOException e) {
+            throw new CertificateCreationException("Could not serialize issuer key.", e);
+        }
+    }
+
+    public byte getVersion() {
+        return _version;
+    }
+
+    private static int stripeOf(@Nonnull final UUID userId) {
+        return userId.hashCode() & (GENERATION_STRIPES - 1);
+    }
+
+    private static final class Tail {
+
+        private final long _rolesCode;
+        private final byte[] _bytes;
+
+        private Tail(final long rolesCode, final byte[] bytes) {
+            _rolesCode = rolesCode;
+            _bytes = bytes;
+        }
+    }
+}
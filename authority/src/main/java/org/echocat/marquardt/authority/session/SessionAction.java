@@ -14,12 +14,14 @@ import org.echocat.marquardt.authority.persistence.SessionStore;
 import org.echocat.marquardt.authority.persistence.UserCatalog;
 import org.echocat.marquardt.common.Signer;
 import org.echocat.marquardt.common.domain.Signable;
+import org.echocat.marquardt.common.domain.Signature;
 import org.echocat.marquardt.common.domain.certificate.Certificate;
 import org.echocat.marquardt.common.domain.certificate.Role;
 import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
 
 import java.io.IOException;
 import java.security.PublicKey;
+import java.util.UUID;
 
 abstract class SessionAction<USER extends User<? extends Role>, SESSION extends Session> {
 
@@ -27,7 +29,10 @@ abstract class SessionAction<USER extends User<? extends Role>, SESSION extends
     private final UserCatalog<USER> _userCatalog;
     private final ExpiryDateCalculator<USER> _expiryDateCalculator;
     private final KeyPairProvider _issuerKeyProvider;
-    private final Signer _signer = new Signer();
+    private Signer _signer = new Signer();
+    private CertificateSigningService _signingService;
+    private CertificateTemplateCache _templateCache;
+    private byte _certificateVersion = Certificate.VERSION;
 
     public SessionAction(final SessionStore<SESSION> sessionStore,
                             final UserCatalog<USER> userCatalog,
@@ -39,6 +44,68 @@ abstract class SessionAction<USER extends User<? extends Role>, SESSION extends
         _issuerKeyProvider = issuerKeyProvider;
     }
 
+    /**
+     * Sets the format of issued certificates. Clients and services must be able to read the compact format (and know
+     * the issuer's key) before it is enabled here.
+     *
+     * @param certificateVersion {@link Certificate#VERSION} (the default) or {@link Certificate#COMPACT_VERSION}.
+     */
+    public void setCertificateVersion(final byte certificateVersion) {
+        _certificateVersion = certificateVersion;
+    }
+
+    /**
+     * Sets the mechanisms to sign certificates with, in order of preference. The first one applicable to the issuer
+     * key is used. By default RSA keys sign with SHA1withRSA and EC keys with SHA256withECDSA. Not used if a
+     * {@link #setCertificateSigningService(CertificateSigningService) signing service} is set; its Signer applies then.
+     *
+     * @param preferredMechanisms Preferred signature mechanisms.
+     */
+    public void setPreferredSignatureMechanisms(final Signature.Mechanism... preferredMechanisms) {
+        _signer = new Signer(preferredMechanisms);
+    }
+
+    /**
+     * Signs certificates on the threads of signingService instead of the calling thread. Share one service between all
+     * session actions of an authority, so they are limited together.
+     *
+     * @param signingService Service to sign with or null to sign on the calling thread.
+     * @throws IllegalArgumentException If signingService signs with another key than this action's issuer key.
+     */
+    public void setCertificateSigningService(final CertificateSigningService signingService) {
+        if (signingService != null && !signingService.getIssuerPublicKey().equals(_issuerKeyProvider.getPublicKey())) {
+            throw new IllegalArgumentException("Signing service signs with another key than the issuer key of this action.");
+        }
+        _signingService = signingService;
+    }
+
+    /**
+     * Issues certificates from cached segments, so only the expiry date is serialized for every certificate. Share one
+     * cache between all session actions of an authority. Certificates of sessions without id are issued uncached.
+     *
+     * @param templateCache Cache to issue certificates from or null to issue them uncached. Its version replaces the
+     *                      {@link #setCertificateVersion(byte) certificate version}.
+     * @throws IllegalArgumentException If templateCache issues certificates of another issuer than this action.
+     */
+    public void setCertificateTemplateCache(final CertificateTemplateCache templateCache) {
+        if (templateCache != null && !templateCache.isIssuedBy(_issuerKeyProvider.getPublicKey())) {
+            throw new IllegalArgumentException("Certificate template cache issues certificates of another issuer than this action.");
+        }
+        _templateCache = templateCache;
+    }
+
+    /**
+     * Discards cached segments of a user's certificates. Call after the user's payload changed.
+     *
+     * @param userId Id of the changed user.
+     */
+    public void invalidateCertificateTemplatesOf(final UUID userId) {
+        final CertificateTemplateCache templateCache = _templateCache;
+        if (templateCache != null) {
+            templateCache.invalidate(userId);
+        }
+    }
+
     protected SessionStore<SESSION> getSessionStore() {
         return _sessionStore;
     }
@@ -51,9 +118,28 @@ abstract class SessionAction<USER extends User<? extends Role>, SESSION extends
         return _expiryDateCalculator;
     }
 
-    protected byte[] createCertificate(final USER user, final PublicKey clientPublicKey) throws IOException {
-        final Signable signable = getUserCatalog().toSignable(user);
-        final Certificate<Signable> certificate = Certificate.create(_issuerKeyProvider.getPublicKey(), clientPublicKey, user.getRoles(), signable);
-        return _signer.sign(certificate, _issuerKeyProvider.getPrivateKey());
+    /**
+     * Read before the user is loaded and pass it to {@link #createCertificate(User, PublicKey, UUID, long)}, so segments
+     * of a user loaded before an invalidation are not cached.
+     *
+     * @param userId Id of the user to issue a certificate for.
+     * @return Generation of the cached certificate segments of the user.
+     */
+    protected long certificateTemplateGenerationOf(final UUID userId) {
+        final CertificateTemplateCache templateCache = _templateCache;
+        return templateCache != null ? templateCache.generationOf(userId) : 0L;
+    }
+
+    protected byte[] createCertificate(final USER user, final PublicKey clientPublicKey, final UUID sessionId, final long templateGeneration) throws IOException {
+        final CertificateTemplateCache templateCache = _templateCache;
+        final Signable certificate;
+        if (templateCache != null && sessionId != null) {
+            certificate = templateCache.templateFor(sessionId, clientPublicKey, user, templateGeneration, () -> getUserCatalog().toSignable(user), System.currentTimeMillis() + Certificate.VALIDITY_IN_MILLIS);
+        } else {
+            final Signable signable = getUserCatalog().toSignable(user);
+            certificate = Certificate.create(_issuerKeyProvider.getPublicKey(), clientPublicKey, user.getRoles(), signable, _certificateVersion, sessionId);
+        }
+        final CertificateSigningService signingService = _signingService;
+        return signingService != null ? signingService.sign(certificate) : _signer.sign(certificate, _issuerKeyProvider.getPrivateKey());
     }
 }
\ No newline at end of file
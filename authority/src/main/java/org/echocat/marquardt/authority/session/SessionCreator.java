@@ -23,6 +23,7 @@ import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
 import java.io.IOException;
 import java.security.PublicKey;
 import java.util.Date;
+import java.util.UUID;
 
 public class SessionCreator<USER extends User<? extends Role>, SESSION extends Session> extends SessionAction<USER, SESSION> {
 
@@ -43,24 +44,33 @@ public class SessionCreator<USER extends User<? extends Role>, SESSION extends S
         _sessionCreationPolicy = sessionCreationPolicy;
     }
 
+    /**
+     * @param clientInformation Client to create the session for.
+     * @param user Owner of the session. Users are loaded by their credentials, so the generation of their cached
+     *             certificate segments is read here; segments cached from a user changed in between expire after
+     *             {@link CertificateTemplateCache#TAIL_EXPIRY_IN_MILLIS}.
+     * @return Certificate of the new session.
+     */
     public byte[] createCertificateAndSession(final ClientInformation clientInformation, final USER user) {
+        final long templateGeneration = certificateTemplateGenerationOf(user.getUserId());
         final PublicKeyWithMechanism publicKeyWithMechanism = new PublicKeyWithMechanism(clientInformation.getPublicKey());
         if (!_sessionCreationPolicy.mayCreateSession(user.getUserId(), publicKeyWithMechanism.getValue())) {
             throw new AlreadyLoggedInException("User with id " + user.getUserId() + " is already logged in for current client.");
         }
         try {
-            final byte[] certificate = createCertificate(user, clientInformation.getPublicKey());
-            createAndStoreSession(clientInformation.getPublicKey(), clientInformation.getClientId(), user, certificate);
+            final SESSION session = getSessionStore().createTransient();
+            session.setSessionId(UUID.randomUUID());
+            final byte[] certificate = createCertificate(user, clientInformation.getPublicKey(), session.getSessionId(), templateGeneration);
+            storeSession(session, clientInformation.getPublicKey(), clientInformation.getClientId(), user, certificate);
             return certificate;
         } catch (final IOException e) {
             throw new CertificateCreationException("failed to create certificate for user with id " + user.getUserId(), e);
         }
     }
 
-    private void createAndStoreSession(final PublicKey publicKey, final String clientId, final USER user, final byte[] certificate) {
+    private void storeSession(final SESSION session, final PublicKey publicKey, final String clientId, final USER user, final byte[] certificate) {
         final Date expiresAt = getExpiryDateCalculator().calculateFor(user);
         final PublicKeyWithMechanism publicKeyWithMechanism = new PublicKeyWithMechanism(publicKey);
-        final SESSION session = getSessionStore().createTransient();
         session.setUserId(user.getUserId());
         session.setExpiresAt(expiresAt);
         session.setPublicKey(publicKeyWithMechanism.getValue());
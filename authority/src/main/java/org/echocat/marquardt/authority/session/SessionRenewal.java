@@ -39,15 +39,16 @@ public class SessionRenewal<USER extends User<? extends Role>, SESSION extends S
     }
 
     public byte[] renewSessionBasedOnCertificate(final byte[] certificate, final Consumer<SESSION> sessionValidator) {
-        final SESSION session = getSessionStore().findByCertificate(certificate).orElseThrow(NoSessionFoundException::new);
+        final SESSION session = getSessionStore().findBySessionIdOrCertificate(certificate).orElseThrow(NoSessionFoundException::new);
         if (getExpiryDateCalculator().isExpired(session.getExpiresAt())) {
             throw new ExpiredSessionException();
         }
         sessionValidator.accept(session);
+        final long templateGeneration = certificateTemplateGenerationOf(session.getUserId());
         final USER user = getUserCatalog().findByUuid(session.getUserId()).orElseThrow(() -> new IllegalStateException("Could not find user with userId " + session.getUserId()));
         _checkRequirementsForUser.accept(user);
         try {
-            final byte[] newCertificate = createCertificate(user, clientPublicKeyFrom(session));
+            final byte[] newCertificate = createCertificate(user, clientPublicKeyFrom(session), session.getSessionId(), templateGeneration);
             session.setCertificate(newCertificate);
             session.setExpiresAt(getExpiryDateCalculator().calculateFor(user));
             getSessionStore().save(session);
@@ -12,6 +12,7 @@ import org.echocat.marquardt.authority.Authority;
 import org.echocat.marquardt.authority.domain.Session;
 import org.echocat.marquardt.authority.domain.User;
 import org.echocat.marquardt.authority.exceptions.ExpiredSessionException;
+import org.echocat.marquardt.authority.exceptions.SigningRejectedException;
 import org.echocat.marquardt.common.domain.ClientInformation;
 import org.echocat.marquardt.common.domain.Credentials;
 import org.echocat.marquardt.common.domain.SignUpAccountData;
@@ -23,20 +24,24 @@ import org.echocat.marquardt.common.exceptions.InvalidCertificateException;
 import org.echocat.marquardt.common.exceptions.LoginFailedException;
 import org.echocat.marquardt.common.exceptions.NoSessionFoundException;
 import org.echocat.marquardt.common.exceptions.UserAlreadyExistsException;
+import org.echocat.marquardt.common.revocation.RevocationDelta;
 import org.echocat.marquardt.common.web.JsonWrappedCertificate;
 import org.echocat.marquardt.common.web.RequestValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
 import static org.echocat.marquardt.common.web.RequestHeaders.X_CERTIFICATE;
@@ -100,6 +105,18 @@ public class SpringAuthorityController<USER extends User<? extends Role>,
         _authority.signOut(certificate, signedBytesFromRequest, signature);
     }
 
+    /**
+     * Serves the revocation feed of the authority in the binary format of RevocationDelta.
+     *
+     * @see org.echocat.marquardt.common.revocation.UrlRevocationFeed
+     */
+    @RequestMapping(value = "/revocations", method = RequestMethod.GET)
+    public void revocations(@RequestParam(value = "since", defaultValue = "0") final long since, final HttpServletResponse response) throws IOException {
+        final RevocationDelta delta = _authority.readRevocationsSince(since);
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        delta.writeTo(response.getOutputStream());
+    }
+
     @ExceptionHandler(UserAlreadyExistsException.class)
     @ResponseStatus(value = HttpStatus.CONFLICT, reason = "User already exists.")
     public void handleUserExistsException(final UserAlreadyExistsException ex) {
@@ -142,6 +159,12 @@ public class SpringAuthorityController<USER extends User<? extends Role>,
         LOGGER.info(ex.getMessage());
     }
 
+    @ExceptionHandler(SigningRejectedException.class)
+    @ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Authority is overloaded.")
+    public void handleSigningRejectedException(final SigningRejectedException ex) {
+        LOGGER.warn(ex.getMessage());
+    }
+
     @ExceptionHandler(IOException.class)
     @ResponseStatus(value = HttpStatus.INTERNAL_SERVER_ERROR)
     public void handleIOException(final IOException ex) {
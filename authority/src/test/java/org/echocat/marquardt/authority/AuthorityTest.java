@@ -105,11 +105,11 @@ public abstract class AuthorityTest {
     }
 
     protected void givenExistingSession() {
-        when(getSessionStore().findByCertificate(any(byte[].class))).thenReturn(Optional.of(getValidSession()));
+        when(getSessionStore().findBySessionIdOrCertificate(any(byte[].class))).thenReturn(Optional.of(getValidSession()));
     }
 
     protected void givenNoExistingSession() {
-        when(getSessionStore().findByCertificate(any(byte[].class))).thenReturn(Optional.empty());
+        when(getSessionStore().findBySessionIdOrCertificate(any(byte[].class))).thenReturn(Optional.empty());
     }
 
     protected void givenEmptyUserWillBeCreated() {
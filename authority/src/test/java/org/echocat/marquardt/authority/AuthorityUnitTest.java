@@ -16,6 +16,7 @@ import org.echocat.marquardt.authority.testdomain.TestSession;
 import org.echocat.marquardt.authority.testdomain.TestSignUpAccountData;
 import org.echocat.marquardt.authority.testdomain.TestUser;
 import org.echocat.marquardt.authority.testdomain.TestUserCredentials;
+import org.echocat.marquardt.authority.testdomain.TestUserInfo;
 import org.echocat.marquardt.common.domain.Signature;
 import org.echocat.marquardt.common.exceptions.AlreadyLoggedInException;
 import org.echocat.marquardt.common.exceptions.ClientNotAuthorizedException;
@@ -23,21 +24,37 @@ import org.echocat.marquardt.common.exceptions.LoginFailedException;
 import org.echocat.marquardt.common.exceptions.NoSessionFoundException;
 import org.echocat.marquardt.common.exceptions.SignatureValidationFailedException;
 import org.echocat.marquardt.common.exceptions.UserAlreadyExistsException;
+import org.echocat.marquardt.common.TestRoles;
+import org.echocat.marquardt.common.domain.DeserializingFactory;
+import org.echocat.marquardt.common.domain.certificate.Certificate;
+import org.echocat.marquardt.common.domain.certificate.CertificateFactory;
+import org.echocat.marquardt.common.revocation.InMemoryRevocationLog;
+import org.echocat.marquardt.common.revocation.RevocationDelta;
+import org.echocat.marquardt.common.revocation.RevocationRegistry;
+import org.echocat.marquardt.common.serialization.RolesDeserializer;
 import org.echocat.marquardt.common.util.DateProvider;
 import org.hamcrest.FeatureMatcher;
 import org.hamcrest.Matcher;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import javax.validation.ValidationException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.PublicKey;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
+import static org.apache.commons.codec.binary.Base64.encodeBase64;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.hamcrest.core.IsNull.notNullValue;
 import static org.mockito.Matchers.any;
@@ -68,11 +85,13 @@ public class AuthorityUnitTest extends AuthorityTest {
 
     private byte[] _certificate;
 
+    private InMemoryRevocationLog _revocationLog;
+
     @Before
     @Override
     public void setup() throws Exception {
         super.setup();
-        when(_signature.isValidFor(any(), any())).thenReturn(true);
+        when(_signature.isValidFor(any(byte[].class), any(PublicKey.class))).thenReturn(true);
         _authority = new Authority<>(_userCatalog, _userCreator, getSessionCreator(), getSessionRenewal(), _sessionStore, _clientAccessPolicy);
     }
 
@@ -287,6 +306,30 @@ public class AuthorityUnitTest extends AuthorityTest {
         thenSessionIsDeleted();
     }
 
+    @Test
+    public void shouldRevokeIssuedCertificateOnSignOut() throws Exception {
+        givenUserExists();
+        givenNoExistingSession();
+        givenRevocationLog();
+        whenSigningIn();
+        givenSessionOfIssuedCertificateExists();
+        whenSigningOutWithIssuedCertificate();
+        thenSessionIsDeleted();
+        thenIssuedCertificateIsRevoked();
+    }
+
+    @Test
+    public void shouldRevokeIssuedCertificatesOfAllSessionsOfUser() throws Exception {
+        givenUserExists();
+        givenNoExistingSession();
+        givenRevocationLog();
+        whenSigningIn();
+        givenSessionOfIssuedCertificateExists();
+        whenRevokingAllSessionsOfUser();
+        thenSessionIsDeleted();
+        thenIssuedCertificateIsRevoked();
+    }
+
     @Test(expected = SignatureValidationFailedException.class)
     public void shouldThrowExceptionWhenSignatureIsInvalidOnSignOut() throws Exception {
         givenUserExists();
@@ -375,8 +418,46 @@ public class AuthorityUnitTest extends AuthorityTest {
         _expiryDateCalculator.setDateProvider(CUSTOM_DATE_PROVIDER);
     }
 
+    private void givenRevocationLog() {
+        _revocationLog = new InMemoryRevocationLog();
+        _authority.setRevocationLog(_revocationLog);
+    }
+
+    private void givenSessionOfIssuedCertificateExists() {
+        final ArgumentCaptor<TestSession> session = ArgumentCaptor.forClass(TestSession.class);
+        verify(getSessionStore()).save(session.capture());
+        when(getSessionStore().findBySessionIdOrCertificate(any(byte[].class))).thenReturn(Optional.of(session.getValue()));
+        when(getSessionStore().findByUserId(TestUser.USER_ID)).thenReturn(Collections.singletonList(session.getValue()));
+    }
+
+    private void thenIssuedCertificateIsRevoked() throws IOException {
+        final Certificate<TestUserInfo> certificate = new CertificateFactory<TestUserInfo, TestRoles>() {
+            @Override
+            protected DeserializingFactory<TestUserInfo> getFactoryOfWrapped() {
+                return in -> new TestUserInfo();
+            }
+
+            @Override
+            protected RolesDeserializer<TestRoles> getRolesDeserializer() {
+                return new RolesDeserializer<TestRoles>() {
+                    @Override
+                    public TestRoles createRoleFromId(final Number id) {
+                        return TestRoles.fromId(id.intValue());
+                    }
+                };
+            }
+        }.consume(new ByteArrayInputStream(_certificate));
+        final RevocationDelta revocations = _authority.readRevocationsSince(0);
+        assertThat(revocations.size(), is(1));
+        assertThat(revocations.getKeyId(0), is(certificate.getClientKeyId().toLong()));
+
+        final RevocationRegistry registry = new RevocationRegistry();
+        registry.update(_authority::readRevocationsSince);
+        assertThat(registry.isRevoked(certificate), is(true));
+    }
+
     private void givenInvalidSignature() {
-        when(_signature.isValidFor(any(), any())).thenReturn(false);
+        when(_signature.isValidFor(any(byte[].class), any(PublicKey.class))).thenReturn(false);
     }
 
     private void givenSignableThrowingException() {
@@ -407,6 +488,14 @@ public class AuthorityUnitTest extends AuthorityTest {
         _authority.signOut(CERTIFICATE, new byte[0], _signature);
     }
 
+    private void whenSigningOutWithIssuedCertificate() {
+        _authority.signOut(encodeBase64(_certificate), new byte[0], _signature);
+    }
+
+    private void whenRevokingAllSessionsOfUser() {
+        assertThat(_authority.revokeAllOf(TestUser.USER_ID), is(1));
+    }
+
     private void thenUserWasCreated() {
         verify(getUserCreator()).createEmptyUser();
     }
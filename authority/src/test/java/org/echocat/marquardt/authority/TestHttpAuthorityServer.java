@@ -32,6 +32,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.security.PublicKey;
 
 import static org.apache.commons.codec.binary.Base64.decodeBase64;
 import static org.echocat.marquardt.common.web.SignatureHeaders.X_CERTIFICATE;
@@ -57,7 +58,7 @@ public class TestHttpAuthorityServer {
         _server = HttpServer.create(new InetSocketAddress(8000), 0);
         _objectMapper = new ObjectMapper();
         _authority = new Authority<>(userCatalog, userCreator, sessionCreator, sessionRenewal, sessionStore, clientAccessPolicy);
-        when(_signature.isValidFor(any(), any())).thenReturn(true);
+        when(_signature.isValidFor(any(byte[].class), any(PublicKey.class))).thenReturn(true);
     }
 
     public void start() {
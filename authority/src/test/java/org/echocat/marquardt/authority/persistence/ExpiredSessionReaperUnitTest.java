@@ -0,0 +1,93 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.persistence;
+
+import org.echocat.marquardt.authority.domain.Session;
+import org.echocat.marquardt.common.metrics.AtomicMetricsRecorder;
+import org.echocat.marquardt.common.metrics.CounterMetric;
+import org.echocat.marquardt.common.metrics.TimerMetric;
+import org.echocat.marquardt.common.util.DateProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ExpiredSessionReaperUnitTest {
+
+    private static final Date NOW = new Date(1444000000000L);
+    private static final int BATCH_SIZE = 10;
+
+    @SuppressWarnings("unchecked")
+    private final ExpiringSessionStore<Session> _sessionStore = mock(ExpiringSessionStore.class);
+    private final AtomicMetricsRecorder _metricsRecorder = new AtomicMetricsRecorder();
+    private final ExpiredSessionReaper _reaper = new ExpiredSessionReaper(_sessionStore);
+    private int _deleted;
+
+    @Before
+    public void setUp() {
+        _reaper.setBatchSize(BATCH_SIZE);
+        _reaper.setMaxBatchesPerRun(3);
+        _reaper.setBatchesPerSecond(1000);
+        _reaper.setMetricsRecorder(_metricsRecorder);
+        _reaper.setDateProvider(new DateProvider() {
+            @Override
+            public Date now() {
+                return NOW;
+            }
+        });
+    }
+
+    @Test
+    public void shouldDeleteBatchesUntilOneComesBackShort() throws Exception {
+        givenStoreDeletesInBatches(BATCH_SIZE, 4);
+        whenReaped();
+        thenDeleted(BATCH_SIZE + 4);
+        thenBatchesWereDeleted(2);
+    }
+
+    @Test
+    public void shouldStopAfterMaxBatchesPerRun() throws Exception {
+        givenStoreDeletesInBatches(BATCH_SIZE, BATCH_SIZE, BATCH_SIZE, BATCH_SIZE);
+        whenReaped();
+        thenDeleted(3 * BATCH_SIZE);
+        thenBatchesWereDeleted(3);
+    }
+
+    @Test
+    public void shouldCountFailedRunsInsteadOfThrowing() throws Exception {
+        when(_sessionStore.deleteExpired(NOW, BATCH_SIZE)).thenThrow(new IllegalStateException("database is down"));
+        _reaper.run();
+        assertThat(_metricsRecorder.getCount(CounterMetric.SESSION_REAPER_FAILED), is(1L));
+    }
+
+    private void givenStoreDeletesInBatches(final Integer first, final Integer... following) {
+        when(_sessionStore.deleteExpired(NOW, BATCH_SIZE)).thenReturn(first, following);
+    }
+
+    private void whenReaped() {
+        _deleted = _reaper.reap();
+    }
+
+    private void thenDeleted(final int expected) {
+        assertThat(_deleted, is(expected));
+        assertThat(_metricsRecorder.getCount(CounterMetric.SESSION_REAPER_DELETED), is((long) expected));
+    }
+
+    private void thenBatchesWereDeleted(final int expected) {
+        verify(_sessionStore, times(expected)).deleteExpired(NOW, BATCH_SIZE);
+        assertThat(_metricsRecorder.getCount(TimerMetric.SESSION_REAPER_BATCH), is((long) expected));
+    }
+}
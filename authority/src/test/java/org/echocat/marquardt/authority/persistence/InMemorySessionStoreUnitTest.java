@@ -0,0 +1,238 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.persistence;
+
+import org.echocat.marquardt.common.util.DateProvider;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class InMemorySessionStoreUnitTest {
+
+    private static final long START = TimeUnit.DAYS.toMillis(16000);
+    private static final long SESSION_VALIDITY = TimeUnit.DAYS.toMillis(60);
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 5000;
+
+    private final AtomicLong _now = new AtomicLong(START);
+    private volatile boolean _clockFails;
+    private final InMemorySessionStore<StoredSession> _store = createStore();
+    private final AtomicLong _certificateSequence = new AtomicLong();
+
+    @Test
+    public void shouldFindSavedSessionByCertificateSessionIdAndClient() throws Exception {
+        final StoredSession session = givenSavedSession();
+
+        assertThat(_store.findByCertificate(session.getCertificate().clone()).get(), sameInstance(session));
+        assertThat(_store.findBySessionId(session.getSessionId()).get(), sameInstance(session));
+        assertThat(_store.findBySessionIdOrCertificate(session.getCertificate()).get(), sameInstance(session));
+        assertThat(_store.findByUserId(session.getUserId()).size(), is(1));
+        assertThat(_store.findByUserId(session.getUserId()).iterator().next(), sameInstance(session));
+        assertThat(_store.existsActiveSession(session.getUserId(), session.getPublicKey().clone(), new Date(_now.get())), is(true));
+        assertThat(_store.existsActiveSession(session.getUserId(), session.getPublicKey(), new Date(session.getExpiresAt().getTime())), is(false));
+        assertThat(_store.existsActiveSession(UUID.randomUUID(), session.getPublicKey(), new Date(_now.get())), is(false));
+    }
+
+    @Test
+    public void shouldIndexRefreshedCertificateOnSave() throws Exception {
+        final StoredSession session = givenSavedSession();
+        final byte[] oldCertificate = session.getCertificate();
+
+        whenSessionIsRefreshed(session);
+
+        assertThat(_store.findByCertificate(oldCertificate).isPresent(), is(false));
+        assertThat(_store.findByCertificate(session.getCertificate()).get(), sameInstance(session));
+        assertThat(_store.size(), is(1));
+    }
+
+    @Test
+    public void shouldRemoveDeletedSessionFromAllIndexes() throws Exception {
+        final StoredSession session = givenSavedSession();
+
+        _store.delete(session);
+
+        assertThat(_store.findByCertificate(session.getCertificate()).isPresent(), is(false));
+        assertThat(_store.findBySessionId(session.getSessionId()).isPresent(), is(false));
+        assertThat(_store.findByUserId(session.getUserId()).isEmpty(), is(true));
+        assertThat(_store.existsActiveSession(session.getUserId(), session.getPublicKey(), new Date(_now.get())), is(false));
+        assertThat(_store.size(), is(0));
+    }
+
+    @Test
+    public void shouldRemoveSessionsWhenTheyExpireButKeepRefreshedOnes() throws Exception {
+        final StoredSession expiring = givenSavedSession();
+        final StoredSession refreshed = givenSavedSession();
+        _now.addAndGet(TimeUnit.DAYS.toMillis(30));
+        whenSessionIsRefreshed(refreshed);
+
+        _now.addAndGet(TimeUnit.DAYS.toMillis(31));
+        _store.removeExpiredSessions();
+
+        assertThat(_store.findBySessionId(expiring.getSessionId()).isPresent(), is(false));
+        assertThat(_store.findBySessionId(refreshed.getSessionId()).get(), sameInstance(refreshed));
+
+        _now.addAndGet(TimeUnit.DAYS.toMillis(30));
+        _store.removeExpiredSessions();
+
+        assertThat(_store.size(), is(0));
+    }
+
+    @Test
+    public void shouldRemoveEachSessionWithinOneSecondAfterItExpired() throws Exception {
+        final Random random = new Random(42);
+        final List<StoredSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            sessions.add(givenSavedSession(START + (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(100))));
+        }
+        for (long now = START; now <= START + TimeUnit.DAYS.toMillis(101); now += TimeUnit.HOURS.toMillis(7)) {
+            _now.set(now);
+            _store.removeExpiredSessions();
+            for (final StoredSession session : sessions) {
+                final long expiresAt = session.getExpiresAt().getTime();
+                if (expiresAt > now) {
+                    assertThat(_store.findBySessionId(session.getSessionId()).isPresent(), is(true));
+                } else if (expiresAt <= now - TimeUnit.SECONDS.toMillis(1)) {
+                    assertThat(_store.findBySessionId(session.getSessionId()).isPresent(), is(false));
+                }
+            }
+        }
+        assertThat(_store.size(), is(0));
+    }
+
+    @Test
+    public void shouldReleaseWheelLockIfClockFailsWhileRemovingExpiredSessions() throws Exception {
+        _clockFails = true;
+        try {
+            _store.removeExpiredSessions();
+        } catch (final IllegalStateException expected) {
+            // Thrown by the clock
+        }
+        _clockFails = false;
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<?> saveAndDelete = executor.submit(() -> _store.delete(givenSavedSession()));
+
+            saveAndDelete.get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(_store.size(), is(0));
+    }
+
+    @Test
+    public void shouldStayConsistentUnderConcurrentAccess() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            final List<Future<List<StoredSession>>> results = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                final long seed = thread;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return runRandomOperations(new Random(seed));
+                }));
+            }
+            start.countDown();
+            int liveSessions = 0;
+            for (final Future<List<StoredSession>> result : results) {
+                for (final StoredSession session : result.get(1, TimeUnit.MINUTES)) {
+                    assertThat(_store.findByCertificate(session.getCertificate()).get(), sameInstance(session));
+                    assertThat(_store.findBySessionId(session.getSessionId()).get(), sameInstance(session));
+                    assertThat(_store.existsActiveSession(session.getUserId(), session.getPublicKey(), new Date(_now.get())), is(true));
+                    liveSessions++;
+                }
+            }
+            assertThat(_store.size(), is(liveSessions));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates, refreshes, looks up and deletes sessions; lookups of other threads' sessions run concurrently.
+     *
+     * @return The sessions of this thread that were not deleted.
+     */
+    private List<StoredSession> runRandomOperations(final Random random) {
+        final List<StoredSession> sessions = new ArrayList<>();
+        final List<byte[]> replacedCertificates = new ArrayList<>();
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+            final int operation = random.nextInt(10);
+            if (sessions.isEmpty() || operation < 3) {
+                sessions.add(givenSavedSession());
+            } else if (operation < 6) {
+                final StoredSession session = sessions.get(random.nextInt(sessions.size()));
+                replacedCertificates.add(session.getCertificate());
+                whenSessionIsRefreshed(session);
+            } else if (operation < 7) {
+                _store.delete(sessions.remove(random.nextInt(sessions.size())));
+            } else {
+                final StoredSession session = sessions.get(random.nextInt(sessions.size()));
+                assertThat(_store.findByCertificate(session.getCertificate()).get(), sameInstance(session));
+                if (!replacedCertificates.isEmpty()) {
+                    assertThat(_store.findByCertificate(replacedCertificates.get(random.nextInt(replacedCertificates.size()))).isPresent(), is(false));
+                }
+            }
+        }
+        return sessions;
+    }
+
+    private StoredSession givenSavedSession() {
+        return givenSavedSession(_now.get() + SESSION_VALIDITY);
+    }
+
+    private StoredSession givenSavedSession(final long expiresAt) {
+        final StoredSession session = _store.createTransient();
+        session.setSessionId(UUID.randomUUID());
+        session.setUserId(UUID.randomUUID());
+        session.setPublicKey(ByteBuffer.allocate(16).putLong(session.getSessionId().getMostSignificantBits()).array());
+        session.setCertificate(nextCertificate());
+        session.setExpiresAt(new Date(expiresAt));
+        return _store.save(session);
+    }
+
+    private void whenSessionIsRefreshed(final StoredSession session) {
+        session.setCertificate(nextCertificate());
+        session.setExpiresAt(new Date(_now.get() + SESSION_VALIDITY));
+        _store.save(session);
+    }
+
+    private byte[] nextCertificate() {
+        return ByteBuffer.allocate(64).putLong(_certificateSequence.incrementAndGet()).array();
+    }
+
+    private InMemorySessionStore<StoredSession> createStore() {
+        final InMemorySessionStore<StoredSession> store = new InMemorySessionStore<>(StoredSession::new, 16);
+        store.setDateProvider(new DateProvider() {
+            @Override
+            public Date now() {
+                if (_clockFails) {
+                    throw new IllegalStateException("Clock failed.");
+                }
+                return new Date(_now.get());
+            }
+        });
+        return store;
+    }
+}
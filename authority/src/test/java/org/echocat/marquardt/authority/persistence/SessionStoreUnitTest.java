@@ -0,0 +1,157 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.persistence;
+
+import org.echocat.marquardt.authority.domain.Session;
+import org.echocat.marquardt.authority.testdomain.TestUserInfo;
+import org.echocat.marquardt.common.Signer;
+import org.echocat.marquardt.common.TestKeyPairProvider;
+import org.echocat.marquardt.common.domain.Signable;
+import org.echocat.marquardt.common.domain.certificate.Certificate;
+import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SessionStoreUnitTest {
+
+    private static final UUID SESSION_ID = UUID.randomUUID();
+
+    private final Session _session = mock(Session.class);
+    private final SingleSessionStore _sessionStore = new SingleSessionStore();
+    private byte[] _certificate;
+    private Optional<Session> _foundSession;
+
+    @Test
+    public void shouldFindSessionByIdEmbeddedInCertificate() throws Exception {
+        givenCertificateWithSessionId();
+        givenSessionWithCurrentCertificate(_certificate);
+        whenSessionIsLookedUp();
+        thenSessionIsFound();
+        thenSessionWasFoundBy(SESSION_ID);
+    }
+
+    @Test
+    public void shouldNotFindSessionByIdWhenCertificateWasReplaced() throws Exception {
+        givenCertificateWithSessionId();
+        givenSessionWithCurrentCertificate(new byte[]{1, 2, 3});
+        whenSessionIsLookedUp();
+        thenNoSessionIsFound();
+    }
+
+    @Test
+    public void shouldFindSessionByCertificateWithoutSessionId() throws Exception {
+        givenCertificateWithoutSessionId();
+        givenSessionWithCurrentCertificate(_certificate);
+        whenSessionIsLookedUp();
+        thenSessionIsFound();
+        thenSessionWasFoundBy(null);
+    }
+
+    @Test
+    public void shouldFallBackToCertificateIfStoreDoesNotFindSessionsById() throws Exception {
+        givenCertificateWithSessionId();
+        givenSessionWithCurrentCertificate(_certificate);
+        givenStoreWithoutFinderBySessionId();
+        whenSessionIsLookedUp();
+        thenSessionIsFound();
+    }
+
+    private void givenCertificateWithSessionId() throws IOException {
+        _certificate = createCertificate(SESSION_ID);
+    }
+
+    private void givenCertificateWithoutSessionId() throws IOException {
+        _certificate = createCertificate(null);
+    }
+
+    private void givenSessionWithCurrentCertificate(final byte[] certificate) {
+        when(_session.getCertificate()).thenReturn(certificate);
+    }
+
+    private void givenStoreWithoutFinderBySessionId() {
+        _sessionStore._findsBySessionId = false;
+    }
+
+    private void whenSessionIsLookedUp() {
+        _foundSession = _sessionStore.findBySessionIdOrCertificate(_certificate);
+    }
+
+    private void thenSessionIsFound() {
+        assertThat(_foundSession.isPresent(), is(true));
+    }
+
+    private void thenNoSessionIsFound() {
+        assertThat(_foundSession.isPresent(), is(false));
+    }
+
+    private void thenSessionWasFoundBy(final UUID sessionId) {
+        assertThat(_sessionStore._requestedSessionId, is(sessionId));
+    }
+
+    private static byte[] createCertificate(final UUID sessionId) throws IOException {
+        final KeyPairProvider keys = TestKeyPairProvider.create();
+        final Signable payload = new TestUserInfo();
+        final Certificate<Signable> certificate = Certificate.create(keys.getPublicKey(), keys.getPublicKey(), Collections.emptySet(), payload, Certificate.VERSION, sessionId);
+        return new Signer().sign(certificate, keys.getPrivateKey());
+    }
+
+    private class SingleSessionStore implements SessionStore<Session> {
+
+        private UUID _requestedSessionId;
+        private boolean _findsBySessionId = true;
+
+        @Override
+        public Optional<Session> findByCertificate(final byte[] certificate) {
+            return Optional.of(_session).filter(session -> session.getCertificate() == certificate);
+        }
+
+        @Override
+        public Optional<Session> findBySessionId(final UUID sessionId) {
+            if (!_findsBySessionId) {
+                return SessionStore.super.findBySessionId(sessionId);
+            }
+            _requestedSessionId = sessionId;
+            return Optional.of(_session);
+        }
+
+        @Override
+        public Collection<Session> findByUserId(final UUID userId) {
+            return Collections.singleton(_session);
+        }
+
+        @Override
+        public boolean existsActiveSession(final UUID userId, final byte[] clientPublicKey, @SuppressWarnings("UseOfObsoleteDateTimeApi") final Date dateToCheck) {
+            return true;
+        }
+
+        @Override
+        public Session save(final Session session) {
+            return session;
+        }
+
+        @Override
+        public Session createTransient() {
+            return _session;
+        }
+
+        @Override
+        public void delete(final Session session) {}
+    }
+}
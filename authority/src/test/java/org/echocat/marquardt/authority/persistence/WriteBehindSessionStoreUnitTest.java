@@ -0,0 +1,218 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.persistence;
+
+import org.echocat.marquardt.authority.persistence.WriteBehindSessionStore.Durability;
+import org.echocat.marquardt.common.metrics.AtomicMetricsRecorder;
+import org.echocat.marquardt.common.metrics.CounterMetric;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class WriteBehindSessionStoreUnitTest {
+
+    private static final long SESSION_VALIDITY = TimeUnit.DAYS.toMillis(60);
+
+    private final InMemorySessionStore<StoredSession> _delegate = spy(new InMemorySessionStore<>(StoredSession::new));
+    private final AtomicMetricsRecorder _metricsRecorder = new AtomicMetricsRecorder();
+    private final AtomicLong _certificateSequence = new AtomicLong();
+    private WriteBehindSessionStore<StoredSession> _store;
+
+    @Test
+    public void shouldFindRefreshedSessionByNewCertificateBeforeItIsWritten() throws Exception {
+        givenStore(Durability.DEFERRED);
+        final StoredSession session = givenStoredSession();
+        final byte[] oldCertificate = session.getCertificate();
+
+        whenSessionIsRefreshed(session);
+
+        assertThat(_store.findByCertificate(session.getCertificate()).get(), sameInstance(session));
+        assertThat(_store.findBySessionIdOrCertificate(session.getCertificate()).get(), sameInstance(session));
+        assertThat(_store.findByCertificate(oldCertificate).isPresent(), is(false));
+        assertThat(_delegate.findByCertificate(session.getCertificate()).isPresent(), is(false));
+    }
+
+    @Test
+    public void shouldWriteCoalescedSavesInOneBatch() throws Exception {
+        givenStore(Durability.DEFERRED);
+        final StoredSession first = givenStoredSession();
+        final StoredSession second = givenStoredSession();
+        whenSessionIsRefreshed(first);
+        whenSessionIsRefreshed(first);
+        whenSessionIsRefreshed(second);
+
+        _store.flush();
+
+        thenBatchesWereWritten(2);
+        assertThat(_store.getPendingSessions(), is(0));
+        assertThat(_delegate.findByCertificate(first.getCertificate()).get(), sameInstance(first));
+        assertThat(_delegate.findByCertificate(second.getCertificate()).get(), sameInstance(second));
+    }
+
+    @Test
+    public void shouldHideDeletedSessionUntilItIsWritten() throws Exception {
+        givenStore(Durability.DEFERRED);
+        final StoredSession session = givenStoredSession();
+
+        _store.delete(session);
+
+        assertThat(_store.findBySessionId(session.getSessionId()).isPresent(), is(false));
+        assertThat(_store.findByCertificate(session.getCertificate()).isPresent(), is(false));
+        assertThat(_delegate.findBySessionId(session.getSessionId()).isPresent(), is(true));
+        assertThat(_store.existsActiveSession(session.getUserId(), session.getPublicKey(), new Date()), is(false));
+        assertThat(_delegate.findBySessionId(session.getSessionId()).isPresent(), is(false));
+    }
+
+    @Test
+    public void shouldWriteSignInAndSignOutThroughButRefreshesBehind() throws Exception {
+        givenStore(Durability.SYNCHRONOUS_SIGN_IN_AND_OUT);
+        final StoredSession session = _store.createTransient();
+        fill(session);
+
+        _store.save(session);
+        assertThat(_delegate.findBySessionId(session.getSessionId()).isPresent(), is(true));
+
+        whenSessionIsRefreshed(session);
+        assertThat(_delegate.findByCertificate(session.getCertificate()).isPresent(), is(false));
+        assertThat(_store.getPendingSessions(), is(1));
+
+        _store.delete(session);
+        assertThat(_delegate.findBySessionId(session.getSessionId()).isPresent(), is(false));
+        assertThat(_store.getPendingSessions(), is(0));
+    }
+
+    @Test
+    public void shouldFlushInCallerWhenTooManySessionsArePending() throws Exception {
+        givenStore(Durability.DEFERRED);
+        _store.setMaxBatchSize(2);
+        _store.setMaxPendingSessions(3);
+
+        for (int i = 0; i < 3; i++) {
+            whenSessionIsRefreshed(givenStoredSession());
+        }
+
+        assertThat(_store.getPendingSessions(), is(0));
+        thenBatchesWereWritten(2, 1);
+    }
+
+    @Test
+    public void shouldDropSessionsTheDelegateFailsToWrite() throws Exception {
+        givenStore(Durability.DEFERRED);
+        final StoredSession broken = givenStoredSession();
+        final StoredSession intact = givenStoredSession();
+        doThrow(new IllegalStateException("constraint violated")).when(_delegate).save(broken);
+        whenSessionIsRefreshed(broken);
+        whenSessionIsRefreshed(intact);
+
+        _store.flush();
+
+        assertThat(_store.getPendingSessions(), is(0));
+        assertThat(_delegate.findByCertificate(intact.getCertificate()).get(), sameInstance(intact));
+        assertThat(_metricsRecorder.getCount(CounterMetric.SESSION_STORE_WRITE_BEHIND_DROPPED), is(1L));
+    }
+
+    @Test
+    public void shouldFlushEveryMaxDelayOnceStarted() throws Exception {
+        givenStore(Durability.DEFERRED);
+        _store.setMaxDelayInMillis(10);
+        final StoredSession session = givenStoredSession();
+        whenSessionIsRefreshed(session);
+
+        _store.start();
+        try {
+            final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while (_store.getPendingSessions() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertThat(_store.getPendingSessions(), is(0));
+            assertThat(_delegate.findByCertificate(session.getCertificate()).get(), sameInstance(session));
+        } finally {
+            _store.close();
+        }
+    }
+
+    @Test
+    public void shouldNotFindDeletedSessionsWhileBatchesAreWrittenConcurrently() throws Exception {
+        givenStore(Durability.DEFERRED);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final Thread flusher = new Thread(() -> {
+            while (running.get()) {
+                _store.flush();
+            }
+        });
+        flusher.start();
+        try {
+            for (int i = 0; i < 5000; i++) {
+                final StoredSession session = givenStoredSession();
+                whenSessionIsRefreshed(givenStoredSession());
+
+                _store.delete(session);
+
+                assertThat(_store.findBySessionId(session.getSessionId()).isPresent(), is(false));
+                assertThat(_store.findByCertificate(session.getCertificate()).isPresent(), is(false));
+            }
+        } finally {
+            running.set(false);
+            flusher.join();
+        }
+    }
+
+    private void givenStore(final Durability durability) {
+        _store = new WriteBehindSessionStore<>(_delegate, durability);
+        _store.setMetricsRecorder(_metricsRecorder);
+    }
+
+    private StoredSession givenStoredSession() {
+        final StoredSession session = _delegate.createTransient();
+        fill(session);
+        return _delegate.save(session);
+    }
+
+    private void whenSessionIsRefreshed(final StoredSession session) {
+        session.setCertificate(nextCertificate());
+        session.setExpiresAt(new Date(System.currentTimeMillis() + SESSION_VALIDITY));
+        _store.save(session);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void thenBatchesWereWritten(final Integer... sizes) {
+        final ArgumentCaptor<Collection> batches = ArgumentCaptor.forClass(Collection.class);
+        verify(_delegate, times(sizes.length)).saveAll(batches.capture());
+        for (int i = 0; i < sizes.length; i++) {
+            assertThat(batches.getAllValues().get(i).size(), is(sizes[i]));
+        }
+    }
+
+    private void fill(final StoredSession session) {
+        session.setSessionId(UUID.randomUUID());
+        session.setUserId(UUID.randomUUID());
+        session.setPublicKey(ByteBuffer.allocate(16).putLong(session.getSessionId().getMostSignificantBits()).array());
+        session.setCertificate(nextCertificate());
+        session.setExpiresAt(new Date(System.currentTimeMillis() + SESSION_VALIDITY));
+    }
+
+    private byte[] nextCertificate() {
+        return ByteBuffer.allocate(64).putLong(_certificateSequence.incrementAndGet()).array();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.session;
+
+import org.echocat.marquardt.authority.exceptions.SigningRejectedException;
+import org.echocat.marquardt.authority.session.CertificateSigningService.RejectionPolicy;
+import org.echocat.marquardt.authority.testdomain.TestSession;
+import org.echocat.marquardt.authority.testdomain.TestUser;
+import org.echocat.marquardt.common.Signer;
+import org.echocat.marquardt.common.TestKeyPairProvider;
+import org.echocat.marquardt.common.domain.Signable;
+import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
+import org.echocat.marquardt.common.metrics.AtomicMetricsRecorder;
+import org.echocat.marquardt.common.metrics.CounterMetric;
+import org.echocat.marquardt.common.metrics.TimerMetric;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CertificateSigningServiceUnitTest {
+
+    private static final KeyPairProvider ISSUER_KEY_PROVIDER = TestKeyPairProvider.create();
+    private static final Signable SIGNABLE = new BytesSignable(new byte[]{1, 2, 3, 4});
+
+    private final AtomicMetricsRecorder _metricsRecorder = new AtomicMetricsRecorder();
+    private final ExecutorService _callers = Executors.newCachedThreadPool();
+    private final CountDownLatch _signingStarted = new CountDownLatch(1);
+    private final CountDownLatch _signingReleased = new CountDownLatch(1);
+    private CertificateSigningService _service;
+
+    @After
+    public void tearDown() {
+        _signingReleased.countDown();
+        _callers.shutdownNow();
+        if (_service != null) {
+            _service.close();
+        }
+    }
+
+    @Test
+    public void shouldSignWithIssuerKeyAndRecordMetrics() throws Exception {
+        givenService(2, 4, RejectionPolicy.ABORT);
+
+        final byte[] signed = _service.sign(SIGNABLE);
+
+        assertThat(signed, is(new Signer().sign(SIGNABLE, ISSUER_KEY_PROVIDER.getPrivateKey())));
+        assertThat(_metricsRecorder.getCount(TimerMetric.CERTIFICATE_SIGNING), is(1L));
+        assertThat(_metricsRecorder.getCount(TimerMetric.CERTIFICATE_SIGNING_QUEUE_WAIT), is(1L));
+    }
+
+    @Test
+    public void shouldRejectCertificatesThatDoNotFitIntoTheQueue() throws Exception {
+        givenService(1, 1, RejectionPolicy.ABORT);
+        final Future<byte[]> busy = givenBusyThreadAndFullQueue();
+
+        try {
+            _service.sign(SIGNABLE);
+            fail("Expected " + SigningRejectedException.class + " was not thrown!");
+        } catch (final SigningRejectedException ignored) {}
+
+        assertThat(_metricsRecorder.getCount(CounterMetric.CERTIFICATE_SIGNING_REJECTED), is(1L));
+        _signingReleased.countDown();
+        assertThat(busy.get(1, TimeUnit.MINUTES).length > 0, is(true));
+    }
+
+    @Test
+    public void shouldSignOnCallingThreadWhenQueueIsFullAndCallerRuns() throws Exception {
+        givenService(1, 1, RejectionPolicy.CALLER_RUNS);
+        givenBusyThreadAndFullQueue();
+
+        final byte[] signed = _service.sign(SIGNABLE);
+
+        assertThat(signed, is(new Signer().sign(SIGNABLE, ISSUER_KEY_PROVIDER.getPrivateKey())));
+        assertThat(_metricsRecorder.getCount(CounterMetric.CERTIFICATE_SIGNING_CALLER_RUNS), is(1L));
+        assertThat(_metricsRecorder.getCount(CounterMetric.CERTIFICATE_SIGNING_REJECTED), is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotBeSetOnSessionActionOfOtherIssuer() throws Exception {
+        givenService(1, 1, RejectionPolicy.ABORT);
+        final SessionRenewal<TestUser, TestSession> sessionRenewal = new SessionRenewal<>(null, null, null, TestKeyPairProvider.create());
+
+        sessionRenewal.setCertificateSigningService(_service);
+    }
+
+    private void givenService(final int threads, final int queueCapacity, final RejectionPolicy rejectionPolicy) {
+        _service = new CertificateSigningService(ISSUER_KEY_PROVIDER, new Signer(), threads, queueCapacity, rejectionPolicy);
+        _service.setMetricsRecorder(_metricsRecorder);
+    }
+
+    /**
+     * Blocks the only signing thread and queues another certificate behind it.
+     *
+     * @return Result of the blocked signing.
+     */
+    private Future<byte[]> givenBusyThreadAndFullQueue() throws Exception {
+        final Future<byte[]> busy = _callers.submit(() -> _service.sign(new BlockingSignable()));
+        assertThat(_signingStarted.await(1, TimeUnit.MINUTES), is(true));
+        _callers.submit(() -> _service.sign(SIGNABLE));
+        final long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        while (_service.getQueueDepth() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(_service.getQueueDepth(), is(1));
+        return busy;
+    }
+
+    private static class BytesSignable implements Signable {
+
+        private final byte[] _content;
+
+        private BytesSignable(final byte[] content) {
+            _content = content;
+        }
+
+        @Override
+        public void writeTo(@Nonnull final OutputStream out) throws IOException {
+            out.write(getContent());
+        }
+
+        @Override
+        public byte[] getContent() throws IOException {
+            return _content.clone();
+        }
+    }
+
+    private class BlockingSignable extends BytesSignable {
+
+        private BlockingSignable() {
+            super(new byte[]{5, 6, 7, 8});
+        }
+
+        @Override
+        public byte[] getContent() throws IOException {
+            _signingStarted.countDown();
+            try {
+                _signingReleased.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            return super.getContent();
+        }
+    }
+}
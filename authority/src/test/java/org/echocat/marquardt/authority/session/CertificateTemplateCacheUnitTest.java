@@ -0,0 +1,146 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.authority.session;
+
+import org.echocat.marquardt.authority.testdomain.TestSession;
+import org.echocat.marquardt.authority.testdomain.TestUser;
+import org.echocat.marquardt.authority.testdomain.TestUserInfo;
+import org.echocat.marquardt.common.TestKeyPairProvider;
+import org.echocat.marquardt.common.TestRoles;
+import org.echocat.marquardt.common.domain.Signable;
+import org.echocat.marquardt.common.domain.certificate.Certificate;
+import org.echocat.marquardt.common.domain.certificate.CertificateTemplate;
+import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CertificateTemplateCacheUnitTest {
+
+    private static final KeyPairProvider ISSUER_KEY_PROVIDER = TestKeyPairProvider.create();
+    private static final KeyPairProvider CLIENT_KEY_PROVIDER = TestKeyPairProvider.create();
+    private static final long EXPIRES_AT = 1500000000000L;
+
+    private final CertificateTemplateCache _cache = new CertificateTemplateCache(ISSUER_KEY_PROVIDER, Certificate.VERSION, 16);
+    private final Set<TestRoles> _roles = EnumSet.of(TestRoles.TEST_ROLE_1);
+    private final TestUser _user = new TestUser() {
+        @Override
+        public Set<TestRoles> getRoles() {
+            return _roles;
+        }
+    };
+    private final AtomicInteger _payloadsCreated = new AtomicInteger();
+    private Supplier<Signable> _payload = () -> {
+        _payloadsCreated.incrementAndGet();
+        return new TestUserInfo();
+    };
+
+    @Test
+    public void shouldReuseSegmentsOfSessionAndUser() throws Exception {
+        final UUID sessionId = UUID.randomUUID();
+        final byte[] first = whenTemplateIsWritten(sessionId);
+
+        final byte[] second = whenTemplateIsWritten(sessionId);
+
+        assertThat(second, is(first));
+        assertThat(_payloadsCreated.get(), is(1));
+    }
+
+    @Test
+    public void shouldReplaceTailWhenRolesOfUserChange() throws Exception {
+        final UUID sessionId = UUID.randomUUID();
+        final byte[] first = whenTemplateIsWritten(sessionId);
+        _roles.add(TestRoles.TEST_ROLE_2);
+
+        final byte[] second = whenTemplateIsWritten(sessionId);
+
+        assertThat(second, not(is(first)));
+        assertThat(_payloadsCreated.get(), is(2));
+    }
+
+    @Test
+    public void shouldReplaceTailAfterInvalidation() throws Exception {
+        final UUID sessionId = UUID.randomUUID();
+        whenTemplateIsWritten(sessionId);
+        _cache.invalidate(_user.getUserId());
+
+        whenTemplateIsWritten(sessionId);
+
+        assertThat(_payloadsCreated.get(), is(2));
+    }
+
+    @Test
+    public void shouldNotKeepTailOfUserInvalidatedWhileItIsSerialized() throws Exception {
+        final UUID sessionId = UUID.randomUUID();
+        final Supplier<Signable> payload = _payload;
+        _payload = () -> {
+            _cache.invalidate(_user.getUserId());
+            return payload.get();
+        };
+        whenTemplateIsWritten(sessionId);
+        _payload = payload;
+
+        whenTemplateIsWritten(sessionId);
+
+        assertThat(_payloadsCreated.get(), is(2));
+    }
+
+    @Test
+    public void shouldNotKeepTailOfUserLoadedBeforeInvalidation() throws Exception {
+        final UUID sessionId = UUID.randomUUID();
+        final long generation = _cache.generationOf(_user.getUserId());
+        _cache.invalidate(_user.getUserId());
+        whenTemplateIsWritten(sessionId, generation);
+
+        whenTemplateIsWritten(sessionId);
+
+        assertThat(_payloadsCreated.get(), is(2));
+    }
+
+    @Test
+    public void shouldTellIfCertificatesAreIssuedByKey() throws Exception {
+        assertThat(_cache.isIssuedBy(ISSUER_KEY_PROVIDER.getPublicKey()), is(true));
+        assertThat(_cache.isIssuedBy(CLIENT_KEY_PROVIDER.getPublicKey()), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotBeSetOnSessionActionOfOtherIssuer() throws Exception {
+        final SessionRenewal<TestUser, TestSession> sessionRenewal = new SessionRenewal<>(null, null, null, CLIENT_KEY_PROVIDER);
+
+        sessionRenewal.setCertificateTemplateCache(_cache);
+    }
+
+    @Test
+    public void shouldKeepHeadsOfSessionsApartButShareTailOfUser() throws Exception {
+        final byte[] first = whenTemplateIsWritten(UUID.randomUUID());
+
+        final byte[] second = whenTemplateIsWritten(UUID.randomUUID());
+
+        assertThat(second, not(is(first)));
+        assertThat(_payloadsCreated.get(), is(1));
+    }
+
+    private byte[] whenTemplateIsWritten(final UUID sessionId) throws IOException {
+        return whenTemplateIsWritten(sessionId, _cache.generationOf(_user.getUserId()));
+    }
+
+    private byte[] whenTemplateIsWritten(final UUID sessionId, final long generation) throws IOException {
+        final CertificateTemplate template = _cache.templateFor(sessionId, CLIENT_KEY_PROVIDER.getPublicKey(), _user, generation, _payload, EXPIRES_AT);
+        return template.getContent();
+    }
+}
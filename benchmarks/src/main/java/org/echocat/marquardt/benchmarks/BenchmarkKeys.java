@@ -0,0 +1,39 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.benchmarks;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RSA key pairs for the benchmarks, generated once per key size and JVM.
+ */
+final class BenchmarkKeys {
+
+    private static final Map<Integer, KeyPair> KEY_PAIRS = new ConcurrentHashMap<>();
+
+    private BenchmarkKeys() {}
+
+    static KeyPair rsa(final int keySize) {
+        return KEY_PAIRS.computeIfAbsent(keySize, BenchmarkKeys::generate);
+    }
+
+    private static KeyPair generate(final int keySize) {
+        try {
+            final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(keySize);
+            return generator.generateKeyPair();
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException("Could not generate RSA key pair of " + keySize + " bits.", e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.benchmarks;
+
+import com.google.common.primitives.Ints;
+import org.echocat.marquardt.common.domain.DeserializingFactory;
+import org.echocat.marquardt.common.domain.Signable;
+import org.echocat.marquardt.common.util.BinaryReader;
+
+import javax.annotation.Nonnull;
+import javax.annotation.WillNotClose;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Signable of a configurable size, serialized as length followed by its content.
+ */
+final class BenchmarkPayload implements Signable {
+
+    static final int MAXIMUM_SIZE = 64 * 1024;
+
+    static final DeserializingFactory<BenchmarkPayload> FACTORY = (@Nonnull @WillNotClose final InputStream in) ->
+        new BenchmarkPayload(BinaryReader.of(in).readLengthPrefixedBytes(MAXIMUM_SIZE));
+
+    private final byte[] _content;
+
+    private BenchmarkPayload(final byte[] content) {
+        _content = content;
+    }
+
+    static BenchmarkPayload ofSize(final int size) {
+        final byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+        return new BenchmarkPayload(content);
+    }
+
+    @Override
+    public void writeTo(@Nonnull @WillNotClose final OutputStream out) throws IOException {
+        out.write(Ints.toByteArray(_content.length));
+        out.write(_content);
+    }
+
+    @Override
+    public byte[] getContent() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(Ints.BYTES + _content.length);
+        writeTo(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.benchmarks;
+
+import org.echocat.marquardt.common.domain.certificate.Role;
+import org.echocat.marquardt.common.serialization.RolesDeserializer;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Role with an arbitrary id, so benchmarks can use any number of roles.
+ */
+final class BenchmarkRole implements Role {
+
+    static final RolesDeserializer<BenchmarkRole> DESERIALIZER = new RolesDeserializer<BenchmarkRole>() {
+        @Override
+        public BenchmarkRole createRoleFromId(final Number id) {
+            return new BenchmarkRole(id.intValue());
+        }
+    };
+
+    private final int _id;
+
+    private BenchmarkRole(final int id) {
+        _id = id;
+    }
+
+    /**
+     * @return Roles with the ids 0 to numberOfRoles - 1, taken from {@link #DESERIALIZER}.
+     */
+    static Set<BenchmarkRole> firstRoles(final int numberOfRoles) {
+        final Set<BenchmarkRole> roles = new HashSet<>();
+        for (int id = 0; id < numberOfRoles; id++) {
+            roles.add(DESERIALIZER.roleOf(id));
+        }
+        return roles;
+    }
+
+    @Override
+    public Integer id() {
+        return _id;
+    }
+
+    @Override
+    public String name() {
+        return "ROLE_" + _id;
+    }
+}
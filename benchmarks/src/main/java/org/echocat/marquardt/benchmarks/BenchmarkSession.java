@@ -0,0 +1,100 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.benchmarks;
+
+import org.echocat.marquardt.authority.domain.Session;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Plain session bean for the session store benchmarks.
+ */
+public class BenchmarkSession implements Session {
+
+    private volatile UUID _sessionId;
+    private volatile UUID _userId;
+    private volatile byte[] _publicKey;
+    private volatile String _mechanism;
+    private volatile byte[] _certificate;
+    @SuppressWarnings("UseOfObsoleteDateTimeApi")
+    private volatile Date _expiresAt;
+    private volatile String _clientId;
+
+    @Override
+    public UUID getSessionId() {
+        return _sessionId;
+    }
+
+    @Override
+    public void setSessionId(final UUID sessionId) {
+        _sessionId = sessionId;
+    }
+
+    @Override
+    public UUID getUserId() {
+        return _userId;
+    }
+
+    @Override
+    public void setUserId(final UUID userId) {
+        _userId = userId;
+    }
+
+    @Override
+    public byte[] getPublicKey() {
+        return _publicKey;
+    }
+
+    @Override
+    public void setPublicKey(final byte[] publicKey) {
+        _publicKey = publicKey;
+    }
+
+    @Override
+    public String getMechanism() {
+        return _mechanism;
+    }
+
+    @Override
+    public void setMechanism(final String mechanism) {
+        _mechanism = mechanism;
+    }
+
+    @Override
+    public byte[] getCertificate() {
+        return _certificate;
+    }
+
+    @Override
+    public void setCertificate(final byte[] certificate) {
+        _certificate = certificate;
+    }
+
+    @SuppressWarnings("UseOfObsoleteDateTimeApi")
+    @Override
+    public Date getExpiresAt() {
+        return _expiresAt;
+    }
+
+    @Override
+    public void setExpiresAt(@SuppressWarnings("UseOfObsoleteDateTimeApi") final Date expiresAt) {
+        _expiresAt = expiresAt;
+    }
+
+    @Override
+    public String getClientId() {
+        return _clientId;
+    }
+
+    @Override
+    public void setClientId(final String clientId) {
+        _clientId = clientId;
+    }
+}
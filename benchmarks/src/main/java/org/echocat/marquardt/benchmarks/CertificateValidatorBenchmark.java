@@ -0,0 +1,94 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.benchmarks;
+
+import org.echocat.marquardt.common.CertificateValidator;
+import org.echocat.marquardt.common.Signer;
+import org.echocat.marquardt.common.domain.DeserializingFactory;
+import org.echocat.marquardt.common.domain.certificate.Certificate;
+import org.echocat.marquardt.common.serialization.RolesDeserializer;
+import org.echocat.marquardt.common.util.DateProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * Deserializing and validating certificates with {@link CertificateValidator#deserializeAndValidateCertificate},
+ * eagerly and lazily decoded, in both certificate formats.
+ */
+@State(Scope.Benchmark)
+public class CertificateValidatorBenchmark {
+
+    private static final int CLIENT_KEY_SIZE = 2048;
+    private static final int NUMBER_OF_ROLES = 4;
+
+    @Param({"2048", "4096"})
+    private int _keySize;
+    @Param({"64", "1024"})
+    private int _payloadSize;
+    @Param({"1", "2"})
+    private byte _certificateVersion;
+
+    private byte[] _signedCertificate;
+    private CertificateValidator<BenchmarkPayload, BenchmarkRole> _eagerValidator;
+    private CertificateValidator<BenchmarkPayload, BenchmarkRole> _lazyValidator;
+
+    @Setup
+    public void setUp() throws IOException {
+        final KeyPair issuerKeyPair = BenchmarkKeys.rsa(_keySize);
+        final Certificate<BenchmarkPayload> certificate = Certificate.create(issuerKeyPair.getPublic(), BenchmarkKeys.rsa(CLIENT_KEY_SIZE).getPublic(),
+            BenchmarkRole.firstRoles(NUMBER_OF_ROLES), BenchmarkPayload.ofSize(_payloadSize), _certificateVersion);
+        _signedCertificate = new Signer().sign(certificate, issuerKeyPair.getPrivate());
+        // Certificates expire after 15 minutes, which a complete run takes longer than.
+        final Date issuedAt = new Date();
+        _eagerValidator = new BenchmarkCertificateValidator(issuerKeyPair, issuedAt);
+        _lazyValidator = new BenchmarkCertificateValidator(issuerKeyPair, issuedAt);
+        _lazyValidator.setDecodingLazily(true);
+    }
+
+    @Benchmark
+    public Certificate<BenchmarkPayload> deserializeAndValidateCertificate() {
+        return _eagerValidator.deserializeAndValidateCertificate(_signedCertificate);
+    }
+
+    @Benchmark
+    public Certificate<BenchmarkPayload> deserializeAndValidateCertificateLazily() {
+        return _lazyValidator.deserializeAndValidateCertificate(_signedCertificate);
+    }
+
+    private static final class BenchmarkCertificateValidator extends CertificateValidator<BenchmarkPayload, BenchmarkRole> {
+
+        private BenchmarkCertificateValidator(final KeyPair issuerKeyPair, final Date now) {
+            super(Collections.singletonList(issuerKeyPair.getPublic()));
+            setDateProvider(new DateProvider() {
+                @Override
+                public Date now() {
+                    return now;
+                }
+            });
+        }
+
+        @Override
+        protected DeserializingFactory<BenchmarkPayload> deserializingFactory() {
+            return BenchmarkPayload.FACTORY;
+        }
+
+        @Override
+        protected RolesDeserializer<BenchmarkRole> roleCodeDeserializer() {
+            return BenchmarkRole.DESERIALIZER;
+        }
+    }
+}
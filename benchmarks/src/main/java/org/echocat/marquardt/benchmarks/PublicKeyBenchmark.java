@@ -0,0 +1,52 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.benchmarks;
+
+import org.echocat.marquardt.common.domain.PublicKeyWithMechanism;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+
+/**
+ * Decoding public keys with {@link PublicKeyWithMechanism#toJavaKey()}, which interns decoded keys, compared with
+ * decoding them with a KeyFactory every time.
+ */
+@State(Scope.Benchmark)
+public class PublicKeyBenchmark {
+
+    @Param({"2048", "4096"})
+    private int _keySize;
+
+    private PublicKeyWithMechanism _publicKeyWithMechanism;
+    private byte[] _encoded;
+
+    @Setup
+    public void setUp() {
+        final PublicKey publicKey = BenchmarkKeys.rsa(_keySize).getPublic();
+        _publicKeyWithMechanism = new PublicKeyWithMechanism(publicKey);
+        _encoded = publicKey.getEncoded();
+    }
+
+    @Benchmark
+    public PublicKey toJavaKey() {
+        return _publicKeyWithMechanism.toJavaKey();
+    }
+
+    @Benchmark
+    public PublicKey decodeWithKeyFactory() throws GeneralSecurityException {
+        return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(_encoded));
+    }
+}
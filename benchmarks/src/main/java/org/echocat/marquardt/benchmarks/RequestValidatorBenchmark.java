@@ -0,0 +1,59 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.benchmarks;
+
+import org.echocat.marquardt.common.Signer;
+import org.echocat.marquardt.common.web.RequestHeaders;
+import org.echocat.marquardt.common.web.RequestValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+
+import static org.apache.commons.codec.binary.Base64.encodeBase64String;
+
+/**
+ * Verifying the client signature of a request with {@link RequestValidator#isValid}. The request carries a
+ * certificate header of the given size, as sent by clients.
+ */
+@State(Scope.Benchmark)
+public class RequestValidatorBenchmark {
+
+    @Param({"2048", "4096"})
+    private int _keySize;
+    @Param({"512", "2048"})
+    private int _certificateHeaderSize;
+
+    private final RequestValidator _requestValidator = new RequestValidator();
+    private MockHttpServletRequest _request;
+    private PublicKey _publicKey;
+
+    @Setup
+    public void setUp() {
+        final KeyPair keyPair = BenchmarkKeys.rsa(_keySize);
+        _publicKey = keyPair.getPublic();
+        _request = new MockHttpServletRequest("POST", "/api/service/resource");
+        _request.addHeader("Content-Length", "42");
+        _request.addHeader("Date", "Sat, 17 Oct 2015 10:00:00 GMT");
+        _request.addHeader("Content-MD5", "Q2hlY2sgSW50ZWdyaXR5IQ==");
+        _request.addHeader(RequestHeaders.X_CERTIFICATE, new String(new char[_certificateHeaderSize]).replace('\0', 'A'));
+        final byte[] signature = new Signer().signatureOf(_requestValidator.extractSignedBytesFromRequest(_request), keyPair.getPrivate());
+        _request.addHeader(RequestHeaders.X_SIGNATURE, encodeBase64String(signature));
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return _requestValidator.isValid(_request, _publicKey);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.benchmarks;
+
+import org.echocat.marquardt.common.domain.certificate.Role;
+import org.echocat.marquardt.common.serialization.RolesSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Set;
+
+/**
+ * Encoding roles with {@link RolesSerializer} and decoding them with a RolesDeserializer.
+ */
+@State(Scope.Benchmark)
+public class RolesBenchmark {
+
+    @Param({"1", "8", "60"})
+    private int _numberOfRoles;
+
+    private Set<BenchmarkRole> _roles;
+    private Set<? extends Role> _deserializedRoles;
+    private long _roleCodes;
+    private BenchmarkRole _lastRole;
+
+    @Setup
+    public void setUp() {
+        _roles = BenchmarkRole.firstRoles(_numberOfRoles);
+        _roleCodes = RolesSerializer.from(_roles);
+        _deserializedRoles = BenchmarkRole.DESERIALIZER.from(_roleCodes);
+        _lastRole = BenchmarkRole.DESERIALIZER.roleOf(_numberOfRoles - 1);
+    }
+
+    @Benchmark
+    public long serialize() {
+        return RolesSerializer.from(_roles);
+    }
+
+    @Benchmark
+    public long serializeDeserialized() {
+        return RolesSerializer.from(_deserializedRoles);
+    }
+
+    @Benchmark
+    public Set<BenchmarkRole> deserialize() {
+        return BenchmarkRole.DESERIALIZER.from(_roleCodes);
+    }
+
+    @Benchmark
+    public boolean deserializeAndCheckRole() {
+        return BenchmarkRole.DESERIALIZER.from(_roleCodes).contains(_lastRole);
+    }
+}
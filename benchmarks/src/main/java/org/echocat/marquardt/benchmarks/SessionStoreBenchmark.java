@@ -0,0 +1,116 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.benchmarks;
+
+import org.echocat.marquardt.authority.persistence.InMemorySessionStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups and refreshes of sessions in an {@link InMemorySessionStore}, run by 4 threads to include contention on the
+ * striped indexes. Sessions carry certificates of a realistic size.
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+public class SessionStoreBenchmark {
+
+    private static final int CERTIFICATE_SIZE = 800;
+    private static final int PUBLIC_KEY_SIZE = 294;
+    private static final long SESSION_VALIDITY = TimeUnit.DAYS.toMillis(60);
+
+    @Param({"10000", "1000000"})
+    private int _numberOfSessions;
+
+    private InMemorySessionStore<BenchmarkSession> _store;
+    private BenchmarkSession[] _sessions;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        _store = new InMemorySessionStore<>(BenchmarkSession::new);
+        _sessions = new BenchmarkSession[_numberOfSessions];
+        for (int i = 0; i < _numberOfSessions; i++) {
+            final BenchmarkSession session = _store.createTransient();
+            session.setSessionId(UUID.randomUUID());
+            session.setUserId(UUID.randomUUID());
+            session.setPublicKey(randomBytes(random, PUBLIC_KEY_SIZE));
+            session.setCertificate(randomBytes(random, CERTIFICATE_SIZE));
+            session.setExpiresAt(new Date(System.currentTimeMillis() + SESSION_VALIDITY));
+            _sessions[i] = _store.save(session);
+        }
+    }
+
+    @Benchmark
+    public Optional<BenchmarkSession> findByCertificate(final ThreadState threadState) {
+        return _store.findByCertificate(threadState.nextSession(_sessions).getCertificate());
+    }
+
+    @Benchmark
+    public Optional<BenchmarkSession> findBySessionIdOrCertificate(final ThreadState threadState) {
+        return _store.findBySessionIdOrCertificate(threadState.nextSession(_sessions).getCertificate());
+    }
+
+    @Benchmark
+    public boolean existsActiveSession(final ThreadState threadState) {
+        final BenchmarkSession session = threadState.nextSession(_sessions);
+        return _store.existsActiveSession(session.getUserId(), session.getPublicKey(), threadState._now);
+    }
+
+    @Benchmark
+    public BenchmarkSession refresh(final ThreadState threadState) {
+        final BenchmarkSession session = threadState.nextSession(_sessions);
+        session.setCertificate(threadState.nextCertificate());
+        session.setExpiresAt(new Date(System.currentTimeMillis() + SESSION_VALIDITY));
+        return _store.save(session);
+    }
+
+    private static byte[] randomBytes(final Random random, final int size) {
+        final byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private final Random _random = new Random();
+        private final Date _now = new Date();
+        private byte[] _certificate;
+        private long _refreshes;
+
+        @Setup
+        public void setUp() {
+            _certificate = randomBytes(_random, CERTIFICATE_SIZE);
+        }
+
+        private BenchmarkSession nextSession(final BenchmarkSession[] sessions) {
+            return sessions[_random.nextInt(sessions.length)];
+        }
+
+        /**
+         * @return A new certificate, unique like the ones a refresh issues.
+         */
+        private byte[] nextCertificate() {
+            final byte[] certificate = _certificate.clone();
+            ByteBuffer.wrap(certificate).putLong(++_refreshes).putInt(System.identityHashCode(this));
+            return certificate;
+        }
+    }
+}
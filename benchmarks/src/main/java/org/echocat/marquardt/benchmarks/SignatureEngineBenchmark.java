@@ -0,0 +1,70 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.benchmarks;
+
+import org.echocat.marquardt.common.domain.Signature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Random;
+
+/**
+ * Compares signing and validating with a fresh java.security.Signature engine per call (as done before engines were
+ * cached per thread) with the engines cached behind {@link Signature.Mechanism}.
+ */
+@State(Scope.Benchmark)
+public class SignatureEngineBenchmark {
+
+    private static final Signature.Mechanism MECHANISM = Signature.Mechanism.rsa;
+
+    private KeyPair _keyPair;
+    private byte[] _content;
+    private Signature _signature;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        _keyPair = generator.generateKeyPair();
+        _content = new byte[256];
+        new Random(42).nextBytes(_content);
+        _signature = Signature.createFor(_content, _keyPair.getPrivate(), MECHANISM);
+    }
+
+    @Benchmark
+    public byte[] signWithFreshEngine() throws GeneralSecurityException {
+        final java.security.Signature algorithm = MECHANISM.createAlgorithm();
+        algorithm.initSign(_keyPair.getPrivate());
+        algorithm.update(_content);
+        return algorithm.sign();
+    }
+
+    @Benchmark
+    public Signature signWithCachedEngine() {
+        return Signature.createFor(_content, _keyPair.getPrivate(), MECHANISM);
+    }
+
+    @Benchmark
+    public boolean validateWithFreshEngine() throws GeneralSecurityException {
+        final java.security.Signature algorithm = MECHANISM.createAlgorithm();
+        algorithm.initVerify(_keyPair.getPublic());
+        algorithm.update(_content);
+        return algorithm.verify(_signature.getValue());
+    }
+
+    @Benchmark
+    public boolean validateWithCachedEngine() {
+        return _signature.isValidFor(_content, _keyPair.getPublic());
+    }
+}
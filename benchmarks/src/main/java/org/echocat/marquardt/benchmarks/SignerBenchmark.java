@@ -0,0 +1,46 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.benchmarks;
+
+import org.echocat.marquardt.common.Signer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.security.PrivateKey;
+
+/**
+ * Signing a payload with {@link Signer#sign}, including its serialization.
+ */
+@State(Scope.Benchmark)
+public class SignerBenchmark {
+
+    @Param({"2048", "4096"})
+    private int _keySize;
+    @Param({"64", "1024", "16384"})
+    private int _payloadSize;
+
+    private final Signer _signer = new Signer();
+    private PrivateKey _privateKey;
+    private BenchmarkPayload _payload;
+
+    @Setup
+    public void setUp() {
+        _privateKey = BenchmarkKeys.rsa(_keySize).getPrivate();
+        _payload = BenchmarkPayload.ofSize(_payloadSize);
+    }
+
+    @Benchmark
+    public byte[] sign() throws IOException {
+        return _signer.sign(_payload, _privateKey);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.benchmarks;
+
+import com.google.common.base.Function;
+import org.echocat.marquardt.common.Signer;
+import org.echocat.marquardt.common.Validator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.PublicKey;
+
+/**
+ * Deserializing a signed payload and verifying its signature with {@link Validator#deserializeAndValidate}, from a
+ * byte array and in place from a direct buffer.
+ */
+@State(Scope.Benchmark)
+public class ValidatorBenchmark {
+
+    @Param({"2048", "4096"})
+    private int _keySize;
+    @Param({"64", "1024", "16384"})
+    private int _payloadSize;
+
+    private final Validator _validator = new Validator();
+    private byte[] _signed;
+    private ByteBuffer _signedInDirectBuffer;
+    private Function<BenchmarkPayload, PublicKey> _publicKeyProvider;
+
+    @Setup
+    public void setUp() throws IOException {
+        final KeyPair keyPair = BenchmarkKeys.rsa(_keySize);
+        _signed = new Signer().sign(BenchmarkPayload.ofSize(_payloadSize), keyPair.getPrivate());
+        _signedInDirectBuffer = ByteBuffer.allocateDirect(_signed.length);
+        _signedInDirectBuffer.put(_signed).flip();
+        _publicKeyProvider = payload -> keyPair.getPublic();
+    }
+
+    @Benchmark
+    public BenchmarkPayload deserializeAndValidate() {
+        return _validator.deserializeAndValidate(_signed, BenchmarkPayload.FACTORY, _publicKeyProvider);
+    }
+
+    @Benchmark
+    public BenchmarkPayload deserializeAndValidateDirectBuffer() {
+        return _validator.deserializeAndValidate(_signedInDirectBuffer, BenchmarkPayload.FACTORY, _publicKeyProvider);
+    }
+}
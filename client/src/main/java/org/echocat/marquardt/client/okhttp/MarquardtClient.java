@@ -21,6 +21,7 @@ import com.squareup.okhttp.Request.Builder;
 import com.squareup.okhttp.RequestBody;
 import com.squareup.okhttp.Response;
 import okio.Buffer;
+import org.apache.commons.lang3.time.FastDateFormat;
 import org.echocat.marquardt.client.Client;
 import org.echocat.marquardt.client.util.Md5Creator;
 import org.echocat.marquardt.client.util.ResponseStatusTranslation;
@@ -40,8 +41,10 @@ import org.echocat.marquardt.common.web.SignatureHeaders;
 
 import java.io.IOException;
 import java.security.PublicKey;
+import java.security.SecureRandom;
 import java.util.Collection;
 import java.util.Locale;
+import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
 import static org.apache.commons.codec.binary.Base64.decodeBase64;
@@ -66,6 +69,7 @@ public class MarquardtClient<SIGNABLE extends Signable, ROLE extends Role> imple
     private static final String PUT_METHOD = "PUT";
     private static final String DELETE_METHOD = "DELETE";
     private static final String ACCEPT_LANGUAGE_HEADER = "Accept-Language";
+    private static final FastDateFormat HTTP_DATE_FORMAT = FastDateFormat.getInstance("EEE, dd MMM yyyy HH:mm:ss zzz", TimeZone.getTimeZone("GMT"), Locale.US);
 
     private final OkHttpClient _httpClient = new OkHttpClient();
     private final OkHttpClient _addSignedHeaderHttpClient = new OkHttpClient();
@@ -77,6 +81,9 @@ public class MarquardtClient<SIGNABLE extends Signable, ROLE extends Role> imple
     private final KeyPairProvider _clientKeyProvider;
     private DateProvider _dateProvider = new DateProvider();
 
+    private static final int NONCE_LENGTH = 16;
+    private static final SecureRandom NONCE_RANDOM = new SecureRandom();
+
     private static final Gson GSON = new GsonBuilder().registerTypeAdapter(PublicKey.class, new PublicKeyAdapter()).create();
     private Locale _locale = Locale.getDefault();
 
@@ -106,9 +113,15 @@ public class MarquardtClient<SIGNABLE extends Signable, ROLE extends Role> imple
                         if (originalRequest.body() != null) {
                             originalRequest.body().writeTo(requestBodyBuffer);
                         }
-                        final Request requestWithContentMd5 = originalRequest.newBuilder()
-                                .addHeader(SignatureHeaders.CONTENT.getHeaderName(), encodeBase64URLSafeString(Md5Creator.create(requestBodyBuffer.readByteArray())))
-                                .build();
+                        final Builder requestWithContentMd5Builder = originalRequest.newBuilder()
+                                .addHeader(SignatureHeaders.CONTENT.getHeaderName(), encodeBase64URLSafeString(Md5Creator.create(requestBodyBuffer.readByteArray())));
+                        if (originalRequest.header(SignatureHeaders.DATE.getHeaderName()) == null) {
+                            requestWithContentMd5Builder.addHeader(SignatureHeaders.DATE.getHeaderName(), HTTP_DATE_FORMAT.format(_dateProvider.now()));
+                        }
+                        if (originalRequest.header(SignatureHeaders.REQUEST_NONCE.getHeaderName()) == null) {
+                            requestWithContentMd5Builder.addHeader(SignatureHeaders.REQUEST_NONCE.getHeaderName(), createNonce());
+                        }
+                        final Request requestWithContentMd5 = requestWithContentMd5Builder.build();
 
                         final Request requestWithSignature = requestWithContentMd5.newBuilder()
                                 .addHeader(X_SIGNATURE, new String(_requestSigner.getSignature(requestWithContentMd5, _clientKeyProvider.getPrivateKey())))
@@ -267,7 +280,7 @@ public class MarquardtClient<SIGNABLE extends Signable, ROLE extends Role> imple
         final Builder builder = new Builder().url(url);
         setRequestHttpMethod(httpMethod, body, builder);
         return builder
-                .addHeader(SignatureHeaders.X_CERTIFICATE.getHeaderName(), encodeBase64URLSafeString(certificate.getContent()))
+                .addHeader(SignatureHeaders.X_CERTIFICATE.getHeaderName(), certificate.getHeaderValue())
                 .addHeader(ACCEPT_LANGUAGE_HEADER, _locale.toLanguageTag())
                 .build();
     }
@@ -285,4 +298,10 @@ public class MarquardtClient<SIGNABLE extends Signable, ROLE extends Role> imple
             throw new IllegalArgumentException("HttpMethod " + httpMethod + " is not supported by this client.");
         }
     }
+
+    private static String createNonce() {
+        final byte[] nonce = new byte[NONCE_LENGTH];
+        NONCE_RANDOM.nextBytes(nonce);
+        return encodeBase64URLSafeString(nonce);
+    }
 }
\ No newline at end of file
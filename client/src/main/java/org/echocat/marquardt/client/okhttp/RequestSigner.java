@@ -8,12 +8,13 @@
 
 package org.echocat.marquardt.client.okhttp;
 
-import com.google.common.primitives.Ints;
+import com.google.common.base.Function;
 import com.squareup.okhttp.Request;
 import org.echocat.marquardt.common.Signer;
+import org.echocat.marquardt.common.domain.Signature;
+import org.echocat.marquardt.common.web.CanonicalRequestEncoder;
 import org.echocat.marquardt.common.web.SignatureHeaders;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.security.PrivateKey;
 
@@ -24,11 +25,22 @@ import static org.apache.commons.codec.binary.Base64.encodeBase64;
  */
 public class RequestSigner {
 
-    private final Signer _signer = new Signer();
+    private final Signer _signer;
+
+    public RequestSigner() {
+        this(new Signer());
+    }
+
+    /**
+     * @param signer Signer to sign requests with, e.g. one that prefers a specific signature mechanism.
+     */
+    public RequestSigner(final Signer signer) {
+        _signer = signer;
+    }
 
     /**
      * Creates a signature for the request with the provided private key. The signature will be based on
-     * the request headers specified in {@link SignatureHeaders}.
+     * the request headers specified in {@link SignatureHeaders}, encoded by {@link CanonicalRequestEncoder}.
      *
      * @param request       the request to be signed
      * @param keyToSignWith private key to be used for the signature
@@ -36,24 +48,17 @@ public class RequestSigner {
      * @throws IOException
      */
     public byte[] getSignature(final Request request, final PrivateKey keyToSignWith) throws IOException {
-        try (final ByteArrayOutputStream bytesToSign = new ByteArrayOutputStream()) {
-            writeRequestTo(request, bytesToSign);
-            return encodeBase64(getSigner().signatureOf(bytesToSign.toByteArray(), keyToSignWith));
-        }
+        final Signature signature = CanonicalRequestEncoder.sign(request.method(), request.uri().getPath(), headersOf(request), keyToSignWith, getSigner().mechanismFor(keyToSignWith));
+        return encodeBase64(signature.getContent());
     }
 
-    private void writeRequestTo(final Request request, final ByteArrayOutputStream bytesToSign) throws IOException {
-        final byte[] requestBytes = (request.method() + " " + request.uri().getPath()).getBytes();
-        bytesToSign.write(Ints.toByteArray(requestBytes.length));
-        bytesToSign.write(requestBytes);
-        for (final SignatureHeaders headerToInclude : SignatureHeaders.values()) {
-            final String headerValue = request.header(headerToInclude.getHeaderName());
-            if (headerValue != null) {
-                final byte[] headerBytes = (headerToInclude.getHeaderName() + ":" + headerValue).getBytes();
-                bytesToSign.write(Ints.toByteArray(headerBytes.length));
-                bytesToSign.write(headerBytes);
+    private static Function<String, String> headersOf(final Request request) {
+        return new Function<String, String>() {
+            @Override
+            public String apply(final String headerName) {
+                return request.header(headerName);
             }
-        }
+        };
     }
 
     public Signer getSigner() {
@@ -9,23 +9,34 @@
 package org.echocat.marquardt.common;
 
 import com.google.common.base.Function;
-import com.google.common.collect.Lists;
 import org.echocat.marquardt.common.domain.DeserializingFactory;
 import org.echocat.marquardt.common.domain.Signable;
+import org.echocat.marquardt.common.domain.Signature;
 import org.echocat.marquardt.common.domain.certificate.Certificate;
 import org.echocat.marquardt.common.domain.certificate.CertificateFactory;
+import org.echocat.marquardt.common.domain.certificate.LazyCertificate;
 import org.echocat.marquardt.common.domain.certificate.Role;
 import org.echocat.marquardt.common.exceptions.ExpiredCertificateException;
 import org.echocat.marquardt.common.exceptions.InvalidCertificateException;
+import org.echocat.marquardt.common.exceptions.RevokedCertificateException;
 import org.echocat.marquardt.common.exceptions.SignatureValidationFailedException;
+import org.echocat.marquardt.common.keyprovisioning.TrustedKeyRegistry;
+import org.echocat.marquardt.common.metrics.CounterMetric;
+import org.echocat.marquardt.common.metrics.MetricsRecorder;
+import org.echocat.marquardt.common.metrics.TimerMetric;
+import org.echocat.marquardt.common.revocation.RevocationRegistry;
 import org.echocat.marquardt.common.serialization.RolesDeserializer;
 import org.echocat.marquardt.common.util.DateProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.security.PublicKey;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 public abstract class CertificateValidator<SIGNABLE extends Signable, ROLE extends Role> {
 
@@ -37,10 +48,14 @@ public abstract class CertificateValidator<SIGNABLE extends Signable, ROLE exten
             return certificate.getIssuerPublicKey();
         }
     };
-    private final Collection<PublicKey> _trustedPublicKeys;
+    private final TrustedKeyRegistry _trustedKeyRegistry;
     private final Validator _validator = new Validator();
     private final CertificateFactory<SIGNABLE, ROLE> _certificateFactory;
     private DateProvider _dateProvider;
+    private VerifiedCertificateCache<SIGNABLE> _verifiedCertificateCache;
+    private boolean _decodingLazily;
+    private MetricsRecorder _metricsRecorder = MetricsRecorder.NO_OP;
+    private RevocationRegistry _revocationRegistry;
 
     /**
      * Create a certificate validator that trusts a given list of PublicKeys (most likely the keys used by your authority)
@@ -50,7 +65,20 @@ public abstract class CertificateValidator<SIGNABLE extends Signable, ROLE exten
      * @see Validator
      */
     public CertificateValidator(final Collection<PublicKey> trustedPublicKeys) {
-        _trustedPublicKeys = Lists.newArrayList(trustedPublicKeys);
+        this(new TrustedKeyRegistry(trustedPublicKeys));
+    }
+
+    /**
+     * Create a certificate validator that trusts the keys of a registry. Keys replaced in the registry (e.g. on key
+     * rotation) are trusted respectively distrusted immediately, also for certificates in the
+     * VerifiedCertificateCache.
+     *
+     * @param trustedKeyRegistry Registry of keys to trust.
+     *
+     * @see Validator
+     */
+    public CertificateValidator(final TrustedKeyRegistry trustedKeyRegistry) {
+        _trustedKeyRegistry = trustedKeyRegistry;
         _dateProvider = new DateProvider();
         _certificateFactory = new CertificateFactory<SIGNABLE, ROLE>() {
             @Override
@@ -62,6 +90,16 @@ public abstract class CertificateValidator<SIGNABLE extends Signable, ROLE exten
             protected RolesDeserializer<ROLE> getRolesDeserializer() {
                 return roleCodeDeserializer();
             }
+
+            @Override
+            protected TrustedKeyRegistry getTrustedKeyRegistry() {
+                return _trustedKeyRegistry;
+            }
+
+            @Override
+            protected boolean isDecodingLazily() {
+                return _decodingLazily;
+            }
         };
     }
 
@@ -69,6 +107,58 @@ public abstract class CertificateValidator<SIGNABLE extends Signable, ROLE exten
         _dateProvider = dateProvider;
     }
 
+    /**
+     * Enables caching of already verified certificates. Certificates found in the cache are not decoded and their
+     * signature is not checked again. They are still checked for trust and expiry on every call.
+     *
+     * @param verifiedCertificateCache Cache to use or null to disable caching (the default).
+     */
+    public void setVerifiedCertificateCache(final VerifiedCertificateCache<SIGNABLE> verifiedCertificateCache) {
+        _verifiedCertificateCache = verifiedCertificateCache;
+    }
+
+    /**
+     * Enables lazy decoding: Certificates are only scanned before their signature is verified and returned as
+     * LazyCertificate. Their client key, roles and payload are decoded when accessed first.
+     *
+     * @param decodingLazily true to decode lazily; false (the default) to decode eagerly.
+     * @see LazyCertificate
+     */
+    public void setDecodingLazily(final boolean decodingLazily) {
+        _decodingLazily = decodingLazily;
+    }
+
+    /**
+     * Rejects certificates whose client key was revoked after they were issued, e.g. because the client signed out.
+     * Keep the registry up to date with the revocation feed of your authority.
+     *
+     * @param revocationRegistry Registry to check or null to not check revocations (the default).
+     * @see RevokedCertificateException
+     */
+    public void setRevocationRegistry(final RevocationRegistry revocationRegistry) {
+        _revocationRegistry = revocationRegistry;
+    }
+
+    /**
+     * Records the latency of every validation and its outcome (valid, expired, untrusted, invalid signature or
+     * malformed).
+     *
+     * @param metricsRecorder Recorder to use. {@link MetricsRecorder#NO_OP} by default.
+     */
+    public void setMetricsRecorder(final MetricsRecorder metricsRecorder) {
+        _metricsRecorder = metricsRecorder;
+    }
+
+    /**
+     * Restricts the signature mechanisms accepted for certificates.
+     *
+     * @param acceptedMechanisms Mechanisms to accept. All mechanisms are accepted by default.
+     * @see Validator#setAcceptedMechanisms(Collection)
+     */
+    public void setAcceptedSignatureMechanisms(final Collection<Signature.Mechanism> acceptedMechanisms) {
+        _validator.setAcceptedMechanisms(acceptedMechanisms);
+    }
+
     /**
      * Provide your DeserializingFactory for your wrapped signable user information here!
      */
@@ -79,6 +169,10 @@ public abstract class CertificateValidator<SIGNABLE extends Signable, ROLE exten
      */
     protected abstract RolesDeserializer<ROLE> roleCodeDeserializer();
 
+    public TrustedKeyRegistry getTrustedKeyRegistry() {
+        return _trustedKeyRegistry;
+    }
+
     protected CertificateFactory<SIGNABLE, ROLE> getCertificateDeserializingFactory() {
         return _certificateFactory;
     }
@@ -89,26 +183,103 @@ public abstract class CertificateValidator<SIGNABLE extends Signable, ROLE exten
      *
      * @param encodedCertificate bytes of the certificate with it's signature.
      * @return Deserialized Certificate.
-     * @throws InvalidCertificateException If the certificate is from an untrusted authority or expired.
+     * @throws InvalidCertificateException If the certificate is from an untrusted authority, expired or revoked.
      * @throws SignatureValidationFailedException if the signature cannot be read or used.
      */
     public Certificate<SIGNABLE> deserializeAndValidateCertificate(final byte[] encodedCertificate) {
-        final Certificate<SIGNABLE> certificate = _validator.deserializeAndValidate(encodedCertificate, getCertificateDeserializingFactory(), _publicKeyForCertificateProvider);
-        final PublicKey issuerPublicKey = certificate.getIssuerPublicKey();
-        if (!_trustedPublicKeys.contains(issuerPublicKey)) {
-            LOGGER.warn("Attack!! ALERT!!! Duck and cover!!! Certificate '{}' could not be found as trusted certificate.", issuerPublicKey);
-            throw new InvalidCertificateException("certificate key of " + certificate.getPayload() + " is not trusted");
+        //noinspection UseOfObsoleteDateTimeApi
+        return deserializeAndValidateCertificate(encodedCertificate, _dateProvider.now());
+    }
+
+    /**
+     * Validates a batch of certificates in parallel, e.g. when replaying queued messages. Each certificate is checked
+     * like by {@link #deserializeAndValidateCertificate(byte[])} against the same current date; a failing certificate
+     * does not affect the others. Trusted keys are pinned and signature engines are cached per worker thread, so
+     * neither the issuer keys nor the engines are set up again for every certificate.
+     *
+     * @param encodedCertificates bytes of the certificates with their signatures.
+     * @param executor Executor to validate on, e.g. a ForkJoinPool. It is not shut down.
+     * @return One result per certificate, in the order of encodedCertificates. Failed results carry the
+     * InvalidCertificateException, SignatureValidationFailedException or IllegalArgumentException of the item.
+     * @throws IllegalStateException If interrupted while waiting for the results.
+     */
+    public List<ValidationResult<Certificate<SIGNABLE>>> deserializeAndValidateCertificates(final Collection<byte[]> encodedCertificates, final ExecutorService executor) {
+        //noinspection UseOfObsoleteDateTimeApi
+        final Date now = _dateProvider.now();
+        final List<Callable<ValidationResult<Certificate<SIGNABLE>>>> tasks = new ArrayList<>(encodedCertificates.size());
+        for (final byte[] encodedCertificate : encodedCertificates) {
+            tasks.add(new Callable<ValidationResult<Certificate<SIGNABLE>>>() {
+                @Override
+                public ValidationResult<Certificate<SIGNABLE>> call() {
+                    try {
+                        return ValidationResult.valid(deserializeAndValidateCertificate(encodedCertificate, now));
+                    } catch (final RuntimeException e) {
+                        return ValidationResult.invalid(e);
+                    }
+                }
+            });
+        }
+        return Validator.invokeAll(executor, tasks);
+    }
+
+    @SuppressWarnings("UseOfObsoleteDateTimeApi")
+    private Certificate<SIGNABLE> deserializeAndValidateCertificate(final byte[] encodedCertificate, final Date now) {
+        final MetricsRecorder metricsRecorder = _metricsRecorder;
+        final long start = System.nanoTime();
+        try {
+            final Certificate<SIGNABLE> certificate = verify(encodedCertificate, now, metricsRecorder);
+            metricsRecorder.increment(CounterMetric.CERTIFICATE_VALID);
+            return certificate;
+        } catch (final ExpiredCertificateException e) {
+            metricsRecorder.increment(CounterMetric.CERTIFICATE_EXPIRED);
+            throw e;
+        } catch (final RevokedCertificateException e) {
+            metricsRecorder.increment(CounterMetric.CERTIFICATE_REVOKED);
+            throw e;
+        } catch (final InvalidCertificateException e) {
+            metricsRecorder.increment(CounterMetric.CERTIFICATE_UNTRUSTED);
+            throw e;
+        } catch (final SignatureValidationFailedException e) {
+            metricsRecorder.increment(CounterMetric.CERTIFICATE_INVALID_SIGNATURE);
+            throw e;
+        } catch (final RuntimeException e) {
+            metricsRecorder.increment(CounterMetric.CERTIFICATE_MALFORMED);
+            throw e;
+        } finally {
+            metricsRecorder.recordTime(TimerMetric.CERTIFICATE_VALIDATION, System.nanoTime() - start);
+        }
+    }
+
+    @SuppressWarnings("UseOfObsoleteDateTimeApi")
+    private Certificate<SIGNABLE> verify(final byte[] encodedCertificate, final Date now, final MetricsRecorder metricsRecorder) {
+        final VerifiedCertificateCache<SIGNABLE> cache = _verifiedCertificateCache;
+        Certificate<SIGNABLE> certificate = cache != null ? cache.get(encodedCertificate, now) : null;
+        if (certificate == null) {
+            certificate = _validator.deserializeAndValidate(encodedCertificate, getCertificateDeserializingFactory(), _publicKeyForCertificateProvider);
+            throwExceptionWhenIssuerIsNotTrusted(certificate);
+            certificate.setSignedCertificateBytes(encodedCertificate);
+            if (cache != null) {
+                cache.put(encodedCertificate, certificate);
+            }
+        } else {
+            metricsRecorder.increment(CounterMetric.CERTIFICATE_CACHE_HIT);
+            throwExceptionWhenIssuerIsNotTrusted(certificate);
         }
-        certificate.setSignedCertificateBytes(encodedCertificate);
-        if (isExpired(certificate)) {
+        if (now.getTime() > certificate.getExpiresAtInMillis()) {
             throw new ExpiredCertificateException(certificate);
         }
+        final RevocationRegistry revocationRegistry = _revocationRegistry;
+        if (revocationRegistry != null && revocationRegistry.isRevoked(certificate)) {
+            throw new RevokedCertificateException(certificate);
+        }
         return certificate;
     }
 
-    private boolean isExpired(final Certificate<SIGNABLE> certificate) {
-        //noinspection UseOfObsoleteDateTimeApi
-        final Date now = _dateProvider.now();
-        return now.after(certificate.getExpiresAt());
+    private void throwExceptionWhenIssuerIsNotTrusted(final Certificate<SIGNABLE> certificate) {
+        final PublicKey issuerPublicKey = certificate.getIssuerPublicKey();
+        if (!_trustedKeyRegistry.isTrusted(issuerPublicKey)) {
+            LOGGER.warn("Attack!! ALERT!!! Duck and cover!!! Certificate '{}' could not be found as trusted certificate.", issuerPublicKey);
+            throw new InvalidCertificateException("certificate key of " + certificate.getPayload() + " is not trusted");
+        }
     }
 }
\ No newline at end of file
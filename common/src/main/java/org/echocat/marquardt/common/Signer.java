@@ -10,6 +10,7 @@ package org.echocat.marquardt.common;
 
 import com.google.common.primitives.Ints;
 import org.apache.commons.io.IOUtils;
+import org.echocat.marquardt.common.domain.EcKeys;
 import org.echocat.marquardt.common.domain.Signable;
 import org.echocat.marquardt.common.domain.Signature;
 
@@ -26,11 +27,28 @@ import java.security.PrivateKey;
  * Authority uses this to create Certificates.
  * Clients use this to sign their requests to identify as the sender.
  *
+ * The signature mechanism is chosen by the key: The first preferred mechanism applicable to the key is used, otherwise
+ * the key's default mechanism (SHA1withRSA for RSA keys, SHA256withECDSA for EC keys).
+ *
  * @see Signable
  * @see Signature
  */
 public class Signer {
 
+    private final Signature.Mechanism[] _preferredMechanisms;
+
+    public Signer() {
+        this(new Signature.Mechanism[0]);
+    }
+
+    /**
+     * @param preferredMechanisms Mechanisms to use if applicable to the key, in order of preference. Useful to sign
+     *                            with SHA256withRSA instead of SHA1withRSA once all validators support it.
+     */
+    public Signer(@Nonnull final Signature.Mechanism... preferredMechanisms) {
+        _preferredMechanisms = preferredMechanisms.clone();
+    }
+
     /**
      * Signs a Signable using a PrivateKey. Produces byte[] containing the serialized Signable and the Signature.
      *
@@ -60,7 +78,24 @@ public class Signer {
     public byte[] signatureOf(final byte[] contentToSign, final PrivateKey privateKey) {
         final Signature signature = Signature.createFor(contentToSign,
                 privateKey,
-                Signature.Mechanism.rsa);
+                mechanismFor(privateKey));
         return signature.getContent();
     }
+
+    /**
+     * @param privateKey Key to sign with.
+     * @return Mechanism this signer uses for privateKey.
+     * @throws IllegalArgumentException If no mechanism supports the algorithm of privateKey or it is an EC key of
+     *                                  another curve than {@link EcKeys#CURVE_NAME}.
+     */
+    @Nonnull
+    public Signature.Mechanism mechanismFor(@Nonnull final PrivateKey privateKey) {
+        EcKeys.requireSupportedCurve(privateKey);
+        for (final Signature.Mechanism candidate : _preferredMechanisms) {
+            if (candidate.isApplicableTo(privateKey)) {
+                return candidate;
+            }
+        }
+        return Signature.Mechanism.defaultFor(privateKey);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Result of validating one item of a batch: Either the deserialized and validated value or the reason why the
+ * validation failed.
+ *
+ * @param <T> Type of the validated value.
+ * @see Validator#deserializeAndValidateAll(java.util.Collection, org.echocat.marquardt.common.domain.DeserializingFactory, com.google.common.base.Function, java.util.concurrent.ExecutorService)
+ * @see CertificateValidator#deserializeAndValidateCertificates(java.util.Collection, java.util.concurrent.ExecutorService)
+ */
+public final class ValidationResult<T> {
+
+    @Nullable
+    private final T _value;
+    @Nullable
+    private final RuntimeException _failure;
+
+    private ValidationResult(@Nullable final T value, @Nullable final RuntimeException failure) {
+        _value = value;
+        _failure = failure;
+    }
+
+    @Nonnull
+    public static <T> ValidationResult<T> valid(@Nonnull final T value) {
+        return new ValidationResult<>(value, null);
+    }
+
+    @Nonnull
+    public static <T> ValidationResult<T> invalid(@Nonnull final RuntimeException failure) {
+        return new ValidationResult<>(null, failure);
+    }
+
+    public boolean isValid() {
+        return _failure == null;
+    }
+
+    /**
+     * @return The validated value.
+     * @throws RuntimeException The exception the validation failed with, if it failed.
+     */
+    @Nonnull
+    public T get() {
+        if (_failure != null) {
+            throw _failure;
+        }
+        //noinspection ConstantConditions
+        return _value;
+    }
+
+    /**
+     * @return The validated value or null if the validation failed.
+     */
+    @Nullable
+    public T getValue() {
+        return _value;
+    }
+
+    /**
+     * @return The exception the validation failed with (e.g. an InvalidCertificateException or a
+     * SignatureValidationFailedException) or null if it succeeded.
+     */
+    @Nullable
+    public RuntimeException getFailure() {
+        return _failure;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+            .append("_value", _value)
+            .append("_failure", _failure)
+            .toString();
+    }
+}
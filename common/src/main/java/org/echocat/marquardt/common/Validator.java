@@ -9,19 +9,28 @@
 package org.echocat.marquardt.common;
 
 import com.google.common.base.Function;
-import com.google.common.io.CountingInputStream;
-import org.apache.commons.io.IOUtils;
+import org.echocat.marquardt.common.domain.AcceptedMechanisms;
+import org.echocat.marquardt.common.domain.ByteBufferDeserializingFactory;
 import org.echocat.marquardt.common.domain.DeserializingFactory;
 import org.echocat.marquardt.common.domain.Signable;
 import org.echocat.marquardt.common.domain.Signature;
 import org.echocat.marquardt.common.exceptions.SignatureValidationFailedException;
-import org.echocat.marquardt.common.util.InputStreamUtils;
+import org.echocat.marquardt.common.util.ByteBufferInputStream;
+import org.echocat.marquardt.common.util.BinaryReader;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Validates and deserializes signed Signables.
@@ -32,6 +41,22 @@ import java.security.PublicKey;
  */
 public class Validator {
 
+    private volatile AcceptedMechanisms _acceptedMechanisms = AcceptedMechanisms.ALL;
+
+    /**
+     * Restricts the signature mechanisms this validator accepts. Signatures of other mechanisms fail validation.
+     *
+     * @param acceptedMechanisms Mechanisms to accept. All mechanisms are accepted by default.
+     */
+    public void setAcceptedMechanisms(@Nonnull final Collection<Signature.Mechanism> acceptedMechanisms) {
+        _acceptedMechanisms = AcceptedMechanisms.of(acceptedMechanisms);
+    }
+
+    @Nonnull
+    public Set<Signature.Mechanism> getAcceptedMechanisms() {
+        return _acceptedMechanisms.asSet();
+    }
+
     /**
      * Deserializes and validates signed Signables.
      *
@@ -41,39 +66,60 @@ public class Validator {
      * @param <T> Type of your Signable. Also Certificate uses this.
      * @return Deserialized and validated Signable.
      *
-     * @throws SignatureValidationFailedException If the signature cannot be read or no key is provided to check.
+     * @throws SignatureValidationFailedException If the signature cannot be read, its mechanism is not accepted or no
+     * key is provided to check.
      * @throws IllegalArgumentException when Signable cannot be deserialized from content using the provided factory or
      * no Signature can be extracted from provided content.
      */
     @Nonnull
     public <T extends Signable> T deserializeAndValidate(final byte[] content, final DeserializingFactory<T> signableDeserializingFactory, final Function<T, PublicKey> publicKeyProvider) {
-        final ByteArrayInputStream inputStream = new ByteArrayInputStream(content);
+        return deserializeAndValidate(ByteBuffer.wrap(content), signableDeserializingFactory, publicKeyProvider);
+    }
+
+    /**
+     * Deserializes and validates signed Signables in place. The signed part of content is neither copied nor read
+     * twice; it is passed to the signature engine as a region of the buffer. Factories implementing
+     * ByteBufferDeserializingFactory read directly from the buffer, all others through an InputStream view of it.
+     *
+     * @param content Serialized Signable including Signature, from the buffer's position to its limit. The position
+     *                of the given buffer is not changed.
+     * @param signableDeserializingFactory Factory to deserialize Signable with.
+     * @param publicKeyProvider to return matching public key for given signable.
+     * @param <T> Type of your Signable. Also Certificate uses this.
+     * @return Deserialized and validated Signable.
+     *
+     * @throws SignatureValidationFailedException If the signature cannot be read, its mechanism is not accepted or no
+     * key is provided to check.
+     * @throws IllegalArgumentException when Signable cannot be deserialized from content using the provided factory or
+     * no Signature can be extracted from provided content.
+     * @see ByteBufferDeserializingFactory
+     */
+    @Nonnull
+    public <T extends Signable> T deserializeAndValidate(final ByteBuffer content, final DeserializingFactory<T> signableDeserializingFactory, final Function<T, PublicKey> publicKeyProvider) {
+        final ByteBuffer buffer = content.duplicate();
+        final int signableStart = buffer.position();
         try {
-            final CountingInputStream bufferedInputStream = new CountingInputStream(inputStream);
-            try {
-                bufferedInputStream.mark(0);
-                final T signable = signableDeserializingFactory.consume(bufferedInputStream);
+            final T signable = consume(buffer, signableDeserializingFactory);
+            final int signableEnd = buffer.position();
 
-                final byte[] signableBytes = readSignableBytesAgainForLaterValidation(bufferedInputStream);
+            final PublicKey publicKey = publicKeyProvider.apply(signable);
+            if (publicKey == null) {
+                throw new SignatureValidationFailedException("no public key provided");
+            }
+            final Signature signature = new Signature(BinaryReader.of(buffer).readLengthPrefixedBytes(Signature.MAXIMUM_LENGTH));
+            if (!_acceptedMechanisms.accepts(signature.getMechanism())) {
+                throw new SignatureValidationFailedException("signature mechanism " + signature.getMechanism() + " is not accepted");
+            }
 
-                final PublicKey publicKey = publicKeyProvider.apply(signable);
-                if (publicKey == null) {
-                    throw new SignatureValidationFailedException("no public key provided");
-                }
-                final int signatureLength = InputStreamUtils.readInt(bufferedInputStream);
-                final Signature signature = new Signature(InputStreamUtils.readBytes(bufferedInputStream, signatureLength));
-                if (signature.isValidFor(signableBytes, publicKey)) {
-                    return signable;
-                }
-                throw new SignatureValidationFailedException("signature is invalid for provided public key");
-            } finally {
-                IOUtils.closeQuietly(bufferedInputStream);
+            buffer.limit(signableEnd);
+            buffer.position(signableStart);
+            if (signature.isValidFor(buffer, publicKey)) {
+                return signable;
             }
+            throw new SignatureValidationFailedException("signature is invalid for provided public key");
         } catch (final IOException e) {
             throw new IllegalArgumentException("Signable cannot be deserialized using " + signableDeserializingFactory.getClass()
                     + " or content is wrong / contains no signature.", e);
-        } finally {
-            IOUtils.closeQuietly(inputStream);
         }
     }
 
@@ -86,7 +132,8 @@ public class Validator {
      * @param <T> Type of your Signable. Also Certificate uses this.
      * @return Deserialized and validated Signable.
      *
-     * @throws SignatureValidationFailedException If the signature cannot be read or no key is provided to check.
+     * @throws SignatureValidationFailedException If the signature cannot be read, its mechanism is not accepted or no
+     * key is provided to check.
      * @throws IllegalArgumentException when Signable cannot be deserialized from content using the provided factory or
      * no Signature can be extracted from provided content.
      */
@@ -100,11 +147,60 @@ public class Validator {
         });
     }
 
-    private byte[] readSignableBytesAgainForLaterValidation(final CountingInputStream bufferedInputStream) throws IOException {
-        final int position = (int)bufferedInputStream.getCount();
-        bufferedInputStream.reset();
-        final byte[] bytes = new byte[position];
-        IOUtils.read(bufferedInputStream, bytes, 0, position);
-        return bytes;
+    /**
+     * Deserializes and validates a batch of signed Signables in parallel. Each item is validated independently like
+     * {@link #deserializeAndValidate(byte[], DeserializingFactory, Function)}; a failing item does not affect the
+     * others. Signature engines are cached per worker thread and stay initialized while consecutive items are signed
+     * with the same key instance, so batches of one issuer (whose key is pinned) set up each engine only once.
+     *
+     * @param contents Serialized Signables including Signature.
+     * @param signableDeserializingFactory Factory to deserialize Signables with.
+     * @param publicKeyProvider to return matching public key for given signable.
+     * @param executor Executor to validate on, e.g. a ForkJoinPool. It is not shut down.
+     * @param <T> Type of your Signable. Also Certificate uses this.
+     * @return One result per content, in the order of contents.
+     * @throws IllegalStateException If interrupted while waiting for the results.
+     */
+    @Nonnull
+    public <T extends Signable> List<ValidationResult<T>> deserializeAndValidateAll(final Collection<byte[]> contents, final DeserializingFactory<T> signableDeserializingFactory, final Function<T, PublicKey> publicKeyProvider, final ExecutorService executor) {
+        final List<Callable<ValidationResult<T>>> tasks = new ArrayList<>(contents.size());
+        for (final byte[] content : contents) {
+            tasks.add(new Callable<ValidationResult<T>>() {
+                @Override
+                public ValidationResult<T> call() {
+                    try {
+                        return ValidationResult.valid(deserializeAndValidate(content, signableDeserializingFactory, publicKeyProvider));
+                    } catch (final RuntimeException e) {
+                        return ValidationResult.invalid(e);
+                    }
+                }
+            });
+        }
+        return invokeAll(executor, tasks);
+    }
+
+    @Nonnull
+    static <R> List<R> invokeAll(final ExecutorService executor, final List<Callable<R>> tasks) {
+        try {
+            final List<Future<R>> futures = executor.invokeAll(tasks);
+            final List<R> results = new ArrayList<>(futures.size());
+            for (final Future<R> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while validating batch.", e);
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException("Could not validate batch.", e.getCause());
+        }
+    }
+
+    @Nonnull
+    private <T extends Signable> T consume(final ByteBuffer buffer, final DeserializingFactory<T> signableDeserializingFactory) throws IOException {
+        if (signableDeserializingFactory instanceof ByteBufferDeserializingFactory) {
+            return ((ByteBufferDeserializingFactory<T>) signableDeserializingFactory).consume(buffer);
+        }
+        return signableDeserializingFactory.consume(new ByteBufferInputStream(buffer));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,113 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.echocat.marquardt.common.domain.Signable;
+import org.echocat.marquardt.common.domain.certificate.Certificate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded, concurrent cache of certificates that already passed signature and trust validation. Entries are keyed by
+ * the SHA-256 digest of the encoded certificate bytes, so only byte-identical certificates share an entry.
+ *
+ * Entries are evicted by size and at the latest after the configured maximum certificate lifetime (certificates issued
+ * by the authority live 15 minutes). Certificates that are found expired on a lookup are evicted immediately. The
+ * cache never replaces the expiry check of the CertificateValidator, it only saves the decoding and signature check.
+ *
+ * A hit returns the cached instance to every caller. Certificates are immutable once their signed bytes are set: their
+ * expiry date is returned as a copy, their roles cannot be modified and their signed bytes cannot be replaced. Payloads
+ * of cached certificates are shared as well and must not be mutated.
+ *
+ * @param <SIGNABLE> Class of wrapped payload of the cached certificates.
+ * @see CertificateValidator#setVerifiedCertificateCache(VerifiedCertificateCache)
+ */
+public class VerifiedCertificateCache<SIGNABLE extends Signable> {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+    public static final long DEFAULT_MAXIMUM_CERTIFICATE_LIFETIME_IN_MINUTES = 15;
+
+    private static final HashFunction DIGEST = Hashing.sha256();
+
+    private final Cache<HashCode, Certificate<SIGNABLE>> _certificates;
+
+    /**
+     * Creates a cache with {@link #DEFAULT_MAXIMUM_SIZE} entries and a lifetime of
+     * {@link #DEFAULT_MAXIMUM_CERTIFICATE_LIFETIME_IN_MINUTES} minutes.
+     */
+    public VerifiedCertificateCache() {
+        this(DEFAULT_MAXIMUM_SIZE, DEFAULT_MAXIMUM_CERTIFICATE_LIFETIME_IN_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @param maximumSize Maximum number of certificates to keep.
+     * @param maximumCertificateLifetime Maximum time a certificate is kept after it was verified. Should not be
+     *                                   shorter than the lifetime of certificates issued by your authority.
+     * @param unit Unit of maximumCertificateLifetime.
+     */
+    public VerifiedCertificateCache(final long maximumSize, final long maximumCertificateLifetime, @Nonnull final TimeUnit unit) {
+        _certificates = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(maximumCertificateLifetime, unit)
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * @param encodedCertificate bytes of the certificate with it's signature.
+     * @param now Current date. Certificates expired at this date are evicted and not returned.
+     * @return Previously verified certificate or null if there is none (or it is expired).
+     */
+    @Nullable
+    public Certificate<SIGNABLE> get(@Nonnull final byte[] encodedCertificate, @Nonnull final Date now) {
+        final HashCode digest = digestOf(encodedCertificate);
+        final Certificate<SIGNABLE> certificate = _certificates.getIfPresent(digest);
+        if (certificate != null && now.getTime() > certificate.getExpiresAtInMillis()) {
+            _certificates.invalidate(digest);
+            return null;
+        }
+        return certificate;
+    }
+
+    /**
+     * @param encodedCertificate bytes of the certificate with it's signature.
+     * @param certificate Certificate that was successfully verified from encodedCertificate.
+     */
+    public void put(@Nonnull final byte[] encodedCertificate, @Nonnull final Certificate<SIGNABLE> certificate) {
+        _certificates.put(digestOf(encodedCertificate), certificate);
+    }
+
+    public void invalidateAll() {
+        _certificates.invalidateAll();
+    }
+
+    public long size() {
+        return _certificates.size();
+    }
+
+    public long getHitCount() {
+        return _certificates.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return _certificates.stats().missCount();
+    }
+
+    private static HashCode digestOf(final byte[] encodedCertificate) {
+        return DIGEST.hashBytes(encodedCertificate);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.domain;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Immutable set of signature mechanisms a validator accepts. Signatures of other mechanisms fail validation.
+ *
+ * @see org.echocat.marquardt.common.Validator#setAcceptedMechanisms(Collection)
+ * @see org.echocat.marquardt.common.web.RequestValidator#setAcceptedMechanisms(Collection)
+ */
+public final class AcceptedMechanisms {
+
+    /**
+     * Accepts every mechanism. The default of all validators.
+     */
+    public static final AcceptedMechanisms ALL = new AcceptedMechanisms(EnumSet.allOf(Signature.Mechanism.class));
+
+    @Nonnull
+    private final Set<Signature.Mechanism> _mechanisms;
+
+    private AcceptedMechanisms(@Nonnull final EnumSet<Signature.Mechanism> mechanisms) {
+        _mechanisms = Collections.unmodifiableSet(mechanisms);
+    }
+
+    /**
+     * @param mechanisms Mechanisms to accept. If empty, no signature is accepted.
+     * @return Accepted mechanisms independent of later changes of mechanisms.
+     */
+    @Nonnull
+    public static AcceptedMechanisms of(@Nonnull final Collection<Signature.Mechanism> mechanisms) {
+        return new AcceptedMechanisms(mechanisms.isEmpty() ? EnumSet.noneOf(Signature.Mechanism.class) : EnumSet.copyOf(mechanisms));
+    }
+
+    /**
+     * @param mechanism Mechanism of a signature.
+     * @return true if signatures of mechanism are accepted.
+     */
+    public boolean accepts(@Nonnull final Signature.Mechanism mechanism) {
+        return _mechanisms.contains(mechanism);
+    }
+
+    @Nonnull
+    public Set<Signature.Mechanism> asSet() {
+        return _mechanisms;
+    }
+
+    @Override
+    public String toString() {
+        return _mechanisms.toString();
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.domain;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Factory capable of deserializing a specific Signable in place from a ByteBuffer. Implement this additionally to
+ * DeserializingFactory to let the Validator parse signed content without copying it.
+ *
+ * @param <T> Signable this factory can deserialize.
+ * @see org.echocat.marquardt.common.Validator#deserializeAndValidate(ByteBuffer, DeserializingFactory, com.google.common.base.Function)
+ * @see org.echocat.marquardt.common.util.BinaryReader
+ */
+public interface ByteBufferDeserializingFactory<T extends Signable> extends DeserializingFactory<T> {
+
+    /**
+     * Deserializes Signable from the bytes of a buffer starting at its position. The position must be left directly
+     * behind the last byte of the Signable.
+     *
+     * @param in Buffer to read.
+     * @return A deserialized Signable.
+     * @throws IOException That happens while reading the buffer, ie. an EOFException if it contains too few bytes.
+     */
+    @Nonnull
+    T consume(@Nonnull ByteBuffer in) throws IOException;
+
+}
@@ -0,0 +1,214 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.domain;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.echocat.marquardt.common.exceptions.SecurityMechanismException;
+import org.echocat.marquardt.common.util.BinaryReader;
+import org.echocat.marquardt.common.util.VarLongs;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Intended for internal use only.
+ *
+ * Interns decoded public keys by their encoded bytes. Pinned keys (the trusted keys of issuers) are never evicted, so
+ * there is only one instance per issuer key no matter how many certificates are decoded. Pins are counted per key: A
+ * key stays pinned until it was unpinned as often as it was pinned, so owners of pins do not unpin keys of each other.
+ * All other keys are kept in a bounded cache.
+ *
+ * Also decodes keys from their compact encoding used by certificates of
+ * {@link org.echocat.marquardt.common.domain.certificate.Certificate#COMPACT_VERSION}: RSA keys are encoded as varint
+ * length of the modulus, the modulus and the public exponent (both unsigned, big-endian); keys of other mechanisms as
+ * X.509. Compactly encoded keys are interned in a separate bounded cache. EC keys of other curves than
+ * {@link EcKeys#CURVE_NAME} are rejected with an IllegalArgumentException.
+ *
+ * @see PublicKeyWithMechanism#toJavaKey()
+ * @see PublicKeyWithMechanism#pin(PublicKey)
+ */
+final class DecodedPublicKeys {
+
+    static final long MAXIMUM_SIZE = 10000;
+
+    /**
+     * Read without lock by {@link #decode(PublicKeyWithMechanism.Mechanism, byte[])}, modified while holding its lock.
+     */
+    private static final ConcurrentMap<EncodedKey, PinnedKey> PINNED = new ConcurrentHashMap<>();
+    private static final Cache<EncodedKey, PublicKey> DECODED = CacheBuilder.newBuilder()
+        .maximumSize(MAXIMUM_SIZE)
+        .build();
+
+    private static final Cache<EncodedKey, PublicKey> DECODED_COMPACT = CacheBuilder.newBuilder()
+        .maximumSize(MAXIMUM_SIZE)
+        .build();
+
+    private DecodedPublicKeys() {
+    }
+
+    @Nonnull
+    static PublicKey decode(@Nonnull final PublicKeyWithMechanism.Mechanism mechanism, @Nonnull final byte[] encoded) {
+        final EncodedKey lookupKey = new EncodedKey(mechanism, encoded);
+        final PinnedKey pinned = PINNED.get(lookupKey);
+        if (pinned != null) {
+            return pinned._publicKey;
+        }
+        final PublicKey cached = DECODED.getIfPresent(lookupKey);
+        if (cached != null) {
+            return cached;
+        }
+        final PublicKey decoded = decodeUncached(mechanism, encoded);
+        DECODED.put(new EncodedKey(mechanism, Arrays.copyOf(encoded, encoded.length)), decoded);
+        return decoded;
+    }
+
+    @Nonnull
+    static PublicKey pin(@Nonnull final PublicKeyWithMechanism.Mechanism mechanism, @Nonnull final PublicKey publicKey) {
+        final EncodedKey key = new EncodedKey(mechanism, publicKey.getEncoded());
+        synchronized (PINNED) {
+            PinnedKey pinned = PINNED.get(key);
+            if (pinned == null) {
+                pinned = new PinnedKey(publicKey);
+                PINNED.put(key, pinned);
+            }
+            pinned._references++;
+            return pinned._publicKey;
+        }
+    }
+
+    static boolean unpin(@Nonnull final PublicKeyWithMechanism.Mechanism mechanism, @Nonnull final PublicKey publicKey) {
+        final EncodedKey key = new EncodedKey(mechanism, publicKey.getEncoded());
+        synchronized (PINNED) {
+            final PinnedKey pinned = PINNED.get(key);
+            if (pinned != null && --pinned._references == 0) {
+                PINNED.remove(key);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @Nonnull
+    static PublicKey decodeCompact(@Nonnull final PublicKeyWithMechanism.Mechanism mechanism, @Nonnull final byte[] compact) {
+        final EncodedKey lookupKey = new EncodedKey(mechanism, compact);
+        final PublicKey cached = DECODED_COMPACT.getIfPresent(lookupKey);
+        if (cached != null) {
+            return cached;
+        }
+        final PublicKey decoded = mechanism == PublicKeyWithMechanism.Mechanism.rsa ? decodeCompactRsa(compact) : decodeUncached(mechanism, compact);
+        DECODED_COMPACT.put(new EncodedKey(mechanism, Arrays.copyOf(compact, compact.length)), decoded);
+        return decoded;
+    }
+
+    @Nonnull
+    static byte[] compactEncodingOf(@Nonnull final PublicKeyWithMechanism.Mechanism mechanism, @Nonnull final PublicKey publicKey) throws IOException {
+        if (mechanism != PublicKeyWithMechanism.Mechanism.rsa) {
+            return publicKey.getEncoded();
+        }
+        final RSAPublicKey rsaPublicKey = (RSAPublicKey) publicKey;
+        final byte[] modulus = unsignedBytesOf(rsaPublicKey.getModulus());
+        final byte[] exponent = unsignedBytesOf(rsaPublicKey.getPublicExponent());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(VarLongs.MAX_BYTES + modulus.length + exponent.length);
+        VarLongs.write(out, modulus.length);
+        out.write(modulus);
+        out.write(exponent);
+        return out.toByteArray();
+    }
+
+    @Nonnull
+    private static PublicKey decodeCompactRsa(@Nonnull final byte[] compact) {
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(compact);
+            final BinaryReader reader = BinaryReader.of(buffer);
+            final byte[] modulus = reader.readBytes(reader.readVarLength(compact.length));
+            final byte[] exponent = reader.readBytes(buffer.remaining());
+            final RSAPublicKeySpec spec = new RSAPublicKeySpec(new BigInteger(1, modulus), new BigInteger(1, exponent));
+            final KeyFactory factory = KeyFactory.getInstance(PublicKeyWithMechanism.Mechanism.rsa.getJavaInternalName());
+            return factory.generatePublic(spec);
+        } catch (final GeneralSecurityException | IOException e) {
+            throw new SecurityMechanismException("Could not convert to java key.", e);
+        }
+    }
+
+    @Nonnull
+    private static byte[] unsignedBytesOf(@Nonnull final BigInteger value) {
+        final byte[] bytes = value.toByteArray();
+        return bytes.length > 1 && bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+    }
+
+    @Nonnull
+    private static PublicKey decodeUncached(@Nonnull final PublicKeyWithMechanism.Mechanism mechanism, @Nonnull final byte[] encoded) {
+        try {
+            final X509EncodedKeySpec spec = new X509EncodedKeySpec(encoded);
+            final KeyFactory factory = KeyFactory.getInstance(mechanism.getJavaInternalName());
+            return EcKeys.requireSupportedCurve(factory.generatePublic(spec));
+        } catch (final GeneralSecurityException e) {
+            throw new SecurityMechanismException("Could not convert to java key.", e);
+        }
+    }
+
+    private static final class PinnedKey {
+
+        @Nonnull
+        private final PublicKey _publicKey;
+        /**
+         * Guarded by the lock of {@link #PINNED}.
+         */
+        private int _references;
+
+        private PinnedKey(@Nonnull final PublicKey publicKey) {
+            _publicKey = publicKey;
+        }
+    }
+
+    private static final class EncodedKey {
+
+        @Nonnull
+        private final PublicKeyWithMechanism.Mechanism _mechanism;
+        @Nonnull
+        private final byte[] _encoded;
+        private final int _hashCode;
+
+        private EncodedKey(@Nonnull final PublicKeyWithMechanism.Mechanism mechanism, @Nonnull final byte[] encoded) {
+            _mechanism = mechanism;
+            _encoded = encoded;
+            _hashCode = 31 * mechanism.hashCode() + Arrays.hashCode(encoded);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof EncodedKey)) {
+                return false;
+            }
+            final EncodedKey that = (EncodedKey) o;
+            return _mechanism == that._mechanism && Arrays.equals(_encoded, that._encoded);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hashCode;
+        }
+    }
+}
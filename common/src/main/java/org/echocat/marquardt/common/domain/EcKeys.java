@@ -0,0 +1,60 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.domain;
+
+import javax.annotation.Nonnull;
+import java.math.BigInteger;
+import java.security.Key;
+import java.security.interfaces.ECKey;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.EllipticCurve;
+
+/**
+ * Restricts EC keys to the curve secp256r1 (NIST P-256), the only curve {@link Signature.Mechanism#ecdsa} is meant
+ * for. The JDK accepts keys of many more curves, some of them too weak to be used.
+ */
+public final class EcKeys {
+
+    public static final String CURVE_NAME = "secp256r1";
+
+    private static final EllipticCurve P256_CURVE = new EllipticCurve(
+        new ECFieldFp(new BigInteger("FFFFFFFF00000001000000000000000000000000FFFFFFFFFFFFFFFFFFFFFFFF", 16)),
+        new BigInteger("FFFFFFFF00000001000000000000000000000000FFFFFFFFFFFFFFFFFFFFFFFC", 16),
+        new BigInteger("5AC635D8AA3A93E7B3EBBD55769886BC651D06B0CC53B0F63BCE3C3E27D2604B", 16));
+    private static final ECPoint P256_GENERATOR = new ECPoint(
+        new BigInteger("6B17D1F2E12C4247F8BCE6E563A440F277037D812DEB33A0F4A13945D898C296", 16),
+        new BigInteger("4FE342E2FE1A7F9B8EE7EB4A7C0F9E162BCE33576B315ECECBB6406837BF51F5", 16));
+    private static final BigInteger P256_ORDER = new BigInteger("FFFFFFFF00000000FFFFFFFFFFFFFFFFBCE6FAADA7179E84F3B9CAC2FC632551", 16);
+
+    private EcKeys() {
+    }
+
+    /**
+     * @param key Key of any algorithm.
+     * @return key, if it is no EC key or an EC key of {@link #CURVE_NAME}.
+     * @throws IllegalArgumentException If key is an EC key of another curve.
+     */
+    @Nonnull
+    public static <K extends Key> K requireSupportedCurve(@Nonnull final K key) {
+        if (key instanceof ECKey && !isSupportedCurve(((ECKey) key).getParams())) {
+            throw new IllegalArgumentException("EC keys must use curve " + CURVE_NAME + ".");
+        }
+        return key;
+    }
+
+    private static boolean isSupportedCurve(final ECParameterSpec params) {
+        return params != null
+            && params.getCofactor() == 1
+            && P256_ORDER.equals(params.getOrder())
+            && P256_CURVE.equals(params.getCurve())
+            && P256_GENERATOR.equals(params.getGenerator());
+    }
+}
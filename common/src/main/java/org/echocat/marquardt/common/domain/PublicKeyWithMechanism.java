@@ -9,8 +9,8 @@
 package org.echocat.marquardt.common.domain;
 
 import com.google.common.primitives.Ints;
-import org.echocat.marquardt.common.exceptions.SecurityMechanismException;
-import org.echocat.marquardt.common.util.InputStreamUtils;
+import org.echocat.marquardt.common.util.BinaryReader;
+import org.echocat.marquardt.common.util.VarLongs;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -18,10 +18,8 @@ import javax.annotation.WillNotClose;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.security.GeneralSecurityException;
-import java.security.KeyFactory;
+import java.nio.ByteBuffer;
 import java.security.PublicKey;
-import java.security.spec.X509EncodedKeySpec;
 
 /**
  * Used to serialize / deserialize public keys. Capable of writing a public key and the type / algorithm
@@ -29,8 +27,18 @@ import java.security.spec.X509EncodedKeySpec;
  */
 public class PublicKeyWithMechanism extends BytesWithMechanism<PublicKeyWithMechanism.Mechanism> {
 
+    /**
+     * Largest accepted length of a serialized key, enough for RSA keys of 16384 bits.
+     */
+    public static final int MAXIMUM_LENGTH = 16 * 1024;
+    /**
+     * Largest accepted length of a compactly encoded key.
+     */
+    public static final int MAXIMUM_COMPACT_LENGTH = 16 * 1024;
+
     public enum Mechanism implements BytesWithMechanism.Mechanism {
-        rsa("RSA", Byte.MIN_VALUE, "RSA");
+        rsa("RSA", Byte.MIN_VALUE, "RSA"),
+        ec("EC", (byte) (Byte.MIN_VALUE + 1), "EC");
 
         @Nonnull
         private final String _name;
@@ -116,18 +124,40 @@ public class PublicKeyWithMechanism extends BytesWithMechanism<PublicKeyWithMech
     }
 
     /**
+     * Decoded keys are interned: Decoding the same bytes again returns the same instance as long as it is cached. Keys
+     * that were pinned are always returned as the pinned instance.
      *
      * @return java.security.PublicKey.
+     * @throws IllegalArgumentException If this is an EC key of another curve than {@link EcKeys#CURVE_NAME}.
+     * @see #pin(PublicKey)
      */
     @Nonnull
     public PublicKey toJavaKey() {
-        try {
-            final X509EncodedKeySpec spec = new X509EncodedKeySpec(getValue());
-            final KeyFactory factory = KeyFactory.getInstance(getMechanism().getJavaInternalName());
-            return factory.generatePublic(spec);
-        } catch (final GeneralSecurityException e) {
-            throw new SecurityMechanismException("Could not convert to java key.", e);
-        }
+        return DecodedPublicKeys.decode(getMechanism(), getValue());
+    }
+
+    /**
+     * Pins a key (most likely a trusted key of an authority) so it is not evicted from the cache of decoded keys until
+     * it is {@link #unpin(PublicKey) unpinned}. Every certificate issued with this key will then reference the same
+     * PublicKey instance. Pins are counted, so each call must be matched by one call of {@link #unpin(PublicKey)}.
+     *
+     * @param publicKey Key to pin.
+     * @return The pinned instance. This is publicKey or an equal key that was pinned before.
+     */
+    @Nonnull
+    public static PublicKey pin(@Nonnull final PublicKey publicKey) {
+        return DecodedPublicKeys.pin(Mechanism.mechanismWithName(publicKey.getAlgorithm()), publicKey);
+    }
+
+    /**
+     * Releases one pin of a key that was pinned with {@link #pin(PublicKey)}, e.g. when an authority key is no longer
+     * trusted. The key is evicted once all its pins are released.
+     *
+     * @param publicKey Key to unpin.
+     * @return true if this released the last pin of the key.
+     */
+    public static boolean unpin(@Nonnull final PublicKey publicKey) {
+        return DecodedPublicKeys.unpin(Mechanism.mechanismWithName(publicKey.getAlgorithm()), publicKey);
     }
 
     /**
@@ -148,8 +178,86 @@ public class PublicKeyWithMechanism extends BytesWithMechanism<PublicKeyWithMech
      * @throws IOException That happened while reading from the stream.
      */
     public static PublicKeyWithMechanism readFrom(@Nonnull @WillNotClose final InputStream in) throws IOException {
-        final int serializedKeySize = InputStreamUtils.readInt(in);
-        return new PublicKeyWithMechanism(InputStreamUtils.readBytes(in, serializedKeySize));
+        return readFrom(BinaryReader.of(in));
+    }
+
+    /**
+     * Reads this key from a buffer, starting at its position.
+     *
+     * @throws IOException That happened while reading from the buffer, ie. an EOFException if it contains too few bytes.
+     */
+    public static PublicKeyWithMechanism readFrom(@Nonnull final ByteBuffer in) throws IOException {
+        return readFrom(BinaryReader.of(in));
+    }
+
+    /**
+     * Reads this key with a reader.
+     *
+     * @throws IOException That happened while reading, ie. if the key is longer than {@link #MAXIMUM_LENGTH}.
+     */
+    public static PublicKeyWithMechanism readFrom(@Nonnull final BinaryReader in) throws IOException {
+        return new PublicKeyWithMechanism(in.readLengthPrefixedBytes(MAXIMUM_LENGTH));
+    }
+
+    /**
+     * Writes a key in its compact encoding: The mechanism code, the varint length of the encoded key and the encoded
+     * key. RSA keys are encoded by modulus and exponent only, keys of other mechanisms as X.509.
+     *
+     * @param publicKey Key to write.
+     * @param out OutputStream to write to.
+     * @throws IOException That happened while writing to the stream.
+     * @see org.echocat.marquardt.common.domain.certificate.Certificate#COMPACT_VERSION
+     */
+    public static void writeCompactTo(@Nonnull final PublicKey publicKey, @Nonnull @WillNotClose final OutputStream out) throws IOException {
+        final Mechanism mechanism = Mechanism.mechanismWithName(publicKey.getAlgorithm());
+        final byte[] compact = DecodedPublicKeys.compactEncodingOf(mechanism, publicKey);
+        out.write(mechanism.getCode());
+        VarLongs.write(out, compact.length);
+        out.write(compact);
+    }
+
+    /**
+     * Reads a key written by {@link #writeCompactTo(PublicKey, OutputStream)} from a buffer, starting at its position.
+     *
+     * @return The decoded (and interned) key.
+     * @throws IOException That happened while reading from the buffer, ie. an EOFException if it contains too few bytes.
+     */
+    @Nonnull
+    public static PublicKey readCompactFrom(@Nonnull final ByteBuffer in) throws IOException {
+        return readCompactFrom(BinaryReader.of(in));
+    }
+
+    /**
+     * Reads a key written by {@link #writeCompactTo(PublicKey, OutputStream)} from an input stream.
+     *
+     * @return The decoded (and interned) key.
+     * @throws IOException That happened while reading from the stream.
+     */
+    @Nonnull
+    public static PublicKey readCompactFrom(@Nonnull @WillNotClose final InputStream in) throws IOException {
+        return readCompactFrom(BinaryReader.of(in));
+    }
+
+    /**
+     * Reads a key written by {@link #writeCompactTo(PublicKey, OutputStream)} with a reader.
+     *
+     * @return The decoded (and interned) key.
+     * @throws IOException That happened while reading, ie. if the key is longer than {@link #MAXIMUM_COMPACT_LENGTH}.
+     */
+    @Nonnull
+    public static PublicKey readCompactFrom(@Nonnull final BinaryReader in) throws IOException {
+        final Mechanism mechanism = mechanismWithCode(in.readByte());
+        final int length = in.readVarLength(MAXIMUM_COMPACT_LENGTH);
+        return DecodedPublicKeys.decodeCompact(mechanism, in.readBytes(length));
+    }
+
+    @Nonnull
+    private static Mechanism mechanismWithCode(final byte code) {
+        final Mechanism mechanism = Mechanism.findMechanism(code);
+        if (mechanism == null) {
+            throw new IllegalArgumentException("No mechanism with code " + code + " is supported.");
+        }
+        return mechanism;
     }
 
     @Override
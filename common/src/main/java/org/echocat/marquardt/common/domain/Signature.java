@@ -12,7 +12,9 @@ import org.echocat.marquardt.common.exceptions.SecurityMechanismException;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
+import java.security.Key;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
@@ -26,19 +28,56 @@ import java.security.PublicKey;
  */
 public class Signature extends BytesWithMechanism<Signature.Mechanism> {
 
+    /**
+     * Largest accepted length of a serialized signature, enough for RSA keys of 16384 bits.
+     */
+    public static final int MAXIMUM_LENGTH = 4 * 1024;
+
+    /**
+     * Supported signature mechanisms. The first mechanism applicable to a key is its default, so RSA keys still sign
+     * with SHA1withRSA unless another mechanism is chosen explicitly.
+     *
+     * @see org.echocat.marquardt.common.Signer
+     */
     public enum Mechanism implements BytesWithMechanism.Mechanism {
-        rsa("SHA1withRSA", Byte.MIN_VALUE, "SHA1withRSA");
+        rsa("SHA1withRSA", Byte.MIN_VALUE, "SHA1withRSA", "RSA"),
+        rsaSha256("SHA256withRSA", (byte) (Byte.MIN_VALUE + 1), "SHA256withRSA", "RSA"),
+        /**
+         * ECDSA with keys of curve {@link EcKeys#CURVE_NAME} (P-256) only.
+         */
+        ecdsa("SHA256withECDSA", (byte) (Byte.MIN_VALUE + 2), "SHA256withECDSA", "EC");
 
         @Nonnull
         private final String _name;
         private final byte _code;
         @Nonnull
         private final String _javaAlgorithmName;
+        @Nonnull
+        private final String _keyAlgorithm;
+        @Nonnull
+        private final SignatureEngines _engines;
 
-        Mechanism(@Nonnull final String name, final byte code, @Nonnull final String javaAlgorithmName) {
+        Mechanism(@Nonnull final String name, final byte code, @Nonnull final String javaAlgorithmName, @Nonnull final String keyAlgorithm) {
             _name = name;
             _code = code;
             _javaAlgorithmName = javaAlgorithmName;
+            _keyAlgorithm = keyAlgorithm;
+            _engines = new SignatureEngines(this);
+        }
+
+        /**
+         * @param key Key to sign or validate with.
+         * @return The default mechanism for the algorithm of key.
+         * @throws IllegalArgumentException If no mechanism supports the algorithm of key.
+         */
+        @Nonnull
+        public static Mechanism defaultFor(@Nonnull final Key key) {
+            for (final Mechanism candidate : values()) {
+                if (candidate.isApplicableTo(key)) {
+                    return candidate;
+                }
+            }
+            throw new IllegalArgumentException("No mechanism supports keys of algorithm " + key.getAlgorithm() + ".");
         }
 
         @Nullable
@@ -71,11 +110,32 @@ public class Signature extends BytesWithMechanism<Signature.Mechanism> {
             return _code;
         }
 
+        /**
+         * @return Algorithm of the keys this mechanism signs and validates with (as in java.security.Key#getAlgorithm()).
+         */
+        @Nonnull
+        public String getKeyAlgorithm() {
+            return _keyAlgorithm;
+        }
+
+        public boolean isApplicableTo(@Nonnull final Key key) {
+            return _keyAlgorithm.equals(key.getAlgorithm());
+        }
+
+        /**
+         * Creates a new, uninitialized engine. Signatures created and validated by this class use engines cached per
+         * thread instead.
+         */
         @Nonnull
         public java.security.Signature createAlgorithm() throws NoSuchAlgorithmException {
            return java.security.Signature.getInstance(_javaAlgorithmName);
         }
 
+        @Nonnull
+        SignatureEngines getEngines() {
+            return _engines;
+        }
+
         @Override
         public String toString() {
             return getName();
@@ -105,16 +165,46 @@ public class Signature extends BytesWithMechanism<Signature.Mechanism> {
      * the validation with the given PublicKey or the this Signature.
      */
     public boolean isValidFor(@Nonnull final byte[] content, @Nonnull final PublicKey publicKey) {
+        return isValidFor(content, 0, content.length, publicKey);
+    }
+
+    /**
+     * Validates if a region of content is valid for this signature with a given PublicKey.
+     *
+     * @param content Content to validate
+     * @param offset Offset of the signed region in content.
+     * @param length Length of the signed region in content.
+     * @param publicKey PublicKey used to validate signature.
+     * @return true if the signature is valid, false if not.
+     * @throws SecurityMechanismException When there are problems to set up
+     * the validation with the given PublicKey or the this Signature.
+     */
+    public boolean isValidFor(@Nonnull final byte[] content, final int offset, final int length, @Nonnull final PublicKey publicKey) {
         try {
-            final java.security.Signature algorithm = getMechanism().createAlgorithm();
-            algorithm.initVerify(publicKey);
-            algorithm.update(content);
-            return algorithm.verify(getValue());
+            return getMechanism().getEngines().verify(publicKey, content, offset, length, getValue());
         } catch (final GeneralSecurityException e) {
             throw new SecurityMechanismException("Could not check signature for content.", e);
         }
     }
 
+    /**
+     * Validates if the remaining bytes of content are valid for this signature with a given PublicKey. The content is
+     * passed to the signature engine in place, for heap buffers without any copy. Consumes the remaining bytes of
+     * content.
+     *
+     * @param content Content to validate, from its position to its limit.
+     * @param publicKey PublicKey used to validate signature.
+     * @return true if the signature is valid, false if not.
+     * @throws SecurityMechanismException When there are problems to set up
+     * the validation with the given PublicKey or the this Signature.
+     */
+    public boolean isValidFor(@Nonnull final ByteBuffer content, @Nonnull final PublicKey publicKey) {
+        try {
+            return getMechanism().getEngines().verify(publicKey, content, getValue());
+        } catch (final GeneralSecurityException e) {
+            throw new SecurityMechanismException("Could not check signature for content.", e);
+        }
+    }
 
     /**
      * Factory method that creates a Signature.
@@ -127,11 +217,24 @@ public class Signature extends BytesWithMechanism<Signature.Mechanism> {
      */
     @Nonnull
     public static Signature createFor(@Nonnull final byte[] content, @Nonnull final PrivateKey privateKey, @Nonnull final Mechanism with) {
+        return createFor(content, 0, content.length, privateKey, with);
+    }
+
+    /**
+     * Factory method that creates a Signature for a region of content.
+     *
+     * @param content Content to produce Signature for.
+     * @param offset Offset of the region to sign in content.
+     * @param length Length of the region to sign in content.
+     * @param privateKey PrivateKey to sign with.
+     * @param with Mechanism to use for signing.
+     * @return Signature that may be sent to clients and services to check if the content is from a trusted sender.
+     * @throws SecurityMechanismException When there are problems setting up the signing with the given PrivateKey.
+     */
+    @Nonnull
+    public static Signature createFor(@Nonnull final byte[] content, final int offset, final int length, @Nonnull final PrivateKey privateKey, @Nonnull final Mechanism with) {
         try {
-            final java.security.Signature algorithm = with.createAlgorithm();
-            algorithm.initSign(privateKey);
-            algorithm.update(content);
-            return new Signature(with, algorithm.sign());
+            return new Signature(with, with.getEngines().sign(privateKey, content, offset, length));
         } catch (final GeneralSecurityException e) {
             throw new SecurityMechanismException("Could not create signature for content.", e);
         }
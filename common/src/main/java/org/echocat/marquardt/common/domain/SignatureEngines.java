@@ -0,0 +1,117 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.domain;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+
+/**
+ * Intended for internal use only.
+ *
+ * Keeps one signing and one verifying java.security.Signature engine per thread for a mechanism. An engine stays
+ * initialized with the key it was last used with, so signing with the same PrivateKey (e.g. the authority's key) does
+ * not repeat the provider lookup nor the key setup. java.security.Signature resets itself to its initialized state
+ * after sign() and verify(), which makes reusing it safe. If an operation fails the engine is initialized again on its
+ * next use.
+ *
+ * @see Signature.Mechanism
+ */
+final class SignatureEngines {
+
+    @Nonnull
+    private final Signature.Mechanism _mechanism;
+    private final ThreadLocal<BoundEngine> _signingEngines = new ThreadLocal<>();
+    private final ThreadLocal<BoundEngine> _verifyingEngines = new ThreadLocal<>();
+
+    SignatureEngines(@Nonnull final Signature.Mechanism mechanism) {
+        _mechanism = mechanism;
+    }
+
+    @Nonnull
+    byte[] sign(@Nonnull final PrivateKey privateKey, @Nonnull final byte[] content, final int offset, final int length) throws GeneralSecurityException {
+        final BoundEngine engine = engineOf(_signingEngines);
+        final java.security.Signature algorithm = engine.getAlgorithm();
+        if (!engine.isBoundTo(privateKey)) {
+            algorithm.initSign(privateKey);
+        }
+        engine.unbind();
+        algorithm.update(content, offset, length);
+        final byte[] signature = algorithm.sign();
+        engine.bindTo(privateKey);
+        return signature;
+    }
+
+    boolean verify(@Nonnull final PublicKey publicKey, @Nonnull final byte[] content, final int offset, final int length, @Nonnull final byte[] signature) throws GeneralSecurityException {
+        final BoundEngine engine = engineOf(_verifyingEngines);
+        final java.security.Signature algorithm = engine.getAlgorithm();
+        if (!engine.isBoundTo(publicKey)) {
+            algorithm.initVerify(publicKey);
+        }
+        engine.unbind();
+        algorithm.update(content, offset, length);
+        final boolean result = algorithm.verify(signature);
+        engine.bindTo(publicKey);
+        return result;
+    }
+
+    boolean verify(@Nonnull final PublicKey publicKey, @Nonnull final ByteBuffer content, @Nonnull final byte[] signature) throws GeneralSecurityException {
+        final BoundEngine engine = engineOf(_verifyingEngines);
+        final java.security.Signature algorithm = engine.getAlgorithm();
+        if (!engine.isBoundTo(publicKey)) {
+            algorithm.initVerify(publicKey);
+        }
+        engine.unbind();
+        algorithm.update(content);
+        final boolean result = algorithm.verify(signature);
+        engine.bindTo(publicKey);
+        return result;
+    }
+
+    @Nonnull
+    private BoundEngine engineOf(@Nonnull final ThreadLocal<BoundEngine> engines) throws GeneralSecurityException {
+        BoundEngine engine = engines.get();
+        if (engine == null) {
+            engine = new BoundEngine(_mechanism.createAlgorithm());
+            engines.set(engine);
+        }
+        return engine;
+    }
+
+    private static final class BoundEngine {
+
+        @Nonnull
+        private final java.security.Signature _algorithm;
+        private Key _boundKey;
+
+        private BoundEngine(@Nonnull final java.security.Signature algorithm) {
+            _algorithm = algorithm;
+        }
+
+        @Nonnull
+        private java.security.Signature getAlgorithm() {
+            return _algorithm;
+        }
+
+        private boolean isBoundTo(final Key key) {
+            return _boundKey != null && _boundKey == key;
+        }
+
+        private void bindTo(final Key key) {
+            _boundKey = key;
+        }
+
+        private void unbind() {
+            _boundKey = null;
+        }
+    }
+}
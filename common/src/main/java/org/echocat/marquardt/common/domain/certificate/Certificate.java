@@ -15,19 +15,27 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.echocat.marquardt.common.domain.PublicKeyWithMechanism;
 import org.echocat.marquardt.common.domain.Signable;
+import org.echocat.marquardt.common.keyprovisioning.KeyId;
 import org.echocat.marquardt.common.serialization.RolesSerializer;
+import org.echocat.marquardt.common.util.VarLongs;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.WillNotClose;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.security.PublicKey;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
+import static org.apache.commons.codec.binary.Base64.encodeBase64URLSafeString;
+
 /**
  * Certificate produced by the authority when clients sign-up or sign-in.
  *
@@ -41,15 +49,43 @@ import java.util.concurrent.TimeUnit;
  */
 public class Certificate<T extends Signable> implements Signable {
 
+    /**
+     * Version of the default certificate format carrying the full issuer and client public keys.
+     */
     public static final Byte VERSION = 1;
+    /**
+     * Version of the compact certificate format. It carries the {@link KeyId} of the issuer instead of its public key,
+     * the client public key in its compact encoding, the expiry date and roles as varints and the payload prefixed by
+     * its varint length.
+     *
+     * @see PublicKeyWithMechanism#writeCompactTo(PublicKey, OutputStream)
+     * @see VarLongs
+     */
+    public static final Byte COMPACT_VERSION = 2;
+    /**
+     * Time from issuing a certificate until it expires.
+     */
+    public static final long VALIDITY_IN_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    /**
+     * Set in the version byte of certificates that carry a session id. The id follows the version byte as two longs
+     * (most significant bits first), so the authority can read it without decoding the rest of the certificate.
+     *
+     * @see #readSessionIdFrom(byte[])
+     */
+    static final byte SESSION_ID_FLAG = 0x40;
+    private static final int SESSION_ID_END = 1 + 2 * Longs.BYTES;
 
+    private final byte _version;
     private final PublicKey _issuerPublicKey;
     private final PublicKey _clientPublicKey;
     @SuppressWarnings("UseOfObsoleteDateTimeApi")
-    private final Date _expiresAt;
+    private final long _expiresAt;
     private final Set<? extends Role> _roles;
     private final T _payload;
-    private byte[] _signedCertificateBytes;
+    private final UUID _sessionId;
+    private volatile byte[] _signedCertificateBytes;
+    private volatile String _headerValue;
+    private volatile KeyId _clientKeyId;
 
     /**
      * Factory method to create Certificate (used by the authority)
@@ -62,32 +98,112 @@ public class Certificate<T extends Signable> implements Signable {
      * @return A certificate.
      */
     public static <T extends Signable> Certificate<T> create(final PublicKey issuerPublicKey, final PublicKey clientPublicKey, final Set<? extends Role> roles, final T payload) {
-        return new Certificate<>(issuerPublicKey, clientPublicKey, roles, payload);
+        return create(issuerPublicKey, clientPublicKey, roles, payload, VERSION);
+    }
+
+    /**
+     * Factory method to create Certificate of a specific format version (used by the authority)
+     *
+     * @param issuerPublicKey Authority's public key. Must be trusted by clients and services.
+     * @param clientPublicKey Client's public key. Enables login of the same user on different clients.
+     * @param roles Roles of the user to enable authorization in clients and services.
+     * @param payload Wrapped payload, for example additional user information to use on clients and services
+     * @param version {@link #VERSION} or {@link #COMPACT_VERSION}.
+     * @param <T> Class of wrapped payload, for example additional user information to use on clients and services.
+     * @return A certificate.
+     */
+    public static <T extends Signable> Certificate<T> create(final PublicKey issuerPublicKey, final PublicKey clientPublicKey, final Set<? extends Role> roles, final T payload, final byte version) {
+        return create(issuerPublicKey, clientPublicKey, roles, payload, version, null);
+    }
+
+    /**
+     * Factory method to create Certificate of a specific format version for a session (used by the authority)
+     *
+     * @param issuerPublicKey Authority's public key. Must be trusted by clients and services.
+     * @param clientPublicKey Client's public key. Enables login of the same user on different clients.
+     * @param roles Roles of the user to enable authorization in clients and services.
+     * @param payload Wrapped payload, for example additional user information to use on clients and services
+     * @param version {@link #VERSION} or {@link #COMPACT_VERSION}.
+     * @param sessionId Id of the authority's session the certificate is issued for or null to issue it without.
+     * @param <T> Class of wrapped payload, for example additional user information to use on clients and services.
+     * @return A certificate.
+     */
+    public static <T extends Signable> Certificate<T> create(final PublicKey issuerPublicKey, final PublicKey clientPublicKey, final Set<? extends Role> roles, final T payload, final byte version, @Nullable final UUID sessionId) {
+        return new Certificate<>(requireSupportedVersion(version), issuerPublicKey, clientPublicKey, roles, payload, sessionId);
     }
 
-    private Certificate(final PublicKey issuerPublicKey, final PublicKey clientPublicKey, final Set<? extends Role> roles, final T payload) {
+    /**
+     * Reads the session id of a serialized certificate without decoding the rest of it.
+     *
+     * @param certificate Serialized certificate, may be followed by its signature.
+     * @return Session id the certificate was issued for or null if it carries none.
+     */
+    @Nullable
+    public static UUID readSessionIdFrom(@Nonnull final byte[] certificate) {
+        if (certificate.length < SESSION_ID_END || (certificate[0] & SESSION_ID_FLAG) == 0 || !isSupportedVersion((byte) (certificate[0] & ~SESSION_ID_FLAG))) {
+            return null;
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(certificate, 1, 2 * Longs.BYTES);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private Certificate(final byte version, final PublicKey issuerPublicKey, final PublicKey clientPublicKey, final Set<? extends Role> roles, final T payload, @Nullable final UUID sessionId) {
+        _version = version;
         _issuerPublicKey = issuerPublicKey;
         _clientPublicKey = clientPublicKey;
-        _expiresAt = new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(15));
+        _expiresAt = System.currentTimeMillis() + VALIDITY_IN_MILLIS;
         _roles = roles;
         _payload = payload;
+        _sessionId = sessionId;
     }
 
     /**
      * Used by the CertificateFactory only. To serialize certificate from bytes.
      *
+     * @param version Format version the certificate was read from.
      * @param issuerPublicKey Authority's public key. Must be trusted by clients and services.
      * @param clientPublicKey Client's public key. Enabled login of the same user on different clients.
      * @param expiresAt Timestamp of expiration. Should be a relative short timeframe compared to the session of the authority.
      * @param roles Roles of the user to enable authorization in clients and services.
      * @param payload Wrapped payload, for example additional user information to use on clients and services
+     * @param sessionId Id of the authority's session the certificate was issued for or null.
      */
-    Certificate(final PublicKey issuerPublicKey, final PublicKey clientPublicKey, @SuppressWarnings("UseOfObsoleteDateTimeApi") final Date expiresAt, final Set<? extends Role> roles, final T payload) {
+    Certificate(final byte version, final PublicKey issuerPublicKey, final PublicKey clientPublicKey, @SuppressWarnings("UseOfObsoleteDateTimeApi") final Date expiresAt, final Set<? extends Role> roles, final T payload, @Nullable final UUID sessionId) {
+        _version = version;
         _issuerPublicKey = issuerPublicKey;
         _clientPublicKey = clientPublicKey;
-        _expiresAt = expiresAt;
-        _roles = Sets.newHashSet(roles);
+        _expiresAt = expiresAt.getTime();
+        _roles = roles instanceof RoleSet ? roles : Collections.unmodifiableSet(Sets.newHashSet(roles));
         _payload = payload;
+        _sessionId = sessionId;
+    }
+
+    /**
+     * Used by LazyCertificate only, which decodes the client key, roles and payload on demand.
+     */
+    Certificate(final byte version, final PublicKey issuerPublicKey, @SuppressWarnings("UseOfObsoleteDateTimeApi") final Date expiresAt, @Nullable final UUID sessionId) {
+        _version = version;
+        _issuerPublicKey = issuerPublicKey;
+        _clientPublicKey = null;
+        _expiresAt = expiresAt.getTime();
+        _roles = null;
+        _payload = null;
+        _sessionId = sessionId;
+    }
+
+    /**
+     * @return Format version of this certificate.
+     */
+    public byte getVersion() {
+        return _version;
+    }
+
+    /**
+     * @return Id of the authority's session this certificate was issued for or null if it carries none.
+     */
+    @Nullable
+    public UUID getSessionId() {
+        return _sessionId;
     }
 
     /**
@@ -104,6 +220,20 @@ public class Certificate<T extends Signable> implements Signable {
         return _clientPublicKey;
     }
 
+    /**
+     * @return Fingerprint of the client's public key. Computed once per certificate instance.
+     * @see org.echocat.marquardt.common.revocation.RevocationRegistry
+     */
+    @Nonnull
+    public KeyId getClientKeyId() {
+        KeyId clientKeyId = _clientKeyId;
+        if (clientKeyId == null) {
+            clientKeyId = KeyId.of(getClientPublicKey());
+            _clientKeyId = clientKeyId;
+        }
+        return clientKeyId;
+    }
+
     /**
      * @return Wrapped payload, for example additional user information to use on clents and services.
      */
@@ -113,9 +243,17 @@ public class Certificate<T extends Signable> implements Signable {
 
     /**
      * @return Timestamp of expiration. Should be a relative short timeframe compared to the session of the authority.
+     *         A copy, so callers cannot change the expiry of a certificate that is shared.
      */
     @SuppressWarnings("UseOfObsoleteDateTimeApi")
     public Date getExpiresAt() {
+        return new Date(_expiresAt);
+    }
+
+    /**
+     * @return Timestamp of expiration in millis.
+     */
+    public long getExpiresAtInMillis() {
         return _expiresAt;
     }
 
@@ -126,6 +264,14 @@ public class Certificate<T extends Signable> implements Signable {
         return _roles;
     }
 
+    /**
+     * @param role Role to check.
+     * @return true if the user has the given role.
+     */
+    public boolean hasRole(final Role role) {
+        return getRoles().contains(role);
+    }
+
     @Override
     public void writeTo(@Nonnull @WillNotClose final OutputStream out) throws IOException {
         if (isSignedCertificate()) {
@@ -149,29 +295,117 @@ public class Certificate<T extends Signable> implements Signable {
     @Override
     public String toString() {
         return new ToStringBuilder(this)
-            .append("_issuerPublicKey", _issuerPublicKey)
-            .append("_clientPublicKey", _clientPublicKey)
-            .append("_expiresAt", _expiresAt)
-            .append("_roles", _roles)
-            .append("_payload", _payload)
+            .append("_version", _version)
+            .append("_issuerPublicKey", getIssuerPublicKey())
+            .append("_clientPublicKey", getClientPublicKey())
+            .append("_expiresAt", getExpiresAt())
+            .append("_sessionId", getSessionId())
+            .append("_roles", getRoles())
+            .append("_payload", getPayload())
             .toString();
     }
 
     /**
      * If the certificate was received from an authority, we can use the already signed bytes when
-     * sending the certificate another service.
+     * sending the certificate another service. The value of the X-Certificate header is encoded once from them.
+     * The signed bytes are set once; certificates may be shared between threads afterwards, e.g. by a
+     * {@link org.echocat.marquardt.common.VerifiedCertificateCache}.
+     *
+     * @throws IllegalStateException If other signed bytes were already set.
+     * @see #getHeaderValue()
      */
-    public void setSignedCertificateBytes(final byte[] signedCertificateBytes) {
+    public synchronized void setSignedCertificateBytes(final byte[] signedCertificateBytes) {
+        if (_signedCertificateBytes != null) {
+            if (!Arrays.equals(_signedCertificateBytes, signedCertificateBytes)) {
+                throw new IllegalStateException("Signed bytes of a certificate cannot be replaced.");
+            }
+            return;
+        }
         _signedCertificateBytes = Arrays.copyOf(signedCertificateBytes, signedCertificateBytes.length);
+        _headerValue = encodeBase64URLSafeString(_signedCertificateBytes);
+    }
+
+    /**
+     * Value of the X-Certificate header to send this certificate with: The signed certificate bytes, base64url encoded.
+     * The value is computed once by {@link #setSignedCertificateBytes(byte[])}, so sending many requests with the same
+     * certificate does not encode it again.
+     *
+     * @return Encoded certificate. Certificates without signed bytes are encoded on every call.
+     * @throws IOException That happened while serializing a certificate without signed bytes.
+     */
+    @Nonnull
+    public String getHeaderValue() throws IOException {
+        final String headerValue = _headerValue;
+        return headerValue != null ? headerValue : encodeBase64URLSafeString(getContent());
     }
 
+    /**
+     * Writes the segments of the certificate in their order. The segment writers are shared with CertificateTemplate,
+     * which serializes all segments but the expiry date ahead of time.
+     */
     private void serializeTo(@Nonnull @WillNotClose final OutputStream out) throws IOException {
-        out.write(VERSION);
-        new PublicKeyWithMechanism(_issuerPublicKey).writeTo(out);
-        new PublicKeyWithMechanism(_clientPublicKey).writeTo(out);
-        out.write(Longs.toByteArray(_expiresAt.getTime()));
-        out.write(Longs.toByteArray(RolesSerializer.from(_roles)));
-        _payload.writeTo(out);
+        writeVersionAndSessionIdTo(out, _version, getSessionId());
+        writeIssuerTo(out, _version, getIssuerPublicKey());
+        writeClientTo(out, _version, getClientPublicKey());
+        writeExpiryTo(out, _version, getExpiresAtInMillis());
+        writeRolesAndPayloadTo(out, _version, RolesSerializer.from(getRoles()), getPayload());
+    }
+
+    static void writeVersionAndSessionIdTo(@Nonnull @WillNotClose final OutputStream out, final byte version, @Nullable final UUID sessionId) throws IOException {
+        if (sessionId == null) {
+            out.write(version);
+        } else {
+            out.write(version | SESSION_ID_FLAG);
+            out.write(Longs.toByteArray(sessionId.getMostSignificantBits()));
+            out.write(Longs.toByteArray(sessionId.getLeastSignificantBits()));
+        }
+    }
+
+    static void writeIssuerTo(@Nonnull @WillNotClose final OutputStream out, final byte version, @Nonnull final PublicKey issuerPublicKey) throws IOException {
+        if (version == COMPACT_VERSION) {
+            out.write(Longs.toByteArray(KeyId.of(issuerPublicKey).toLong()));
+        } else {
+            new PublicKeyWithMechanism(issuerPublicKey).writeTo(out);
+        }
+    }
+
+    static void writeClientTo(@Nonnull @WillNotClose final OutputStream out, final byte version, @Nonnull final PublicKey clientPublicKey) throws IOException {
+        if (version == COMPACT_VERSION) {
+            PublicKeyWithMechanism.writeCompactTo(clientPublicKey, out);
+        } else {
+            new PublicKeyWithMechanism(clientPublicKey).writeTo(out);
+        }
+    }
+
+    static void writeExpiryTo(@Nonnull @WillNotClose final OutputStream out, final byte version, final long expiresAt) throws IOException {
+        if (version == COMPACT_VERSION) {
+            VarLongs.write(out, expiresAt);
+        } else {
+            out.write(Longs.toByteArray(expiresAt));
+        }
+    }
+
+    static void writeRolesAndPayloadTo(@Nonnull @WillNotClose final OutputStream out, final byte version, final long rolesCode, @Nonnull final Signable payload) throws IOException {
+        if (version == COMPACT_VERSION) {
+            VarLongs.write(out, rolesCode);
+            final byte[] content = payload.getContent();
+            VarLongs.write(out, content.length);
+            out.write(content);
+        } else {
+            out.write(Longs.toByteArray(rolesCode));
+            payload.writeTo(out);
+        }
+    }
+
+    static byte requireSupportedVersion(final byte version) {
+        if (!isSupportedVersion(version)) {
+            throw new IllegalArgumentException("Unsupported certificate version '" + version + "'.");
+        }
+        return version;
+    }
+
+    private static boolean isSupportedVersion(final byte version) {
+        return version == VERSION || version == COMPACT_VERSION;
     }
 
     private boolean isSignedCertificate() {
@@ -8,29 +8,44 @@
 
 package org.echocat.marquardt.common.domain.certificate;
 
+import org.echocat.marquardt.common.domain.ByteBufferDeserializingFactory;
 import org.echocat.marquardt.common.domain.PublicKeyWithMechanism;
 import org.echocat.marquardt.common.domain.Signable;
 import org.echocat.marquardt.common.domain.DeserializingFactory;
+import org.echocat.marquardt.common.exceptions.InvalidCertificateException;
+import org.echocat.marquardt.common.keyprovisioning.KeyId;
+import org.echocat.marquardt.common.keyprovisioning.TrustedKeyRegistry;
 import org.echocat.marquardt.common.serialization.RolesDeserializer;
+import org.echocat.marquardt.common.util.BinaryReader;
+import org.echocat.marquardt.common.util.ByteBufferInputStream;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.WillNotClose;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.PublicKey;
 import java.util.Date;
-
-import static org.echocat.marquardt.common.util.InputStreamUtils.readByte;
-import static org.echocat.marquardt.common.util.InputStreamUtils.readLong;
+import java.util.UUID;
 
 /**
  * Extend this to enable deserialization of your wrapped Signable.
  *
- * Used to deserialize Certificates from Bytes.
+ * Used to deserialize Certificates from Bytes. Certificates can be read in place from a ByteBuffer as well. If the
+ * factory of the wrapped content is a ByteBufferDeserializingFactory it is used for that, otherwise the wrapped content
+ * is read through an InputStream view of the buffer.
+ *
+ * Certificates of both {@link Certificate#VERSION} and {@link Certificate#COMPACT_VERSION} are supported. The issuer of
+ * compact certificates is resolved by its KeyId from {@link #getTrustedKeyRegistry()}. Both may carry the id of the
+ * session they were issued for.
  *
  * @param <SIGNABLE> Class of wrapped payload, for example additional user information to use on clients and services.
  * @param <ROLE> Class of your role implementation.
  */
-public abstract class CertificateFactory<SIGNABLE extends Signable, ROLE extends Role> implements DeserializingFactory<Certificate<SIGNABLE>> {
+public abstract class CertificateFactory<SIGNABLE extends Signable, ROLE extends Role> implements ByteBufferDeserializingFactory<Certificate<SIGNABLE>> {
+
+    private static final int MAXIMUM_PAYLOAD_LENGTH = 64 * 1024;
 
     /**
      * Provides the factory to deserialize the wrapped content.
@@ -50,20 +65,163 @@ public abstract class CertificateFactory<SIGNABLE extends Signable, ROLE extends
      */
     protected abstract RolesDeserializer<ROLE> getRolesDeserializer();
 
+    /**
+     * Provides the trusted keys to resolve the issuer of certificates in the compact format by their KeyId.
+     *
+     * @return Registry of trusted keys or null if certificates in the compact format are not supported (the default).
+     *
+     * @see Certificate#COMPACT_VERSION
+     */
+    protected TrustedKeyRegistry getTrustedKeyRegistry() {
+        return null;
+    }
+
+    /**
+     * Enables lazy decoding of certificates read from a ByteBuffer: They are only scanned and returned as
+     * LazyCertificate, which decodes the client key, roles and payload on first access. Certificates read from an
+     * InputStream are always decoded eagerly.
+     *
+     * @return true to decode lazily; false (the default) to decode eagerly.
+     *
+     * @see LazyCertificate
+     */
+    protected boolean isDecodingLazily() {
+        return false;
+    }
+
     @Nonnull
     @Override
     public Certificate<SIGNABLE> consume(@Nonnull @WillNotClose final InputStream in) throws IOException {
-        final byte versionFromInput = readByte(in);
-        if (versionFromInput != Certificate.VERSION) {
-            throw new IllegalArgumentException("Expected Certificate with version '" + Certificate.VERSION + "' but received '" + versionFromInput + "'");
+        return decode(BinaryReader.of(in), null);
+    }
+
+    @Nonnull
+    @Override
+    public Certificate<SIGNABLE> consume(@Nonnull final ByteBuffer in) throws IOException {
+        if (isDecodingLazily()) {
+            return scan(in);
+        }
+        return decode(BinaryReader.of(in), in);
+    }
+
+    /**
+     * @param buffer The buffer reader reads from or null if it reads from a stream. Wrapped content of the default
+     *               format is read from the buffer in place.
+     */
+    @Nonnull
+    private Certificate<SIGNABLE> decode(@Nonnull final BinaryReader reader, @Nullable final ByteBuffer buffer) throws IOException {
+        final byte versionAndFlags = reader.readByte();
+        final byte versionFromInput = (byte) (versionAndFlags & ~Certificate.SESSION_ID_FLAG);
+        final UUID sessionId = readSessionId(reader, versionAndFlags);
+        if (versionFromInput == Certificate.COMPACT_VERSION) {
+            return decodeCompact(reader, sessionId);
+        }
+        throwExceptionWhenVersionIsUnsupported(versionFromInput);
+        final PublicKeyWithMechanism publicKeyWithMechanism = PublicKeyWithMechanism.readFrom(reader);
+        final PublicKeyWithMechanism clientKeyWithMechanism = PublicKeyWithMechanism.readFrom(reader);
+        //noinspection UseOfObsoleteDateTimeApi
+        final Date expiryDate = new Date(reader.readLong());
+        final long roleCodes = reader.readLong();
+        final SIGNABLE wrapped = buffer != null ? consumeWrapped(buffer) : getFactoryOfWrapped().consume(reader.asInputStream());
+        return new Certificate<>(Certificate.VERSION, publicKeyWithMechanism.toJavaKey(), clientKeyWithMechanism.toJavaKey(), expiryDate, getRolesDeserializer().from(roleCodes), wrapped, sessionId);
+    }
+
+    @Nonnull
+    private Certificate<SIGNABLE> decodeCompact(@Nonnull final BinaryReader reader, @Nullable final UUID sessionId) throws IOException {
+        final PublicKey issuerPublicKey = resolveIssuerPublicKey(KeyId.fromLong(reader.readLong()));
+        final PublicKey clientPublicKey = PublicKeyWithMechanism.readCompactFrom(reader);
+        //noinspection UseOfObsoleteDateTimeApi
+        final Date expiryDate = new Date(reader.readVarLong());
+        final long roleCodes = reader.readVarLong();
+        final SIGNABLE wrapped = consumeWrapped(reader.readSlice(reader.readVarLength(MAXIMUM_PAYLOAD_LENGTH)));
+        return new Certificate<>(Certificate.COMPACT_VERSION, issuerPublicKey, clientPublicKey, expiryDate, getRolesDeserializer().from(roleCodes), wrapped, sessionId);
+    }
+
+    @Nonnull
+    private LazyCertificate<SIGNABLE> scan(@Nonnull final ByteBuffer in) throws IOException {
+        final BinaryReader reader = BinaryReader.of(in);
+        final int start = in.position();
+        final byte versionAndFlags = reader.readByte();
+        final byte versionFromInput = (byte) (versionAndFlags & ~Certificate.SESSION_ID_FLAG);
+        final UUID sessionId = readSessionId(reader, versionAndFlags);
+        final PublicKey issuerPublicKey;
+        final int clientKeyOffset;
+        final int clientKeyLength;
+        final long expiresAt;
+        final long roleCodes;
+        SIGNABLE payload = null;
+        int payloadOffset = LazyCertificate.NO_OFFSET;
+        int payloadLength = 0;
+        if (versionFromInput == Certificate.COMPACT_VERSION) {
+            issuerPublicKey = resolveIssuerPublicKey(KeyId.fromLong(reader.readLong()));
+            clientKeyOffset = in.position() - start;
+            reader.readByte();
+            reader.skipBytes(reader.readVarLength(PublicKeyWithMechanism.MAXIMUM_COMPACT_LENGTH));
+            clientKeyLength = in.position() - start - clientKeyOffset;
+            expiresAt = reader.readVarLong();
+            roleCodes = reader.readVarLong();
+            payloadLength = reader.readVarLength(MAXIMUM_PAYLOAD_LENGTH);
+            payloadOffset = in.position() - start;
+            reader.skipBytes(payloadLength);
+        } else {
+            throwExceptionWhenVersionIsUnsupported(versionFromInput);
+            issuerPublicKey = PublicKeyWithMechanism.readFrom(reader).toJavaKey();
+            clientKeyLength = reader.readLength(PublicKeyWithMechanism.MAXIMUM_LENGTH);
+            clientKeyOffset = in.position() - start;
+            reader.skipBytes(clientKeyLength);
+            expiresAt = reader.readLong();
+            roleCodes = reader.readLong();
+            payload = consumeWrapped(in);
         }
-        final PublicKeyWithMechanism publicKeyWithMechanism = PublicKeyWithMechanism.readFrom(in);
-        final PublicKeyWithMechanism clientKeyWithMechanism = PublicKeyWithMechanism.readFrom(in);
+        throwExceptionWhenRoleCodesAreTooLarge(roleCodes);
+        final byte[] content = new byte[in.position() - start];
+        final ByteBuffer scanned = in.duplicate();
+        scanned.position(start);
+        scanned.get(content);
         //noinspection UseOfObsoleteDateTimeApi
-        final Date expiryDate = new Date(readLong(in));
-        final long roleCodes = readLong(in);
-        final SIGNABLE wrapped = getFactoryOfWrapped().consume(in);
-        return new Certificate<>(publicKeyWithMechanism.toJavaKey(), clientKeyWithMechanism.toJavaKey(), expiryDate, getRolesDeserializer().from(roleCodes), wrapped);
+        return new LazyCertificate<>(this, versionFromInput, issuerPublicKey, new Date(expiresAt), sessionId, roleCodes, content, clientKeyOffset, clientKeyLength, payload, payloadOffset, payloadLength);
+    }
+
+    @Nullable
+    private static UUID readSessionId(@Nonnull final BinaryReader reader, final byte versionAndFlags) throws IOException {
+        if ((versionAndFlags & Certificate.SESSION_ID_FLAG) == 0) {
+            return null;
+        }
+        return new UUID(reader.readLong(), reader.readLong());
+    }
+
+    private static void throwExceptionWhenRoleCodesAreTooLarge(final long roleCodes) {
+        if (!RoleSet.isSupported(roleCodes)) {
+            throw new IllegalArgumentException("Provided role code is greater then the maximum allowed code.");
+        }
+    }
+
+    @Nonnull
+    private PublicKey resolveIssuerPublicKey(@Nonnull final KeyId issuerKeyId) {
+        final TrustedKeyRegistry trustedKeyRegistry = getTrustedKeyRegistry();
+        if (trustedKeyRegistry == null) {
+            throw new IllegalArgumentException("Certificates with version '" + Certificate.COMPACT_VERSION + "' require a trusted key registry.");
+        }
+        final PublicKey issuerPublicKey = trustedKeyRegistry.find(issuerKeyId);
+        if (issuerPublicKey == null) {
+            throw new InvalidCertificateException("issuer key with id " + issuerKeyId + " is not trusted");
+        }
+        return issuerPublicKey;
+    }
+
+    private void throwExceptionWhenVersionIsUnsupported(final byte versionFromInput) {
+        if (versionFromInput != Certificate.VERSION) {
+            throw new IllegalArgumentException("Expected Certificate with version '" + Certificate.VERSION + "' or '" + Certificate.COMPACT_VERSION + "' but received '" + versionFromInput + "'");
+        }
+    }
+
+    @Nonnull
+    SIGNABLE consumeWrapped(@Nonnull final ByteBuffer in) throws IOException {
+        final DeserializingFactory<SIGNABLE> factoryOfWrapped = getFactoryOfWrapped();
+        if (factoryOfWrapped instanceof ByteBufferDeserializingFactory) {
+            return ((ByteBufferDeserializingFactory<SIGNABLE>) factoryOfWrapped).consume(in);
+        }
+        return factoryOfWrapped.consume(new ByteBufferInputStream(in));
     }
 
 }
@@ -0,0 +1,118 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.echocat.marquardt.common.domain.certificate;
+
+import org.apache.commons.io.IOUtils;
+import org.echocat.marquardt.common.domain.Signable;
+import org.echocat.marquardt.common.serialization.RolesSerializer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.PublicKey;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Serialized certificate, from which certificates that differ in their expiry date only are issued without serializing
+ * keys, roles and payload again. Its content is the one of a {@link Certificate} with the same values and expiry date.
+ * <p>
+ * A template is made of segments that change at different rates and may be cached separately: The issuer segment is
+ * the same for all certificates of an authority, the head (version, session id, issuer and client key) the same for
+ * all certificates of a session and the tail (roles and payload) the same for all certificates of a user until the
+ * user changes.
+ */
+public final class CertificateTemplate implements Signable {
+
+    private final byte _version;
+    private final byte[] _head;
+    private final byte[] _tail;
+    private final long _expiresAt;
+
+    /**
+     * @param version {@link Certificate#VERSION} or {@link Certificate#COMPACT_VERSION}.
+     * @param head Head serialized by {@link #serializeHead(byte, UUID, byte[], PublicKey)}.
+     * @param tail Tail serialized by {@link #serializeTail(byte, Set, Signable)}.
+     * @param expiresAt Expiry date of the certificate in millis, usually {@link Certificate#VALIDITY_IN_MILLIS} from now.
+     */
+    public CertificateTemplate(final byte version, @Nonnull final byte[] head, @Nonnull final byte[] tail, final long expiresAt) {
+        _version = Certificate.requireSupportedVersion(version);
+        _head = head;
+        _tail = tail;
+        _expiresAt = expiresAt;
+    }
+
+    /**
+     * @param version Certificate version.
+     * @param issuerPublicKey Authority's public key.
+     * @return Serialized issuer of the certificates of an authority.
+     * @throws IOException If the key cannot be serialized.
+     */
+    @Nonnull
+    public static byte[] serializeIssuer(final byte version, @Nonnull final PublicKey issuerPublicKey) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Certificate.writeIssuerTo(out, Certificate.requireSupportedVersion(version), issuerPublicKey);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param version Certificate version.
+     * @param sessionId Id of the session the certificates are issued for or null to issue them without.
+     * @param serializedIssuer Result of {@link #serializeIssuer(byte, PublicKey)} for the same version.
+     * @param clientPublicKey Client's public key.
+     * @return Serialized head of the certificates of a session.
+     * @throws IOException If the client key cannot be serialized.
+     */
+    @Nonnull
+    public static byte[] serializeHead(final byte version, @Nullable final UUID sessionId, @Nonnull final byte[] serializedIssuer, @Nonnull final PublicKey clientPublicKey) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Certificate.writeVersionAndSessionIdTo(out, Certificate.requireSupportedVersion(version), sessionId);
+        out.write(serializedIssuer);
+        Certificate.writeClientTo(out, version, clientPublicKey);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param version Certificate version.
+     * @param roles Roles of the user.
+     * @param payload Wrapped payload of the user.
+     * @return Serialized tail of the certificates of a user.
+     * @throws IOException If the payload cannot be serialized.
+     */
+    @Nonnull
+    public static byte[] serializeTail(final byte version, @Nonnull final Set<? extends Role> roles, @Nonnull final Signable payload) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Certificate.writeRolesAndPayloadTo(out, Certificate.requireSupportedVersion(version), RolesSerializer.from(roles), payload);
+        return out.toByteArray();
+    }
+
+    public long getExpiresAt() {
+        return _expiresAt;
+    }
+
+    @Override
+    public void writeTo(@Nonnull @WillNotClose final OutputStream out) throws IOException {
+        out.write(_head);
+        Certificate.writeExpiryTo(out, _version, _expiresAt);
+        out.write(_tail);
+    }
+
+    @Override
+    public byte[] getContent() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(_head.length + _tail.length + 10);
+        try {
+            writeTo(out);
+            return out.toByteArray();
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+}
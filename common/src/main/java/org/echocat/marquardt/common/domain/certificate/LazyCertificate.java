@@ -0,0 +1,163 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.domain.certificate;
+
+import org.echocat.marquardt.common.domain.PublicKeyWithMechanism;
+import org.echocat.marquardt.common.domain.Signable;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Certificate that was only scanned, not decoded: Version, session id, issuer and expiry date are read while scanning,
+ * the positions of the client public key and the payload are recorded. The client key, the roles and the payload are
+ * decoded on their first access, which usually is after the signature over the raw bytes was verified. Role checks
+ * with {@link #hasRole(Role)} test the role bit without decoding the roles at all.
+ *
+ * The payload of certificates with {@link Certificate#COMPACT_VERSION} is prefixed by its length and skipped while
+ * scanning. The payload of certificates with {@link Certificate#VERSION} has no length, so it is decoded while scanning.
+ *
+ * Instances are created by a CertificateFactory that decodes lazily.
+ *
+ * @param <T> Class of wrapped payload, for example additional user information to use on clients and services.
+ * @see CertificateFactory#isDecodingLazily()
+ */
+public class LazyCertificate<T extends Signable> extends Certificate<T> {
+
+    static final int NO_OFFSET = -1;
+
+    @Nonnull
+    private final CertificateFactory<T, ?> _factory;
+    /**
+     * Copy of the scanned certificate bytes (without signature), so later changes of the input cannot change
+     * the content of an already verified certificate.
+     */
+    @Nonnull
+    private final byte[] _content;
+    private final int _clientKeyOffset;
+    private final int _clientKeyLength;
+    private final long _roleCodes;
+    private final int _payloadOffset;
+    private final int _payloadLength;
+
+    private volatile PublicKey _clientPublicKey;
+    private volatile Set<? extends Role> _roles;
+    private volatile T _payload;
+
+    LazyCertificate(@Nonnull final CertificateFactory<T, ?> factory,
+                    final byte version,
+                    @Nonnull final PublicKey issuerPublicKey,
+                    @SuppressWarnings("UseOfObsoleteDateTimeApi") @Nonnull final Date expiresAt,
+                    @Nullable final UUID sessionId,
+                    final long roleCodes,
+                    @Nonnull final byte[] content,
+                    final int clientKeyOffset,
+                    final int clientKeyLength,
+                    @Nullable final T payload,
+                    final int payloadOffset,
+                    final int payloadLength) {
+        super(version, issuerPublicKey, expiresAt, sessionId);
+        _factory = factory;
+        _content = content;
+        _clientKeyOffset = clientKeyOffset;
+        _clientKeyLength = clientKeyLength;
+        _roleCodes = roleCodes;
+        _payload = payload;
+        _payloadOffset = payloadOffset;
+        _payloadLength = payloadLength;
+    }
+
+    /**
+     * @return The encoded roles as transported in the certificate.
+     */
+    public long getRoleCodes() {
+        return _roleCodes;
+    }
+
+    @Override
+    public boolean hasRole(final Role role) {
+        return RoleSet.containsId(_roleCodes, role.id());
+    }
+
+    @Override
+    public PublicKey getClientPublicKey() {
+        PublicKey result = _clientPublicKey;
+        if (result == null) {
+            synchronized (this) {
+                result = _clientPublicKey;
+                if (result == null) {
+                    result = decodeClientPublicKey();
+                    _clientPublicKey = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Set<? extends Role> getRoles() {
+        Set<? extends Role> result = _roles;
+        if (result == null) {
+            synchronized (this) {
+                result = _roles;
+                if (result == null) {
+                    result = _factory.getRolesDeserializer().from(_roleCodes);
+                    _roles = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public T getPayload() {
+        T result = _payload;
+        if (result == null) {
+            synchronized (this) {
+                result = _payload;
+                if (result == null) {
+                    result = decodePayload();
+                    _payload = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Nonnull
+    private PublicKey decodeClientPublicKey() {
+        if (getVersion() == COMPACT_VERSION) {
+            try {
+                return PublicKeyWithMechanism.readCompactFrom(ByteBuffer.wrap(_content, _clientKeyOffset, _clientKeyLength));
+            } catch (final IOException e) {
+                throw new IllegalArgumentException("Client public key of certificate cannot be decoded.", e);
+            }
+        }
+        return new PublicKeyWithMechanism(Arrays.copyOfRange(_content, _clientKeyOffset, _clientKeyOffset + _clientKeyLength)).toJavaKey();
+    }
+
+    @Nonnull
+    private T decodePayload() {
+        if (_payloadOffset == NO_OFFSET) {
+            throw new IllegalStateException("Payload was neither decoded nor recorded.");
+        }
+        try {
+            return _factory.consumeWrapped(ByteBuffer.wrap(_content, _payloadOffset, _payloadLength).slice());
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Payload of certificate cannot be decoded using " + _factory.getFactoryOfWrapped().getClass() + ".", e);
+        }
+    }
+}
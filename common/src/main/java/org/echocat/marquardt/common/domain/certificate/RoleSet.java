@@ -0,0 +1,132 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.domain.certificate;
+
+import org.echocat.marquardt.common.serialization.RolesDeserializer;
+
+import javax.annotation.Nonnull;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable set of roles backed by the role codes as transported in certificates: bit n is set if the role with id n
+ * is contained. Lookups are bit tests and iterating does not box ids; the role instances are taken from the lookup
+ * table of the RolesDeserializer that created the set.
+ *
+ * @param <T> Your roles implementation.
+ * @see RolesDeserializer#from(Long)
+ */
+public final class RoleSet<T extends Role> extends AbstractSet<T> {
+
+    /**
+     * Mask of all role codes that can be transported in a certificate. The two highest bits are reserved.
+     */
+    public static final long SUPPORTED_ROLE_CODES = (1L << (Role.MAX_ROLE_ID - 1)) - 1;
+
+    private final long _roleCodes;
+    @Nonnull
+    private final RolesDeserializer<T> _rolesDeserializer;
+
+    /**
+     * @param roleCodes Encoded roles. Must only use bits of {@link #SUPPORTED_ROLE_CODES}.
+     * @param rolesDeserializer Provides the role instances for the ids.
+     */
+    public RoleSet(final long roleCodes, @Nonnull final RolesDeserializer<T> rolesDeserializer) {
+        if (!isSupported(roleCodes)) {
+            throw new IllegalArgumentException("Provided role code is greater then the maximum allowed code.");
+        }
+        _roleCodes = roleCodes;
+        _rolesDeserializer = rolesDeserializer;
+    }
+
+    /**
+     * @param roleCodes Encoded roles.
+     * @return true if roleCodes only use bits of {@link #SUPPORTED_ROLE_CODES}.
+     */
+    public static boolean isSupported(final long roleCodes) {
+        return (roleCodes & ~SUPPORTED_ROLE_CODES) == 0;
+    }
+
+    /**
+     * @param roleCodes Encoded roles.
+     * @param id Id of a role.
+     * @return true if the bit of the role with the given id is set in roleCodes.
+     */
+    public static boolean containsId(final long roleCodes, final int id) {
+        return id >= 0 && id < Role.MAX_ROLE_ID && (roleCodes & (1L << id)) != 0;
+    }
+
+    /**
+     * @return The encoded roles as transported in certificates.
+     */
+    public long getRoleCodes() {
+        return _roleCodes;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        if (!(o instanceof Role)) {
+            return false;
+        }
+        final Integer id = ((Role) o).id();
+        return id != null && containsId(_roleCodes, id) && o.equals(_rolesDeserializer.roleOf(id));
+    }
+
+    @Override
+    public int size() {
+        return Long.bitCount(_roleCodes);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return _roleCodes == 0;
+    }
+
+    @Override
+    @Nonnull
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private long _remaining = _roleCodes;
+
+            @Override
+            public boolean hasNext() {
+                return _remaining != 0;
+            }
+
+            @Override
+            public T next() {
+                if (_remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                final int id = Long.numberOfTrailingZeros(_remaining);
+                _remaining &= _remaining - 1;
+                return _rolesDeserializer.roleOf(id);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("RoleSet is immutable.");
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o instanceof RoleSet && ((RoleSet<?>) o)._rolesDeserializer == _rolesDeserializer) {
+            return ((RoleSet<?>) o)._roleCodes == _roleCodes;
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
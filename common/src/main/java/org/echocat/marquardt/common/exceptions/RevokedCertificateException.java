@@ -0,0 +1,31 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.exceptions;
+
+import org.echocat.marquardt.common.domain.certificate.Certificate;
+
+/**
+ * Exception intended to be thrown when a certificate is valid but its client key was revoked after it was issued, e.g.
+ * because its client signed out.
+ *
+ * @see org.echocat.marquardt.common.revocation.RevocationRegistry
+ */
+public class RevokedCertificateException extends InvalidCertificateException {
+
+    private final Certificate<?> _certificate;
+
+    public RevokedCertificateException(final Certificate<?> certificate) {
+        super("Certificate of " + certificate.getPayload() + " is revoked");
+        _certificate = certificate;
+    }
+
+    public Certificate<?> getCertificate() {
+        return _certificate;
+    }
+}
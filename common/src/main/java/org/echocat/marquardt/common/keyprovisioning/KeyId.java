@@ -0,0 +1,71 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.keyprovisioning;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
+
+import javax.annotation.Nonnull;
+import java.security.PublicKey;
+
+/**
+ * Fingerprint of a public key: The first 8 bytes of the SHA-256 digest of its X.509 encoding. Used to look up trusted
+ * keys without comparing full key encodings.
+ *
+ * A KeyId identifies a key only among the keys it is compared to. Always compare the key itself after a lookup.
+ *
+ * @see TrustedKeyRegistry
+ */
+public final class KeyId {
+
+    public static final int BYTES = Longs.BYTES;
+
+    private static final HashFunction DIGEST = Hashing.sha256();
+
+    private final long _value;
+
+    private KeyId(final long value) {
+        _value = value;
+    }
+
+    @Nonnull
+    public static KeyId of(@Nonnull final PublicKey publicKey) {
+        return of(publicKey.getEncoded());
+    }
+
+    @Nonnull
+    public static KeyId of(@Nonnull final byte[] encodedPublicKey) {
+        return fromLong(Longs.fromByteArray(DIGEST.hashBytes(encodedPublicKey).asBytes()));
+    }
+
+    @Nonnull
+    public static KeyId fromLong(final long value) {
+        return new KeyId(value);
+    }
+
+    public long toLong() {
+        return _value;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return this == o || (o instanceof KeyId && _value == ((KeyId) o)._value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Longs.hashCode(_value);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x", _value);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.keyprovisioning;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+import org.echocat.marquardt.common.domain.PublicKeyWithMechanism;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.security.PublicKey;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Set of trusted public keys indexed by their {@link KeyId}. Lookups are lock-free and do not depend on the number of
+ * trusted keys. The trusted keys can be replaced atomically at any time (e.g. on key rotation); running lookups see
+ * either the old or the new keys, never a mix of both.
+ *
+ * Trusted keys are pinned (see {@link PublicKeyWithMechanism#pin(PublicKey)}). Certificates decoded afterwards reference
+ * the very same key instances, so trust checks for them are plain identity checks. Keys that are replaced are unpinned
+ * again.
+ *
+ * @see org.echocat.marquardt.common.CertificateValidator
+ */
+public class TrustedKeyRegistry {
+
+    private final AtomicReference<Snapshot> _snapshot = new AtomicReference<>(Snapshot.EMPTY);
+
+    /**
+     * @param trustedPublicKeys Keys to trust (most likely the keys used by your authority).
+     */
+    public TrustedKeyRegistry(@Nonnull final Collection<PublicKey> trustedPublicKeys) {
+        replaceWith(trustedPublicKeys);
+    }
+
+    /**
+     * @param trustedKeysProvider Provides the keys to trust.
+     */
+    public TrustedKeyRegistry(@Nonnull final TrustedKeysProvider trustedKeysProvider) {
+        refreshFrom(trustedKeysProvider);
+    }
+
+    /**
+     * Atomically replaces all trusted keys.
+     *
+     * @param trustedPublicKeys Keys to trust from now on.
+     * @throws IllegalArgumentException if two different keys share a KeyId.
+     */
+    public void replaceWith(@Nonnull final Collection<PublicKey> trustedPublicKeys) {
+        _snapshot.getAndSet(new Snapshot(trustedPublicKeys)).unpin();
+    }
+
+    /**
+     * Atomically replaces all trusted keys with the keys currently returned by trustedKeysProvider.
+     *
+     * @param trustedKeysProvider Provides the keys to trust from now on.
+     */
+    public void refreshFrom(@Nonnull final TrustedKeysProvider trustedKeysProvider) {
+        replaceWith(trustedKeysProvider.getPublicKeys());
+    }
+
+    /**
+     * @param publicKey Key to check.
+     * @return true if publicKey is one of the trusted keys.
+     */
+    public boolean isTrusted(@Nullable final PublicKey publicKey) {
+        if (publicKey == null) {
+            return false;
+        }
+        final Snapshot snapshot = _snapshot.get();
+        return snapshot._pinnedKeys.contains(publicKey) || publicKey.equals(snapshot._keysById.get(KeyId.of(publicKey)));
+    }
+
+    /**
+     * @param keyId Id of the key to find.
+     * @return The trusted key with the given KeyId or null if there is none.
+     */
+    @Nullable
+    public PublicKey find(@Nonnull final KeyId keyId) {
+        return _snapshot.get()._keysById.get(keyId);
+    }
+
+    /**
+     * @return All currently trusted keys.
+     */
+    @Nonnull
+    public Collection<PublicKey> getPublicKeys() {
+        return _snapshot.get()._keysById.values();
+    }
+
+    private static final class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(Collections.<PublicKey>emptyList());
+
+        @Nonnull
+        private final ImmutableMap<KeyId, PublicKey> _keysById;
+        /**
+         * Identity set of the pinned instances. Never modified after construction.
+         */
+        @Nonnull
+        private final Set<PublicKey> _pinnedKeys;
+
+        /**
+         * Pins every distinct key once.
+         */
+        private Snapshot(@Nonnull final Collection<PublicKey> trustedPublicKeys) {
+            final ImmutableMap.Builder<KeyId, PublicKey> keysById = ImmutableMap.builder();
+            final Set<PublicKey> pinnedKeys = Sets.newIdentityHashSet();
+            final Set<KeyId> seenKeyIds = Sets.newHashSet();
+            try {
+                for (final PublicKey trustedPublicKey : trustedPublicKeys) {
+                    final PublicKey pinned = PublicKeyWithMechanism.pin(trustedPublicKey);
+                    final KeyId keyId = KeyId.of(pinned);
+                    if (seenKeyIds.add(keyId)) {
+                        keysById.put(keyId, pinned);
+                        pinnedKeys.add(pinned);
+                    } else {
+                        PublicKeyWithMechanism.unpin(pinned);
+                        if (!pinnedKeys.contains(pinned)) {
+                            throw new IllegalArgumentException("Trusted keys contain different keys with the same key id " + keyId + ".");
+                        }
+                    }
+                }
+            } catch (final RuntimeException e) {
+                unpinAll(pinnedKeys);
+                throw e;
+            }
+            _keysById = keysById.build();
+            _pinnedKeys = pinnedKeys;
+        }
+
+        /**
+         * Releases the pins of this snapshot. Keys also trusted by the snapshot that replaced it stay pinned.
+         */
+        private void unpin() {
+            unpinAll(_pinnedKeys);
+        }
+
+        private static void unpinAll(@Nonnull final Set<PublicKey> pinnedKeys) {
+            for (final PublicKey pinnedKey : pinnedKeys) {
+                PublicKeyWithMechanism.unpin(pinnedKey);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.echocat.marquardt.common.metrics;
+
+import org.slf4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps counts, total and maximum durations in memory. Recording updates a few slots of preallocated arrays and neither
+ * locks nor allocates, so it can stay enabled in production. Read the values with the getters, e.g. from a scheduled
+ * task that exports them or {@link #logTo(Logger) logs} them.
+ */
+public class AtomicMetricsRecorder implements MetricsRecorder {
+
+    private static final int TIMER_SLOTS = 3;
+    private static final int COUNT = 0;
+    private static final int TOTAL_NANOS = 1;
+    private static final int MAX_NANOS = 2;
+
+    private final AtomicLongArray _timers = new AtomicLongArray(TimerMetric.values().length * TIMER_SLOTS);
+    private final AtomicLongArray _counters = new AtomicLongArray(CounterMetric.values().length);
+
+    @Override
+    public void recordTime(@Nonnull final TimerMetric metric, final long durationNanos) {
+        final int base = metric.ordinal() * TIMER_SLOTS;
+        _timers.incrementAndGet(base + COUNT);
+        _timers.addAndGet(base + TOTAL_NANOS, durationNanos);
+        long max = _timers.get(base + MAX_NANOS);
+        while (durationNanos > max && !_timers.compareAndSet(base + MAX_NANOS, max, durationNanos)) {
+            max = _timers.get(base + MAX_NANOS);
+        }
+    }
+
+    @Override
+    public void increment(@Nonnull final CounterMetric metric) {
+        _counters.incrementAndGet(metric.ordinal());
+    }
+
+    @Override
+    public void increment(@Nonnull final CounterMetric metric, final long delta) {
+        _counters.addAndGet(metric.ordinal(), delta);
+    }
+
+    /**
+     * @return Number of recorded executions of metric.
+     */
+    public long getCount(@Nonnull final TimerMetric metric) {
+        return _timers.get(metric.ordinal() * TIMER_SLOTS + COUNT);
+    }
+
+    /**
+     * @return Sum of the durations of all recorded executions of metric.
+     */
+    public long getTotalNanos(@Nonnull final TimerMetric metric) {
+        return _timers.get(metric.ordinal() * TIMER_SLOTS + TOTAL_NANOS);
+    }
+
+    /**
+     * @return Longest recorded execution of metric.
+     */
+    public long getMaxNanos(@Nonnull final TimerMetric metric) {
+        return _timers.get(metric.ordinal() * TIMER_SLOTS + MAX_NANOS);
+    }
+
+    /**
+     * @return How often metric occurred.
+     */
+    public long getCount(@Nonnull final CounterMetric metric) {
+        return _counters.get(metric.ordinal());
+    }
+
+    /**
+     * Logs all metrics that were recorded at least once at info level.
+     *
+     * @param logger Logger to log to.
+     */
+    public void logTo(@Nonnull final Logger logger) {
+        for (final TimerMetric metric : TimerMetric.values()) {
+            final long count = getCount(metric);
+            if (count > 0) {
+                logger.info("{}: count={}, avg={}ns, max={}ns", metric, count, getTotalNanos(metric) / count, getMaxNanos(metric));
+            }
+        }
+        for (final CounterMetric metric : CounterMetric.values()) {
+            final long count = getCount(metric);
+            if (count > 0) {
+                logger.info("{}: count={}", metric, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.echocat.marquardt.common.metrics;
+
+/**
+ * Events that are counted.
+ *
+ * @see MetricsRecorder#increment(CounterMetric)
+ */
+public enum CounterMetric {
+
+    AUTHORITY_INITIALIZE_SIGN_UP_FAILED,
+    AUTHORITY_FINALIZE_SIGN_UP_FAILED,
+    AUTHORITY_SIGN_IN_FAILED,
+    AUTHORITY_REFRESH_FAILED,
+    AUTHORITY_SIGN_OUT_FAILED,
+
+    SESSION_STORE_FAILED,
+    /**
+     * Session save or delete dropped by the WriteBehindSessionStore because it could not be written.
+     */
+    SESSION_STORE_WRITE_BEHIND_DROPPED,
+    /**
+     * Session deleted by the ExpiredSessionReaper because it expired.
+     */
+    SESSION_REAPER_DELETED,
+    /**
+     * Run of the ExpiredSessionReaper that failed.
+     */
+    SESSION_REAPER_FAILED,
+    USER_CATALOG_FAILED,
+
+    /**
+     * Certificate that did not fit into the queue of the CertificateSigningService.
+     */
+    CERTIFICATE_SIGNING_REJECTED,
+    /**
+     * Certificate that did not fit into the queue of the CertificateSigningService and was signed on the calling thread.
+     */
+    CERTIFICATE_SIGNING_CALLER_RUNS,
+    CERTIFICATE_VALID,
+    /**
+     * Certificate was taken from the VerifiedCertificateCache instead of being verified again.
+     */
+    CERTIFICATE_CACHE_HIT,
+    CERTIFICATE_EXPIRED,
+    /**
+     * Client key of the certificate was revoked after the certificate was issued.
+     */
+    CERTIFICATE_REVOKED,
+    /**
+     * Certificate was signed by a key that is not trusted.
+     */
+    CERTIFICATE_UNTRUSTED,
+    /**
+     * Signature of the certificate is invalid, missing or uses a mechanism that is not accepted.
+     */
+    CERTIFICATE_INVALID_SIGNATURE,
+    /**
+     * Certificate could not be deserialized.
+     */
+    CERTIFICATE_MALFORMED,
+
+    REQUEST_VALID,
+    REQUEST_INVALID_SIGNATURE,
+    REQUEST_MECHANISM_NOT_ACCEPTED,
+    /**
+     * Request has no Date header or its date is outside the clock window of the ReplayGuard.
+     */
+    REQUEST_OUTSIDE_CLOCK_WINDOW,
+    /**
+     * Request's nonce (or signature, if it has no nonce) was already seen by the ReplayGuard.
+     */
+    REQUEST_REPLAYED,
+    /**
+     * Request has no or an unreadable signature header, or an unreadable Date header while a ReplayGuard is used.
+     */
+    REQUEST_MALFORMED
+}
@@ -0,0 +1,48 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.echocat.marquardt.common.metrics;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives timings and counts from the hot paths of authorities, validators and filters. Implement this to feed your
+ * monitoring system of choice.
+ * <p>
+ * Implementations are called on every request and from many threads at once. They must be thread safe and should
+ * neither block nor allocate; {@link AtomicMetricsRecorder} is a reference implementation meeting both.
+ *
+ * @see TimerMetric
+ * @see CounterMetric
+ */
+public interface MetricsRecorder {
+
+    /**
+     * Records nothing. The default of all components.
+     */
+    MetricsRecorder NO_OP = NoOpMetricsRecorder.INSTANCE;
+
+    /**
+     * @param metric Timed operation.
+     * @param durationNanos Duration of one execution of the operation as measured by System.nanoTime().
+     */
+    void recordTime(@Nonnull TimerMetric metric, long durationNanos);
+
+    /**
+     * @param metric Event that occurred once.
+     */
+    void increment(@Nonnull CounterMetric metric);
+
+    /**
+     * Records several occurrences at once, e.g. the rows deleted by one batch. Implementations without an update by
+     * delta may call {@link #increment(CounterMetric)} delta times.
+     *
+     * @param metric Event that occurred.
+     * @param delta Number of occurrences. Not negative.
+     */
+    void increment(@Nonnull CounterMetric metric, long delta);
+}
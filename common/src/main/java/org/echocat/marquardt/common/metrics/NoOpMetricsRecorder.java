@@ -0,0 +1,33 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.echocat.marquardt.common.metrics;
+
+import javax.annotation.Nonnull;
+
+/**
+ * @see MetricsRecorder#NO_OP
+ */
+enum NoOpMetricsRecorder implements MetricsRecorder {
+
+    INSTANCE;
+
+    @Override
+    public void recordTime(@Nonnull final TimerMetric metric, final long durationNanos) {
+        // records nothing
+    }
+
+    @Override
+    public void increment(@Nonnull final CounterMetric metric) {
+        // records nothing
+    }
+
+    @Override
+    public void increment(@Nonnull final CounterMetric metric, final long delta) {
+        // records nothing
+    }
+}
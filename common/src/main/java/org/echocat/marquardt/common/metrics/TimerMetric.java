@@ -0,0 +1,57 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.echocat.marquardt.common.metrics;
+
+/**
+ * Operations whose duration is recorded.
+ *
+ * @see MetricsRecorder#recordTime(TimerMetric, long)
+ */
+public enum TimerMetric {
+
+    AUTHORITY_INITIALIZE_SIGN_UP,
+    AUTHORITY_FINALIZE_SIGN_UP,
+    AUTHORITY_SIGN_IN,
+    AUTHORITY_REFRESH,
+    AUTHORITY_SIGN_OUT,
+
+    SESSION_STORE_FIND_BY_CERTIFICATE,
+    SESSION_STORE_FIND_BY_SESSION_ID,
+    SESSION_STORE_FIND_BY_USER_ID,
+    SESSION_STORE_EXISTS_ACTIVE_SESSION,
+    SESSION_STORE_SAVE,
+    SESSION_STORE_CREATE_TRANSIENT,
+    SESSION_STORE_DELETE,
+    SESSION_STORE_SAVE_ALL,
+    SESSION_STORE_DELETE_ALL,
+    /**
+     * Deletion of one batch of expired sessions by the ExpiredSessionReaper.
+     */
+    SESSION_REAPER_BATCH,
+
+    USER_CATALOG_FIND_BY_CREDENTIALS,
+    USER_CATALOG_FIND_BY_UUID,
+    USER_CATALOG_TO_SIGNABLE,
+
+    /**
+     * Signing of a certificate by the CertificateSigningService, excluding the time it was queued.
+     */
+    CERTIFICATE_SIGNING,
+    /**
+     * Time a certificate waited for a thread of the CertificateSigningService.
+     */
+    CERTIFICATE_SIGNING_QUEUE_WAIT,
+    /**
+     * Deserialization and validation of a certificate, successful or not.
+     */
+    CERTIFICATE_VALIDATION,
+    /**
+     * Validation of a client's request signature, successful or not.
+     */
+    REQUEST_VALIDATION
+}
@@ -0,0 +1,230 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.echocat.marquardt.common.revocation;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Keeps revocations in a file of 16 byte records (8 bytes KeyId, 8 bytes revocation time) after an 8 byte header with
+ * the sequence number of the first record, e.g. on a volume shared by the authority and its services. The authority
+ * appends, services read the records after their last sequence number. A record the authority is still writing is
+ * ignored until it is complete.
+ * <p>
+ * Like {@link InMemoryRevocationLog}, reads start at the first revocation within {@link
+ * RevocationRegistry#RETENTION_IN_MILLIS} of the latest one; older sequence numbers and ones past the end of the file
+ * (e.g. after it was replaced) get a delta {@link RevocationDelta#isReplacingAll() replacing all}. Once the expired
+ * records are at least as many as the retained ones (and at least {@link #COMPACTION_THRESHOLD}), the authority
+ * compacts the file: It writes the retained records to a new file and atomically renames it to the log's file. Services open the file for each read, so they always read
+ * either the old or the compacted file.
+ * <p>
+ * Every append is forced to the storage device by default, so an acknowledged revocation survives a crash of the
+ * authority. This costs a disk flush per revocation; see {@link #setForceOnAppend(boolean)}.
+ */
+public class FileRevocationLog implements RevocationLog, Closeable {
+
+    /**
+     * Minimum number of expired records before the file is compacted.
+     */
+    public static final int COMPACTION_THRESHOLD = 4096;
+
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_BYTES = 16;
+
+    @Nonnull
+    private final Path _path;
+    private final boolean _writable;
+    private FileChannel _channel;
+    /**
+     * Index (in the current file) of the first record within the retention of the latest one. Maintained by append.
+     */
+    private long _firstRetained;
+    private volatile boolean _forceOnAppend = true;
+
+    /**
+     * @param file File to use. Created if it does not exist and writable is true.
+     * @param writable true for the authority that appends, false for services that only read.
+     * @throws IOException If the file cannot be opened for writing.
+     */
+    public FileRevocationLog(@Nonnull final File file, final boolean writable) throws IOException {
+        _path = file.toPath();
+        _writable = writable;
+        if (writable) {
+            _channel = FileChannel.open(_path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (_channel.size() < HEADER_BYTES) {
+                writeFully(_channel, header(0L), 0L);
+                _channel.force(false);
+            }
+            _firstRetained = firstRetainedOf(_channel, completeRecords(_channel));
+        }
+    }
+
+    /**
+     * @param forceOnAppend true (the default) to force each appended revocation to the storage device before append
+     *                      returns. false leaves flushing to the operating system, which is faster but may lose the
+     *                      latest revocations if the host crashes.
+     */
+    public void setForceOnAppend(final boolean forceOnAppend) {
+        _forceOnAppend = forceOnAppend;
+    }
+
+    @Override
+    public synchronized void append(final long keyId, final long revokedAt) throws IOException {
+        if (!_writable) {
+            throw new IllegalStateException("Revocation log was opened read only.");
+        }
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        record.putLong(keyId).putLong(revokedAt).flip();
+        final long records = completeRecords(_channel);
+        writeFully(_channel, record, positionOf(records));
+        if (_forceOnAppend) {
+            _channel.force(false);
+        }
+        final long retainedSince = revokedAt - RevocationRegistry.RETENTION_IN_MILLIS;
+        while (_firstRetained < records && revokedAtOf(_channel, _firstRetained) < retainedSince) {
+            _firstRetained++;
+        }
+        if (_firstRetained >= COMPACTION_THRESHOLD && _firstRetained >= records + 1 - _firstRetained) {
+            compact(records + 1);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public RevocationDelta readSince(@Nonnegative final long sequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(_path, StandardOpenOption.READ)) {
+            final long firstSequence = firstSequenceOf(channel);
+            final long records = completeRecords(channel);
+            final long nextSequence = firstSequence + records;
+            final long firstRetainedSequence = firstSequence + firstRetainedOf(channel, records);
+            final boolean replacingAll = sequence < firstRetainedSequence || sequence > nextSequence;
+            final long from = replacingAll ? firstRetainedSequence : sequence;
+            final long count = nextSequence - from;
+            if (count > RevocationDelta.MAXIMUM_SIZE) {
+                throw new IOException(count + " revocations exceed the maximum of " + RevocationDelta.MAXIMUM_SIZE + " per delta.");
+            }
+            final ByteBuffer buffer = ByteBuffer.allocate((int) count * RECORD_BYTES);
+            readFully(channel, buffer, positionOf(from - firstSequence));
+            buffer.flip();
+            final long[] keyIds = new long[(int) count];
+            final long[] revokedAts = new long[(int) count];
+            for (int i = 0; i < count; i++) {
+                keyIds[i] = buffer.getLong();
+                revokedAts[i] = buffer.getLong();
+            }
+            return new RevocationDelta(nextSequence, replacingAll, keyIds, revokedAts);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (_channel != null) {
+            _channel.close();
+        }
+    }
+
+    /**
+     * Writes the retained records to a new file and renames it to the log's file.
+     */
+    private void compact(final long records) throws IOException {
+        final Path compacted = _path.resolveSibling(_path.getFileName() + ".compacting");
+        try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(target, header(firstSequenceOf(_channel) + _firstRetained), 0L);
+            target.position(HEADER_BYTES);
+            final long position = positionOf(_firstRetained);
+            final long length = positionOf(records) - position;
+            long transferred = 0;
+            while (transferred < length) {
+                transferred += _channel.transferTo(position + transferred, length - transferred, target);
+            }
+            target.force(true);
+        }
+        Files.move(compacted, _path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        _channel.close();
+        _channel = FileChannel.open(_path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        _firstRetained = 0;
+    }
+
+    /**
+     * Revocations are appended in order of time, so the first retained record is found by binary search.
+     */
+    private static long firstRetainedOf(@Nonnull final FileChannel channel, final long records) throws IOException {
+        if (records == 0) {
+            return 0;
+        }
+        final long retainedSince = revokedAtOf(channel, records - 1) - RevocationRegistry.RETENTION_IN_MILLIS;
+        long low = 0;
+        long high = records - 1;
+        while (low < high) {
+            final long middle = (low + high) >>> 1;
+            if (revokedAtOf(channel, middle) < retainedSince) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long firstSequenceOf(@Nonnull final FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_BYTES) {
+            return 0L;
+        }
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(channel, header, 0L);
+        return header.getLong(0);
+    }
+
+    private static long revokedAtOf(@Nonnull final FileChannel channel, final long index) throws IOException {
+        final ByteBuffer revokedAt = ByteBuffer.allocate(8);
+        readFully(channel, revokedAt, positionOf(index) + 8);
+        return revokedAt.getLong(0);
+    }
+
+    private static long completeRecords(@Nonnull final FileChannel channel) throws IOException {
+        return Math.max(0L, channel.size() - HEADER_BYTES) / RECORD_BYTES;
+    }
+
+    private static long positionOf(final long index) {
+        return HEADER_BYTES + index * RECORD_BYTES;
+    }
+
+    @Nonnull
+    private static ByteBuffer header(final long firstSequence) {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putLong(firstSequence).flip();
+        return header;
+    }
+
+    private static void writeFully(@Nonnull final FileChannel channel, @Nonnull final ByteBuffer buffer, final long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            current += channel.write(buffer, current);
+        }
+    }
+
+    private static void readFully(@Nonnull final FileChannel channel, @Nonnull final ByteBuffer buffer, final long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new IOException("Revocation log was truncated.");
+            }
+            current += read;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.echocat.marquardt.common.revocation;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Keeps revocations in memory. Revocations older than all certificates that may still be valid are dropped on append,
+ * so memory is bounded by the revocations of the last certificate validity period. Useful as local stand-in for tests
+ * and for authorities that serve the feed themselves. The revocations are lost on restart; services that read the
+ * feed before get a delta {@link RevocationDelta#isReplacingAll() replacing all} with the ones appended since.
+ */
+public class InMemoryRevocationLog implements RevocationLog {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] _keyIds = new long[INITIAL_CAPACITY];
+    private long[] _revokedAts = new long[INITIAL_CAPACITY];
+    private int _size;
+    /**
+     * Sequence number of the revocation at index 0.
+     */
+    private long _firstSequence;
+
+    @Override
+    public synchronized void append(final long keyId, final long revokedAt) {
+        dropRevocationsBefore(revokedAt - RevocationRegistry.RETENTION_IN_MILLIS);
+        if (_size == _keyIds.length) {
+            _keyIds = Arrays.copyOf(_keyIds, _size * 2);
+            _revokedAts = Arrays.copyOf(_revokedAts, _size * 2);
+        }
+        _keyIds[_size] = keyId;
+        _revokedAts[_size] = revokedAt;
+        _size++;
+    }
+
+    @Nonnull
+    @Override
+    public synchronized RevocationDelta readSince(@Nonnegative final long sequence) {
+        final long nextSequence = _firstSequence + _size;
+        final boolean replacingAll = sequence < _firstSequence || sequence > nextSequence;
+        final int from = replacingAll ? 0 : (int) (sequence - _firstSequence);
+        return new RevocationDelta(nextSequence, replacingAll, Arrays.copyOfRange(_keyIds, from, _size), Arrays.copyOfRange(_revokedAts, from, _size));
+    }
+
+    /**
+     * Revocations are appended in order of time, so the revocations to drop are at the start.
+     */
+    private void dropRevocationsBefore(final long time) {
+        int dropped = 0;
+        while (dropped < _size && _revokedAts[dropped] < time) {
+            dropped++;
+        }
+        if (dropped > 0) {
+            System.arraycopy(_keyIds, dropped, _keyIds, 0, _size - dropped);
+            System.arraycopy(_revokedAts, dropped, _revokedAts, 0, _size - dropped);
+            _size -= dropped;
+            _firstSequence += dropped;
+        }
+    }
+}
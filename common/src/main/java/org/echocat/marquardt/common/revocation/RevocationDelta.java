@@ -0,0 +1,142 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.echocat.marquardt.common.revocation;
+
+import org.echocat.marquardt.common.util.BinaryReader;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.WillNotClose;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Revocations a {@link RevocationFeed} returned for a sequence number: Each revocation is the {@link
+ * org.echocat.marquardt.common.keyprovisioning.KeyId KeyId} of a client key and the time it was revoked at.
+ * Certificates for this client key issued before that time are revoked.
+ * <p>
+ * Usually a delta contains the revocations appended since the requested sequence number. If the feed no longer has
+ * them, it returns all revocations it still has and marks the delta as {@link #isReplacingAll() replacing all}.
+ * <p>
+ * Binary format, as served by the authority:
+ *
+ * <pre>
+ * [ VERSION (1 byte) ] [ FLAGS (1 byte) ] [ NEXT SEQUENCE (8 bytes) ] [ COUNT (4 bytes) ] ( [ KEY ID (8 bytes) ] [ REVOKED AT (8 bytes) ] )*
+ * </pre>
+ */
+public final class RevocationDelta {
+
+    public static final byte VERSION = 1;
+    /**
+     * Maximum number of revocations in one delta.
+     */
+    public static final int MAXIMUM_SIZE = 1 << 24;
+
+    private static final int REPLACING_ALL_FLAG = 1;
+
+    private final long _nextSequence;
+    private final boolean _replacingAll;
+    @Nonnull
+    private final long[] _keyIds;
+    @Nonnull
+    private final long[] _revokedAts;
+
+    /**
+     * @param nextSequence Sequence number to request the following delta with.
+     * @param replacingAll true if the revocations replace all revocations known so far.
+     * @param keyIds KeyIds of revoked client keys. Not copied.
+     * @param revokedAts Times (in millis) the client keys at the same index in keyIds were revoked at. Not copied.
+     */
+    public RevocationDelta(@Nonnegative final long nextSequence, final boolean replacingAll, @Nonnull final long[] keyIds, @Nonnull final long[] revokedAts) {
+        if (keyIds.length != revokedAts.length) {
+            throw new IllegalArgumentException("Each key id requires a revocation time.");
+        }
+        _nextSequence = nextSequence;
+        _replacingAll = replacingAll;
+        _keyIds = keyIds;
+        _revokedAts = revokedAts;
+    }
+
+    @Nonnull
+    public static RevocationDelta empty(@Nonnegative final long nextSequence) {
+        return new RevocationDelta(nextSequence, false, new long[0], new long[0]);
+    }
+
+    @Nonnull
+    public static RevocationDelta readFrom(@Nonnull @WillNotClose final InputStream in) throws IOException {
+        final BinaryReader reader = BinaryReader.of(in);
+        final byte version = reader.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported revocation delta version " + version + ".");
+        }
+        final byte flags = reader.readByte();
+        final long nextSequence = reader.readLong();
+        final int size = reader.readLength(MAXIMUM_SIZE);
+        final long[] keyIds = new long[size];
+        final long[] revokedAts = new long[size];
+        for (int i = 0; i < size; i++) {
+            keyIds[i] = reader.readLong();
+            revokedAts[i] = reader.readLong();
+        }
+        return new RevocationDelta(nextSequence, (flags & REPLACING_ALL_FLAG) != 0, keyIds, revokedAts);
+    }
+
+    public void writeTo(@Nonnull @WillNotClose final OutputStream out) throws IOException {
+        final DataOutputStream dataOutput = new DataOutputStream(out);
+        dataOutput.writeByte(VERSION);
+        dataOutput.writeByte(_replacingAll ? REPLACING_ALL_FLAG : 0);
+        dataOutput.writeLong(_nextSequence);
+        dataOutput.writeInt(_keyIds.length);
+        for (int i = 0; i < _keyIds.length; i++) {
+            dataOutput.writeLong(_keyIds[i]);
+            dataOutput.writeLong(_revokedAts[i]);
+        }
+        dataOutput.flush();
+    }
+
+    public long getNextSequence() {
+        return _nextSequence;
+    }
+
+    public boolean isReplacingAll() {
+        return _replacingAll;
+    }
+
+    public int size() {
+        return _keyIds.length;
+    }
+
+    public long getKeyId(final int index) {
+        return _keyIds[index];
+    }
+
+    public long getRevokedAt(final int index) {
+        return _revokedAts[index];
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RevocationDelta)) {
+            return false;
+        }
+        final RevocationDelta that = (RevocationDelta) o;
+        return _nextSequence == that._nextSequence && _replacingAll == that._replacingAll
+            && Arrays.equals(_keyIds, that._keyIds) && Arrays.equals(_revokedAts, that._revokedAts);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(_keyIds) + (int) (_nextSequence ^ (_nextSequence >>> 32));
+    }
+}
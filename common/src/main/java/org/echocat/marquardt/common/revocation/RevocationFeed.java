@@ -0,0 +1,34 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.echocat.marquardt.common.revocation;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+/**
+ * Source of revocations for services. Revocations are numbered by sequence, so services only need to fetch the ones
+ * appended since their last update.
+ *
+ * @see RevocationRegistry#update(RevocationFeed)
+ * @see FileRevocationLog
+ * @see UrlRevocationFeed
+ */
+public interface RevocationFeed {
+
+    /**
+     * @param sequence Sequence number of the first revocation to return: 0 to start or
+     *                 {@link RevocationDelta#getNextSequence()} of the last delta.
+     * @return The revocations since sequence. A delta {@link RevocationDelta#isReplacingAll() replacing all} with the
+     *         retained revocations if sequence is older than the retained ones or was never issued by this feed, e.g.
+     *         because the log was restarted or replaced.
+     * @throws IOException If the feed cannot be read.
+     */
+    @Nonnull
+    RevocationDelta readSince(@Nonnegative long sequence) throws IOException;
+}
@@ -0,0 +1,26 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.echocat.marquardt.common.revocation;
+
+import java.io.IOException;
+
+/**
+ * Feed the authority appends revocations to.
+ *
+ * @see InMemoryRevocationLog
+ * @see FileRevocationLog
+ */
+public interface RevocationLog extends RevocationFeed {
+
+    /**
+     * @param keyId {@link org.echocat.marquardt.common.keyprovisioning.KeyId KeyId} of the client key to revoke.
+     * @param revokedAt Time (in millis) of the revocation. Certificates issued before are revoked.
+     * @throws IOException If the revocation cannot be persisted.
+     */
+    void append(long keyId, long revokedAt) throws IOException;
+}
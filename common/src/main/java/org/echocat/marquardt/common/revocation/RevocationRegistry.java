@@ -0,0 +1,150 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.echocat.marquardt.common.revocation;
+
+import org.echocat.marquardt.common.domain.certificate.Certificate;
+import org.echocat.marquardt.common.util.DateProvider;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Revocations known to a service. Checks are a binary search in a sorted long[] of the revoked client KeyIds and take
+ * nanoseconds; they neither lock nor allocate. Updates build a new snapshot and publish it atomically, so checks never
+ * wait for them.
+ * <p>
+ * Revocations are dropped once all certificates they revoke have expired, so the registry only holds the revocations
+ * of the last {@link #RETENTION_IN_MILLIS}. Call {@link #update(RevocationFeed)} periodically, e.g. every few seconds
+ * from a ScheduledExecutorService; a revoked certificate is rejected from the first update after its revocation.
+ *
+ * @see org.echocat.marquardt.common.CertificateValidator#setRevocationRegistry(RevocationRegistry)
+ */
+public class RevocationRegistry {
+
+    /**
+     * How long revocations are kept: Twice the validity of certificates, to tolerate clock skew between authority and
+     * services.
+     */
+    public static final long RETENTION_IN_MILLIS = 2 * Certificate.VALIDITY_IN_MILLIS;
+
+    private final AtomicReference<Snapshot> _snapshot = new AtomicReference<>(Snapshot.EMPTY);
+    private DateProvider _dateProvider = new DateProvider();
+
+    public void setDateProvider(final DateProvider dateProvider) {
+        _dateProvider = dateProvider;
+    }
+
+    /**
+     * @param certificate Certificate to check.
+     * @return true if the client key of the certificate was revoked after the certificate was issued.
+     */
+    public boolean isRevoked(@Nonnull final Certificate<?> certificate) {
+        final Snapshot snapshot = _snapshot.get();
+        return snapshot._keyIds.length > 0
+            && snapshot.isRevoked(certificate.getClientKeyId().toLong(), certificate.getExpiresAtInMillis() - Certificate.VALIDITY_IN_MILLIS);
+    }
+
+    /**
+     * @param keyId KeyId of a client key.
+     * @param issuedAt Time (in millis) a certificate for this client key was issued at.
+     * @return true if the client key was revoked at or after issuedAt.
+     */
+    public boolean isRevoked(final long keyId, final long issuedAt) {
+        return _snapshot.get().isRevoked(keyId, issuedAt);
+    }
+
+    /**
+     * Fetches and applies the revocations appended to feed since the last update.
+     *
+     * @param feed Feed to read from. Always use the same feed (or feeds of the same log) with a registry.
+     * @return Number of revocations read.
+     * @throws IOException If the feed cannot be read. The registry is unchanged.
+     */
+    public synchronized int update(@Nonnull final RevocationFeed feed) throws IOException {
+        final RevocationDelta delta = feed.readSince(_snapshot.get()._nextSequence);
+        apply(delta);
+        return delta.size();
+    }
+
+    /**
+     * @param delta Revocations to add to (or to replace, see {@link RevocationDelta#isReplacingAll()}) the known ones.
+     */
+    public synchronized void apply(@Nonnull final RevocationDelta delta) {
+        final long retainedSince = _dateProvider.now().getTime() - RETENTION_IN_MILLIS;
+        final Snapshot current = _snapshot.get();
+        final Map<Long, Long> revocations = new HashMap<>();
+        if (!delta.isReplacingAll()) {
+            for (int i = 0; i < current._keyIds.length; i++) {
+                retain(revocations, current._keyIds[i], current._revokedAts[i], retainedSince);
+            }
+        }
+        for (int i = 0; i < delta.size(); i++) {
+            retain(revocations, delta.getKeyId(i), delta.getRevokedAt(i), retainedSince);
+        }
+        final long[] keyIds = new long[revocations.size()];
+        int i = 0;
+        for (final Long keyId : revocations.keySet()) {
+            keyIds[i++] = keyId;
+        }
+        Arrays.sort(keyIds);
+        final long[] revokedAts = new long[keyIds.length];
+        for (i = 0; i < keyIds.length; i++) {
+            revokedAts[i] = revocations.get(keyIds[i]);
+        }
+        _snapshot.set(new Snapshot(keyIds, revokedAts, delta.getNextSequence()));
+    }
+
+    /**
+     * @return Sequence number the next update starts at.
+     */
+    public long getNextSequence() {
+        return _snapshot.get()._nextSequence;
+    }
+
+    /**
+     * @return Number of revoked client keys currently known.
+     */
+    public int size() {
+        return _snapshot.get()._keyIds.length;
+    }
+
+    private static void retain(@Nonnull final Map<Long, Long> revocations, final long keyId, final long revokedAt, final long retainedSince) {
+        if (revokedAt >= retainedSince) {
+            final Long existing = revocations.get(keyId);
+            if (existing == null || existing < revokedAt) {
+                revocations.put(keyId, revokedAt);
+            }
+        }
+    }
+
+    private static final class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(new long[0], new long[0], 0L);
+
+        @Nonnull
+        private final long[] _keyIds;
+        @Nonnull
+        private final long[] _revokedAts;
+        private final long _nextSequence;
+
+        private Snapshot(@Nonnull final long[] keyIds, @Nonnull final long[] revokedAts, final long nextSequence) {
+            _keyIds = keyIds;
+            _revokedAts = revokedAts;
+            _nextSequence = nextSequence;
+        }
+
+        private boolean isRevoked(final long keyId, final long issuedAt) {
+            final int index = Arrays.binarySearch(_keyIds, keyId);
+            return index >= 0 && issuedAt <= _revokedAts[index];
+        }
+    }
+}
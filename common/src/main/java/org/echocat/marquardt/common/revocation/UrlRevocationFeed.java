@@ -0,0 +1,56 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.echocat.marquardt.common.revocation;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+
+/**
+ * Reads revocations from an authority, e.g. from the /revocations endpoint of the SpringAuthorityController. The
+ * sequence number is passed as query parameter since.
+ */
+public class UrlRevocationFeed implements RevocationFeed {
+
+    private static final int DEFAULT_TIMEOUT_IN_MILLIS = 10000;
+
+    @Nonnull
+    private final String _url;
+    private int _timeoutInMillis = DEFAULT_TIMEOUT_IN_MILLIS;
+
+    /**
+     * @param url Url of the feed, e.g. https://authority.example.com/revocations
+     */
+    public UrlRevocationFeed(@Nonnull final String url) {
+        _url = url;
+    }
+
+    public void setTimeoutInMillis(final int timeoutInMillis) {
+        _timeoutInMillis = timeoutInMillis;
+    }
+
+    @Nonnull
+    @Override
+    public RevocationDelta readSince(@Nonnegative final long sequence) throws IOException {
+        final URLConnection connection = new URL(_url + (_url.indexOf('?') < 0 ? '?' : '&') + "since=" + sequence).openConnection();
+        connection.setConnectTimeout(_timeoutInMillis);
+        connection.setReadTimeout(_timeoutInMillis);
+        try (InputStream in = new BufferedInputStream(connection.getInputStream())) {
+            return RevocationDelta.readFrom(in);
+        } finally {
+            if (connection instanceof HttpURLConnection) {
+                ((HttpURLConnection) connection).disconnect();
+            }
+        }
+    }
+}
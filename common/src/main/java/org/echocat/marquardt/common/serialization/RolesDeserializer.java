@@ -9,27 +9,41 @@
 package org.echocat.marquardt.common.serialization;
 
 import org.echocat.marquardt.common.domain.certificate.Role;
+import org.echocat.marquardt.common.domain.certificate.RoleSet;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public abstract class RolesDeserializer<T extends Role> {
 
-    public Set<Role> from(final Long roleCodes) {
+    /**
+     * Roles by id, filled on first use with {@link #createRoleFromId(Number)}.
+     */
+    private final AtomicReferenceArray<T> _rolesById = new AtomicReferenceArray<>(Role.MAX_ROLE_ID);
+
+    /**
+     * @param roleCodes Encoded roles as transported in certificates.
+     * @return Immutable set of the encoded roles.
+     * @throws IllegalArgumentException if roleCodes is null or uses bits outside of
+     *                                  {@link RoleSet#SUPPORTED_ROLE_CODES}.
+     */
+    public RoleSet<T> from(final Long roleCodes) {
         if(roleCodes == null) {
             throw new IllegalArgumentException("roleCodes must not be null.");
         }
-        final Set<Role> roles = new HashSet<>();
-        for (int i = 0; i < Role.MAX_ROLE_ID; i++) {
-            final long roleCodeOfCurrentRole = new Double(Math.pow(2, i)).longValue();
-            if (roleCodes < roleCodeOfCurrentRole) {
-                return roles;
-            }
-            if ((roleCodes & roleCodeOfCurrentRole) == roleCodeOfCurrentRole) {
-                roles.add(createRoleFromId(i));
-            }
+        return new RoleSet<>(roleCodes, this);
+    }
+
+    /**
+     * @param id Id of the role. Must be between 0 and {@link Role#MAX_ROLE_ID} (exclusive).
+     * @return The role with the given id, created only once per RolesDeserializer.
+     */
+    public T roleOf(final int id) {
+        T role = _rolesById.get(id);
+        if (role == null) {
+            role = createRoleFromId(id);
+            _rolesById.set(id, role);
         }
-        throw new IllegalArgumentException("Provided role code is greater then the maximum allowed code.");
+        return role;
     }
 
     public abstract T createRoleFromId(Number id);
@@ -10,6 +10,7 @@ package org.echocat.marquardt.common.serialization;
 
 import com.google.common.base.Preconditions;
 import org.echocat.marquardt.common.domain.certificate.Role;
+import org.echocat.marquardt.common.domain.certificate.RoleSet;
 
 import java.util.Set;
 
@@ -27,10 +28,14 @@ public final class RolesSerializer {
         if(roles == null) {
             throw new IllegalArgumentException("roles must not be null");
         }
+        if (roles instanceof RoleSet) {
+            return ((RoleSet<?>) roles).getRoleCodes();
+        }
         long result = 0;
         for (final Role role : roles) {
-            Preconditions.checkArgument(role.id() >= 0 && role.id() < 64);
-            result += Math.pow(2, role.id().doubleValue());
+            final int id = role.id();
+            Preconditions.checkArgument(id >= 0 && id < Long.SIZE);
+            result |= 1L << id;
         }
         return result;
     }
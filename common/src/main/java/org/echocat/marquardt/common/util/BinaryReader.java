@@ -0,0 +1,328 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.util;
+
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import org.echocat.marquardt.common.domain.DeserializingFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.WillNotClose;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the binary format of signables from a ByteBuffer or an InputStream. You may want to use this when you
+ * implement your own Signable's DeserializingFactory.
+ *
+ * Multi byte values are read big-endian as written by DataOutputStream. Reading primitives does not allocate. Reads
+ * from a stream loop until all requested bytes arrived, so sources that deliver content in parts (sockets, pipes) are
+ * read correctly; a stream that ends early causes an EOFException. Lengths read from the input are checked against a
+ * maximum given by the caller before anything is allocated.
+ *
+ * A reader never reads ahead: After reading a value the buffer's position or the stream is exactly behind that value,
+ * so the rest of the input can be handed on to other factories (see {@link #asInputStream()}).
+ *
+ * @see DeserializingFactory
+ * @see org.echocat.marquardt.common.domain.certificate.CertificateFactory
+ */
+public abstract class BinaryReader {
+
+    /**
+     * @param buffer Buffer to read at its position. Reads advance the position.
+     * @return Reader over buffer.
+     */
+    @Nonnull
+    public static BinaryReader of(@Nonnull final ByteBuffer buffer) {
+        return new BufferReader(buffer);
+    }
+
+    /**
+     * @param inputStream Stream to read from. It is not closed by the reader.
+     * @return Reader over inputStream.
+     */
+    @Nonnull
+    public static BinaryReader of(@Nonnull @WillNotClose final InputStream inputStream) {
+        return new StreamReader(inputStream);
+    }
+
+    BinaryReader() {}
+
+    /**
+     * @return The next byte.
+     * @throws EOFException When the input has no more bytes.
+     */
+    public abstract byte readByte() throws IOException;
+
+    /**
+     * @return The next 4 bytes as int.
+     * @throws EOFException When the input ends before.
+     */
+    public abstract int readInt() throws IOException;
+
+    /**
+     * @return The next 8 bytes as long.
+     * @throws EOFException When the input ends before.
+     */
+    public abstract long readLong() throws IOException;
+
+    /**
+     * Reads exactly length bytes into target.
+     *
+     * @param target Array to read into.
+     * @param offset Offset in target to start at.
+     * @param length Number of bytes to read.
+     * @throws EOFException When the input ends before.
+     */
+    public abstract void readFully(@Nonnull byte[] target, int offset, int length) throws IOException;
+
+    /**
+     * @param numberOfBytes Number of bytes to skip.
+     * @throws EOFException When the input ends before.
+     */
+    public abstract void skipBytes(int numberOfBytes) throws IOException;
+
+    /**
+     * @param numberOfBytes Number of bytes to read.
+     * @return The next numberOfBytes bytes as buffer. Reading a ByteBuffer returns a view of the content.
+     * @throws EOFException When the input ends before.
+     */
+    @Nonnull
+    public abstract ByteBuffer readSlice(int numberOfBytes) throws IOException;
+
+    /**
+     * @return A stream of the remaining content. Reading the stream advances this reader as well.
+     */
+    @Nonnull
+    public abstract InputStream asInputStream();
+
+    /**
+     * @param numberOfBytes Number of bytes to read.
+     * @return byte[] with numberOfBytes length and the content of the input.
+     * @throws EOFException When the input ends before.
+     */
+    @Nonnull
+    public byte[] readBytes(final int numberOfBytes) throws IOException {
+        requireNotNegative(numberOfBytes);
+        final byte[] bytes = new byte[numberOfBytes];
+        readFully(bytes, 0, numberOfBytes);
+        return bytes;
+    }
+
+    /**
+     * Reads a 4 byte length.
+     *
+     * @param maximum Largest allowed length.
+     * @return Deserialized length.
+     * @throws IOException When the length is negative, larger than maximum or cannot be read.
+     */
+    public int readLength(final int maximum) throws IOException {
+        return checkedLength(readInt(), maximum);
+    }
+
+    /**
+     * Reads a length written as {@link VarLongs variable length long}.
+     *
+     * @param maximum Largest allowed length.
+     * @return Deserialized length.
+     * @throws IOException When the length is larger than maximum or cannot be read.
+     */
+    public int readVarLength(final int maximum) throws IOException {
+        return checkedLength(readVarLong(), maximum);
+    }
+
+    /**
+     * @return The next {@link VarLongs variable length long}.
+     * @throws EOFException When the input ends before the value does.
+     * @throws IOException When the value is longer than {@link VarLongs#MAX_BYTES} bytes.
+     */
+    public long readVarLong() throws IOException {
+        long result = 0;
+        for (int i = 0; i < VarLongs.MAX_BYTES; i++) {
+            final byte current = readByte();
+            result |= (long) (current & 0x7F) << (7 * i);
+            if ((current & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Variable length long is longer than " + VarLongs.MAX_BYTES + " bytes.");
+    }
+
+    /**
+     * Reads a 4 byte length followed by as many bytes.
+     *
+     * @param maximum Largest allowed length.
+     * @return The bytes.
+     * @throws IOException When the length is negative, larger than maximum or the content cannot be read.
+     */
+    @Nonnull
+    public byte[] readLengthPrefixedBytes(final int maximum) throws IOException {
+        return readBytes(readLength(maximum));
+    }
+
+    private static int checkedLength(final long length, final int maximum) throws IOException {
+        if (length < 0 || length > maximum) {
+            throw new IOException("Length " + length + " exceeds maximum of " + maximum + ".");
+        }
+        return (int) length;
+    }
+
+    static void requireNotNegative(final int numberOfBytes) throws EOFException {
+        if (numberOfBytes < 0) {
+            throw new EOFException("Cannot read " + numberOfBytes + " bytes.");
+        }
+    }
+
+    private static final class BufferReader extends BinaryReader {
+
+        @Nonnull
+        private final ByteBuffer _buffer;
+
+        private BufferReader(@Nonnull final ByteBuffer buffer) {
+            _buffer = buffer;
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            requireRemaining(1);
+            return _buffer.get();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            requireRemaining(Ints.BYTES);
+            int result = 0;
+            for (int i = 0; i < Ints.BYTES; i++) {
+                result = (result << 8) | (_buffer.get() & 0xFF);
+            }
+            return result;
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            requireRemaining(Longs.BYTES);
+            long result = 0;
+            for (int i = 0; i < Longs.BYTES; i++) {
+                result = (result << 8) | (_buffer.get() & 0xFF);
+            }
+            return result;
+        }
+
+        @Override
+        public void readFully(@Nonnull final byte[] target, final int offset, final int length) throws IOException {
+            requireNotNegative(length);
+            requireRemaining(length);
+            _buffer.get(target, offset, length);
+        }
+
+        @Override
+        public void skipBytes(final int numberOfBytes) throws IOException {
+            requireNotNegative(numberOfBytes);
+            requireRemaining(numberOfBytes);
+            _buffer.position(_buffer.position() + numberOfBytes);
+        }
+
+        @Nonnull
+        @Override
+        public ByteBuffer readSlice(final int numberOfBytes) throws IOException {
+            requireNotNegative(numberOfBytes);
+            requireRemaining(numberOfBytes);
+            final ByteBuffer slice = _buffer.slice();
+            slice.limit(numberOfBytes);
+            _buffer.position(_buffer.position() + numberOfBytes);
+            return slice;
+        }
+
+        @Nonnull
+        @Override
+        public InputStream asInputStream() {
+            return new ByteBufferInputStream(_buffer);
+        }
+
+        private void requireRemaining(final int numberOfBytes) throws EOFException {
+            if (_buffer.remaining() < numberOfBytes) {
+                throw new EOFException("Expected " + numberOfBytes + " bytes but only " + _buffer.remaining() + " are remaining.");
+            }
+        }
+    }
+
+    private static final class StreamReader extends BinaryReader {
+
+        @Nonnull
+        private final InputStream _inputStream;
+        private final byte[] _scratch = new byte[Longs.BYTES];
+
+        private StreamReader(@Nonnull final InputStream inputStream) {
+            _inputStream = inputStream;
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            final int result = _inputStream.read();
+            if (result < 0) {
+                throw new EOFException();
+            }
+            return (byte) result;
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            readFully(_scratch, 0, Ints.BYTES);
+            return Ints.fromBytes(_scratch[0], _scratch[1], _scratch[2], _scratch[3]);
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            readFully(_scratch, 0, Longs.BYTES);
+            return Longs.fromBytes(_scratch[0], _scratch[1], _scratch[2], _scratch[3], _scratch[4], _scratch[5], _scratch[6], _scratch[7]);
+        }
+
+        @Override
+        public void readFully(@Nonnull final byte[] target, final int offset, final int length) throws IOException {
+            requireNotNegative(length);
+            int read = 0;
+            while (read < length) {
+                final int current = _inputStream.read(target, offset + read, length - read);
+                if (current < 0) {
+                    throw new EOFException("Expected " + length + " bytes but stream ended after " + read + ".");
+                }
+                read += current;
+            }
+        }
+
+        @Override
+        public void skipBytes(final int numberOfBytes) throws IOException {
+            requireNotNegative(numberOfBytes);
+            long remaining = numberOfBytes;
+            while (remaining > 0) {
+                final long skipped = _inputStream.skip(remaining);
+                if (skipped > 0) {
+                    remaining -= skipped;
+                } else {
+                    readByte();
+                    remaining--;
+                }
+            }
+        }
+
+        @Nonnull
+        @Override
+        public ByteBuffer readSlice(final int numberOfBytes) throws IOException {
+            return ByteBuffer.wrap(readBytes(numberOfBytes));
+        }
+
+        @Nonnull
+        @Override
+        public InputStream asInputStream() {
+            return _inputStream;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.util;
+
+import javax.annotation.Nonnull;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * InputStream view of a ByteBuffer. Reading from the stream advances the position of the buffer, so stream based
+ * DeserializingFactories can be used in the middle of ByteBuffer based deserialization without copying the content.
+ *
+ * @see org.echocat.marquardt.common.domain.ByteBufferDeserializingFactory
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    @Nonnull
+    private final ByteBuffer _buffer;
+
+    public ByteBufferInputStream(@Nonnull final ByteBuffer buffer) {
+        _buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        return _buffer.hasRemaining() ? _buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(@Nonnull final byte[] bytes, final int offset, final int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (!_buffer.hasRemaining()) {
+            return -1;
+        }
+        final int toRead = Math.min(length, _buffer.remaining());
+        _buffer.get(bytes, offset, toRead);
+        return toRead;
+    }
+
+    @Override
+    public long skip(final long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        final int toSkip = (int) Math.min(n, _buffer.remaining());
+        _buffer.position(_buffer.position() + toSkip);
+        return toSkip;
+    }
+
+    @Override
+    public int available() {
+        return _buffer.remaining();
+    }
+}
@@ -8,14 +8,11 @@
 
 package org.echocat.marquardt.common.util;
 
-import com.google.common.primitives.Ints;
-import com.google.common.primitives.Longs;
 import org.echocat.marquardt.common.domain.certificate.CertificateFactory;
 import org.echocat.marquardt.common.domain.DeserializingFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.WillNotClose;
-import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -27,7 +24,10 @@ import java.io.InputStream;
  * @see CertificateFactory
  * @see org.echocat.marquardt.common.domain.PublicKeyWithMechanism
  *
+ * @deprecated Use {@link BinaryReader#of(InputStream)}, which reads primitives without allocation and enforces
+ * maximum lengths.
  */
+@Deprecated
 public final class InputStreamUtils {
 
     private static final InputStreamUtils INSTANCE = new InputStreamUtils();
@@ -79,28 +79,19 @@ public final class InputStreamUtils {
     }
 
     private byte[] internalReadBytes(@Nonnull @WillNotClose final InputStream inputStream, final int numberOfBytes) throws IOException {
-        final byte[] bytes = new byte[numberOfBytes];
-        final int read = inputStream.read(bytes);
-        if (read != numberOfBytes) {
-            throw new EOFException();
-        }
-        return bytes;
+        return BinaryReader.of(inputStream).readBytes(numberOfBytes);
     }
 
     private byte internalReadByte(@Nonnull @WillNotClose final InputStream inputStream) throws IOException {
-        final byte[] bytes = readBytes(inputStream, 1);
-        return bytes[0];
+        return BinaryReader.of(inputStream).readByte();
     }
 
     private long internalReadLong(@Nonnull @WillNotClose final InputStream inputStream) throws IOException {
-        final byte[] bytes = readBytes(inputStream, Longs.BYTES);
-        return Longs.fromByteArray(bytes);
+        return BinaryReader.of(inputStream).readLong();
     }
 
     public int internalReadInt(@Nonnull @WillNotClose final InputStream inputStream) throws IOException {
-        final byte[] bytes = readBytes(inputStream, Ints.BYTES);
-        return Ints.fromByteArray(bytes);
+        return BinaryReader.of(inputStream).readInt();
     }
 
-
 }
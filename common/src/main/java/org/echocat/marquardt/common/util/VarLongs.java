@@ -0,0 +1,45 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.WillNotClose;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes unsigned variable length longs: 7 bits per byte, least significant group first, the high bit of
+ * each byte set if another byte follows. Small values (lengths, role codes) take a single byte, millisecond timestamps
+ * take six. Any long takes at most {@link #MAX_BYTES} bytes; negative values are treated as unsigned and take all of
+ * them. They are read by {@link BinaryReader#readVarLong()}.
+ *
+ * @see org.echocat.marquardt.common.domain.certificate.Certificate#COMPACT_VERSION
+ */
+public final class VarLongs {
+
+    public static final int MAX_BYTES = 10;
+
+    private VarLongs() {}
+
+    /**
+     * Writes value as unsigned variable length long.
+     *
+     * @param out The stream to write to.
+     * @param value The value to write.
+     * @throws IOException That happened while writing to the stream.
+     */
+    public static void write(@Nonnull @WillNotClose final OutputStream out, final long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            out.write((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        out.write((int) remaining);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.web;
+
+import com.google.common.base.Function;
+import org.echocat.marquardt.common.domain.Signature;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Arrays;
+
+/**
+ * Encodes the parts of a http request that clients sign: Method and path, followed by the headers of
+ * {@link SignatureHeaders} that are present, in their declaration order. Each part is written as its 4 byte length
+ * followed by its UTF-8 encoded bytes:
+ *
+ * <pre>
+ * [ LENGTH ] [ METHOD " " PATH ] ( [ LENGTH ] [ HEADER NAME ":" HEADER VALUE ] )*
+ * </pre>
+ *
+ * Headers the request does not have are not encoded at all, as in the signature format of earlier versions; headers
+ * with an empty value are encoded as their name followed by ":", never as "null".
+ *
+ * Clients (RequestSigner) and services ({@link RequestValidator}) both use this encoder, so their encodings cannot
+ * drift apart. Requests are encoded into a buffer that is reused per thread and handed to the signature engine from
+ * there, so {@link #sign(String, String, Function, PrivateKey, Signature.Mechanism) signing} and
+ * {@link #isValid(String, String, Function, Signature, PublicKey) validating} do not allocate for the encoding.
+ * {@link #encode(String, String, Function)} returns a copy of the encoding.
+ */
+public final class CanonicalRequestEncoder {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    /**
+     * Buffers that grew larger than this (because of unusually large headers) are not kept for the next request.
+     */
+    private static final int MAXIMUM_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<Buffer> BUFFERS = new ThreadLocal<Buffer>() {
+        @Override
+        protected Buffer initialValue() {
+            return new Buffer();
+        }
+    };
+
+    private CanonicalRequestEncoder() {}
+
+    /**
+     * @param method Http method of the request.
+     * @param path Path of the request, without query.
+     * @param headers Returns the value of the header with the given name or null if the request has no such header.
+     * @param privateKey Key to sign with.
+     * @param mechanism Mechanism to sign with.
+     * @return Signature of the encoded request.
+     */
+    @Nonnull
+    public static Signature sign(@Nonnull final String method, @Nonnull final String path, @Nonnull final Function<String, String> headers,
+                                 @Nonnull final PrivateKey privateKey, @Nonnull final Signature.Mechanism mechanism) {
+        final Buffer buffer = encodeIntoBuffer(method, path, headers);
+        try {
+            return Signature.createFor(buffer.getBytes(), 0, buffer.getLength(), privateKey, mechanism);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * @param method Http method of the request.
+     * @param path Path of the request, without query.
+     * @param headers Returns the value of the header with the given name or null if the request has no such header.
+     * @param signature Signature the client sent with the request.
+     * @param publicKey Key of the client.
+     * @return true if signature is valid for the encoded request.
+     */
+    public static boolean isValid(@Nonnull final String method, @Nonnull final String path, @Nonnull final Function<String, String> headers,
+                                  @Nonnull final Signature signature, @Nonnull final PublicKey publicKey) {
+        final Buffer buffer = encodeIntoBuffer(method, path, headers);
+        try {
+            return signature.isValidFor(buffer.getBytes(), 0, buffer.getLength(), publicKey);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * @param method Http method of the request.
+     * @param path Path of the request, without query.
+     * @param headers Returns the value of the header with the given name or null if the request has no such header.
+     * @return Copy of the encoded request.
+     */
+    @Nonnull
+    public static byte[] encode(@Nonnull final String method, @Nonnull final String path, @Nonnull final Function<String, String> headers) {
+        final Buffer buffer = encodeIntoBuffer(method, path, headers);
+        try {
+            return Arrays.copyOf(buffer.getBytes(), buffer.getLength());
+        } finally {
+            release(buffer);
+        }
+    }
+
+    @Nonnull
+    private static Buffer encodeIntoBuffer(@Nonnull final String method, @Nonnull final String path, @Nonnull final Function<String, String> headers) {
+        final Buffer buffer = BUFFERS.get();
+        buffer.clear();
+        final int requestStart = buffer.startPart();
+        buffer.writeUtf8(method);
+        buffer.write((byte) ' ');
+        buffer.writeUtf8(path);
+        buffer.endPart(requestStart);
+        for (final SignatureHeaders headerToInclude : SignatureHeaders.values()) {
+            final String headerValue = headers.apply(headerToInclude.getHeaderName());
+            if (headerValue != null) {
+                final int headerStart = buffer.startPart();
+                buffer.writeUtf8(headerToInclude.getHeaderName());
+                buffer.write((byte) ':');
+                buffer.writeUtf8(headerValue);
+                buffer.endPart(headerStart);
+            }
+        }
+        return buffer;
+    }
+
+    private static void release(@Nonnull final Buffer buffer) {
+        if (buffer.getBytes().length > MAXIMUM_RETAINED_BUFFER_SIZE) {
+            BUFFERS.remove();
+        }
+    }
+
+    private static final class Buffer {
+
+        private static final int LENGTH_BYTES = 4;
+
+        private byte[] _bytes = new byte[INITIAL_BUFFER_SIZE];
+        private int _length;
+
+        @Nonnull
+        private byte[] getBytes() {
+            return _bytes;
+        }
+
+        private int getLength() {
+            return _length;
+        }
+
+        private void clear() {
+            _length = 0;
+        }
+
+        /**
+         * Reserves the length of a part.
+         *
+         * @return Start of the part to pass to {@link #endPart(int)}.
+         */
+        private int startPart() {
+            ensureCapacity(LENGTH_BYTES);
+            _length += LENGTH_BYTES;
+            return _length;
+        }
+
+        /**
+         * Writes the length of the part that started at start in front of it.
+         */
+        private void endPart(final int start) {
+            final int partLength = _length - start;
+            final int lengthPosition = start - LENGTH_BYTES;
+            _bytes[lengthPosition] = (byte) (partLength >>> 24);
+            _bytes[lengthPosition + 1] = (byte) (partLength >>> 16);
+            _bytes[lengthPosition + 2] = (byte) (partLength >>> 8);
+            _bytes[lengthPosition + 3] = (byte) partLength;
+        }
+
+        private void write(final byte value) {
+            ensureCapacity(1);
+            _bytes[_length++] = value;
+        }
+
+        /**
+         * Writes value UTF-8 encoded. Unpaired surrogates are written as '?', as String.getBytes does. Nothing is
+         * written for null.
+         */
+        private void writeUtf8(@Nullable final String value) {
+            if (value == null) {
+                return;
+            }
+            final int length = value.length();
+            ensureCapacity(length * 3);
+            for (int i = 0; i < length; i++) {
+                final char c = value.charAt(i);
+                if (c < 0x80) {
+                    _bytes[_length++] = (byte) c;
+                } else if (c < 0x800) {
+                    _bytes[_length++] = (byte) (0xC0 | (c >> 6));
+                    _bytes[_length++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    _bytes[_length++] = (byte) (0xF0 | (codePoint >> 18));
+                    _bytes[_length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    _bytes[_length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    _bytes[_length++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    _bytes[_length++] = (byte) '?';
+                } else {
+                    _bytes[_length++] = (byte) (0xE0 | (c >> 12));
+                    _bytes[_length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    _bytes[_length++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        private void ensureCapacity(final int additionalBytes) {
+            final int required = _length + additionalBytes;
+            if (required > _bytes.length) {
+                _bytes = Arrays.copyOf(_bytes, Math.max(required, _bytes.length * 2));
+            }
+        }
+    }
+}
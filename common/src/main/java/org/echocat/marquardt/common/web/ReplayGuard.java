@@ -0,0 +1,198 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.web;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Protects services from replayed requests. A request is only accepted if its signed Date header is within the clock
+ * window around the current time, and if its signed nonce was not seen before within that window. Replays of older
+ * requests are rejected by the clock window, so nonces only need to be remembered for twice the window.
+ * <p>
+ * Seen nonces are remembered in a ring of time buckets, each a Bloom filter on a preallocated bit array that is
+ * cleared when its bucket rotates out. Memory is therefore constant and depends only on the expected request rate,
+ * the window and the false positive probability: Each request takes about -ln(p) / ln(2)^2 bits (14 bits at p = 1e-3,
+ * 29 bits at p = 1e-6), so one minute window at 50,000 requests per second and p = 1e-6 needs about 20 MB. If more
+ * requests arrive than expected, only the false positive probability rises. A false positive rejects a fresh request
+ * as replay.
+ * <p>
+ * Nonces are sent in the {@link RequestHeaders#X_REQUEST_NONCE} header, which the client generates randomly for each
+ * request. Requests of older clients without a nonce are tracked by their signature instead, so identical requests of
+ * such clients within the same second of their Date header are rejected if their signature mechanism is deterministic
+ * (like RSA with PKCS#1 v1.5 padding).
+ *
+ * @see RequestValidator#setReplayGuard(ReplayGuard)
+ */
+public class ReplayGuard {
+
+    private static final int BUCKETS = 8;
+    private static final int LOCK_STRIPES = 64;
+    private static final long NOT_IN_USE = Long.MIN_VALUE;
+
+    private final long _clockWindowMillis;
+    private final long _bucketMillis;
+    private final int _bitsPerBucket;
+    private final int _hashFunctions;
+    private final long _seed = new SecureRandom().nextLong();
+    private final AtomicLongArray[] _buckets = new AtomicLongArray[BUCKETS];
+    private final AtomicLongArray _bucketEpochs = new AtomicLongArray(BUCKETS);
+    private final Object[] _locks = new Object[LOCK_STRIPES];
+
+    /**
+     * @param clockWindowMillis Maximum difference between a request's Date header and the current time.
+     * @param expectedRequestsPerSecond Number of requests per second the guard is sized for.
+     * @param falsePositiveProbability Probability that a fresh request is rejected as replay, e.g. 1e-6.
+     */
+    public ReplayGuard(@Nonnegative final long clockWindowMillis, @Nonnegative final int expectedRequestsPerSecond, final double falsePositiveProbability) {
+        if (clockWindowMillis <= 0) {
+            throw new IllegalArgumentException("Clock window must be positive.");
+        }
+        if (expectedRequestsPerSecond <= 0) {
+            throw new IllegalArgumentException("Expected requests per second must be positive.");
+        }
+        if (!(falsePositiveProbability > 0 && falsePositiveProbability < 1)) {
+            throw new IllegalArgumentException("False positive probability must be between 0 and 1.");
+        }
+        _clockWindowMillis = clockWindowMillis;
+        // Requests of one Date may arrive within 2 windows; BUCKETS - 1 full buckets cover them.
+        _bucketMillis = Math.max(1, (2 * clockWindowMillis + BUCKETS - 2) / (BUCKETS - 1));
+        final double expectedRequestsPerBucket = Math.max(1d, expectedRequestsPerSecond * (_bucketMillis / 1000d));
+        final double bits = -expectedRequestsPerBucket * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+        if (bits > Integer.MAX_VALUE - Long.SIZE) {
+            throw new IllegalArgumentException("Clock window and expected requests require too much memory.");
+        }
+        _bitsPerBucket = (int) ((((long) Math.ceil(bits)) + Long.SIZE - 1) / Long.SIZE * Long.SIZE);
+        _hashFunctions = Math.max(1, (int) Math.round(_bitsPerBucket / expectedRequestsPerBucket * Math.log(2)));
+        for (int i = 0; i < BUCKETS; i++) {
+            _buckets[i] = new AtomicLongArray(_bitsPerBucket / Long.SIZE);
+            _bucketEpochs.set(i, NOT_IN_USE);
+        }
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            _locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @param dateMillis Date of the request as sent in its Date header.
+     * @param nowMillis Current time.
+     * @return true if dateMillis is within the clock window around nowMillis.
+     */
+    public boolean isWithinClockWindow(final long dateMillis, final long nowMillis) {
+        return Math.abs(nowMillis - dateMillis) <= _clockWindowMillis;
+    }
+
+    /**
+     * Records the nonce of a request with a valid signature and returns whether it was new. Check
+     * {@link #isWithinClockWindow(long, long)} before.
+     *
+     * @param nonce Value that identifies the request: its signed nonce or, if it has none, its signature.
+     * @param nowMillis Current time. Must not be negative.
+     * @return true if the nonce was not seen within the last two clock windows; false if the request is (with
+     * the configured false positive probability) a replay.
+     */
+    public boolean markAsSeen(@Nonnull final byte[] nonce, final long nowMillis) {
+        final long hash1 = hash(nonce, _seed);
+        final long hash2 = hash(nonce, ~_seed) | 1;
+        final long epoch = nowMillis / _bucketMillis;
+        final AtomicLongArray current = bucketFor(epoch);
+        synchronized (_locks[(int) (hash1 >>> 58)]) {
+            for (int i = 1; i < BUCKETS; i++) {
+                final int slot = slotOf(epoch - i);
+                if (_bucketEpochs.get(slot) == epoch - i && containsAll(_buckets[slot], hash1, hash2)) {
+                    return false;
+                }
+            }
+            return addAll(current, hash1, hash2);
+        }
+    }
+
+    /**
+     * @return Bytes of memory used to remember nonces.
+     */
+    public long getMemoryInBytes() {
+        return (long) BUCKETS * _bitsPerBucket / Byte.SIZE;
+    }
+
+    @Nonnull
+    private AtomicLongArray bucketFor(final long epoch) {
+        final int slot = slotOf(epoch);
+        if (_bucketEpochs.get(slot) != epoch) {
+            synchronized (_bucketEpochs) {
+                if (_bucketEpochs.get(slot) < epoch) {
+                    final AtomicLongArray bucket = _buckets[slot];
+                    for (int i = 0; i < bucket.length(); i++) {
+                        bucket.set(i, 0);
+                    }
+                    _bucketEpochs.set(slot, epoch);
+                }
+            }
+        }
+        return _buckets[slot];
+    }
+
+    private static int slotOf(final long epoch) {
+        return (int) (((epoch % BUCKETS) + BUCKETS) % BUCKETS);
+    }
+
+    private boolean containsAll(@Nonnull final AtomicLongArray bucket, final long hash1, final long hash2) {
+        for (int i = 0; i < _hashFunctions; i++) {
+            final int bit = bitOf(hash1, hash2, i);
+            if ((bucket.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if at least one bit was not set before, i.e. the nonce was not contained.
+     */
+    private boolean addAll(@Nonnull final AtomicLongArray bucket, final long hash1, final long hash2) {
+        boolean added = false;
+        for (int i = 0; i < _hashFunctions; i++) {
+            final int bit = bitOf(hash1, hash2, i);
+            final int index = bit >>> 6;
+            final long mask = 1L << bit;
+            long value = bucket.get(index);
+            while ((value & mask) == 0) {
+                if (bucket.compareAndSet(index, value, value | mask)) {
+                    added = true;
+                    break;
+                }
+                value = bucket.get(index);
+            }
+        }
+        return added;
+    }
+
+    private int bitOf(final long hash1, final long hash2, final int i) {
+        return (int) ((((hash1 + i * hash2) >>> 1) % _bitsPerBucket));
+    }
+
+    private static long hash(@Nonnull final byte[] bytes, final long seed) {
+        long hash = seed ^ (bytes.length * 0x9E3779B97F4A7C15L);
+        for (final byte b : bytes) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(final long value) {
+        long result = value;
+        result ^= result >>> 33;
+        result *= 0xFF51AFD7ED558CCDL;
+        result ^= result >>> 33;
+        result *= 0xC4CEB9FE1A85EC53L;
+        result ^= result >>> 33;
+        return result;
+    }
+}
@@ -4,4 +4,5 @@ public class RequestHeaders {
 
     public static final String X_SIGNATURE = "X-Signature";
     public static final String X_CERTIFICATE = "X-Certificate";
+    public static final String X_REQUEST_NONCE = "X-Request-Nonce";
 }
@@ -8,19 +8,23 @@
 
 package org.echocat.marquardt.common.web;
 
-import com.google.common.primitives.Ints;
-import org.apache.commons.io.IOUtils;
+import com.google.common.base.Function;
+import org.echocat.marquardt.common.domain.AcceptedMechanisms;
 import org.echocat.marquardt.common.domain.Signature;
-import org.echocat.marquardt.common.exceptions.SignatureValidationFailedException;
+import org.echocat.marquardt.common.metrics.CounterMetric;
+import org.echocat.marquardt.common.metrics.MetricsRecorder;
+import org.echocat.marquardt.common.metrics.TimerMetric;
+import org.echocat.marquardt.common.util.DateProvider;
 
-import javax.annotation.WillNotClose;
 import javax.servlet.http.HttpServletRequest;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.PublicKey;
+import java.util.Collection;
 
 import static org.apache.commons.codec.binary.Base64.decodeBase64;
+import static org.echocat.marquardt.common.web.RequestHeaders.X_REQUEST_NONCE;
 import static org.echocat.marquardt.common.web.RequestHeaders.X_SIGNATURE;
+import static org.echocat.marquardt.common.web.SignatureHeaders.DATE;
 
 /**
  * Client signed header validator. Clients must sign their requests (including their certificate) with a
@@ -34,47 +38,108 @@ import static org.echocat.marquardt.common.web.RequestHeaders.X_SIGNATURE;
  */
 public class RequestValidator {
 
+    private MetricsRecorder _metricsRecorder = MetricsRecorder.NO_OP;
+    private ReplayGuard _replayGuard;
+    private DateProvider _dateProvider = new DateProvider();
+    private volatile AcceptedMechanisms _acceptedMechanisms = AcceptedMechanisms.ALL;
+
+    /**
+     * Restricts the signature mechanisms accepted for requests. Requests signed with other mechanisms are not valid.
+     *
+     * @param acceptedMechanisms Mechanisms to accept. All mechanisms are accepted by default.
+     */
+    public void setAcceptedMechanisms(final Collection<Signature.Mechanism> acceptedMechanisms) {
+        _acceptedMechanisms = AcceptedMechanisms.of(acceptedMechanisms);
+    }
+
+    /**
+     * Enables replay protection: Requests must carry a (signed) Date header within the clock window of the guard and
+     * their (signed) nonce must not have been seen before. Requests without a nonce are tracked by their signature.
+     *
+     * @param replayGuard Guard to use or null (the default) to accept requests regardless of their date and replays.
+     */
+    public void setReplayGuard(final ReplayGuard replayGuard) {
+        _replayGuard = replayGuard;
+    }
+
+    public void setDateProvider(final DateProvider dateProvider) {
+        _dateProvider = dateProvider;
+    }
+
+    /**
+     * Records the latency of every validation and its outcome.
+     *
+     * @param metricsRecorder Recorder to use. {@link MetricsRecorder#NO_OP} by default.
+     */
+    public void setMetricsRecorder(final MetricsRecorder metricsRecorder) {
+        _metricsRecorder = metricsRecorder;
+    }
+
     /**
      * Validate a request header that contains a Signature with this.
      *
      * @param request           The request to validate.
      * @param keyToValidateWith Client's PublicKey. Should be taken from the X-Certificate header.
-     * @return True if the signature is valid. False if not.
+     * @return True if the signature is valid. False if not, if its mechanism is not accepted or if the request is
+     * rejected by the replay guard.
      */
     public boolean isValid(HttpServletRequest request, PublicKey keyToValidateWith) {
-        final ByteArrayOutputStream bytesToSign = new ByteArrayOutputStream();
+        final MetricsRecorder metricsRecorder = _metricsRecorder;
+        final long start = System.nanoTime();
         try {
-            byte[] byteArray = extractSignedBytesFromRequest(request, bytesToSign);
             final Signature signature = extractSignatureFromHeader(request);
-            return signature.isValidFor(byteArray, keyToValidateWith);
-        } catch (IOException e) {
-            throw new SignatureValidationFailedException(e.getMessage());
+            if (!_acceptedMechanisms.accepts(signature.getMechanism())) {
+                metricsRecorder.increment(CounterMetric.REQUEST_MECHANISM_NOT_ACCEPTED);
+                return false;
+            }
+            final ReplayGuard replayGuard = _replayGuard;
+            final long now = replayGuard != null ? _dateProvider.now().getTime() : 0L;
+            if (replayGuard != null) {
+                final long date;
+                try {
+                    date = request.getDateHeader(DATE.getHeaderName());
+                } catch (final IllegalArgumentException ignored) {
+                    metricsRecorder.increment(CounterMetric.REQUEST_MALFORMED);
+                    return false;
+                }
+                if (!replayGuard.isWithinClockWindow(date, now)) {
+                    metricsRecorder.increment(CounterMetric.REQUEST_OUTSIDE_CLOCK_WINDOW);
+                    return false;
+                }
+            }
+            if (!CanonicalRequestEncoder.isValid(request.getMethod(), request.getRequestURI(), headersOf(request), signature, keyToValidateWith)) {
+                metricsRecorder.increment(CounterMetric.REQUEST_INVALID_SIGNATURE);
+                return false;
+            }
+            if (replayGuard != null && !replayGuard.markAsSeen(nonceOf(request, signature), now)) {
+                metricsRecorder.increment(CounterMetric.REQUEST_REPLAYED);
+                return false;
+            }
+            metricsRecorder.increment(CounterMetric.REQUEST_VALID);
+            return true;
+        } catch (final IllegalArgumentException e) {
+            metricsRecorder.increment(CounterMetric.REQUEST_MALFORMED);
+            throw e;
         } finally {
-            IOUtils.closeQuietly(bytesToSign);
+            metricsRecorder.recordTime(TimerMetric.REQUEST_VALIDATION, System.nanoTime() - start);
         }
     }
 
+    private static byte[] nonceOf(HttpServletRequest request, Signature signature) {
+        final String nonce = request.getHeader(X_REQUEST_NONCE);
+        return nonce != null ? nonce.getBytes(StandardCharsets.UTF_8) : signature.getValue();
+    }
+
     /**
      * Extract the signed bytes from the request.
      *
      * @param request the http request
      * @return the signed byte sequence
      * @see SignatureHeaders
+     * @see CanonicalRequestEncoder
      */
     public byte[] extractSignedBytesFromRequest(HttpServletRequest request) {
-        final ByteArrayOutputStream bytesToSign = new ByteArrayOutputStream();
-        try {
-            return extractSignedBytesFromRequest(request, bytesToSign);
-        } catch (IOException e) {
-            throw new SignatureValidationFailedException("could not extract signed bytes from header", e);
-        } finally {
-            IOUtils.closeQuietly(bytesToSign);
-        }
-    }
-
-    private byte[] extractSignedBytesFromRequest(HttpServletRequest request, @WillNotClose ByteArrayOutputStream bytesToSign) throws IOException {
-        writeRequestTo(request, bytesToSign);
-        return bytesToSign.toByteArray();
+        return CanonicalRequestEncoder.encode(request.getMethod(), request.getRequestURI(), headersOf(request));
     }
 
     /**
@@ -91,17 +156,12 @@ public class RequestValidator {
         return new Signature(decodeBase64(header));
     }
 
-    private void writeRequestTo(HttpServletRequest request, ByteArrayOutputStream bytesToSign) throws IOException {
-        final byte[] requestBytes = (request.getMethod() + " " + request.getRequestURI()).getBytes();
-        bytesToSign.write(Ints.toByteArray(requestBytes.length));
-        bytesToSign.write(requestBytes);
-        for (SignatureHeaders headerToInclude : SignatureHeaders.values()) {
-            final String header = request.getHeader(headerToInclude.getHeaderName());
-            if (header != null) {
-                final byte[] headerBytes = (headerToInclude.getHeaderName() + ":" + header).getBytes();
-                bytesToSign.write(Ints.toByteArray(headerBytes.length));
-                bytesToSign.write(headerBytes);
+    private static Function<String, String> headersOf(final HttpServletRequest request) {
+        return new Function<String, String>() {
+            @Override
+            public String apply(final String headerName) {
+                return request.getHeader(headerName);
             }
-        }
+        };
     }
-}
\ No newline at end of file
+}
@@ -14,7 +14,9 @@ public enum SignatureHeaders {
     CONTENT_LENGTH("Content-Length"),
     DATE("Date"),
     CONTENT("Content-MD5"),
-    RANGE("Range");
+    RANGE("Range"),
+    CONTENT_DIGEST("Content-Digest"),
+    REQUEST_NONCE(RequestHeaders.X_REQUEST_NONCE);
 
     private final String _headerName;
 
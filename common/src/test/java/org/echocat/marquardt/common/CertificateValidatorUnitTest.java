@@ -11,9 +11,15 @@ package org.echocat.marquardt.common;
 import com.google.common.collect.Sets;
 import org.apache.commons.io.IOUtils;
 import org.echocat.marquardt.common.domain.certificate.Certificate;
+import org.echocat.marquardt.common.domain.certificate.LazyCertificate;
 import org.echocat.marquardt.common.domain.DeserializingFactory;
 import org.echocat.marquardt.common.exceptions.ExpiredCertificateException;
 import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
+import org.echocat.marquardt.common.keyprovisioning.TrustedKeyRegistry;
+import org.echocat.marquardt.common.metrics.AtomicMetricsRecorder;
+import org.echocat.marquardt.common.metrics.CounterMetric;
+import org.echocat.marquardt.common.metrics.MetricsRecorder;
+import org.echocat.marquardt.common.metrics.TimerMetric;
 import org.echocat.marquardt.common.domain.certificate.Role;
 import org.echocat.marquardt.common.domain.Signable;
 import org.echocat.marquardt.common.exceptions.InvalidCertificateException;
@@ -29,10 +35,14 @@ import java.io.IOException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -48,6 +58,9 @@ public class CertificateValidatorUnitTest {
     private static final Set<Role> ROLES = Sets.<Role>newHashSet(TestRoles.TEST_ROLE_1);
     private static final String TEST_CLIENT_ID = "asdf";
     private static final String SOME_PAYLOAD = "Some payload";
+    private static final UUID SESSION_ID = UUID.randomUUID();
+    // int length, mechanism code and signature of a 1024 bit RSA key
+    private static final int SIGNATURE_WITH_LENGTH_SIZE = 4 + 1 + 128;
 
     private KeyPairProvider _issuerKeys;
     private KeyPairProvider _clientKeys;
@@ -58,6 +71,10 @@ public class CertificateValidatorUnitTest {
 
     private final DateProvider _mockedDateProvider = mock(DateProvider.class);
     private Certificate<SignablePayload> _validationResult;
+    private VerifiedCertificateCache<SignablePayload> _verifiedCertificateCache;
+    private TrustedKeyRegistry _trustedKeyRegistry;
+    private TestCertificateValidator _registryBackedValidator;
+    private MetricsRecorder _metricsRecorder = MetricsRecorder.NO_OP;
 
     @Before
     public void setUp() {
@@ -93,6 +110,69 @@ public class CertificateValidatorUnitTest {
         whenTheCertificateIsDeserializedAndVerified();
     }
 
+    @Test
+    public void validCompactCertificateCanBeDeserializedFrom() throws IOException {
+        givenSignedCompactCertificate();
+        whenTheCertificateIsDeserializedAndVerified();
+        thenTheDeserializedCertificateIsObtained();
+        thenTheDeserializedCertificateEqualsTheSignedOne();
+    }
+
+    @Test
+    public void compactCertificateCanBeDecodedLazily() throws IOException {
+        givenSignedCompactCertificate();
+        whenTheCertificateIsDeserializedLazilyAndVerified();
+        thenTheCertificateIsLazy();
+        thenTheLazyCertificateHasOnlyTheSignedRole();
+        thenTheDeserializedCertificateEqualsTheSignedOne();
+    }
+
+    @Test
+    public void defaultCertificateCanBeDecodedLazily() throws IOException {
+        givenSignedCertificate();
+        whenTheCertificateIsDeserializedLazilyAndVerified();
+        thenTheCertificateIsLazy();
+        thenTheLazyCertificateHasOnlyTheSignedRole();
+        assertThat(_validationResult.getClientPublicKey(), is(_clientKeys.getPublicKey()));
+        assertThat(_validationResult.getPayload().getSomeContent(), is(SOME_PAYLOAD));
+    }
+
+    @Test
+    public void sessionIdCanBeReadFromCertificate() throws IOException {
+        givenSignedCertificateWithSessionId(Certificate.VERSION);
+        whenTheCertificateIsDeserializedAndVerified();
+        thenTheSessionIdIsObtained();
+    }
+
+    @Test
+    public void sessionIdOfCompactCertificateIsReadWhenDecodingLazily() throws IOException {
+        givenSignedCertificateWithSessionId(Certificate.COMPACT_VERSION);
+        whenTheCertificateIsDeserializedLazilyAndVerified();
+        thenTheSessionIdIsObtained();
+        thenTheDeserializedCertificateEqualsTheSignedOne();
+    }
+
+    @Test(expected = SignatureValidationFailedException.class)
+    public void lazyDecodingStillVerifiesTheSignature() throws IOException {
+        givenSignedCompactCertificate();
+        whenManipulatingLastPayloadByte();
+        whenTheCertificateIsDeserializedLazilyAndVerified();
+    }
+
+    @Test
+    public void compactCertificateIsSmallerThanDefaultCertificate() throws IOException {
+        givenSignedCertificate();
+        final int defaultLength = _signedPayload.length;
+        givenSignedCompactCertificate();
+        assertThat(_signedPayload.length < defaultLength, is(true));
+    }
+
+    @Test(expected = InvalidCertificateException.class)
+    public void whenIssuerKeyIdOfCompactCertificateIsNotTrustedAnExceptionIsThrown() throws IOException {
+        givenSignedCompactCertificate();
+        whenTheCertificateIsDeserializedAndVerifiedWithoutIssuerPublicKeys();
+    }
+
     @Test(expected = SignatureValidationFailedException.class)
     public void shouldNotValidateCertificateFromUnknownIssuer() throws Exception {
         givenSignedCertificateFromUnknownIssuer();
@@ -112,6 +192,119 @@ public class CertificateValidatorUnitTest {
         whenExpiredCertificateTheExceptionContainsTheCertificateAndItsSignedSerializedRepresentation();
     }
 
+    @Test
+    public void shouldServeAlreadyVerifiedCertificateFromCache() throws IOException {
+        givenSignedCertificate();
+        givenVerifiedCertificateCache();
+        whenTheCertificateIsDeserializedAndVerifiedTwice();
+        thenTheCacheWasHit(1);
+        thenTheCacheWasMissed(1);
+    }
+
+    @Test
+    public void shouldRecordLatencyAndOutcomeOfValidations() throws IOException {
+        givenSignedCertificate();
+        givenAtomicMetricsRecorder();
+        whenTheCertificateIsDeserializedAndVerified();
+        givenTheTimeIs16MinutesInTheFuture();
+        try {
+            whenTheCertificateIsDeserializedAndVerified();
+            fail(ExpiredCertificateException.class + " expected to be thrown!");
+        } catch (final ExpiredCertificateException ignored) {
+            thenValidationsWereRecorded(2);
+            thenOutcomeWasRecorded(CounterMetric.CERTIFICATE_VALID);
+            thenOutcomeWasRecorded(CounterMetric.CERTIFICATE_EXPIRED);
+        }
+    }
+
+    @Test(expected = ExpiredCertificateException.class)
+    public void shouldCheckExpiryOfCachedCertificate() throws IOException {
+        givenSignedCertificate();
+        givenVerifiedCertificateCache();
+        whenTheCertificateIsDeserializedAndVerified();
+        givenTheTimeIs16MinutesInTheFuture();
+        whenTheCertificateIsDeserializedAndVerified();
+    }
+
+    @Test(expected = InvalidCertificateException.class)
+    public void shouldRejectCachedCertificateWhenIssuerKeyIsNoLongerTrusted() throws IOException {
+        givenSignedCertificate();
+        givenVerifiedCertificateCache();
+        givenTrustedKeyRegistryWithIssuerKey();
+        whenTheCertificateIsDeserializedAndVerifiedAgainstRegistry();
+        whenTheIssuerKeyIsReplacedInRegistry();
+        whenTheCertificateIsDeserializedAndVerifiedAgainstRegistry();
+    }
+
+    @Test
+    public void shouldValidateBatchInParallelWithResultPerCertificate() throws Exception {
+        givenSignedCertificate();
+        final byte[] validCertificate = _signedPayload;
+        givenSignedCertificateFromUnknownIssuer();
+        final byte[] certificateFromUnknownIssuer = _signedPayload;
+        final byte[] truncatedCertificate = Arrays.copyOf(validCertificate, 20);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final List<ValidationResult<Certificate<SignablePayload>>> results = new TestCertificateValidator(_mockedDateProvider, Collections.singletonList(_issuerKeys.getPublicKey()))
+                .deserializeAndValidateCertificates(Arrays.asList(validCertificate, certificateFromUnknownIssuer, truncatedCertificate, validCertificate), executor);
+
+            assertThat(results.size(), is(4));
+            assertThat(results.get(0).isValid(), is(true));
+            assertThat(results.get(0).get().getPayload().getSomeContent(), is(SOME_PAYLOAD));
+            assertThat(results.get(1).getFailure() instanceof SignatureValidationFailedException, is(true));
+            assertThat(results.get(2).getFailure() instanceof IllegalArgumentException, is(true));
+            assertThat(results.get(3).isValid(), is(true));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldNotCacheCertificatesWithInvalidSignature() throws IOException {
+        givenSignedCertificateFromUnknownIssuer();
+        givenVerifiedCertificateCache();
+        try {
+            whenTheCertificateIsDeserializedAndVerified();
+            fail(SignatureValidationFailedException.class + " expected to be thrown!");
+        } catch (final SignatureValidationFailedException ignored) {
+            thenTheCacheIsEmpty();
+        }
+    }
+
+    private void givenAtomicMetricsRecorder() {
+        _metricsRecorder = new AtomicMetricsRecorder();
+    }
+
+    private void thenValidationsWereRecorded(final long times) {
+        assertThat(((AtomicMetricsRecorder) _metricsRecorder).getCount(TimerMetric.CERTIFICATE_VALIDATION), is(times));
+    }
+
+    private void thenOutcomeWasRecorded(final CounterMetric outcome) {
+        assertThat(((AtomicMetricsRecorder) _metricsRecorder).getCount(outcome), is(1L));
+    }
+
+    private void givenVerifiedCertificateCache() {
+        _verifiedCertificateCache = new VerifiedCertificateCache<>();
+    }
+
+    private void whenTheCertificateIsDeserializedAndVerifiedTwice() {
+        whenTheCertificateIsDeserializedAndVerified();
+        whenTheCertificateIsDeserializedAndVerified();
+    }
+
+    private void thenTheCacheWasHit(final long times) {
+        assertThat(_verifiedCertificateCache.getHitCount(), is(times));
+    }
+
+    private void thenTheCacheWasMissed(final long times) {
+        assertThat(_verifiedCertificateCache.getMissCount(), is(times));
+    }
+
+    private void thenTheCacheIsEmpty() {
+        assertThat(_verifiedCertificateCache.size(), is(0L));
+    }
+
     private void givenSignedCertificateWithDefectUserInfo() throws IOException {
         _signable = Certificate.create(_issuerKeys.getPublicKey(), _clientKeys.getPublicKey(), ROLES, new SignablePayload(SOME_PAYLOAD));
         whenSigningWithIssuerKey();
@@ -139,15 +332,75 @@ public class CertificateValidatorUnitTest {
         whenSigningWith(TestKeyPairProvider.create().getPrivateKey());
     }
 
+    private void givenSignedCompactCertificate() throws IOException {
+        _signable = Certificate.create(_issuerKeys.getPublicKey(), _clientKeys.getPublicKey(), ROLES, new SignablePayload(SOME_PAYLOAD), Certificate.COMPACT_VERSION);
+        whenSigningWithIssuerKey();
+    }
+
+    private void givenSignedCertificateWithSessionId(final byte version) throws IOException {
+        _signable = Certificate.create(_issuerKeys.getPublicKey(), _clientKeys.getPublicKey(), ROLES, new SignablePayload(SOME_PAYLOAD), version, SESSION_ID);
+        whenSigningWithIssuerKey();
+    }
+
+    private void thenTheSessionIdIsObtained() {
+        assertThat(_validationResult.getSessionId(), is(SESSION_ID));
+        assertThat(Certificate.readSessionIdFrom(_signedPayload), is(SESSION_ID));
+    }
+
+    private void thenTheDeserializedCertificateEqualsTheSignedOne() {
+        final Certificate<?> signed = (Certificate<?>) _signable;
+        assertThat(_validationResult.getVersion(), is(Certificate.COMPACT_VERSION));
+        assertThat(_validationResult.getIssuerPublicKey(), is(_issuerKeys.getPublicKey()));
+        assertThat(_validationResult.getClientPublicKey(), is(_clientKeys.getPublicKey()));
+        assertThat(_validationResult.getExpiresAt(), is(signed.getExpiresAt()));
+        assertThat(_validationResult.getRoles().size(), is(ROLES.size()));
+        assertThat(_validationResult.getPayload().getSomeContent(), is(SOME_PAYLOAD));
+    }
+
+    private void whenManipulatingLastPayloadByte() {
+        _signedPayload[_signedPayload.length - SIGNATURE_WITH_LENGTH_SIZE - 1] ^= 1;
+    }
+
+    private void whenTheCertificateIsDeserializedLazilyAndVerified() {
+        final TestCertificateValidator validator = new TestCertificateValidator(_mockedDateProvider, Collections.singletonList(_issuerKeys.getPublicKey()));
+        validator.setDecodingLazily(true);
+        _validationResult = validator.deserializeAndValidateCertificate(_signedPayload);
+    }
+
+    private void thenTheCertificateIsLazy() {
+        assertThat(_validationResult instanceof LazyCertificate, is(true));
+    }
+
+    private void thenTheLazyCertificateHasOnlyTheSignedRole() {
+        assertThat(_validationResult.hasRole(TestRoles.TEST_ROLE_1), is(true));
+        assertThat(_validationResult.hasRole(TestRoles.TEST_ROLE_2), is(false));
+    }
+
     private void givenUserInfoCertificate() {
         _signable = Certificate.create(_issuerKeys.getPublicKey(), _clientKeys.getPublicKey(), ROLES, new SignablePayload(SOME_PAYLOAD));
     }
 
     private void whenTheCertificateIsDeserializedAndVerified() {
         final TestCertificateValidator validator = new TestCertificateValidator(_mockedDateProvider, Collections.singletonList(_issuerKeys.getPublicKey()));
+        validator.setVerifiedCertificateCache(_verifiedCertificateCache);
+        validator.setMetricsRecorder(_metricsRecorder);
         _validationResult = validator.deserializeAndValidateCertificate(_signedPayload);
     }
 
+    private void givenTrustedKeyRegistryWithIssuerKey() {
+        _trustedKeyRegistry = new TrustedKeyRegistry(Collections.singletonList(_issuerKeys.getPublicKey()));
+        _registryBackedValidator = new TestCertificateValidator(_mockedDateProvider, _trustedKeyRegistry);
+        _registryBackedValidator.setVerifiedCertificateCache(_verifiedCertificateCache);
+    }
+
+    private void whenTheCertificateIsDeserializedAndVerifiedAgainstRegistry() {
+        _validationResult = _registryBackedValidator.deserializeAndValidateCertificate(_signedPayload);
+    }
+
+    private void whenTheIssuerKeyIsReplacedInRegistry() {
+        _trustedKeyRegistry.replaceWith(Collections.singletonList(_clientKeys.getPublicKey()));
+    }
+
     private void whenExpiredCertificateTheExceptionContainsTheCertificateAndItsSignedSerializedRepresentation() {
         final TestCertificateValidator validator = new TestCertificateValidator(_mockedDateProvider, Collections.singletonList(_issuerKeys.getPublicKey()));
         try {
@@ -192,6 +445,11 @@ public class CertificateValidatorUnitTest {
             setDateProvider(dateProvider);
         }
 
+        public TestCertificateValidator(final DateProvider dateProvider, final TrustedKeyRegistry trustedKeyRegistry) {
+            super(trustedKeyRegistry);
+            setDateProvider(dateProvider);
+        }
+
         @Override
         protected DeserializingFactory<SignablePayload> deserializingFactory() {
             return SignablePayload.FACTORY;
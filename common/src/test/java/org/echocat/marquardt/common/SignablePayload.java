@@ -13,7 +13,7 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.echocat.marquardt.common.domain.DeserializingFactory;
 import org.echocat.marquardt.common.domain.Signable;
-import org.echocat.marquardt.common.util.InputStreamUtils;
+import org.echocat.marquardt.common.util.BinaryReader;
 
 import javax.annotation.Nonnull;
 import javax.annotation.WillNotClose;
@@ -24,12 +24,13 @@ import java.io.OutputStream;
 
 public class SignablePayload implements Signable {
 
+    private static final int MAXIMUM_CONTENT_LENGTH = 1024;
+
     public static final DeserializingFactory<SignablePayload> FACTORY = new DeserializingFactory<SignablePayload>() {
         @Nonnull
         @Override
         public SignablePayload consume(@Nonnull @WillNotClose InputStream in) throws IOException {
-            final int stringSize = InputStreamUtils.readInt(in);
-            final byte[] payloadAsBytes = InputStreamUtils.readBytes(in, stringSize);
+            final byte[] payloadAsBytes = BinaryReader.of(in).readLengthPrefixedBytes(MAXIMUM_CONTENT_LENGTH);
             return new SignablePayload(new String(payloadAsBytes));
         }
     };
@@ -10,6 +10,7 @@ package org.echocat.marquardt.common;
 
 import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
 import org.echocat.marquardt.common.domain.Signable;
+import org.echocat.marquardt.common.domain.Signature;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -44,6 +45,28 @@ public class SignerUnitTest {
         thenSignedPayloadIsProduced();
     }
 
+    @Test
+    public void shouldChooseMechanismFromKey() throws Exception {
+        assertThat(_signer.mechanismFor(_keys.getPrivateKey()), is(Signature.Mechanism.rsa));
+        assertThat(_signer.mechanismFor(TestKeyPairProvider.createEc().getPrivateKey()), is(Signature.Mechanism.ecdsa));
+    }
+
+    @Test
+    public void shouldPreferApplicableMechanism() throws Exception {
+        givenSignerPreferring(Signature.Mechanism.ecdsa, Signature.Mechanism.rsaSha256);
+        assertThat(_signer.mechanismFor(_keys.getPrivateKey()), is(Signature.Mechanism.rsaSha256));
+        assertThat(_signer.mechanismFor(TestKeyPairProvider.createEc().getPrivateKey()), is(Signature.Mechanism.ecdsa));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectEcKeysOfOtherCurvesThanP256() throws Exception {
+        _signer.mechanismFor(TestKeyPairProvider.createEc("secp384r1").getPrivateKey());
+    }
+
+    private void givenSignerPreferring(final Signature.Mechanism... preferredMechanisms) {
+        _signer = new Signer(preferredMechanisms);
+    }
+
     private void thenSignedPayloadIsProduced() {
         assertThat(_signedPayload, is(not(nullValue())));
     }
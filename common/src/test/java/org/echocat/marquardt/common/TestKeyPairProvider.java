@@ -10,13 +10,16 @@ package org.echocat.marquardt.common;
 
 import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
 
+import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.SecureRandom;
+import java.security.spec.ECGenParameterSpec;
 
+import static org.echocat.marquardt.common.domain.PublicKeyWithMechanism.Mechanism.ec;
 import static org.echocat.marquardt.common.domain.PublicKeyWithMechanism.Mechanism.rsa;
 
 public final class TestKeyPairProvider implements KeyPairProvider {
@@ -41,6 +44,24 @@ public final class TestKeyPairProvider implements KeyPairProvider {
         }
     }
 
+    public static KeyPairProvider createEc() {
+        return createEc("secp256r1");
+    }
+
+    public static KeyPairProvider createEc(final String curveName) {
+        try {
+            final KeyPairGenerator keyGenerator = KeyPairGenerator.getInstance(ec.getJavaInternalName());
+            keyGenerator.initialize(new ECGenParameterSpec(curveName), new SecureRandom());
+            final KeyPair keyPair = keyGenerator.generateKeyPair();
+            final TestKeyPairProvider testKeyProvider = new TestKeyPairProvider();
+            testKeyProvider.setPrivateKey(keyPair.getPrivate());
+            testKeyProvider.setPublicKey(keyPair.getPublic());
+            return testKeyProvider;
+        } catch (final GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public PublicKey getPublicKey() {
         return _publicKey;
@@ -13,14 +13,17 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.echocat.marquardt.common.exceptions.SignatureValidationFailedException;
 import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
 import org.echocat.marquardt.common.domain.Signable;
+import org.echocat.marquardt.common.domain.Signature;
 import org.junit.Before;
 import org.junit.Test;
 
 import javax.annotation.Nullable;
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.util.Collections;
 import java.util.Random;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -30,6 +33,7 @@ import static org.junit.Assert.fail;
 public class ValidatorUnitTest {
 
     private static final String SOME_PAYLOAD = "Some payload";
+    private static final int BUFFER_OFFSET = 7;
 
     private Validator _validator;
     private Signer _signer;
@@ -37,6 +41,7 @@ public class ValidatorUnitTest {
     private Signable _signable;
     private SignablePayload _deserializedPayload;
     private byte[] _signedPayload;
+    private ByteBuffer _signedBuffer;
 
     private KeyPairProvider _issuerKeys;
 
@@ -54,6 +59,15 @@ public class ValidatorUnitTest {
         thenDeserializedPayloadIsTheSameAsBeforeSigning();
     }
 
+    @Test
+    public void shouldValidateSignedPayloadInDirectBufferAtOffset() throws Exception {
+        givenSignedPayload();
+        givenSignedPayloadInDirectBufferAtOffset();
+        whenValidatedBufferIsDeserialized();
+        thenDeserializedPayloadIsTheSameAsBeforeSigning();
+        thenBufferPositionIsUnchanged();
+    }
+
     @Test
     public void shouldCatchIoExceptionAndRethrowAsRuntimeException() throws IOException {
         givenSignedPayload();
@@ -62,6 +76,22 @@ public class ValidatorUnitTest {
         thenAnWrappedIoExceptionIsThrown();
     }
 
+    @Test(expected = SignatureValidationFailedException.class)
+    public void shouldThrowExceptionWhenSignatureMechanismIsNotAccepted() throws IOException {
+        givenSignedPayload();
+        givenOnlyAcceptedMechanismIs(Signature.Mechanism.ecdsa);
+        whenValidatedPayloadIsDeserialized();
+    }
+
+    @Test
+    public void shouldValidatePayloadSignedWithEcdsa() throws Exception {
+        givenEcIssuerKeys();
+        givenSignedPayload();
+        givenOnlyAcceptedMechanismIs(Signature.Mechanism.ecdsa);
+        whenValidatedPayloadIsDeserialized();
+        thenDeserializedPayloadIsTheSameAsBeforeSigning();
+    }
+
     @Test(expected = SignatureValidationFailedException.class)
     public void shouldThrowExceptionWhenPublicKeyIsNull() throws IOException {
         givenSignedPayload();
@@ -138,6 +168,36 @@ public class ValidatorUnitTest {
         _deserializedPayload = _validator.deserializeAndValidate(_signedPayload, SignablePayload.FACTORY, _issuerKeys.getPublicKey());
     }
 
+    private void givenEcIssuerKeys() {
+        _issuerKeys = TestKeyPairProvider.createEc();
+    }
+
+    private void givenOnlyAcceptedMechanismIs(final Signature.Mechanism mechanism) {
+        _validator.setAcceptedMechanisms(Collections.singleton(mechanism));
+    }
+
+    private void givenSignedPayloadInDirectBufferAtOffset() {
+        _signedBuffer = ByteBuffer.allocateDirect(_signedPayload.length + 2 * BUFFER_OFFSET);
+        _signedBuffer.position(BUFFER_OFFSET);
+        _signedBuffer.put(_signedPayload);
+        _signedBuffer.flip();
+        _signedBuffer.position(BUFFER_OFFSET);
+    }
+
+    private void whenValidatedBufferIsDeserialized() {
+        _deserializedPayload = _validator.deserializeAndValidate(_signedBuffer, SignablePayload.FACTORY, new Function<SignablePayload, PublicKey>() {
+            @Nullable
+            @Override
+            public PublicKey apply(final SignablePayload signablePayload) {
+                return _issuerKeys.getPublicKey();
+            }
+        });
+    }
+
+    private void thenBufferPositionIsUnchanged() {
+        assertThat(_signedBuffer.position(), is(BUFFER_OFFSET));
+    }
+
     private void thenDeserializedPayloadIsTheSameAsBeforeSigning() {
         assertThat(_deserializedPayload.getSomeContent(), is(SOME_PAYLOAD));
     }
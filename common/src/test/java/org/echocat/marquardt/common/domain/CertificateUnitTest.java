@@ -10,6 +10,7 @@ package org.echocat.marquardt.common.domain;
 
 import com.google.common.collect.Sets;
 import org.echocat.marquardt.common.SignablePayload;
+import org.echocat.marquardt.common.Signer;
 import org.echocat.marquardt.common.TestKeyPairProvider;
 import org.echocat.marquardt.common.TestRoles;
 import org.echocat.marquardt.common.domain.certificate.Certificate;
@@ -18,8 +19,12 @@ import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.Set;
 
+import static org.apache.commons.codec.binary.Base64.encodeBase64URLSafeString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.StringContains.containsString;
 
@@ -28,6 +33,7 @@ public class CertificateUnitTest {
     private static final String TEST_CLIENT_ID = "test-client-id";
     private Certificate<SignablePayload> _certificate;
     private SignablePayload _payload;
+    private byte[] _signedCertificateBytes;
     private static final Set<Role> ROLES = Sets.<Role>newHashSet(TestRoles.TEST_ROLE_1);
     private static final String SOME_PAYLOAD = "Some payload";
 
@@ -46,11 +52,54 @@ public class CertificateUnitTest {
         thenCerificateCanBeWrittenAsString();
     }
 
+    @Test
+    public void shouldEncodeHeaderValueOnceFromSignedCertificateBytes() throws Exception {
+        givenSignedCertificate();
+        thenHeaderValueIsEncodedFromSignedBytesOnce();
+    }
+
+    @Test
+    public void shouldNotExposeMutableExpiryDate() throws Exception {
+        whenCertificateIsCreated();
+        final long expiresAt = _certificate.getExpiresAtInMillis();
+
+        _certificate.getExpiresAt().setTime(0);
+
+        assertThat(_certificate.getExpiresAt().getTime(), is(expiresAt));
+    }
+
+    @Test
+    public void shouldAcceptSameSignedBytesAgain() throws Exception {
+        givenSignedCertificate();
+
+        _certificate.setSignedCertificateBytes(_signedCertificateBytes.clone());
+
+        assertThat(_certificate.getContent(), is(_signedCertificateBytes));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotReplaceSignedBytes() throws Exception {
+        givenSignedCertificate();
+
+        _certificate.setSignedCertificateBytes(new Signer().sign(_certificate.getPayload(), _issuerKeys.getPrivateKey()));
+    }
+
+    private void givenSignedCertificate() throws IOException {
+        whenCertificateIsCreated();
+        _signedCertificateBytes = new Signer().sign(_certificate, _issuerKeys.getPrivateKey());
+        _certificate.setSignedCertificateBytes(_signedCertificateBytes);
+    }
+
     private void whenCertificateIsCreated() {
         _payload = new SignablePayload(SOME_PAYLOAD);
         _certificate = Certificate.create(_issuerKeys.getPublicKey(), _clientKeys.getPublicKey(), ROLES, _payload);
     }
 
+    private void thenHeaderValueIsEncodedFromSignedBytesOnce() throws IOException {
+        assertThat(_certificate.getHeaderValue(), is(encodeBase64URLSafeString(_signedCertificateBytes)));
+        assertThat(_certificate.getHeaderValue(), sameInstance(_certificate.getHeaderValue()));
+    }
+
     private void thenCerificateCanBeWrittenAsString() {
         assertThat(_certificate.toString(), containsString(_payload.toString()));
     }
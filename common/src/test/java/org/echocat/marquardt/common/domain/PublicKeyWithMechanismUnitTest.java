@@ -11,8 +11,14 @@ package org.echocat.marquardt.common.domain;
 import org.echocat.marquardt.common.TestKeyPairProvider;
 import org.junit.Test;
 
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
 import static org.hamcrest.core.StringContains.containsString;
 
 public class PublicKeyWithMechanismUnitTest {
@@ -37,4 +43,55 @@ public class PublicKeyWithMechanismUnitTest {
         final PublicKeyWithMechanism publicKeyWithMechanism = new PublicKeyWithMechanism(TestKeyPairProvider.create().getPublicKey());
         assertThat(publicKeyWithMechanism.toString(), allOf(containsString("PublicKeyWithMechanism of"), containsString(publicKeyWithMechanism.getMechanism().toString())));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldDecodeEcKeysOfP256() throws Exception {
+        final PublicKey publicKey = TestKeyPairProvider.createEc().getPublicKey();
+        assertThat(new PublicKeyWithMechanism(publicKey).toJavaKey(), is(publicKey));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectEcKeysOfOtherCurvesThanP256() throws Exception {
+        new PublicKeyWithMechanism(TestKeyPairProvider.createEc("secp521r1").getPublicKey()).toJavaKey();
+    }
+
+    @Test
+    public void shouldInternDecodedKeys() throws Exception {
+        final PublicKey publicKey = generatePublicKey();
+        final PublicKey firstDecoded = new PublicKeyWithMechanism(publicKey).toJavaKey();
+        final PublicKey secondDecoded = new PublicKeyWithMechanism(publicKey).toJavaKey();
+        assertThat(secondDecoded, sameInstance(firstDecoded));
+    }
+
+    @Test
+    public void shouldDecodeToPinnedKey() throws Exception {
+        final PublicKey publicKey = generatePublicKey();
+        final PublicKey pinned = PublicKeyWithMechanism.pin(publicKey);
+        try {
+            assertThat(pinned, sameInstance(publicKey));
+            assertThat(new PublicKeyWithMechanism(publicKey).toJavaKey(), sameInstance(publicKey));
+        } finally {
+            assertThat(PublicKeyWithMechanism.unpin(publicKey), is(true));
+        }
+        assertThat(new PublicKeyWithMechanism(publicKey).toJavaKey(), not(sameInstance(publicKey)));
+    }
+
+    @Test
+    public void shouldKeepKeyPinnedUntilEveryPinIsReleased() throws Exception {
+        final PublicKey publicKey = generatePublicKey();
+        PublicKeyWithMechanism.pin(publicKey);
+        assertThat(PublicKeyWithMechanism.pin(new PublicKeyWithMechanism(publicKey).toJavaKey()), sameInstance(publicKey));
+
+        assertThat(PublicKeyWithMechanism.unpin(publicKey), is(false));
+        assertThat(new PublicKeyWithMechanism(publicKey).toJavaKey(), sameInstance(publicKey));
+
+        assertThat(PublicKeyWithMechanism.unpin(publicKey), is(true));
+        assertThat(new PublicKeyWithMechanism(publicKey).toJavaKey(), not(sameInstance(publicKey)));
+    }
+
+    private static PublicKey generatePublicKey() throws Exception {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        return generator.generateKeyPair().getPublic();
+    }
+}
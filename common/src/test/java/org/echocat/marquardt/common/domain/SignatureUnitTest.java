@@ -10,16 +10,20 @@ package org.echocat.marquardt.common.domain;
 
 import org.echocat.marquardt.common.TestKeyPairProvider;
 import org.echocat.marquardt.common.exceptions.SecurityMechanismException;
+import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
 import org.junit.Test;
 
 import java.security.PrivateKey;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.AllOf.allOf;
 import static org.hamcrest.core.StringContains.containsString;
 
 public class SignatureUnitTest {
 
+    private static final byte[] CONTENT = "Some content".getBytes();
+
     private PrivateKey _privateKey;
     private Signature _signature;
     private String _signatureObjectToString;
@@ -49,6 +53,54 @@ public class SignatureUnitTest {
         whenCheckingSignature();
     }
 
+    @Test
+    public void shouldCreateValidSignaturesWhenSwitchingKeysOnTheSameThread() throws Exception {
+        final KeyPairProvider firstKeys = TestKeyPairProvider.create();
+        final KeyPairProvider secondKeys = TestKeyPairProvider.create();
+
+        final Signature first = Signature.createFor(CONTENT, firstKeys.getPrivateKey(), Signature.Mechanism.rsa);
+        final Signature second = Signature.createFor(CONTENT, secondKeys.getPrivateKey(), Signature.Mechanism.rsa);
+        final Signature firstAgain = Signature.createFor(CONTENT, firstKeys.getPrivateKey(), Signature.Mechanism.rsa);
+
+        assertThat(first.isValidFor(CONTENT, firstKeys.getPublicKey()), is(true));
+        assertThat(second.isValidFor(CONTENT, secondKeys.getPublicKey()), is(true));
+        assertThat(second.isValidFor(CONTENT, firstKeys.getPublicKey()), is(false));
+        assertThat(firstAgain.isValidFor(CONTENT, firstKeys.getPublicKey()), is(true));
+    }
+
+    @Test
+    public void shouldCreateValidSignaturesWithSha256RsaAndEcdsa() throws Exception {
+        final KeyPairProvider rsaKeys = TestKeyPairProvider.create();
+        final KeyPairProvider ecKeys = TestKeyPairProvider.createEc();
+
+        final Signature rsaSha256 = Signature.createFor(CONTENT, rsaKeys.getPrivateKey(), Signature.Mechanism.rsaSha256);
+        final Signature ecdsa = Signature.createFor(CONTENT, ecKeys.getPrivateKey(), Signature.Mechanism.ecdsa);
+
+        assertThat(new Signature(rsaSha256.getContent()).getMechanism(), is(Signature.Mechanism.rsaSha256));
+        assertThat(new Signature(rsaSha256.getContent()).isValidFor(CONTENT, rsaKeys.getPublicKey()), is(true));
+        assertThat(new Signature(ecdsa.getContent()).getMechanism(), is(Signature.Mechanism.ecdsa));
+        assertThat(new Signature(ecdsa.getContent()).isValidFor(CONTENT, ecKeys.getPublicKey()), is(true));
+        assertThat(new PublicKeyWithMechanism(new PublicKeyWithMechanism(ecKeys.getPublicKey()).getContent()).toJavaKey(), is(ecKeys.getPublicKey()));
+    }
+
+    @Test
+    public void shouldChooseDefaultMechanismByKeyAlgorithm() throws Exception {
+        assertThat(Signature.Mechanism.defaultFor(TestKeyPairProvider.create().getPrivateKey()), is(Signature.Mechanism.rsa));
+        assertThat(Signature.Mechanism.defaultFor(TestKeyPairProvider.createEc().getPrivateKey()), is(Signature.Mechanism.ecdsa));
+    }
+
+    @Test
+    public void shouldValidateRegionOfContent() throws Exception {
+        final KeyPairProvider keys = TestKeyPairProvider.create();
+        final byte[] contentWithPadding = new byte[CONTENT.length + 4];
+        System.arraycopy(CONTENT, 0, contentWithPadding, 2, CONTENT.length);
+
+        final Signature signature = Signature.createFor(contentWithPadding, 2, CONTENT.length, keys.getPrivateKey(), Signature.Mechanism.rsa);
+
+        assertThat(signature.isValidFor(CONTENT, keys.getPublicKey()), is(true));
+        assertThat(signature.isValidFor(contentWithPadding, 2, CONTENT.length, keys.getPublicKey()), is(true));
+    }
+
     private void givenInvalidPrivateKey() {
         _privateKey = null;
     }
@@ -77,4 +129,4 @@ public class SignatureUnitTest {
     private void thenPrintedStringIsReadable() {
         assertThat(_signatureObjectToString, allOf(containsString("Signature signed with"), containsString("SHA1withRSA")));
     }
-}
\ No newline at end of file
+}
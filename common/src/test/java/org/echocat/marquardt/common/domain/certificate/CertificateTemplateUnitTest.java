@@ -0,0 +1,95 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.domain.certificate;
+
+import com.google.common.collect.Sets;
+import org.echocat.marquardt.common.SignablePayload;
+import org.echocat.marquardt.common.TestKeyPairProvider;
+import org.echocat.marquardt.common.TestRoles;
+import org.echocat.marquardt.common.domain.DeserializingFactory;
+import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
+import org.echocat.marquardt.common.serialization.RolesDeserializer;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CertificateTemplateUnitTest {
+
+    private static final Set<Role> ROLES = Sets.<Role>newHashSet(TestRoles.TEST_ROLE_1, TestRoles.TEST_ROLE_2);
+    private static final SignablePayload PAYLOAD = new SignablePayload("Some payload");
+    private static final long EXPIRES_AT = 1444000000000L;
+    private static final UUID SESSION_ID = UUID.randomUUID();
+
+    private final KeyPairProvider _issuerKeys = TestKeyPairProvider.create();
+    private final KeyPairProvider _clientKeys = TestKeyPairProvider.create();
+
+    @Test
+    public void shouldWriteContentOfCertificate() throws Exception {
+        thenTemplateWritesContentOfCertificate(Certificate.VERSION, null);
+    }
+
+    @Test
+    public void shouldWriteContentOfCertificateWithSessionId() throws Exception {
+        thenTemplateWritesContentOfCertificate(Certificate.VERSION, SESSION_ID);
+    }
+
+    @Test
+    public void shouldWriteContentOfCompactCertificateWithSessionId() throws Exception {
+        thenTemplateWritesContentOfCertificate(Certificate.COMPACT_VERSION, SESSION_ID);
+    }
+
+    @Test
+    public void shouldExpireAtExpiryDateOfTemplate() throws Exception {
+        final CertificateTemplate template = templateOf(Certificate.VERSION, SESSION_ID);
+        final byte[] content = template.getContent();
+
+        final Certificate<SignablePayload> certificate = new CertificateFactory<SignablePayload, TestRoles>() {
+            @Override
+            protected DeserializingFactory<SignablePayload> getFactoryOfWrapped() {
+                return SignablePayload.FACTORY;
+            }
+
+            @Override
+            protected RolesDeserializer<TestRoles> getRolesDeserializer() {
+                return new RolesDeserializer<TestRoles>() {
+                    @Override
+                    public TestRoles createRoleFromId(final Number id) {
+                        return TestRoles.fromId(id.intValue());
+                    }
+                };
+            }
+        }.consume(new ByteArrayInputStream(content));
+
+        assertThat(certificate.getExpiresAt().getTime(), is(EXPIRES_AT));
+        assertThat(certificate.getSessionId(), is(SESSION_ID));
+        assertThat(template.getContent(), is(content));
+    }
+
+    private void thenTemplateWritesContentOfCertificate(final byte version, final UUID sessionId) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        templateOf(version, sessionId).writeTo(out);
+        final Certificate<SignablePayload> certificate = new Certificate<>(version, _issuerKeys.getPublicKey(), _clientKeys.getPublicKey(), new Date(EXPIRES_AT), ROLES, PAYLOAD, sessionId);
+        assertThat(out.toByteArray(), is(certificate.getContent()));
+    }
+
+    private CertificateTemplate templateOf(final byte version, final UUID sessionId) throws IOException {
+        final byte[] issuer = CertificateTemplate.serializeIssuer(version, _issuerKeys.getPublicKey());
+        final byte[] head = CertificateTemplate.serializeHead(version, sessionId, issuer, _clientKeys.getPublicKey());
+        final byte[] tail = CertificateTemplate.serializeTail(version, ROLES, PAYLOAD);
+        return new CertificateTemplate(version, head, tail, EXPIRES_AT);
+    }
+}
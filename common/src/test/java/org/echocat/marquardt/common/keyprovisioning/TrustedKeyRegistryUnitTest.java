@@ -0,0 +1,112 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.keyprovisioning;
+
+import org.echocat.marquardt.common.TestKeyPairProvider;
+import org.echocat.marquardt.common.domain.PublicKeyWithMechanism;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+public class TrustedKeyRegistryUnitTest {
+
+    private PublicKey _currentKey;
+    private PublicKey _nextKey;
+    private TrustedKeyRegistry _registry;
+
+    @Before
+    public void setUp() {
+        _currentKey = TestKeyPairProvider.create().getPublicKey();
+        _nextKey = TestKeyPairProvider.create().getPublicKey();
+    }
+
+    @Test
+    public void shouldTrustDecodedCopiesOfTrustedKeys() throws Exception {
+        givenRegistryTrusting(_currentKey);
+        thenKeyIsTrusted(KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(_currentKey.getEncoded())));
+        thenKeyIsNotTrusted(_nextKey);
+        thenKeyIsNotTrusted(null);
+    }
+
+    @Test
+    public void shouldFindTrustedKeyByKeyId() throws Exception {
+        givenRegistryTrusting(_currentKey, _nextKey);
+        assertThat(_registry.find(KeyId.of(_nextKey)), sameInstance(PublicKeyWithMechanism.pin(_nextKey)));
+        assertThat(_registry.find(KeyId.fromLong(KeyId.of(_nextKey).toLong() + 1)), is(nullValue()));
+    }
+
+    @Test
+    public void shouldReplaceTrustedKeysFromProvider() throws Exception {
+        givenRegistryTrusting(_currentKey);
+        whenRefreshedFromProviderWith(_nextKey);
+        thenKeyIsTrusted(_nextKey);
+        thenKeyIsNotTrusted(_currentKey);
+    }
+
+    @Test
+    public void shouldUnpinKeysThatAreRotatedOut() throws Exception {
+        givenRegistryTrusting(_currentKey, _nextKey);
+        whenRefreshedFromProviderWith(_nextKey);
+        thenKeyIsNotPinned(_currentKey);
+        thenKeyIsPinned(_nextKey);
+    }
+
+    @Test
+    public void shouldKeepKeysPinnedThatArePinnedByOthers() throws Exception {
+        PublicKeyWithMechanism.pin(_currentKey);
+        try {
+            givenRegistryTrusting(_currentKey);
+            whenRefreshedFromProviderWith(_nextKey);
+            thenKeyIsPinned(_currentKey);
+        } finally {
+            PublicKeyWithMechanism.unpin(_currentKey);
+        }
+    }
+
+    private void givenRegistryTrusting(final PublicKey... keys) {
+        _registry = new TrustedKeyRegistry(Arrays.asList(keys));
+    }
+
+    private void whenRefreshedFromProviderWith(final PublicKey key) {
+        _registry.refreshFrom(new TrustedKeysProvider() {
+            @Override
+            public Collection<PublicKey> getPublicKeys() {
+                return Collections.singletonList(key);
+            }
+        });
+    }
+
+    private static void thenKeyIsPinned(final PublicKey key) {
+        assertThat(new PublicKeyWithMechanism(key).toJavaKey(), sameInstance(key));
+    }
+
+    private static void thenKeyIsNotPinned(final PublicKey key) {
+        assertThat(new PublicKeyWithMechanism(key).toJavaKey(), not(sameInstance(key)));
+    }
+
+    private void thenKeyIsTrusted(final PublicKey key) {
+        assertThat(_registry.isTrusted(key), is(true));
+    }
+
+    private void thenKeyIsNotTrusted(final PublicKey key) {
+        assertThat(_registry.isTrusted(key), is(false));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.metrics;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class AtomicMetricsRecorderUnitTest {
+
+    private final AtomicMetricsRecorder _recorder = new AtomicMetricsRecorder();
+
+    @Test
+    public void shouldRecordCountTotalAndMaximumOfTimers() {
+        whenTimeIsRecorded(TimerMetric.AUTHORITY_SIGN_IN, 30);
+        whenTimeIsRecorded(TimerMetric.AUTHORITY_SIGN_IN, 50);
+        whenTimeIsRecorded(TimerMetric.AUTHORITY_SIGN_IN, 20);
+        thenTimerIs(TimerMetric.AUTHORITY_SIGN_IN, 3, 100, 50);
+        thenTimerIs(TimerMetric.AUTHORITY_REFRESH, 0, 0, 0);
+    }
+
+    @Test
+    public void shouldCountEvents() {
+        whenIncremented(CounterMetric.REQUEST_VALID);
+        whenIncremented(CounterMetric.REQUEST_VALID);
+        whenIncremented(CounterMetric.REQUEST_MALFORMED);
+        whenIncrementedBy(CounterMetric.SESSION_REAPER_DELETED, 500);
+        thenCounterIs(CounterMetric.REQUEST_VALID, 2);
+        thenCounterIs(CounterMetric.REQUEST_MALFORMED, 1);
+        thenCounterIs(CounterMetric.SESSION_REAPER_DELETED, 500);
+        thenCounterIs(CounterMetric.REQUEST_INVALID_SIGNATURE, 0);
+    }
+
+    private void whenTimeIsRecorded(final TimerMetric metric, final long durationNanos) {
+        _recorder.recordTime(metric, durationNanos);
+    }
+
+    private void whenIncremented(final CounterMetric metric) {
+        _recorder.increment(metric);
+    }
+
+    private void whenIncrementedBy(final CounterMetric metric, final long delta) {
+        _recorder.increment(metric, delta);
+    }
+
+    private void thenTimerIs(final TimerMetric metric, final long count, final long totalNanos, final long maxNanos) {
+        assertThat(_recorder.getCount(metric), is(count));
+        assertThat(_recorder.getTotalNanos(metric), is(totalNanos));
+        assertThat(_recorder.getMaxNanos(metric), is(maxNanos));
+    }
+
+    private void thenCounterIs(final CounterMetric metric, final long count) {
+        assertThat(_recorder.getCount(metric), is(count));
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.revocation;
+
+import org.echocat.marquardt.common.util.DateProvider;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class RevocationRegistryUnitTest {
+
+    private static final long NOW = 1445076000000L;
+    private static final long KEY_ID = 0x1234567890ABCDEFL;
+    private static final long OTHER_KEY_ID = 42L;
+
+    @Rule
+    public final TemporaryFolder _temporaryFolder = new TemporaryFolder();
+
+    private final RevocationRegistry _registry = new RevocationRegistry();
+    private final InMemoryRevocationLog _log = new InMemoryRevocationLog();
+    private long _now = NOW;
+
+    public RevocationRegistryUnitTest() {
+        _registry.setDateProvider(new DateProvider() {
+            @SuppressWarnings("UseOfObsoleteDateTimeApi")
+            @Override
+            public Date now() {
+                return new Date(_now);
+            }
+        });
+    }
+
+    @Test
+    public void shouldRevokeCertificatesIssuedBeforeRevocationOnly() throws IOException {
+        givenRevocation(KEY_ID, NOW);
+        whenRegistryIsUpdatedFrom(_log);
+        assertThat(_registry.isRevoked(KEY_ID, NOW - 1), is(true));
+        assertThat(_registry.isRevoked(KEY_ID, NOW + 1), is(false));
+        assertThat(_registry.isRevoked(OTHER_KEY_ID, NOW - 1), is(false));
+    }
+
+    @Test
+    public void shouldApplyOnlyRevocationsAppendedSinceLastUpdate() throws IOException {
+        givenRevocation(KEY_ID, NOW);
+        assertThat(whenRegistryIsUpdatedFrom(_log), is(1));
+        givenRevocation(OTHER_KEY_ID, NOW + 1);
+        assertThat(whenRegistryIsUpdatedFrom(_log), is(1));
+        assertThat(whenRegistryIsUpdatedFrom(_log), is(0));
+        assertThat(_registry.size(), is(2));
+        assertThat(_registry.getNextSequence(), is(2L));
+    }
+
+    @Test
+    public void shouldDropRevocationsOnceAllRevokedCertificatesExpired() throws IOException {
+        givenRevocation(KEY_ID, NOW);
+        givenTimePassed(RevocationRegistry.RETENTION_IN_MILLIS + 1);
+        givenRevocation(OTHER_KEY_ID, _now);
+        whenRegistryIsUpdatedFrom(_log);
+        assertThat(_registry.size(), is(1));
+        assertThat(_registry.isRevoked(OTHER_KEY_ID, NOW), is(true));
+    }
+
+    @Test
+    public void shouldReadRevocationsFromFileWrittenByAuthority() throws IOException {
+        try (FileRevocationLog authorityLog = new FileRevocationLog(_temporaryFolder.newFile(), true)) {
+            authorityLog.append(KEY_ID, NOW);
+            try (FileRevocationLog serviceFeed = new FileRevocationLog(_temporaryFolder.getRoot().listFiles()[0], false)) {
+                whenRegistryIsUpdatedFrom(serviceFeed);
+                authorityLog.append(OTHER_KEY_ID, NOW);
+                whenRegistryIsUpdatedFrom(serviceFeed);
+            }
+        }
+        assertThat(_registry.isRevoked(KEY_ID, NOW), is(true));
+        assertThat(_registry.isRevoked(OTHER_KEY_ID, NOW), is(true));
+    }
+
+    @Test
+    public void shouldReplaceAllWithRetainedRevocationsOfFileForSequencesBeforeRetention() throws IOException {
+        try (FileRevocationLog log = new FileRevocationLog(_temporaryFolder.newFile(), true)) {
+            log.append(KEY_ID, NOW);
+            log.append(OTHER_KEY_ID, NOW + RevocationRegistry.RETENTION_IN_MILLIS + 1);
+
+            assertThat(log.readSince(0), is(new RevocationDelta(2, true, new long[]{OTHER_KEY_ID}, new long[]{NOW + RevocationRegistry.RETENTION_IN_MILLIS + 1})));
+            assertThat(log.readSince(1).isReplacingAll(), is(false));
+            assertThat(log.readSince(2).size(), is(0));
+        }
+    }
+
+    @Test
+    public void shouldCompactFileOnceExpiredRevocationsOutnumberRetainedOnes() throws IOException {
+        final File file = _temporaryFolder.newFile();
+        try (FileRevocationLog authorityLog = new FileRevocationLog(file, true)) {
+            authorityLog.setForceOnAppend(false);
+            for (int i = 0; i < FileRevocationLog.COMPACTION_THRESHOLD; i++) {
+                authorityLog.append(i, NOW);
+            }
+            givenTimePassed(RevocationRegistry.RETENTION_IN_MILLIS + 1);
+            authorityLog.append(KEY_ID, _now);
+
+            assertThat(file.length(), is(8L + 16L));
+            whenRegistryIsUpdatedFrom(new FileRevocationLog(file, false));
+        }
+        assertThat(_registry.getNextSequence(), is(FileRevocationLog.COMPACTION_THRESHOLD + 1L));
+        assertThat(_registry.size(), is(1));
+        assertThat(_registry.isRevoked(KEY_ID, NOW), is(true));
+    }
+
+    @Test
+    public void shouldReplaceAllWithRevocationsOfRestartedLog() throws IOException {
+        givenRevocation(KEY_ID, NOW);
+        givenRevocation(OTHER_KEY_ID, NOW);
+        whenRegistryIsUpdatedFrom(_log);
+        final InMemoryRevocationLog restartedLog = new InMemoryRevocationLog();
+        restartedLog.append(OTHER_KEY_ID, NOW + 1);
+
+        assertThat(whenRegistryIsUpdatedFrom(restartedLog), is(1));
+
+        assertThat(_registry.getNextSequence(), is(1L));
+        assertThat(_registry.isRevoked(OTHER_KEY_ID, NOW), is(true));
+        assertThat(_registry.isRevoked(KEY_ID, NOW - 1), is(false));
+        restartedLog.append(KEY_ID, NOW + 2);
+        assertThat(whenRegistryIsUpdatedFrom(restartedLog), is(1));
+        assertThat(_registry.isRevoked(KEY_ID, NOW + 1), is(true));
+    }
+
+    @Test
+    public void shouldReplaceAllWithRevocationsOfReplacedFile() throws IOException {
+        final File file = _temporaryFolder.newFile();
+        try (FileRevocationLog authorityLog = new FileRevocationLog(file, true)) {
+            authorityLog.append(KEY_ID, NOW);
+            authorityLog.append(OTHER_KEY_ID, NOW);
+            whenRegistryIsUpdatedFrom(new FileRevocationLog(file, false));
+        }
+        assertThat(file.delete(), is(true));
+        try (FileRevocationLog authorityLog = new FileRevocationLog(file, true)) {
+            authorityLog.append(OTHER_KEY_ID, NOW + 1);
+
+            assertThat(whenRegistryIsUpdatedFrom(new FileRevocationLog(file, false)), is(1));
+        }
+        assertThat(_registry.getNextSequence(), is(1L));
+        assertThat(_registry.isRevoked(OTHER_KEY_ID, NOW), is(true));
+        assertThat(_registry.isRevoked(KEY_ID, NOW - 1), is(false));
+    }
+
+    @Test
+    public void shouldSerializeDeltas() throws IOException {
+        givenRevocation(KEY_ID, NOW);
+        givenRevocation(OTHER_KEY_ID, NOW + 1);
+        final RevocationDelta delta = _log.readSince(0);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        delta.writeTo(out);
+        assertThat(RevocationDelta.readFrom(new ByteArrayInputStream(out.toByteArray())), is(delta));
+    }
+
+    private void givenRevocation(final long keyId, final long revokedAt) {
+        _log.append(keyId, revokedAt);
+    }
+
+    private void givenTimePassed(final long millis) {
+        _now += millis;
+    }
+
+    private int whenRegistryIsUpdatedFrom(final RevocationFeed feed) throws IOException {
+        return _registry.update(feed);
+    }
+}
@@ -9,14 +9,14 @@
 package org.echocat.marquardt.common.serialization;
 
 import org.echocat.marquardt.common.TestRoles;
-import org.echocat.marquardt.common.domain.certificate.Role;
 import org.junit.Test;
 
-import java.util.HashSet;
 import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.allOf;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsCollectionContaining.hasItem;
 
@@ -29,7 +29,7 @@ public class RolesDeserializerUnitTest {
         }
     };
 
-    private Set<Role> _roles = new HashSet<>();
+    private Set<TestRoles> _roles;
     private Long _roleCode;
 
     @Test
@@ -58,6 +58,20 @@ public class RolesDeserializerUnitTest {
         whenCreatingRoles();
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionWhenRoleCodeIsNegative() throws Exception {
+        givenRoleCode(-1L);
+        whenCreatingRoles();
+    }
+
+    @Test
+    public void shouldCreateRoleSetBackedByRoleCodes() throws Exception {
+        givenRoleCode(2L);
+        whenCreatingRoles();
+        thenOnlySecondRoleIsContained();
+        thenRoleCodeCanBeSerializedAgain();
+    }
+
     private void givenRoleCode(final Long roleCode) {
         _roleCode = roleCode;
     }
@@ -73,6 +87,19 @@ public class RolesDeserializerUnitTest {
     }
 
 
+    private void thenOnlySecondRoleIsContained() {
+        assertThat(_roles.size(), is(1));
+        assertThat(_roles.contains(TestRoles.TEST_ROLE_2), is(true));
+        assertThat(_roles.contains(TestRoles.TEST_ROLE_1), is(false));
+        assertThat(_roles.iterator().next(), sameInstance(TestRoles.TEST_ROLE_2));
+        assertThat(_roles, not(sameInstance((Set<TestRoles>) _rolesDeserializer.from(_roleCode))));
+        assertThat(_roles.equals(_rolesDeserializer.from(_roleCode)), is(true));
+    }
+
+    private void thenRoleCodeCanBeSerializedAgain() {
+        assertThat(RolesSerializer.from(_roles), is(_roleCode));
+    }
+
     private void thenEmptyRolesSetIsDeserialized() {
         assertThat(_roles.size(), is(0));
     }
@@ -0,0 +1,108 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.util;
+
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class BinaryReaderUnitTest {
+
+    private static final int MAXIMUM_LENGTH = 16;
+
+    private byte[] _content;
+    private BinaryReader _reader;
+
+    @Test
+    public void shouldReadAllValuesFromStreamDeliveringSingleBytes() throws Exception {
+        givenContentWithIntLongAndBytes(3);
+        givenReaderOverStreamDeliveringSingleBytes();
+        thenIntLongAndBytesAreRead(3);
+    }
+
+    @Test
+    public void shouldReadAllValuesFromBuffer() throws Exception {
+        givenContentWithIntLongAndBytes(3);
+        givenReaderOverBuffer();
+        thenIntLongAndBytesAreRead(3);
+    }
+
+    @Test(expected = EOFException.class)
+    public void shouldThrowEofExceptionWhenStreamEndsEarly() throws Exception {
+        givenContentWithIntLongAndBytes(3);
+        givenReaderOverStreamDeliveringSingleBytes();
+        whenReadingMoreBytesThanInContent();
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldThrowExceptionWhenLengthExceedsMaximum() throws Exception {
+        givenContentWithIntLongAndBytes(MAXIMUM_LENGTH + 1);
+        givenReaderOverBuffer();
+        whenReadingLengthPrefixedBytesAfterIntAndLong();
+    }
+
+    @Test
+    public void shouldReadBigEndianValuesRegardlessOfByteOrder() throws Exception {
+        givenContentWithIntLongAndBytes(3);
+        _reader = BinaryReader.of(ByteBuffer.wrap(_content).order(ByteOrder.LITTLE_ENDIAN));
+        thenIntLongAndBytesAreRead(3);
+    }
+
+    private void givenContentWithIntLongAndBytes(final int numberOfBytes) {
+        final ByteBuffer buffer = ByteBuffer.allocate(Ints.BYTES + Longs.BYTES + Ints.BYTES + numberOfBytes);
+        buffer.putInt(42).putLong(-23L).putInt(numberOfBytes);
+        for (int i = 0; i < numberOfBytes; i++) {
+            buffer.put((byte) i);
+        }
+        _content = buffer.array();
+    }
+
+    private void givenReaderOverStreamDeliveringSingleBytes() {
+        final InputStream singleBytes = new FilterInputStream(new ByteArrayInputStream(_content)) {
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        _reader = BinaryReader.of(singleBytes);
+    }
+
+    private void givenReaderOverBuffer() {
+        _reader = BinaryReader.of(ByteBuffer.wrap(_content));
+    }
+
+    private void whenReadingMoreBytesThanInContent() throws IOException {
+        _reader.readBytes(_content.length + 1);
+    }
+
+    private void whenReadingLengthPrefixedBytesAfterIntAndLong() throws IOException {
+        _reader.readInt();
+        _reader.readLong();
+        _reader.readLengthPrefixedBytes(MAXIMUM_LENGTH);
+    }
+
+    private void thenIntLongAndBytesAreRead(final int numberOfBytes) throws IOException {
+        assertThat(_reader.readInt(), is(42));
+        assertThat(_reader.readLong(), is(-23L));
+        final byte[] bytes = _reader.readLengthPrefixedBytes(MAXIMUM_LENGTH);
+        assertThat(bytes.length, is(numberOfBytes));
+        assertThat(bytes[numberOfBytes - 1], is((byte) (numberOfBytes - 1)));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class VarLongsUnitTest {
+
+    private static final long[] VALUES = {0L, 1L, 127L, 128L, 16383L, 16384L, System.currentTimeMillis(), Long.MAX_VALUE, -1L, Long.MIN_VALUE};
+
+    private byte[] _written;
+
+    @Test
+    public void shouldReadWrittenValuesFromBufferAndStream() throws Exception {
+        whenValuesAreWritten();
+        thenValuesCanBeReadFromBuffer();
+        thenValuesCanBeReadFromStream();
+    }
+
+    @Test
+    public void shouldWriteSmallValuesInOneByte() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VarLongs.write(out, 127L);
+        assertThat(out.size(), is(1));
+    }
+
+    @Test(expected = EOFException.class)
+    public void shouldThrowEofExceptionWhenValueIsTruncated() throws Exception {
+        BinaryReader.of(ByteBuffer.wrap(new byte[]{(byte) 0x80})).readVarLong();
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldThrowExceptionWhenLengthExceedsMaximum() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VarLongs.write(out, 101L);
+        BinaryReader.of(ByteBuffer.wrap(out.toByteArray())).readVarLength(100);
+    }
+
+    private void whenValuesAreWritten() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (final long value : VALUES) {
+            VarLongs.write(out, value);
+        }
+        _written = out.toByteArray();
+    }
+
+    private void thenValuesCanBeReadFromBuffer() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(_written);
+        final BinaryReader reader = BinaryReader.of(buffer);
+        for (final long value : VALUES) {
+            assertThat(reader.readVarLong(), is(value));
+        }
+        assertThat(buffer.hasRemaining(), is(false));
+    }
+
+    private void thenValuesCanBeReadFromStream() throws IOException {
+        final ByteArrayInputStream in = new ByteArrayInputStream(_written);
+        final BinaryReader reader = BinaryReader.of(in);
+        for (final long value : VALUES) {
+            assertThat(reader.readVarLong(), is(value));
+        }
+        assertThat(in.read(), is(-1));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.web;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.primitives.Ints;
+import org.echocat.marquardt.common.TestKeyPairProvider;
+import org.echocat.marquardt.common.domain.Signature;
+import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class CanonicalRequestEncoderUnitTest {
+
+    private static final String METHOD = "POST";
+    private static final String PATH = "/api/résumés";
+
+    private final Map<String, String> _headers = new HashMap<>();
+    private final KeyPairProvider _clientKeys = TestKeyPairProvider.create();
+    private byte[] _encoded;
+    private Signature _signature;
+
+    @Test
+    public void shouldEncodeRequestLineAndPresentSignatureHeadersUtf8EncodedWithLengths() throws Exception {
+        givenHeaders();
+        whenEncoding();
+        thenRequestLineAndHeadersAreEncodedInOrderOfSignatureHeaders();
+    }
+
+    @Test
+    public void shouldValidateSignatureOfSameRequestOnly() throws Exception {
+        givenHeaders();
+        whenSigning();
+        thenSignatureIsValidForSameRequest();
+        thenSignatureIsInvalidForChangedHeader();
+    }
+
+    @Test
+    public void shouldEncodeEmptyHeaderValueExplicitlyAndSkipAbsentHeaders() throws Exception {
+        _headers.put("Content-Length", "");
+        whenEncoding();
+        thenOnlyTheEmptyHeaderIsEncoded();
+    }
+
+    private void givenHeaders() {
+        _headers.put("Date", "Sat, 17 Oct 2015 10:00:00 GMT");
+        _headers.put("Content-Length", "42");
+        _headers.put("X-Not-Signed", "ignored");
+    }
+
+    private void whenEncoding() {
+        _encoded = CanonicalRequestEncoder.encode(METHOD, PATH, headers());
+    }
+
+    private void whenSigning() {
+        _signature = CanonicalRequestEncoder.sign(METHOD, PATH, headers(), _clientKeys.getPrivateKey(), Signature.Mechanism.rsa);
+    }
+
+    private void thenRequestLineAndHeadersAreEncodedInOrderOfSignatureHeaders() throws IOException {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        writePart(expected, METHOD + " " + PATH);
+        writePart(expected, "Content-Length:42");
+        writePart(expected, "Date:Sat, 17 Oct 2015 10:00:00 GMT");
+        assertThat(_encoded, is(expected.toByteArray()));
+    }
+
+    private void thenOnlyTheEmptyHeaderIsEncoded() throws IOException {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        writePart(expected, METHOD + " " + PATH);
+        writePart(expected, "Content-Length:");
+        assertThat(_encoded, is(expected.toByteArray()));
+    }
+
+    private void thenSignatureIsValidForSameRequest() {
+        assertThat(CanonicalRequestEncoder.isValid(METHOD, PATH, headers(), _signature, _clientKeys.getPublicKey()), is(true));
+    }
+
+    private void thenSignatureIsInvalidForChangedHeader() {
+        _headers.put("Content-Length", "43");
+        assertThat(CanonicalRequestEncoder.isValid(METHOD, PATH, headers(), _signature, _clientKeys.getPublicKey()), is(false));
+    }
+
+    private Function<String, String> headers() {
+        return Functions.forMap(_headers, null);
+    }
+
+    private static void writePart(final ByteArrayOutputStream out, final String part) throws IOException {
+        final byte[] bytes = part.getBytes(Charsets.UTF_8);
+        out.write(Ints.toByteArray(bytes.length));
+        out.write(bytes);
+    }
+}
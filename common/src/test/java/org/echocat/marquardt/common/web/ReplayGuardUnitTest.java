@@ -0,0 +1,64 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.web;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class ReplayGuardUnitTest {
+
+    private static final long WINDOW = TimeUnit.MINUTES.toMillis(1);
+    private static final long NOW = 1445076000000L;
+
+    private final ReplayGuard _replayGuard = new ReplayGuard(WINDOW, 1000, 1e-6);
+    private final Random _random = new Random(42);
+
+    @Test
+    public void shouldAcceptDatesWithinClockWindowOnly() {
+        assertThat(_replayGuard.isWithinClockWindow(NOW - WINDOW, NOW), is(true));
+        assertThat(_replayGuard.isWithinClockWindow(NOW + WINDOW, NOW), is(true));
+        assertThat(_replayGuard.isWithinClockWindow(NOW - WINDOW - 1, NOW), is(false));
+        assertThat(_replayGuard.isWithinClockWindow(NOW + WINDOW + 1, NOW), is(false));
+        assertThat(_replayGuard.isWithinClockWindow(-1, NOW), is(false));
+    }
+
+    @Test
+    public void shouldRejectReplayedNonceWithinTwoClockWindows() {
+        final byte[] nonce = randomNonce();
+        assertThat(_replayGuard.markAsSeen(nonce, NOW), is(true));
+        assertThat(_replayGuard.markAsSeen(nonce, NOW), is(false));
+        assertThat(_replayGuard.markAsSeen(nonce, NOW + WINDOW), is(false));
+        assertThat(_replayGuard.markAsSeen(nonce, NOW + 2 * WINDOW), is(false));
+    }
+
+    @Test
+    public void shouldForgetNoncesAfterTheirBucketsRotatedOut() {
+        final byte[] nonce = randomNonce();
+        assertThat(_replayGuard.markAsSeen(nonce, NOW), is(true));
+        assertThat(_replayGuard.markAsSeen(nonce, NOW + 3 * WINDOW), is(true));
+    }
+
+    @Test
+    public void shouldAcceptDifferentNonces() {
+        for (int i = 0; i < 20000; i++) {
+            assertThat(_replayGuard.markAsSeen(randomNonce(), NOW + i), is(true));
+        }
+    }
+
+    private byte[] randomNonce() {
+        final byte[] nonce = new byte[16];
+        _random.nextBytes(nonce);
+        return nonce;
+    }
+}
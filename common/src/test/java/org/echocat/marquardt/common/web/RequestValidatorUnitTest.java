@@ -0,0 +1,102 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.common.web;
+
+import com.google.common.base.Functions;
+import org.echocat.marquardt.common.TestKeyPairProvider;
+import org.echocat.marquardt.common.domain.Signature;
+import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
+import org.echocat.marquardt.common.metrics.AtomicMetricsRecorder;
+import org.echocat.marquardt.common.metrics.CounterMetric;
+import org.echocat.marquardt.common.util.DateProvider;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.codec.binary.Base64.encodeBase64String;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RequestValidatorUnitTest {
+
+    private static final long NOW = 1445076000000L;
+    private static final String METHOD = "POST";
+    private static final String PATH = "/api/resources";
+
+    private final RequestValidator _requestValidator = new RequestValidator();
+    private final AtomicMetricsRecorder _metricsRecorder = new AtomicMetricsRecorder();
+    private final KeyPairProvider _clientKeys = TestKeyPairProvider.create();
+    private final Map<String, String> _headers = new HashMap<>();
+    private final HttpServletRequest _request = mock(HttpServletRequest.class);
+
+    public RequestValidatorUnitTest() {
+        _requestValidator.setMetricsRecorder(_metricsRecorder);
+        _requestValidator.setReplayGuard(new ReplayGuard(TimeUnit.MINUTES.toMillis(1), 1000, 1e-6));
+        _requestValidator.setDateProvider(new DateProvider() {
+            @SuppressWarnings("UseOfObsoleteDateTimeApi")
+            @Override
+            public Date now() {
+                return new Date(NOW);
+            }
+        });
+        when(_request.getMethod()).thenReturn(METHOD);
+        when(_request.getRequestURI()).thenReturn(PATH);
+        when(_request.getHeader(anyString())).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(final InvocationOnMock invocation) {
+                return _headers.get((String) invocation.getArguments()[0]);
+            }
+        });
+    }
+
+    @Test
+    public void shouldRejectRequestWithMalformedDateHeaderAsInvalid() {
+        givenSignedRequest("not a date", "nonce");
+        when(_request.getDateHeader(SignatureHeaders.DATE.getHeaderName())).thenThrow(new IllegalArgumentException("not a date"));
+
+        assertThat(_requestValidator.isValid(_request, _clientKeys.getPublicKey()), is(false));
+        assertThat(_metricsRecorder.getCount(CounterMetric.REQUEST_MALFORMED), is(1L));
+    }
+
+    @Test
+    public void shouldAcceptIdenticalRequestsWithDifferentNonces() {
+        givenSignedRequest("Sat, 17 Oct 2015 10:00:00 GMT", "first");
+        assertThat(_requestValidator.isValid(_request, _clientKeys.getPublicKey()), is(true));
+
+        givenSignedRequest("Sat, 17 Oct 2015 10:00:00 GMT", "second");
+        assertThat(_requestValidator.isValid(_request, _clientKeys.getPublicKey()), is(true));
+    }
+
+    @Test
+    public void shouldRejectReplayedNonce() {
+        givenSignedRequest("Sat, 17 Oct 2015 10:00:00 GMT", "first");
+        assertThat(_requestValidator.isValid(_request, _clientKeys.getPublicKey()), is(true));
+
+        assertThat(_requestValidator.isValid(_request, _clientKeys.getPublicKey()), is(false));
+        assertThat(_metricsRecorder.getCount(CounterMetric.REQUEST_REPLAYED), is(1L));
+    }
+
+    private void givenSignedRequest(final String date, final String nonce) {
+        _headers.clear();
+        _headers.put(SignatureHeaders.DATE.getHeaderName(), date);
+        _headers.put(SignatureHeaders.REQUEST_NONCE.getHeaderName(), nonce);
+        final Signature signature = CanonicalRequestEncoder.sign(METHOD, PATH, Functions.forMap(_headers, null), _clientKeys.getPrivateKey(), Signature.Mechanism.rsa);
+        _headers.put(RequestHeaders.X_SIGNATURE, encodeBase64String(signature.getContent()));
+        when(_request.getDateHeader(SignatureHeaders.DATE.getHeaderName())).thenReturn(NOW);
+    }
+}
@@ -9,11 +9,15 @@
 package org.echocat.marquardt.example;
 
 import org.echocat.marquardt.authority.Authority;
+import org.echocat.marquardt.authority.persistence.ExpiredSessionReaper;
+import org.echocat.marquardt.authority.persistence.ExpiringSessionStore;
 import org.echocat.marquardt.authority.persistence.SessionStore;
 import org.echocat.marquardt.authority.persistence.UserCatalog;
 import org.echocat.marquardt.authority.persistence.UserCreator;
 import org.echocat.marquardt.authority.policies.ClientAccessPolicy;
 import org.echocat.marquardt.authority.policies.SessionCreationPolicy;
+import org.echocat.marquardt.authority.session.CertificateSigningService;
+import org.echocat.marquardt.authority.session.CertificateTemplateCache;
 import org.echocat.marquardt.authority.session.ExpiryDateCalculator;
 import org.echocat.marquardt.authority.session.ExpiryDateCalculatorImpl;
 import org.echocat.marquardt.authority.session.SessionCreator;
@@ -21,6 +25,7 @@ import org.echocat.marquardt.authority.session.SessionRenewal;
 import org.echocat.marquardt.common.CertificateValidator;
 import org.echocat.marquardt.common.domain.DeserializingFactory;
 import org.echocat.marquardt.common.keyprovisioning.KeyPairProvider;
+import org.echocat.marquardt.common.keyprovisioning.TrustedKeyRegistry;
 import org.echocat.marquardt.common.keyprovisioning.TrustedKeysProvider;
 import org.echocat.marquardt.common.serialization.RolesDeserializer;
 import org.echocat.marquardt.example.domain.CustomSignUpAccountData;
@@ -29,6 +34,7 @@ import org.echocat.marquardt.example.domain.PersistentSession;
 import org.echocat.marquardt.example.domain.PersistentUser;
 import org.echocat.marquardt.example.domain.UserCredentials;
 import org.echocat.marquardt.example.domain.UserInfo;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
@@ -37,6 +43,7 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @SpringBootApplication
 @Import(SecurityConfiguration.class)
@@ -56,14 +63,28 @@ public class ExampleApplication {
         return new BCryptPasswordEncoder();
     }
 
+    @Bean(destroyMethod = "close")
+    public CertificateSigningService certificateSigningService(final KeyPairProvider issuerKeyProvider) {
+        return new CertificateSigningService(issuerKeyProvider);
+    }
+
+    @Bean
+    public CertificateTemplateCache certificateTemplateCache(final KeyPairProvider issuerKeyProvider) {
+        return new CertificateTemplateCache(issuerKeyProvider);
+    }
+
     @Bean
     public SessionCreator<PersistentUser, PersistentSession> sessionCreator(
                                                         final SessionStore<PersistentSession> sessionStore,
                                                         final UserCatalog<PersistentUser> userCatalog,
                                                         final ExpiryDateCalculator<PersistentUser> expiryDateCalculator,
                                                         final KeyPairProvider issuerKeyProvider,
+                                                        final CertificateSigningService certificateSigningService,
+                                                        final CertificateTemplateCache certificateTemplateCache,
                                                         final Optional<SessionCreationPolicy> sessionCreationPolicy) {
         final SessionCreator<PersistentUser, PersistentSession> result = new SessionCreator<>(sessionStore, userCatalog, expiryDateCalculator, issuerKeyProvider);
+        result.setCertificateSigningService(certificateSigningService);
+        result.setCertificateTemplateCache(certificateTemplateCache);
         sessionCreationPolicy.ifPresent(result::setSessionCreationPolicy);
         return result;
     }
@@ -73,8 +94,13 @@ public class ExampleApplication {
                                                         final SessionStore<PersistentSession> sessionStore,
                                                         final UserCatalog<PersistentUser> userCatalog,
                                                         final ExpiryDateCalculator<PersistentUser> expiryDateCalculator,
-                                                        final KeyPairProvider issuerKeyProvider) {
-        return new SessionRenewal<>(sessionStore, userCatalog, expiryDateCalculator, issuerKeyProvider);
+                                                        final KeyPairProvider issuerKeyProvider,
+                                                        final CertificateSigningService certificateSigningService,
+                                                        final CertificateTemplateCache certificateTemplateCache) {
+        final SessionRenewal<PersistentUser, PersistentSession> result = new SessionRenewal<>(sessionStore, userCatalog, expiryDateCalculator, issuerKeyProvider);
+        result.setCertificateSigningService(certificateSigningService);
+        result.setCertificateTemplateCache(certificateTemplateCache);
+        return result;
     }
 
     @Bean
@@ -88,9 +114,24 @@ public class ExampleApplication {
         return new Authority<>(userCatalog, userCreator, sessionCreator, sessionRenewal, sessionStore, clientAccessPolicy);
     }
 
+    @Bean(destroyMethod = "close")
+    public ExpiredSessionReaper expiredSessionReaper(final ExpiringSessionStore<PersistentSession> sessionStore,
+                                                     @Value("${authentication.sessions.reaper.delay.seconds}") final long delayInSeconds,
+                                                     @Value("${authentication.sessions.reaper.batches.per.second}") final double batchesPerSecond) {
+        final ExpiredSessionReaper result = new ExpiredSessionReaper(sessionStore);
+        result.setBatchesPerSecond(batchesPerSecond);
+        result.start(delayInSeconds, TimeUnit.SECONDS);
+        return result;
+    }
+
+    @Bean
+    public TrustedKeyRegistry trustedKeyRegistry(final TrustedKeysProvider keysProvider) {
+        return new TrustedKeyRegistry(keysProvider);
+    }
+
     @Bean
-    public CertificateValidator<UserInfo, ExampleRoles> clientSignedContentValidator(final TrustedKeysProvider keysProvider) {
-        return new CertificateValidator<UserInfo, ExampleRoles>(keysProvider.getPublicKeys()) {
+    public CertificateValidator<UserInfo, ExampleRoles> clientSignedContentValidator(final TrustedKeyRegistry trustedKeyRegistry) {
+        return new CertificateValidator<UserInfo, ExampleRoles>(trustedKeyRegistry) {
             @Override
             protected DeserializingFactory<UserInfo> deserializingFactory() {
                 return UserInfo.FACTORY;
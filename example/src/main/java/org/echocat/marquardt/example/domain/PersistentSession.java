@@ -15,18 +15,24 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.UUID;
 
 @Entity
+@Table(indexes = {@Index(columnList = "sessionId", unique = true), @Index(columnList = "expiresAt")})
 public class PersistentSession implements Session {
 
     @Id
     @GeneratedValue(strategy= GenerationType.AUTO)
     private Long id;
 
+    @NotNull
+    private UUID sessionId;
+
     @NotNull
     private UUID userId;
 
@@ -55,6 +61,16 @@ public class PersistentSession implements Session {
         this.id = id;
     }
 
+    @Override
+    public UUID getSessionId() {
+        return sessionId;
+    }
+
+    @Override
+    public void setSessionId(final UUID sessionId) {
+        this.sessionId = sessionId;
+    }
+
     @Override
     public UUID getUserId() {
         return userId;
@@ -12,7 +12,7 @@ import com.google.common.primitives.Longs;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.echocat.marquardt.common.domain.DeserializingFactory;
 import org.echocat.marquardt.common.domain.Signable;
-import org.echocat.marquardt.common.util.InputStreamUtils;
+import org.echocat.marquardt.common.util.BinaryReader;
 
 import javax.annotation.Nonnull;
 import javax.annotation.WillNotClose;
@@ -24,12 +24,13 @@ import java.util.UUID;
 public class UserInfo implements Signable {
 
     public static final DeserializingFactory<UserInfo> FACTORY = (@Nonnull @WillNotClose InputStream in) -> {
-        final byte versionFromInput = InputStreamUtils.readByte(in);
+        final BinaryReader reader = BinaryReader.of(in);
+        final byte versionFromInput = reader.readByte();
         if (versionFromInput != UserInfo.VERSION) {
             throw new IllegalArgumentException("Expected UserInfo with version '" + UserInfo.VERSION + "' but received '" + versionFromInput + "'");
         }
-        final long mostSigBits = InputStreamUtils.readLong(in);
-        final long leastSigBits = InputStreamUtils.readLong(in);
+        final long mostSigBits = reader.readLong();
+        final long leastSigBits = reader.readLong();
         final UUID userId = new UUID(mostSigBits, leastSigBits);
         return new UserInfo(userId);
     };
@@ -8,18 +8,21 @@
 
 package org.echocat.marquardt.example.persistence;
 
-import org.echocat.marquardt.authority.persistence.SessionStore;
+import org.echocat.marquardt.authority.persistence.ExpiringSessionStore;
 import org.echocat.marquardt.example.domain.PersistentSession;
 import org.echocat.marquardt.example.persistence.jpa.PersistentSessionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Component
-public class PersistentSessionStore implements SessionStore<PersistentSession> {
+public class PersistentSessionStore implements ExpiringSessionStore<PersistentSession> {
 
     private final PersistentSessionRepository _sessionRepository;
 
@@ -33,6 +36,16 @@ public class PersistentSessionStore implements SessionStore<PersistentSession> {
         return _sessionRepository.findByCertificate(certificate);
     }
 
+    @Override
+    public Optional<PersistentSession> findBySessionId(final UUID sessionId) {
+        return _sessionRepository.findBySessionId(sessionId);
+    }
+
+    @Override
+    public Collection<PersistentSession> findByUserId(final UUID userId) {
+        return _sessionRepository.findByUserId(userId);
+    }
+
     @Override
     public boolean existsActiveSession(final UUID userId, final byte[] clientPublicKey, @SuppressWarnings("UseOfObsoleteDateTimeApi") final Date dateToCheck) {
         return _sessionRepository.countByUserIdAndPublicKeyAndExpiresAtGreaterThan(userId, clientPublicKey, dateToCheck) > 0;
@@ -53,6 +66,26 @@ public class PersistentSessionStore implements SessionStore<PersistentSession> {
         _sessionRepository.delete(session);
     }
 
+    /**
+     * Selects the ids of the oldest expired sessions from the index on expiresAt and deletes them by primary key, so
+     * each call touches at most limit rows. Sessions deleted concurrently in between are not counted.
+     */
+    @Override
+    public int deleteExpired(@SuppressWarnings("UseOfObsoleteDateTimeApi") final Date expiredBefore, final int limit) {
+        final List<Long> ids = _sessionRepository.findIdsByExpiresAtBefore(expiredBefore, new PageRequest(0, limit));
+        return ids.isEmpty() ? 0 : _sessionRepository.deleteByIdIn(ids);
+    }
+
+    @Override
+    public void saveAll(final Collection<PersistentSession> sessions) {
+        _sessionRepository.save(sessions);
+    }
+
+    @Override
+    public void deleteAll(final Collection<PersistentSession> sessions) {
+        _sessionRepository.delete(sessions);
+    }
+
     public void deleteAll() {
         _sessionRepository.deleteAll();
     }
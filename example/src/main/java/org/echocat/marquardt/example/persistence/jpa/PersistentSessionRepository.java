@@ -9,9 +9,15 @@
 package org.echocat.marquardt.example.persistence.jpa;
 
 import org.echocat.marquardt.example.domain.PersistentSession;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -20,5 +26,17 @@ public interface PersistentSessionRepository extends CrudRepository<PersistentSe
 
     Optional<PersistentSession> findByCertificate(byte[] certificate);
 
+    Optional<PersistentSession> findBySessionId(UUID sessionId);
+
+    List<PersistentSession> findByUserId(UUID userId);
+
     Long countByUserIdAndPublicKeyAndExpiresAtGreaterThan(UUID userId, byte[] publicKey, @SuppressWarnings("UseOfObsoleteDateTimeApi") Date expiresAt);
+
+    @Query("select s.id from PersistentSession s where s.expiresAt < ?1 order by s.expiresAt")
+    List<Long> findIdsByExpiresAtBefore(@SuppressWarnings("UseOfObsoleteDateTimeApi") Date expiredBefore, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("delete from PersistentSession s where s.id in ?1")
+    int deleteByIdIn(Collection<Long> ids);
 }
@@ -202,4 +202,8 @@ public abstract class AbstractSsoIntegrationTest {
     protected UserRepository getUserRepository() {
         return _userRepository;
     }
+
+    protected PersistentSessionStore getSessionStore() {
+        return _sessionStore;
+    }
 }
\ No newline at end of file
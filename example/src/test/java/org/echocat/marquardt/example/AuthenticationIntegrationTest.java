@@ -18,7 +18,9 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Date;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import static org.echocat.marquardt.authority.domain.UserStatus.CONFIRMED;
 import static org.echocat.marquardt.authority.domain.UserStatus.WITHOUT_CREDENTIALS;
@@ -165,6 +167,31 @@ public class AuthenticationIntegrationTest extends AbstractSsoIntegrationTest {
         } catch (final ClientNotAuthorizedException ignored) {}
     }
 
+    @Test(expected = NoSessionFoundException.class)
+    public void shouldNotRefreshCertificatesOfSessionsDeletedAfterExpiry() throws Exception {
+        givenExistingUser(Collections.emptySet());
+        givenClientIdIsAllowed();
+        givenCorrectCredentials();
+        whenSigningIn();
+        whenDeletingSessionsExpiredBefore(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(61)));
+        whenRefreshingCertificate();
+    }
+
+    @Test
+    public void shouldKeepActiveSessionsWhenDeletingExpiredOnes() throws Exception {
+        givenExistingUser(Collections.emptySet());
+        givenClientIdIsAllowed();
+        givenCorrectCredentials();
+        whenSigningIn();
+        whenDeletingSessionsExpiredBefore(new Date());
+        whenRefreshingCertificate();
+        thenCertificateIsProvided();
+    }
+
+    private void whenDeletingSessionsExpiredBefore(final Date expiredBefore) {
+        getSessionStore().deleteExpired(expiredBefore, 10);
+    }
+
     private void whenRefreshingCertificate() throws IOException {
         //noinspection unchecked
         setCertificate(getClient().refresh(_certificate));
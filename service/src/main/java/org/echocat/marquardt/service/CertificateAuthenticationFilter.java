@@ -14,10 +14,17 @@ import org.echocat.marquardt.common.domain.certificate.Certificate;
 import org.echocat.marquardt.common.domain.certificate.Role;
 import org.echocat.marquardt.common.exceptions.InvalidCertificateException;
 import org.echocat.marquardt.common.exceptions.SignatureValidationFailedException;
+import org.echocat.marquardt.common.web.ReplayGuard;
 import org.echocat.marquardt.common.web.RequestValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -26,6 +33,8 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.apache.commons.codec.binary.Base64.decodeBase64;
 import static org.echocat.marquardt.common.web.SignatureHeaders.X_CERTIFICATE;
@@ -41,7 +50,8 @@ import static org.echocat.marquardt.common.web.SignatureHeaders.X_CERTIFICATE;
  * <ul>
  * <li>The certificate is signed by the authority using a trusted key</li>
  * <li>The certificate is not expired</li>
- * <li>The signature of the headers can be validated with the clients public key from the certificate</li></ul><br>
+ * <li>The signature of the headers can be validated with the clients public key from the certificate</li>
+ * <li>The body matches the signed Content-MD5 header (checked while the application reads it)</li></ul><br>
  * <p>
  * Implement the abstract method authenticateUser to build your security context with the user info from the Certificate.
  *
@@ -53,8 +63,13 @@ import static org.echocat.marquardt.common.web.SignatureHeaders.X_CERTIFICATE;
 public abstract class CertificateAuthenticationFilter<SIGNABLE extends Signable, ROLE extends Role> implements Filter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CertificateAuthenticationFilter.class);
+    private static final String VERIFICATION_DECISION_ATTRIBUTE = CertificateAuthenticationFilter.class.getName() + ".verificationDecision";
+
     private final CertificateValidator<SIGNABLE, ROLE> _certificateValidator;
     private final RequestValidator _requestValidator;
+    private boolean _contentMd5Verified = true;
+    private boolean _contentDigestVerified;
+    private CertificateVerificationExecutor _verificationExecutor;
 
     public CertificateAuthenticationFilter(final CertificateValidator<SIGNABLE, ROLE> certificateValidator, final RequestValidator requestValidator) {
         _certificateValidator = certificateValidator;
@@ -64,24 +79,118 @@ public abstract class CertificateAuthenticationFilter<SIGNABLE extends Signable,
     @Override
     public void doFilter(final ServletRequest servletRequest, final ServletResponse servletResponse, final FilterChain filterChain) throws IOException, ServletException {
         final HttpServletRequest httpServletRequest = (HttpServletRequest) servletRequest;
+        final Object decision = httpServletRequest.getAttribute(VERIFICATION_DECISION_ATTRIBUTE);
+        if (decision instanceof VerificationDecision) {
+            httpServletRequest.removeAttribute(VERIFICATION_DECISION_ATTRIBUTE);
+            //noinspection unchecked
+            continueWith((VerificationDecision<SIGNABLE>) decision, httpServletRequest, servletResponse, filterChain);
+            return;
+        }
+        final String header = httpServletRequest.getHeader(X_CERTIFICATE.getHeaderName());
+        if (header != null && _verificationExecutor != null && httpServletRequest.getDispatcherType() == DispatcherType.REQUEST
+            && httpServletRequest.isAsyncSupported() && !httpServletRequest.isAsyncStarted() && verifyAsynchronously(httpServletRequest, servletResponse, header)) {
+            return;
+        }
+        continueWith(verify(httpServletRequest, header), httpServletRequest, servletResponse, filterChain);
+    }
+
+    private boolean verifyAsynchronously(final HttpServletRequest httpServletRequest, final ServletResponse servletResponse, final String header) {
+        final AtomicReference<AsyncVerification> started = new AtomicReference<>();
+        final boolean accepted = _verificationExecutor.tryCreateAndExecute(() -> {
+            final AsyncVerification verification = new AsyncVerification(httpServletRequest, httpServletRequest.startAsync(httpServletRequest, servletResponse));
+            started.set(verification);
+            return () -> verification.decide(verify(httpServletRequest, header));
+        });
+        if (!accepted) {
+            final AsyncVerification verification = started.get();
+            if (verification != null) {
+                LOGGER.debug("Verification executor was shut down after async processing was started. Rejecting certificate.");
+                verification.decide(new VerificationDecision<>(null, new InvalidCertificateException("Certificate verification was rejected by the shut down verification executor.")));
+                return true;
+            }
+            LOGGER.debug("Verification executor is saturated. Verifying on container thread.");
+        }
+        return accepted;
+    }
+
+    @Nonnull
+    private VerificationDecision<SIGNABLE> verify(final HttpServletRequest httpServletRequest, @Nullable final String header) {
+        if (header == null) {
+            return new VerificationDecision<>(null, null);
+        }
         try {
-            final String header = httpServletRequest.getHeader(X_CERTIFICATE.getHeaderName());
-            if (header != null) {
-                final byte[] decodedCertificate = decodeBase64(header);
-                final Certificate<SIGNABLE> certificate = _certificateValidator.deserializeAndValidateCertificate(decodedCertificate);
-                LOGGER.debug("Successful extracted user info from header {}.", certificate.getPayload());
-                if (_requestValidator.isValid(httpServletRequest, certificate.getClientPublicKey())) {
-                    authenticateUser(certificate);
-                }
+            final byte[] decodedCertificate = decodeBase64(header);
+            final Certificate<SIGNABLE> certificate = _certificateValidator.deserializeAndValidateCertificate(decodedCertificate);
+            LOGGER.debug("Successful extracted user info from header {}.", certificate.getPayload());
+            return new VerificationDecision<>(_requestValidator.isValid(httpServletRequest, certificate.getClientPublicKey()) ? certificate : null, null);
+        } catch (final RuntimeException e) {
+            return new VerificationDecision<>(null, e);
+        }
+    }
+
+    private void continueWith(final VerificationDecision<SIGNABLE> decision, final HttpServletRequest httpServletRequest, final ServletResponse servletResponse, final FilterChain filterChain) throws IOException, ServletException {
+        ServletRequest requestToPass = httpServletRequest;
+        try {
+            if (decision._failure != null) {
+                throw decision._failure;
+            }
+            if (decision._certificate != null) {
+                authenticateUser(decision._certificate);
+                requestToPass = ContentDigestVerifyingRequest.wrapIfDigestsPresent(httpServletRequest, _contentMd5Verified, _contentDigestVerified);
             }
         } catch (final InvalidCertificateException | SignatureValidationFailedException e) {
             LOGGER.debug("Certificate validation failed.", e);
             handleCertificateException(e);
         } finally {
-            filterChain.doFilter(servletRequest, servletResponse);
+            filterChain.doFilter(requestToPass, servletResponse);
         }
     }
 
+    /**
+     * Enables replay protection on the RequestValidator of this filter: Requests are only authenticated if their signed
+     * Date header is within the clock window of the guard and their signed nonce was not seen before.
+     *
+     * @param replayGuard Guard to use or null (the default) to disable replay protection.
+     * @see RequestValidator#setReplayGuard(ReplayGuard)
+     */
+    public void setReplayGuard(@Nullable final ReplayGuard replayGuard) {
+        _requestValidator.setReplayGuard(replayGuard);
+    }
+
+    /**
+     * Enables the async mode: Certificates and request signatures are verified on the threads of the given executor
+     * instead of the container thread. The filter starts async processing of the request and dispatches it again once
+     * the authentication decision is made; {@link #authenticateUser(Certificate)} and the rest of the chain then run
+     * on a container thread. The filter must therefore be registered for the ASYNC dispatcher type and all filters in
+     * front of it must support async. Requests of containers without async support, or arriving while the executor is
+     * saturated, are verified synchronously. Requests whose verification exceeds the async timeout of the container, or
+     * that the executor rejects because it was shut down meanwhile, are dispatched with an
+     * {@link InvalidCertificateException} passed to {@link #handleCertificateException(RuntimeException)}.
+     *
+     * @param verificationExecutor Executor to verify on or null (the default) to verify on the container thread.
+     */
+    public void setVerificationExecutor(@Nullable final CertificateVerificationExecutor verificationExecutor) {
+        _verificationExecutor = verificationExecutor;
+    }
+
+    /**
+     * @param contentMd5Verified Whether the body of authenticated requests is verified against their Content-MD5
+     *                           header while the application reads it. Default is true.
+     * @see ContentDigestVerifyingRequest
+     */
+    public void setContentMd5Verified(final boolean contentMd5Verified) {
+        _contentMd5Verified = contentMd5Verified;
+    }
+
+    /**
+     * @param contentDigestVerified Whether the body of authenticated requests is verified against the sha-256 digest
+     *                              of their Content-Digest header while the application reads it. Default is false.
+     * @see ContentDigestVerifyingRequest
+     */
+    public void setContentDigestVerified(final boolean contentDigestVerified) {
+        _contentDigestVerified = contentDigestVerified;
+    }
+
     @SuppressWarnings("UnusedParameters")
     protected void handleCertificateException(final RuntimeException e) {
         // Default empty implementation
@@ -105,4 +214,66 @@ public abstract class CertificateAuthenticationFilter<SIGNABLE extends Signable,
     public void destroy() {
         // empty default implementation
     }
+
+    /**
+     * Dispatches an asynchronously verified request once, with the first decision made: The verification's or a
+     * rejection when the async processing timed out before.
+     */
+    private final class AsyncVerification implements AsyncListener {
+
+        private final HttpServletRequest _httpServletRequest;
+        private final AsyncContext _asyncContext;
+        private final AtomicBoolean _decided = new AtomicBoolean();
+
+        private AsyncVerification(final HttpServletRequest httpServletRequest, final AsyncContext asyncContext) {
+            _httpServletRequest = httpServletRequest;
+            _asyncContext = asyncContext;
+            asyncContext.addListener(this);
+        }
+
+        private void decide(final VerificationDecision<SIGNABLE> decision) {
+            if (_decided.compareAndSet(false, true)) {
+                _httpServletRequest.setAttribute(VERIFICATION_DECISION_ATTRIBUTE, decision);
+                _asyncContext.dispatch();
+            }
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            LOGGER.debug("Verification of certificate timed out. Rejecting certificate.");
+            decide(new VerificationDecision<>(null, new InvalidCertificateException("Certificate verification timed out.")));
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            // Nothing to clean up
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+            // The container completes the request
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            // Not restarted by this filter
+        }
+    }
+
+    /**
+     * Result of verifying a request: The certificate if the request is authenticated, the failure if verification
+     * failed, both null if the request has no certificate or its signature is not valid.
+     */
+    private static final class VerificationDecision<SIGNABLE extends Signable> {
+
+        @Nullable
+        private final Certificate<SIGNABLE> _certificate;
+        @Nullable
+        private final RuntimeException _failure;
+
+        private VerificationDecision(@Nullable final Certificate<SIGNABLE> certificate, @Nullable final RuntimeException failure) {
+            _certificate = certificate;
+            _failure = failure;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.service;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of threads dedicated to the cryptographic work of authenticating requests (certificate and request
+ * signature verification), so that this work does not occupy the threads of the servlet container.
+ * <p>
+ * At most threads + maximumQueueDepth tasks are accepted at the same time. If the executor is saturated,
+ * {@link #tryExecute(Runnable)} returns false and callers do the work themselves.
+ *
+ * @see CertificateAuthenticationFilter#setVerificationExecutor(CertificateVerificationExecutor)
+ */
+public class CertificateVerificationExecutor {
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final ThreadPoolExecutor _executor;
+    private final Semaphore _permits;
+    private final int _maximumQueueDepth;
+    private final AtomicLong _executedCount = new AtomicLong();
+    private final AtomicLong _rejectedCount = new AtomicLong();
+
+    /**
+     * @param threads Number of verification threads.
+     * @param maximumQueueDepth Number of tasks that may wait for a thread before further tasks are rejected.
+     */
+    public CertificateVerificationExecutor(@Nonnegative final int threads, @Nonnegative final int maximumQueueDepth) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is required.");
+        }
+        if (maximumQueueDepth < 0) {
+            throw new IllegalArgumentException("Maximum queue depth must not be negative.");
+        }
+        _maximumQueueDepth = maximumQueueDepth;
+        _permits = new Semaphore(threads + maximumQueueDepth);
+        _executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new VerificationThreadFactory());
+    }
+
+    /**
+     * @param task Task to run on a verification thread.
+     * @return false if the executor is saturated or shut down and the task was not accepted.
+     */
+    public boolean tryExecute(@Nonnull final Runnable task) {
+        return tryCreateAndExecute(() -> task);
+    }
+
+    /**
+     * Like {@link #tryExecute(Runnable)} but the task is only created once it is certain that it will be accepted. Use
+     * this if preparing the task has side effects that must not happen for rejected tasks.
+     *
+     * @param taskFactory Called on the calling thread to create the task if the executor has capacity for it.
+     * @return false if the executor is saturated or shut down and the task was not accepted. The task may have been
+     *         created nevertheless if the executor was shut down concurrently.
+     */
+    public boolean tryCreateAndExecute(@Nonnull final Supplier<Runnable> taskFactory) {
+        if (_executor.isShutdown() || !_permits.tryAcquire()) {
+            _rejectedCount.incrementAndGet();
+            return false;
+        }
+        boolean submitted = false;
+        try {
+            final Runnable task = taskFactory.get();
+            _executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    _executedCount.incrementAndGet();
+                    _permits.release();
+                }
+            });
+            submitted = true;
+        } catch (final RejectedExecutionException ignored) {
+            _rejectedCount.incrementAndGet();
+        } finally {
+            if (!submitted) {
+                _permits.release();
+            }
+        }
+        return submitted;
+    }
+
+    /**
+     * @return Number of accepted tasks waiting for a thread.
+     */
+    public int getQueueDepth() {
+        return _executor.getQueue().size();
+    }
+
+    public int getMaximumQueueDepth() {
+        return _maximumQueueDepth;
+    }
+
+    /**
+     * @return Approximate number of threads currently running tasks.
+     */
+    public int getActiveCount() {
+        return _executor.getActiveCount();
+    }
+
+    /**
+     * @return Number of tasks that finished (successful or not).
+     */
+    public long getExecutedCount() {
+        return _executedCount.get();
+    }
+
+    /**
+     * @return Number of tasks that were not accepted because the executor was saturated or shut down.
+     */
+    public long getRejectedCount() {
+        return _rejectedCount.get();
+    }
+
+    /**
+     * Lets the accepted tasks finish and stops the threads afterwards. No further tasks are accepted.
+     */
+    public void shutdown() {
+        _executor.shutdown();
+    }
+
+    private static class VerificationThreadFactory implements ThreadFactory {
+
+        private final int _poolNumber = POOL_NUMBER.incrementAndGet();
+        private final AtomicInteger _threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@Nonnull final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "marquardt-verification-" + _poolNumber + "-" + _threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.service;
+
+import java.io.IOException;
+
+/**
+ * Thrown to the application reading a request body when the body does not match the digest its client signed
+ * (Content-MD5 or Content-Digest header).
+ *
+ * @see ContentDigestVerifyingRequest
+ */
+public class ContentDigestMismatchException extends IOException {
+
+    public ContentDigestMismatchException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.service;
+
+import org.echocat.marquardt.common.exceptions.SecurityMechanismException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.apache.commons.codec.binary.Base64.decodeBase64;
+import static org.echocat.marquardt.common.web.SignatureHeaders.CONTENT;
+import static org.echocat.marquardt.common.web.SignatureHeaders.CONTENT_DIGEST;
+
+/**
+ * Verifies the body of a request against the digests its client sent in the Content-MD5 and (RFC 9530)
+ * Content-Digest headers. The body is hashed while the application reads it, without buffering it, so memory per
+ * request stays constant regardless of the body size. When the end of the body is reached and it does not match, the
+ * read throws a {@link ContentDigestMismatchException}. The end is reached once as many bytes as announced by the
+ * Content-Length header were read or the container reports the body as finished, so bodies are verified even if the
+ * application's parser stops after the last token without reading up to end of stream.
+ *
+ * Bodies that are not read completely are not verified. Of the Content-Digest header only the sha-256 digest is used.
+ *
+ * @see CertificateAuthenticationFilter#setContentMd5Verified(boolean)
+ * @see CertificateAuthenticationFilter#setContentDigestVerified(boolean)
+ */
+public class ContentDigestVerifyingRequest extends HttpServletRequestWrapper {
+
+    private static final String SHA_256_DIGEST_KEY = "sha-256";
+
+    private final List<ExpectedDigest> _expectedDigests;
+    private ServletInputStream _inputStream;
+    private BufferedReader _reader;
+
+    ContentDigestVerifyingRequest(@Nonnull final HttpServletRequest request, @Nonnull final List<ExpectedDigest> expectedDigests) {
+        super(request);
+        _expectedDigests = expectedDigests;
+    }
+
+    /**
+     * @param request Request to verify the body of.
+     * @param verifyContentMd5 Whether to verify the Content-MD5 header.
+     * @param verifyContentDigest Whether to verify the sha-256 digest of the Content-Digest header.
+     * @return A request that verifies the body when read or the request itself if it has none of the headers to
+     * verify.
+     */
+    @Nonnull
+    public static HttpServletRequest wrapIfDigestsPresent(@Nonnull final HttpServletRequest request, final boolean verifyContentMd5, final boolean verifyContentDigest) {
+        final List<ExpectedDigest> expectedDigests = new ArrayList<>(2);
+        if (verifyContentMd5) {
+            final String contentMd5 = request.getHeader(CONTENT.getHeaderName());
+            if (contentMd5 != null) {
+                expectedDigests.add(new ExpectedDigest(CONTENT.getHeaderName(), "MD5", decodeBase64(contentMd5.trim())));
+            }
+        }
+        if (verifyContentDigest) {
+            final byte[] sha256 = sha256Of(request.getHeader(CONTENT_DIGEST.getHeaderName()));
+            if (sha256 != null) {
+                expectedDigests.add(new ExpectedDigest(CONTENT_DIGEST.getHeaderName(), "SHA-256", sha256));
+            }
+        }
+        return expectedDigests.isEmpty() ? request : new ContentDigestVerifyingRequest(request, Collections.unmodifiableList(expectedDigests));
+    }
+
+    /**
+     * @param contentDigest Value of a Content-Digest header, e.g. <code>sha-256=:X48E9qOokqqrvdts8nOJRJN3OWDUoyWxBf7kbu9DBPE=:</code>.
+     * @return The sha-256 digest or null if there is none.
+     */
+    @Nullable
+    static byte[] sha256Of(@Nullable final String contentDigest) {
+        if (contentDigest == null) {
+            return null;
+        }
+        for (final String entry : contentDigest.split(",")) {
+            final int separator = entry.indexOf('=');
+            if (separator > 0 && SHA_256_DIGEST_KEY.equalsIgnoreCase(entry.substring(0, separator).trim())) {
+                final String value = entry.substring(separator + 1).trim();
+                if (value.length() >= 2 && value.charAt(0) == ':' && value.charAt(value.length() - 1) == ':') {
+                    return decodeBase64(value.substring(1, value.length() - 1));
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (_reader != null) {
+            throw new IllegalStateException("getReader() was already called for this request.");
+        }
+        if (_inputStream == null) {
+            _inputStream = new VerifyingInputStream(super.getInputStream(), _expectedDigests, getContentLength());
+        }
+        return _inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        if (_reader == null) {
+            if (_inputStream != null) {
+                throw new IllegalStateException("getInputStream() was already called for this request.");
+            }
+            _reader = new BufferedReader(new InputStreamReader(new VerifyingInputStream(super.getInputStream(), _expectedDigests, getContentLength()), characterEncoding()));
+        }
+        return _reader;
+    }
+
+    @Nonnull
+    private String characterEncoding() throws UnsupportedEncodingException {
+        final String characterEncoding = getCharacterEncoding();
+        return characterEncoding != null ? characterEncoding : "ISO-8859-1";
+    }
+
+    static final class ExpectedDigest {
+
+        @Nonnull
+        private final String _headerName;
+        @Nonnull
+        private final String _algorithm;
+        @Nonnull
+        private final byte[] _digest;
+
+        ExpectedDigest(@Nonnull final String headerName, @Nonnull final String algorithm, @Nonnull final byte[] digest) {
+            _headerName = headerName;
+            _algorithm = algorithm;
+            _digest = digest;
+        }
+
+        @Nonnull
+        private MessageDigest createMessageDigest() {
+            try {
+                return MessageDigest.getInstance(_algorithm);
+            } catch (final NoSuchAlgorithmException e) {
+                throw new SecurityMechanismException("Cannot verify " + _headerName + ". Algorithm " + _algorithm + " not present.", e);
+            }
+        }
+    }
+
+    private static final class VerifyingInputStream extends ServletInputStream {
+
+        @Nonnull
+        private final ServletInputStream _delegate;
+        @Nonnull
+        private final List<ExpectedDigest> _expectedDigests;
+        @Nonnull
+        private final MessageDigest[] _messageDigests;
+        /**
+         * Announced length of the body or -1 if unknown.
+         */
+        private final long _contentLength;
+        private long _bytesRead;
+        private boolean _verified;
+
+        private VerifyingInputStream(@Nonnull final ServletInputStream delegate, @Nonnull final List<ExpectedDigest> expectedDigests, final long contentLength) {
+            _delegate = delegate;
+            _expectedDigests = expectedDigests;
+            _contentLength = contentLength;
+            _messageDigests = new MessageDigest[expectedDigests.size()];
+            for (int i = 0; i < _messageDigests.length; i++) {
+                _messageDigests[i] = expectedDigests.get(i).createMessageDigest();
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int result = _delegate.read();
+            if (result < 0) {
+                verify();
+            } else {
+                for (final MessageDigest messageDigest : _messageDigests) {
+                    messageDigest.update((byte) result);
+                }
+                verifyIfCompletelyRead(1);
+            }
+            return result;
+        }
+
+        @Override
+        public int read(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+            final int result = _delegate.read(b, off, len);
+            if (result < 0) {
+                verify();
+            } else {
+                for (final MessageDigest messageDigest : _messageDigests) {
+                    messageDigest.update(b, off, result);
+                }
+                verifyIfCompletelyRead(result);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return _delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return _delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(final ReadListener readListener) {
+            _delegate.setReadListener(readListener);
+        }
+
+        @Override
+        public void close() throws IOException {
+            _delegate.close();
+        }
+
+        private void verifyIfCompletelyRead(final int bytesRead) throws ContentDigestMismatchException {
+            _bytesRead += bytesRead;
+            if ((_contentLength >= 0 && _bytesRead >= _contentLength) || _delegate.isFinished()) {
+                verify();
+            }
+        }
+
+        private void verify() throws ContentDigestMismatchException {
+            if (_verified) {
+                return;
+            }
+            _verified = true;
+            for (int i = 0; i < _messageDigests.length; i++) {
+                final ExpectedDigest expectedDigest = _expectedDigests.get(i);
+                if (!MessageDigest.isEqual(expectedDigest._digest, _messageDigests[i].digest())) {
+                    throw new ContentDigestMismatchException("Request body does not match its " + expectedDigest._headerName + " header.");
+                }
+            }
+        }
+    }
+}
@@ -23,20 +23,30 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.mock.web.MockAsyncContext;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
 
 import static org.apache.commons.codec.binary.Base64.encodeBase64URLSafeString;
 import static org.echocat.marquardt.common.web.SignatureHeaders.X_CERTIFICATE;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsEqual.equalTo;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.argThat;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -44,7 +54,16 @@ import static org.mockito.Mockito.when;
 @RunWith(MockitoJUnitRunner.class)
 public class CertificateAuthenticationFilterUnitTest {
 
-    private final MockHttpServletRequest _httpServletRequest = new MockHttpServletRequest();
+    private final MockHttpServletRequest _httpServletRequest = new MockHttpServletRequest() {
+        @Override
+        public AsyncContext startAsync(final ServletRequest request, final ServletResponse response) {
+            final AsyncContext asyncContext = super.startAsync(request, response);
+            if (_executorShutDownOnStartAsync) {
+                _verificationExecutor.shutdown();
+            }
+            return asyncContext;
+        }
+    };
     private final MockHttpServletResponse _httpServletResponse = new MockHttpServletResponse();
 
     @Mock
@@ -64,6 +83,10 @@ public class CertificateAuthenticationFilterUnitTest {
 
     private TestCertificateAuthenticationFilter _testCertificateAuthenticationFilter;
 
+    private final CertificateVerificationExecutor _verificationExecutor = new CertificateVerificationExecutor(1, 1);
+    private final CountDownLatch _blockedVerifications = new CountDownLatch(1);
+    private boolean _executorShutDownOnStartAsync;
+
     @Before
     public void setUp() {
         _testCertificateAuthenticationFilter = new TestCertificateAuthenticationFilter(_certificateValidator, _requestValidator);
@@ -102,6 +125,78 @@ public class CertificateAuthenticationFilterUnitTest {
         thenDoFilterIsCalled();
     }
 
+    @Test
+    public void shouldAuthenticateUserAsynchronouslyWithVerificationExecutor() throws Exception {
+        givenValidRequest();
+        givenVerificationExecutor();
+        givenAsyncSupported(true);
+        whenFilterIsExecuted();
+        thenRequestIsSuspendedUntilVerified();
+        whenRequestIsDispatchedAgain();
+        thenUserIsAuthenticated();
+        thenDoFilterIsCalled();
+    }
+
+    @Test
+    public void shouldAuthenticateUserSynchronouslyIfAsyncIsNotSupported() throws Exception {
+        givenValidRequest();
+        givenVerificationExecutor();
+        givenAsyncSupported(false);
+        whenFilterIsExecuted();
+        thenUserIsAuthenticated();
+        thenDoFilterIsCalled();
+        thenNothingWasExecutedAsynchronously();
+    }
+
+    @Test
+    public void shouldAuthenticateUserOnContainerThreadIfVerificationExecutorIsSaturated() throws Exception {
+        givenValidRequest();
+        givenVerificationExecutor();
+        givenAsyncSupported(true);
+        givenVerificationExecutorIsSaturated();
+        try {
+            whenFilterIsExecuted();
+            thenUserIsAuthenticated();
+            thenDoFilterIsCalled();
+            thenVerificationWasRejectedByExecutor();
+        } finally {
+            _blockedVerifications.countDown();
+        }
+    }
+
+    @Test
+    public void shouldRejectCertificateIfVerificationExecutorIsShutDownAfterAsyncWasStarted() throws Exception {
+        givenValidRequest();
+        givenVerificationExecutor();
+        givenAsyncSupported(true);
+        givenExecutorIsShutDownOnStartAsync();
+        whenFilterIsExecuted();
+        thenAsyncStartedVerificationWasRejectedByExecutor();
+        thenRequestIsDispatched();
+        whenRequestIsDispatchedAgain();
+        thenUserIsNotAuthenticated();
+        thenDoFilterIsCalled();
+    }
+
+    @Test
+    public void shouldRejectCertificateIfVerificationTimesOut() throws Exception {
+        givenValidRequest();
+        givenVerificationExecutor();
+        givenAsyncSupported(true);
+        givenVerificationThreadIsBusy();
+        try {
+            whenFilterIsExecuted();
+            whenAsyncProcessingTimesOut();
+            thenRequestIsDispatched();
+            whenRequestIsDispatchedAgain();
+            thenUserIsNotAuthenticated();
+            thenDoFilterIsCalled();
+        } finally {
+            _blockedVerifications.countDown();
+        }
+        thenLateVerificationIsIgnored();
+    }
+
     @Test
     public void shouldNotChangeFilterConfig() throws ServletException {
         whenFilterIsInitialized();
@@ -111,6 +206,91 @@ public class CertificateAuthenticationFilterUnitTest {
     @After
     public void tearDown() {
         _testCertificateAuthenticationFilter.destroy();
+        _verificationExecutor.shutdown();
+    }
+
+    private void givenVerificationExecutor() {
+        _testCertificateAuthenticationFilter.setVerificationExecutor(_verificationExecutor);
+    }
+
+    private void givenVerificationExecutorIsSaturated() {
+        final Runnable blockingTask = () -> {
+            try {
+                _blockedVerifications.await();
+            } catch (final InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        assertThat(_verificationExecutor.tryExecute(blockingTask), is(true));
+        assertThat(_verificationExecutor.tryExecute(blockingTask), is(true));
+    }
+
+    private void givenVerificationThreadIsBusy() {
+        assertThat(_verificationExecutor.tryExecute(() -> {
+            try {
+                _blockedVerifications.await();
+            } catch (final InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        }), is(true));
+    }
+
+    private void givenExecutorIsShutDownOnStartAsync() {
+        _executorShutDownOnStartAsync = true;
+    }
+
+    private void whenAsyncProcessingTimesOut() throws IOException {
+        final MockAsyncContext asyncContext = (MockAsyncContext) _httpServletRequest.getAsyncContext();
+        for (final AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+    }
+
+    private void thenRequestIsDispatched() {
+        assertThat(((MockAsyncContext) _httpServletRequest.getAsyncContext()).getDispatchedPath() != null, is(true));
+    }
+
+    private void thenLateVerificationIsIgnored() throws InterruptedException {
+        final long timeout = System.currentTimeMillis() + 5000;
+        while (_verificationExecutor.getExecutedCount() < 2 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertThat(_verificationExecutor.getExecutedCount(), is(2L));
+        assertThat(_httpServletRequest.getAttributeNames().hasMoreElements(), is(false));
+    }
+
+    private void givenAsyncSupported(final boolean asyncSupported) {
+        _httpServletRequest.setAsyncSupported(asyncSupported);
+    }
+
+    private void whenRequestIsDispatchedAgain() throws IOException, ServletException {
+        _httpServletRequest.setDispatcherType(DispatcherType.ASYNC);
+        _testCertificateAuthenticationFilter.doFilter(_httpServletRequest, _httpServletResponse, _filterChain);
+    }
+
+    private void thenRequestIsSuspendedUntilVerified() throws InterruptedException, IOException, ServletException {
+        final long timeout = System.currentTimeMillis() + 5000;
+        while (_verificationExecutor.getExecutedCount() == 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertThat(_verificationExecutor.getExecutedCount(), is(1L));
+        assertThat(_testCertificateAuthenticationFilter.isAuthenticated(), is(false));
+        verify(_filterChain, never()).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+    }
+
+    private void thenVerificationWasRejectedByExecutor() {
+        assertThat(_verificationExecutor.getRejectedCount(), is(1L));
+        assertThat(_httpServletRequest.isAsyncStarted(), is(false));
+    }
+
+    private void thenAsyncStartedVerificationWasRejectedByExecutor() throws IOException, ServletException {
+        assertThat(_verificationExecutor.getRejectedCount(), is(1L));
+        assertThat(_httpServletRequest.isAsyncStarted(), is(true));
+        verify(_filterChain, never()).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+    }
+
+    private void thenNothingWasExecutedAsynchronously() {
+        assertThat(_verificationExecutor.getExecutedCount(), is(0L));
     }
 
     private void thenFilterConfigIsUnchanged() {
@@ -0,0 +1,131 @@
+/*
+ * echocat Marquardt Java SDK, Copyright (c) 2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.echocat.marquardt.service;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.apache.commons.codec.binary.Base64.encodeBase64String;
+import static org.apache.commons.codec.binary.Base64.encodeBase64URLSafeString;
+import static org.echocat.marquardt.common.web.SignatureHeaders.CONTENT;
+import static org.echocat.marquardt.common.web.SignatureHeaders.CONTENT_DIGEST;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+public class ContentDigestVerifyingRequestUnitTest {
+
+    private static final byte[] BODY = "{\"some\":\"content\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final MockHttpServletRequest _request = new MockHttpServletRequest();
+    private HttpServletRequest _wrappedRequest;
+    private byte[] _readBody;
+
+    @Test
+    public void shouldNotWrapRequestWithoutDigestHeaders() throws Exception {
+        givenBody(BODY);
+        whenRequestIsWrapped(true, true);
+        thenRequestIsNotWrapped();
+    }
+
+    @Test
+    public void shouldPassBodyMatchingContentMd5() throws Exception {
+        givenBody(BODY);
+        givenContentMd5Of(BODY);
+        whenRequestIsWrapped(true, false);
+        whenBodyIsRead();
+        thenReadBodyIs(BODY);
+    }
+
+    @Test(expected = ContentDigestMismatchException.class)
+    public void shouldRejectBodyNotMatchingContentMd5() throws Exception {
+        givenBody(BODY);
+        givenContentMd5Of("other".getBytes(StandardCharsets.UTF_8));
+        whenRequestIsWrapped(true, false);
+        whenBodyIsRead();
+    }
+
+    @Test(expected = ContentDigestMismatchException.class)
+    public void shouldRejectMismatchOnceContentLengthIsReadWithoutReachingEndOfStream() throws Exception {
+        givenBody(BODY);
+        givenContentMd5Of("other".getBytes(StandardCharsets.UTF_8));
+        whenRequestIsWrapped(true, false);
+        whenExactlyContentLengthBytesAreRead();
+    }
+
+    @Test
+    public void shouldPassBodyMatchingContentDigest() throws Exception {
+        givenBody(BODY);
+        givenContentDigestOf(BODY);
+        whenRequestIsWrapped(false, true);
+        whenBodyIsReadByReader();
+        thenReadBodyIs(BODY);
+    }
+
+    @Test(expected = ContentDigestMismatchException.class)
+    public void shouldRejectBodyNotMatchingContentDigest() throws Exception {
+        givenBody(BODY);
+        givenContentDigestOf("other".getBytes(StandardCharsets.UTF_8));
+        whenRequestIsWrapped(false, true);
+        whenBodyIsRead();
+    }
+
+    @Test
+    public void shouldIgnoreContentDigestIfNotEnabled() throws Exception {
+        givenBody(BODY);
+        givenContentDigestOf("other".getBytes(StandardCharsets.UTF_8));
+        whenRequestIsWrapped(true, false);
+        thenRequestIsNotWrapped();
+    }
+
+    private void givenBody(final byte[] body) {
+        _request.setContent(body);
+    }
+
+    private void givenContentMd5Of(final byte[] content) throws Exception {
+        _request.addHeader(CONTENT.getHeaderName(), encodeBase64URLSafeString(MessageDigest.getInstance("MD5").digest(content)));
+    }
+
+    private void givenContentDigestOf(final byte[] content) throws Exception {
+        _request.addHeader(CONTENT_DIGEST.getHeaderName(), "md5=:AAAA:, sha-256=:" + encodeBase64String(MessageDigest.getInstance("SHA-256").digest(content)) + ":");
+    }
+
+    private void whenRequestIsWrapped(final boolean verifyContentMd5, final boolean verifyContentDigest) {
+        _wrappedRequest = ContentDigestVerifyingRequest.wrapIfDigestsPresent(_request, verifyContentMd5, verifyContentDigest);
+    }
+
+    private void whenBodyIsRead() throws IOException {
+        _readBody = IOUtils.toByteArray(_wrappedRequest.getInputStream());
+    }
+
+    private void whenExactlyContentLengthBytesAreRead() throws IOException {
+        final byte[] body = new byte[_wrappedRequest.getContentLength()];
+        IOUtils.readFully(_wrappedRequest.getInputStream(), body);
+    }
+
+    private void whenBodyIsReadByReader() throws IOException {
+        _readBody = IOUtils.toString(_wrappedRequest.getReader()).getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private void thenRequestIsNotWrapped() {
+        assertThat(_wrappedRequest, sameInstance((HttpServletRequest) _request));
+    }
+
+    private void thenReadBodyIs(final byte[] expected) {
+        assertThat(_wrappedRequest, instanceOf(ContentDigestVerifyingRequest.class));
+        assertThat(_readBody, is(expected));
+    }
+}